@@ -1,23 +1,39 @@
 package cn.badminton.aop;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
+import org.springframework.validation.BindingResult;
 
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 控制器层统一日志切面
- * - 记录入参（脱敏）与耗时
- * - 异常时打印错误日志，包含入参JSON
+ * - 每次调用记录 api.requests 计时（p50/p95/p99），标签 endpoint / outcome
+ * - 异常与慢调用必打日志，其余按 app.api-log.sample-percent 抽样
+ * - 入参（脱敏）只在日志真正输出时才序列化
  * 作者: xiaolei
  */
 @Aspect
@@ -26,37 +42,75 @@ import java.util.Map;
 @Slf4j
 public class ApiLogAspect {
 
-    private final ObjectMapper mapper = new ObjectMapper();
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.api-log.sample-percent:1}")
+    private int samplePercent;
+
+    @Value("${app.api-log.slow-threshold-ms:500}")
+    private long slowThresholdMs;
+
+    private final Map<Method, Timer> okTimers = new ConcurrentHashMap<>();
+    private final Map<Method, Timer> errorTimers = new ConcurrentHashMap<>();
 
     @Around("within(cn.badminton.controller..*)")
     public Object around(ProceedingJoinPoint pjp) throws Throwable {
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
         MethodSignature signature = (MethodSignature) pjp.getSignature();
         Method method = signature.getMethod();
-        String classMethod = method.getDeclaringClass().getSimpleName() + "." + method.getName();
-
-        Map<String, Object> params = collectParams(signature.getParameterNames(), pjp.getArgs());
-        String inJson = safeJson(params);
-
         try {
             Object ret = pjp.proceed();
-            long cost = System.currentTimeMillis() - start;
-            log.info("API ok {} cost={}ms in={}", classMethod, cost, inJson);
+            long nanos = System.nanoTime() - start;
+            okTimers.computeIfAbsent(method, m -> timer(m, "ok")).record(nanos, TimeUnit.NANOSECONDS);
+            long cost = TimeUnit.NANOSECONDS.toMillis(nanos);
+            if (cost >= slowThresholdMs) {
+                log.warn("API slow {} cost={}ms in={}", endpoint(method), cost,
+                        new LazyParams(signature, pjp.getArgs()));
+            } else if (sampled() && log.isInfoEnabled()) {
+                log.info("API ok {} cost={}ms in={}", endpoint(method), cost,
+                        new LazyParams(signature, pjp.getArgs()));
+            }
             return ret;
         } catch (Throwable e) {
-            long cost = System.currentTimeMillis() - start;
-            log.error("API err {} cost={}ms in={}", classMethod, cost, inJson, e);
+            long nanos = System.nanoTime() - start;
+            errorTimers.computeIfAbsent(method, m -> timer(m, "error")).record(nanos, TimeUnit.NANOSECONDS);
+            log.error("API err {} cost={}ms in={}", endpoint(method), TimeUnit.NANOSECONDS.toMillis(nanos),
+                    new LazyParams(signature, pjp.getArgs()), e);
             throw e;
         }
     }
 
+    private Timer timer(Method method, String outcome) {
+        return Timer.builder("api.requests")
+                .tag("endpoint", endpoint(method))
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private boolean sampled() {
+        return samplePercent >= 100 || (samplePercent > 0 && ThreadLocalRandom.current().nextInt(100) < samplePercent);
+    }
+
+    private String endpoint(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
     private Map<String, Object> collectParams(String[] names, Object[] args) {
-        Map<String, Object> map = new HashMap<>();
+        Map<String, Object> map = new LinkedHashMap<>();
         if (names == null || args == null) return map;
         int n = Math.min(names.length, args.length);
         for (int i = 0; i < n; i++) {
             String name = names[i];
             Object val = args[i];
+            if (val instanceof ServletRequest || val instanceof ServletResponse
+                    || val instanceof Principal || val instanceof BindingResult) {
+                continue;
+            }
             if (name != null && isSensitive(name)) {
                 map.put(name, mask(val));
             } else {
@@ -68,13 +122,57 @@ public class ApiLogAspect {
 
     private boolean isSensitive(String name) {
         String n = name.toLowerCase();
-        return n.contains("password") || n.contains("pwd") || n.contains("secret") || n.contains("token");
+        return n.contains("password") || n.contains("pwd") || n.contains("secret") || n.contains("token")
+                || n.equals("code");
     }
 
     private Object mask(Object v) { return v == null ? null : "***"; }
 
     private String safeJson(Object o) {
-        try { return mapper.writeValueAsString(o); } catch (JsonProcessingException e) { return String.valueOf(o); }
+        try {
+            JsonNode tree = mapper.valueToTree(o);
+            maskTree(tree);
+            return mapper.writeValueAsString(tree);
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            return String.valueOf(o);
+        }
+    }
+
+    /**
+     * 请求体 DTO 内的敏感字段（如 LoginRequest.password、RefreshRequest.refreshToken）同样脱敏
+     */
+    private void maskTree(JsonNode node) {
+        if (node instanceof ObjectNode) {
+            ObjectNode obj = (ObjectNode) node;
+            Iterator<Map.Entry<String, JsonNode>> fields = obj.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (isSensitive(field.getKey()) && !field.getValue().isNull()) {
+                    field.setValue(TextNode.valueOf("***"));
+                } else {
+                    maskTree(field.getValue());
+                }
+            }
+        } else if (node != null && node.isArray()) {
+            node.forEach(this::maskTree);
+        }
     }
-}
 
+    /**
+     * 延迟序列化的入参：仅在日志框架格式化消息时调用 toString
+     */
+    private final class LazyParams {
+        private final MethodSignature signature;
+        private final Object[] args;
+
+        private LazyParams(MethodSignature signature, Object[] args) {
+            this.signature = signature;
+            this.args = args;
+        }
+
+        @Override
+        public String toString() {
+            return safeJson(collectParams(signature.getParameterNames(), args));
+        }
+    }
+}
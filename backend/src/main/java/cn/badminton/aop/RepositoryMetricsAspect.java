@@ -0,0 +1,87 @@
+package cn.badminton.aop;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.repository.Repository;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 存储库方法耗时切面
+ * - 覆盖 Redis 存储库（cn.badminton.repository）与 Spring Data JPA 存储库
+ * - 指标 repository.invocations，标签 repository / method / store / exception
+ * - 执行期间把 "类名.方法名" 挂在当前线程上，供慢查询记录定位调用来源
+ * 作者: xiaolei
+ */
+@Aspect
+@Component
+@Order(20)
+public class RepositoryMetricsAspect {
+
+    private static final ThreadLocal<String> CURRENT_OPERATION = new ThreadLocal<>();
+
+    private final Map<Class<?>, String> jpaNames = new ConcurrentHashMap<>();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 当前线程正在执行的存储库方法（最内层），不在存储库调用中时返回 null
+     */
+    public static String currentOperation() {
+        return CURRENT_OPERATION.get();
+    }
+
+    @Around("within(cn.badminton.repository.*) || target(org.springframework.data.repository.Repository)")
+    public Object around(ProceedingJoinPoint pjp) throws Throwable {
+        boolean jpa = pjp.getTarget() instanceof Repository;
+        String repository = jpa
+                ? jpaNames.computeIfAbsent(pjp.getThis().getClass(), this::jpaRepositoryName)
+                : pjp.getTarget().getClass().getSimpleName();
+        String method = pjp.getSignature().getName();
+
+        String previous = CURRENT_OPERATION.get();
+        CURRENT_OPERATION.set(repository + "." + method);
+        long start = System.nanoTime();
+        String exception = "none";
+        try {
+            return pjp.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            Timer.builder("repository.invocations")
+                    .tag("repository", repository)
+                    .tag("method", method)
+                    .tag("store", jpa ? "jpa" : "redis")
+                    .tag("exception", exception)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (previous == null) {
+                CURRENT_OPERATION.remove();
+            } else {
+                CURRENT_OPERATION.set(previous);
+            }
+        }
+    }
+
+    /**
+     * JPA 存储库是 JDK 代理，取业务接口名（如 UserJpaRepository）而不是 SimpleJpaRepository
+     */
+    private String jpaRepositoryName(Class<?> proxyClass) {
+        for (Class<?> itf : proxyClass.getInterfaces()) {
+            if (Repository.class.isAssignableFrom(itf) && itf.getName().startsWith("cn.badminton")) {
+                return itf.getSimpleName();
+            }
+        }
+        return "JpaRepository";
+    }
+}
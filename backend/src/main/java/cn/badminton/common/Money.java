@@ -0,0 +1,206 @@
+package cn.badminton.common;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * 金额值类型：以 long 分为单位，运算精确且不分配 BigDecimal
+ * - 只接受最多两位小数的金额，多余精度直接报错而不是静默舍入
+ * - 分摊使用最大余数法，各份之和恒等于总额，各份之差不超过 1 分（按比例时不超过比例误差 + 1 分）
+ * - JSON 中仍以两位小数的数字表示，与改造前的接口格式一致
+ *
+ * 作者: xiaolei
+ */
+public final class Money implements Comparable<Money>, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final Money ZERO = new Money(0);
+
+    private final long cents;
+
+    private Money(long cents) {
+        this.cents = cents;
+    }
+
+    public static Money ofCents(long cents) {
+        return cents == 0 ? ZERO : new Money(cents);
+    }
+
+    /**
+     * 由十进制金额构造，超过两位小数时抛出 IllegalArgumentException
+     */
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Money of(BigDecimal amount) {
+        if (amount == null) {
+            return null;
+        }
+        try {
+            return ofCents(amount.movePointRight(2).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("金额格式不正确，最多两位小数: " + amount.toPlainString());
+        }
+    }
+
+    public static Money parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return of(new BigDecimal(text.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("金额格式不正确: " + text);
+        }
+    }
+
+    public long getCents() {
+        return cents;
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    public Money plus(Money other) {
+        return other == null || other.cents == 0 ? this : ofCents(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return other == null || other.cents == 0 ? this : ofCents(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money times(long factor) {
+        return ofCents(Math.multiplyExact(cents, factor));
+    }
+
+    public Money negate() {
+        return ofCents(Math.negateExact(cents));
+    }
+
+    public int signum() {
+        return Long.signum(cents);
+    }
+
+    public boolean isZero() {
+        return cents == 0;
+    }
+
+    public boolean isPositive() {
+        return cents > 0;
+    }
+
+    public boolean isNegative() {
+        return cents < 0;
+    }
+
+    /**
+     * 平均分成 parts 份，余下的分从前往后各加 1 分
+     */
+    public Money[] allocate(int parts) {
+        if (parts <= 0) {
+            throw new IllegalArgumentException("分摊份数必须大于0");
+        }
+        long base = Math.floorDiv(cents, parts);
+        long remainder = Math.floorMod(cents, parts);
+        Money[] result = new Money[parts];
+        Money baseMoney = ofCents(base);
+        Money plusOne = ofCents(base + 1);
+        for (int i = 0; i < parts; i++) {
+            result[i] = i < remainder ? plusOne : baseMoney;
+        }
+        return result;
+    }
+
+    /**
+     * 按比例分摊（最大余数法）：先按比例向下取整，余下的分依次给小数部分最大的份，相同时给靠前的份
+     * 金额不能为负，比例不能为负且至少有一项大于 0
+     */
+    public Money[] allocate(long... ratios) {
+        if (ratios == null || ratios.length == 0) {
+            throw new IllegalArgumentException("分摊比例不能为空");
+        }
+        if (cents < 0) {
+            throw new IllegalArgumentException("负金额不能按比例分摊");
+        }
+        long total = 0;
+        for (long ratio : ratios) {
+            if (ratio < 0) {
+                throw new IllegalArgumentException("分摊比例不能为负数");
+            }
+            total = Math.addExact(total, ratio);
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("分摊比例之和必须大于0");
+        }
+
+        int n = ratios.length;
+        long[] shares = new long[n];
+        long[] remainders = new long[n];
+        long allocated = 0;
+        for (int i = 0; i < n; i++) {
+            long[] qr = mulDivRem(cents, ratios[i], total);
+            shares[i] = qr[0];
+            remainders[i] = qr[1];
+            allocated += qr[0];
+        }
+
+        long left = cents - allocated;
+        if (left > 0) {
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> remainders[a] != remainders[b]
+                    ? Long.compare(remainders[b], remainders[a]) : Integer.compare(a, b));
+            for (int i = 0; i < left; i++) {
+                shares[order[i]]++;
+            }
+        }
+
+        Money[] result = new Money[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = ofCents(shares[i]);
+        }
+        return result;
+    }
+
+    /**
+     * 非负数 a * b / c 的商与余数，乘积溢出 long 时改用 BigInteger
+     */
+    private static long[] mulDivRem(long a, long b, long c) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        if (high == 0 && low >= 0) {
+            return new long[]{low / c, low % c};
+        }
+        BigInteger[] qr = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b))
+                .divideAndRemainder(BigInteger.valueOf(c));
+        return new long[]{qr[0].longValueExact(), qr[1].longValueExact()};
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof Money && ((Money) o).cents == cents);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(cents);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
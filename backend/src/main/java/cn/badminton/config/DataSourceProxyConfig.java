@@ -0,0 +1,40 @@
+package cn.badminton.config;
+
+import cn.badminton.metrics.QueryMetricsListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * 数据源代理配置
+ * - 用 datasource-proxy 包装连接池，所有 JDBC 执行经过 QueryMetricsListener 统计
+ * - 取代全局开启 org.hibernate.SQL / jdbc.bind 日志的做法，正常路径只做计数与计时
+ * 作者: xiaolei
+ */
+@Configuration
+public class DataSourceProxyConfig {
+
+    /**
+     * 必须是 static：BeanPostProcessor 要先于普通 Bean 注册，监听器延迟到包装数据源时才获取
+     */
+    @Bean
+    public static BeanPostProcessor dataSourceProxyPostProcessor(ObjectProvider<QueryMetricsListener> listener) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof ProxyDataSource)) {
+                    return ProxyDataSourceBuilder.create((DataSource) bean)
+                            .name(beanName)
+                            .listener(listener.getObject())
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
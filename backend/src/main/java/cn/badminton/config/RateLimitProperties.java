@@ -0,0 +1,61 @@
+package cn.badminton.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 接口限流策略（令牌桶）
+ * 键为请求路径，如 /api/auth/login（不含上下文路径与末尾斜杠）；未配置的路径不限流
+ * 作者: xiaolei
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 本地预过滤缓存的最大客户端数
+     */
+    private long localMaximumSize = 100_000;
+
+    /**
+     * 按路径配置的策略
+     */
+    private Map<String, Policy> routes = new HashMap<>();
+
+    public Policy policyFor(String path) {
+        return routes.get(path);
+    }
+
+    /**
+     * 单条路由的令牌桶参数；容量为 0 表示该维度不限流
+     */
+    @Data
+    public static class Policy {
+        /**
+         * 每个 IP 的桶容量（允许的突发请求数）
+         */
+        private int ipCapacity;
+
+        /**
+         * 每个 IP 每分钟补充的令牌数
+         */
+        private int ipRefillPerMinute;
+
+        /**
+         * 每个登录用户的桶容量
+         */
+        private int userCapacity;
+
+        /**
+         * 每个登录用户每分钟补充的令牌数
+         */
+        private int userRefillPerMinute;
+    }
+}
@@ -1,9 +1,14 @@
 package cn.badminton.config;
 
+import cn.badminton.metrics.CountingRedisSerializer;
+import cn.badminton.metrics.RedisCommandListener;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.lettuce.core.AbstractRedisClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
@@ -12,7 +17,10 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -45,11 +53,11 @@ public class RedisConfig {
         // 使用StringRedisSerializer来序列化和反序列化redis的key值
         StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
 
-        // 设置各种序列化器
-        template.setKeySerializer(stringRedisSerializer);
-        template.setHashKeySerializer(stringRedisSerializer);
-        template.setValueSerializer(jackson2JsonRedisSerializer);
-        template.setHashValueSerializer(jackson2JsonRedisSerializer);
+        // 设置各种序列化器（外包一层字节统计，计入当前请求的 RequestStats）
+        template.setKeySerializer(new CountingRedisSerializer<>(stringRedisSerializer));
+        template.setHashKeySerializer(new CountingRedisSerializer<>(stringRedisSerializer));
+        template.setValueSerializer(new CountingRedisSerializer<>(jackson2JsonRedisSerializer));
+        template.setHashValueSerializer(new CountingRedisSerializer<>(jackson2JsonRedisSerializer));
 
         // 开启事务支持
         template.setEnableTransactionSupport(true);
@@ -58,6 +66,53 @@ public class RedisConfig {
         return template;
     }
 
+    /**
+     * 纯字符串模板：用于会话、计数等无需 JSON 类型信息的简单结构
+     * 不开启事务支持，命令直接走共享连接
+     */
+    @Bean
+    public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory connectionFactory) {
+        StringRedisTemplate template = new StringRedisTemplate();
+        template.setConnectionFactory(connectionFactory);
+        CountingRedisSerializer<String> serializer = new CountingRedisSerializer<>(new StringRedisSerializer());
+        template.setKeySerializer(serializer);
+        template.setValueSerializer(serializer);
+        template.setHashKeySerializer(serializer);
+        template.setHashValueSerializer(serializer);
+        template.afterPropertiesSet();
+        return template;
+    }
+
+    /**
+     * 发布订阅监听容器（令牌吊销广播等）
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    /**
+     * 为 Lettuce 客户端注册命令监听器，统计每个请求的 Redis 往返
+     * 连接在首次使用时才建立，初始化完成后注册即可覆盖所有连接
+     */
+    @Bean
+    public static BeanPostProcessor redisCommandListenerPostProcessor(ObjectProvider<RedisCommandListener> listener) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof LettuceConnectionFactory) {
+                    AbstractRedisClient client = ((LettuceConnectionFactory) bean).getNativeClient();
+                    if (client != null) {
+                        client.addListener(listener.getObject());
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
     /**
      * 配置缓存管理器
      * 设置缓存过期时间和序列化方式
@@ -99,6 +154,7 @@ public class RedisConfig {
         // 用户相关键名
         public static final String USER_PREFIX = "badminton:user:";
         public static final String USER_ACTIVITIES_PREFIX = "badminton:user:activities:";
+        public static final String USER_ACTIVITIES_EMPTY_PREFIX = "badminton:user:activities_empty:";
         public static final String USER_FRIENDS_PREFIX = "badminton:user:friends:";
         public static final String USER_DEBTS_PREFIX = "badminton:user:debts:";
         
@@ -119,11 +175,37 @@ public class RedisConfig {
         
         // 认证相关键名
         public static final String TOKEN_PREFIX = "badminton:token:";
+        public static final String USER_TOKENS_PREFIX = "badminton:token:user:";
+        public static final String TOKEN_REVOKED = "badminton:token:revoked";
+        public static final String TOKEN_REVOKED_BEFORE = "badminton:token:revoked_before";
+        public static final String TOKEN_REVOCATION_CHANNEL = "badminton:token:revocations";
         public static final String VERIFICATION_CODE_PREFIX = "badminton:verification:";
+        public static final String VERIFICATION_THROTTLE_PREFIX = "badminton:verification:throttle:";
         
         // 系统配置键名
         public static final String SYSTEM_CONFIG_PREFIX = "badminton:config:";
 
+        // 限流令牌桶键名
+        public static final String RATE_LIMIT_PREFIX = "badminton:ratelimit:";
+
+        // 微信凭证键名
+        public static final String WECHAT_APP_TOKEN_PREFIX = "badminton:wechat:app_token:";
+        public static final String WECHAT_USER_TOKEN_PREFIX = "badminton:wechat:user_token:";
+        public static final String WECHAT_SESSION_KEY_PREFIX = "badminton:wechat:session_key:";
+        public static final String WECHAT_LEASE_PREFIX = "badminton:wechat:lease:";
+        public static final String WECHAT_CODE_PREFIX = "badminton:wechat:code:";
+
+        // 读模型相关
+        public static final String USER_SUMMARY_PREFIX = "badminton:summary:user:";
+        public static final String SUMMARY_HOLDERS_PREFIX = "badminton:summary:holders:";
+
+        // 延时任务（每个队列一个 ZSET，成员为 {类型}:{目标ID}，分值为到期时间毫秒）
+        public static final String DELAYED_JOBS_PREFIX = "badminton:jobs:delayed:";
+
+        // 领域事件流（Stream）与各消费组的已处理标记 {前缀}{消费组}:{记录ID}
+        public static final String DOMAIN_EVENTS_STREAM = "badminton:stream:domain_events";
+        public static final String DOMAIN_EVENTS_PROCESSED_PREFIX = "badminton:stream:processed:";
+
         /**
          * 生成用户键名
          */
@@ -138,6 +220,20 @@ public class RedisConfig {
             return USER_ACTIVITIES_PREFIX + userId;
         }
 
+        /**
+         * 生成空时间线标记键名（重建结果为空时写入，短期内不再重建）
+         */
+        public static String userActivitiesEmptyKey(String userId) {
+            return USER_ACTIVITIES_EMPTY_PREFIX + userId;
+        }
+
+        /**
+         * 生成活动系列（同一发起人）的净额账本键名，Hash: userId → 净额（分，正数为应收）
+         */
+        public static String userDebtsKey(String groupId) {
+            return USER_DEBTS_PREFIX + groupId;
+        }
+
         /**
          * 生成活动键名
          */
@@ -167,10 +263,24 @@ public class RedisConfig {
         }
 
         /**
-         * 生成JWT令牌键名
+         * 生成令牌会话键名（按会话ID，即 JWT 的 jti）
          */
-        public static String tokenKey(String userId) {
-            return TOKEN_PREFIX + userId;
+        public static String tokenKey(String sessionId) {
+            return TOKEN_PREFIX + sessionId;
+        }
+
+        /**
+         * 生成用户会话ID集合键名
+         */
+        public static String userTokensKey(String userId) {
+            return USER_TOKENS_PREFIX + userId;
+        }
+
+        /**
+         * 生成限流令牌桶键名，如 badminton:ratelimit:/api/auth/login:ip:1.2.3.4
+         */
+        public static String rateLimitKey(String route, String dimension, String id) {
+            return RATE_LIMIT_PREFIX + route + ":" + dimension + ":" + id;
         }
 
         /**
@@ -179,6 +289,69 @@ public class RedisConfig {
         public static String verificationCodeKey(String phone) {
             return VERIFICATION_CODE_PREFIX + phone;
         }
+
+        /**
+         * 生成验证码重发节流键名
+         */
+        public static String verificationThrottleKey(String phone) {
+            return VERIFICATION_THROTTLE_PREFIX + phone;
+        }
+
+        /**
+         * 生成微信接口调用凭证（应用级 access_token）键名
+         */
+        public static String wechatAppTokenKey(String appId) {
+            return WECHAT_APP_TOKEN_PREFIX + appId;
+        }
+
+        /**
+         * 生成微信网页授权凭证（用户级 access_token / refresh_token）键名
+         */
+        public static String wechatUserTokenKey(String openId) {
+            return WECHAT_USER_TOKEN_PREFIX + openId;
+        }
+
+        /**
+         * 生成小程序 session_key 键名
+         */
+        public static String wechatSessionKeyKey(String openId) {
+            return WECHAT_SESSION_KEY_PREFIX + openId;
+        }
+
+        /**
+         * 生成微信凭证刷新租约键名，如 badminton:wechat:lease:app_token:{appId}
+         */
+        public static String wechatLeaseKey(String name) {
+            return WECHAT_LEASE_PREFIX + name;
+        }
+
+        /**
+         * 生成授权码换取结果键名（按授权码摘要），供同一授权码的重复登录请求共享
+         */
+        public static String wechatCodeKey(String codeId) {
+            return WECHAT_CODE_PREFIX + codeId;
+        }
+
+        /**
+         * 生成用户首页汇总读模型键名
+         */
+        public static String userSummaryKey(String userId) {
+            return USER_SUMMARY_PREFIX + userId;
+        }
+
+        /**
+         * 生成持有某活动卡片的用户集合键名（活动变更时据此扇出更新）
+         */
+        public static String summaryHoldersKey(String activityId) {
+            return SUMMARY_HOLDERS_PREFIX + activityId;
+        }
+
+        /**
+         * 生成延时任务队列键名，如 badminton:jobs:delayed:activity_lifecycle
+         */
+        public static String delayedJobsKey(String queue) {
+            return DELAYED_JOBS_PREFIX + queue;
+        }
     }
 
     /**
@@ -191,5 +364,10 @@ public class RedisConfig {
         public static final long USER_CACHE = 60 * 60;                   // 用户缓存：1小时
         public static final long CANCELLED_ACTIVITY = 30 * 24 * 60 * 60; // 已取消活动：30天
         public static final long COMPLETED_ACTIVITY = 365 * 24 * 60 * 60; // 已完成活动：1年
+        public static final long WECHAT_USER_TOKEN = 30 * 24 * 60 * 60;  // 微信网页授权 refresh_token：30天
+        public static final long WECHAT_SESSION_KEY = 3 * 24 * 60 * 60;  // 小程序 session_key：3天（每次登录覆盖）
+        public static final long WECHAT_CODE = 5 * 60;                   // 授权码换取结果：5分钟（与授权码有效期一致）
+        public static final long USER_SUMMARY = 7 * 24 * 60 * 60;        // 首页汇总读模型：7天（过期后按源数据重建）
+        public static final long EMPTY_FEED = 5 * 60;                    // 空时间线标记：5分钟（期间不重复重建）
     }
 }
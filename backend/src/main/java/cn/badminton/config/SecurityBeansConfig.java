@@ -1,5 +1,6 @@
 package cn.badminton.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -7,7 +8,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 
 /**
  * 安全相关Bean配置
- * - 提供 PasswordEncoder 以供服务层加密/校验密码
+ * - 提供 PasswordEncoder（成本因子与 PasswordHashService 一致）；服务层统一经 PasswordHashService 在独立线程池上计算
  *
  * 作者: xiaolei
  */
@@ -15,8 +16,8 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 public class SecurityBeansConfig {
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${app.password.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 }
 
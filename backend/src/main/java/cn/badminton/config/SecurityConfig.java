@@ -1,6 +1,7 @@
 package cn.badminton.config;
 
 import cn.badminton.filter.JwtAuthenticationFilter;
+import cn.badminton.filter.RateLimitFilter;
 import cn.badminton.security.RestAccessDeniedHandler;
 import cn.badminton.security.RestAuthenticationEntryPoint;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,13 +21,14 @@ import java.util.List;
 /**
  * Spring Security 基础配置
  * - CORS、安全头
- * - JWT 解析过滤
+ * - JWT 解析过滤，其后为接口限流（可按登录用户限流）
  * 作者: xiaolei
  */
 @Configuration
 public class SecurityConfig {
 
     @Autowired private JwtAuthenticationFilter jwtAuthenticationFilter;
+    @Autowired private RateLimitFilter rateLimitFilter;
     @Autowired private RestAuthenticationEntryPoint restAuthenticationEntryPoint;
     @Autowired private RestAccessDeniedHandler restAccessDeniedHandler;
 
@@ -54,6 +56,7 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(req -> buildCorsConfiguration()));
 
         http.addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+        http.addFilterAfter(rateLimitFilter, JwtAuthenticationFilter.class);
         return http.build();
     }
 
@@ -72,7 +75,8 @@ public class SecurityConfig {
         config.setAllowedHeaders(List.of("*"));
         config.setAllowedMethods(List.of("GET", "POST", "PUT", "DELETE", "OPTIONS", "PATCH"));
         // 暴露部分头，便于前端读取
-        config.setExposedHeaders(List.of("Authorization", "Content-Disposition"));
+        config.setExposedHeaders(List.of("Authorization", "Content-Disposition",
+                "RateLimit-Limit", "RateLimit-Remaining", "RateLimit-Reset", "Retry-After"));
         return config;
     }
 }
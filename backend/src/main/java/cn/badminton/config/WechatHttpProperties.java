@@ -0,0 +1,62 @@
+package cn.badminton.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 微信接口 HTTP 客户端参数：连接池、超时、熔断、隔离与重试
+ * base-url 可指向本地替身服务，便于离线联调
+ * 作者: xiaolei
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "wechat.http")
+public class WechatHttpProperties {
+
+    private String baseUrl = "https://api.weixin.qq.com";
+
+    /**
+     * 建立 TCP/TLS 连接的超时
+     */
+    private int connectTimeoutMs = 1000;
+
+    /**
+     * 等待响应数据的超时（两次读之间的最大间隔）
+     */
+    private int readTimeoutMs = 3000;
+
+    /**
+     * 从连接池借连接的超时
+     */
+    private int poolTimeoutMs = 500;
+
+    private int maxConnections = 50;
+
+    /**
+     * 同时在途的微信调用上限（隔离舱），超出时等待 bulkhead-max-wait-ms 后拒绝
+     */
+    private int maxConcurrentCalls = 20;
+
+    private int bulkheadMaxWaitMs = 0;
+
+    /**
+     * 熔断：滑动窗口内失败率（%）达到阈值后打开，open-state-seconds 后半开试探
+     */
+    private int failureRateThreshold = 50;
+
+    private int slowCallThresholdMs = 2000;
+
+    private int slidingWindowSize = 20;
+
+    private int minimumNumberOfCalls = 10;
+
+    private int openStateSeconds = 30;
+
+    /**
+     * 重试：总尝试次数（含首次）与首次退避，退避按 2 倍递增并加 ±50% 随机抖动
+     */
+    private int retryMaxAttempts = 3;
+
+    private int retryInitialIntervalMs = 200;
+}
@@ -3,11 +3,17 @@ package cn.badminton.controller;
 import cn.badminton.common.Result;
 import cn.badminton.dto.activity.ActivitiesByStatusRequest;
 import cn.badminton.dto.activity.ActivitiesByTimeRangeRequest;
+import cn.badminton.dto.activity.ActivityFeedPage;
+import cn.badminton.dto.activity.ActivityIdsRequest;
 import cn.badminton.dto.activity.CreateActivityRequest;
 import cn.badminton.dto.activity.JoinActivityRequest;
+import cn.badminton.dto.activity.MyActivitiesRequest;
+import cn.badminton.dto.activity.RosterMember;
 import cn.badminton.dto.common.ActivityIdRequest;
 import cn.badminton.dto.common.UserIdRequest;
 import cn.badminton.model.BookingActivity;
+import cn.badminton.security.CurrentUser;
+import cn.badminton.service.ActivityFeedService;
 import cn.badminton.service.ActivityService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
@@ -18,6 +24,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 活动控制器
@@ -31,9 +38,12 @@ public class ActivityController {
     @Autowired
     private ActivityService activityService;
 
+    @Autowired
+    private ActivityFeedService activityFeedService;
+
     @PostMapping("/create")
     public Result<BookingActivity> create(@Valid @RequestBody CreateActivityRequest req) {
-        log.info("[Activity] 创建入参: organizerId={}, title={}", req.getOrganizerId(), req.getTitle());
+        log.debug("[Activity] 创建入参: organizerId={}, title={}", req.getOrganizerId(), req.getTitle());
         BookingActivity act = activityService.createActivity(
                 req.getOrganizerId(), req.getTitle(), req.getVenue(),
                 req.getStartTime(), req.getEndTime(), req.getMaxPlayers(),
@@ -44,35 +54,43 @@ public class ActivityController {
 
     @PostMapping("/join")
     public Result<Boolean> join(@Valid @RequestBody JoinActivityRequest req) {
-        log.info("[Activity] 参加入参: activityId={}, userId={}", req.getActivityId(), req.getUserId());
+        log.debug("[Activity] 参加入参: activityId={}, userId={}", req.getActivityId(), req.getUserId());
         boolean ok = activityService.joinActivity(req.getActivityId(), req.getUserId(), req.getRemark());
         return Result.ok(ok);
     }
 
     @PostMapping("/leave")
     public Result<Boolean> leave(@Valid @RequestBody JoinActivityRequest req) {
-        log.info("[Activity] 退出入参: activityId={}, userId={}", req.getActivityId(), req.getUserId());
+        log.debug("[Activity] 退出入参: activityId={}, userId={}", req.getActivityId(), req.getUserId());
         boolean ok = activityService.leaveActivity(req.getActivityId(), req.getUserId());
         return Result.ok(ok);
     }
 
+    /**
+     * 批量获取活动名单（含成员昵称、头像），一次请求取多个活动
+     */
+    @PostMapping("/rosters")
+    public Result<Map<String, List<RosterMember>>> rosters(@Valid @RequestBody ActivityIdsRequest req) {
+        return Result.ok(activityService.getRosters(req.getActivityIds()));
+    }
+
     @PostMapping("/cancel")
     public Result<Void> cancel(@Valid @RequestBody JoinActivityRequest req) {
-        log.info("[Activity] 取消入参: activityId={}, userId={}", req.getActivityId(), req.getUserId());
+        log.debug("[Activity] 取消入参: activityId={}, userId={}", req.getActivityId(), req.getUserId());
         activityService.cancelActivity(req.getActivityId(), req.getUserId());
         return Result.ok();
     }
 
     @PostMapping("/start")
     public Result<Void> start(@Valid @RequestBody JoinActivityRequest req) {
-        log.info("[Activity] 开始入参: activityId={}, userId={}", req.getActivityId(), req.getUserId());
+        log.debug("[Activity] 开始入参: activityId={}, userId={}", req.getActivityId(), req.getUserId());
         activityService.startActivity(req.getActivityId(), req.getUserId());
         return Result.ok();
     }
 
     @PostMapping("/complete")
     public Result<Void> complete(@Valid @RequestBody JoinActivityRequest req) {
-        log.info("[Activity] 完成入参: activityId={}, userId={}", req.getActivityId(), req.getUserId());
+        log.debug("[Activity] 完成入参: activityId={}, userId={}", req.getActivityId(), req.getUserId());
         activityService.completeActivity(req.getActivityId(), req.getUserId());
         return Result.ok();
     }
@@ -98,6 +116,16 @@ public class ActivityController {
         return Result.ok(activityService.getUserActivities(req.getUserId()));
     }
 
+    /**
+     * 我的活动（发起与参加的合并），按开始时间分页：upcoming 升序，past 倒序
+     */
+    @PostMapping("/mine")
+    public Result<ActivityFeedPage> mine(@CurrentUser String userId,
+                                         @Valid @RequestBody(required = false) MyActivitiesRequest req) {
+        MyActivitiesRequest query = req == null ? new MyActivitiesRequest() : req;
+        return Result.ok(activityFeedService.page(userId, query.getScope(), query.getPage(), query.getSize()));
+    }
+
     @PostMapping("/byTimeRange")
     public Result<List<BookingActivity>> byTimeRange(@Valid @RequestBody ActivitiesByTimeRangeRequest req) {
         return Result.ok(activityService.getActivitiesByTimeRange(req.getStartTime(), req.getEndTime()));
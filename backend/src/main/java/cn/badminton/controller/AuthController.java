@@ -2,19 +2,29 @@ package cn.badminton.controller;
 
 import cn.badminton.common.Result;
 import cn.badminton.dto.auth.LoginRequest;
+import cn.badminton.dto.auth.RefreshRequest;
 import cn.badminton.dto.auth.RegisterRequest;
+import cn.badminton.dto.auth.SessionResponse;
+import cn.badminton.dto.auth.SmsLoginRequest;
+import cn.badminton.dto.auth.SmsSendRequest;
 import cn.badminton.dto.auth.WechatLoginRequest;
 import cn.badminton.dto.user.UserResponse;
 import cn.badminton.dto.user.UpdateUserRequest;
 import cn.badminton.dto.common.EmptyRequest;
+import cn.badminton.dto.common.SessionIdRequest;
 import cn.badminton.model.User;
+import cn.badminton.security.CurrentUser;
 import cn.badminton.service.AuthService;
+import cn.badminton.service.TokenSessionService;
 import cn.badminton.service.UserService;
+import cn.badminton.service.VerificationCodeService;
 import cn.badminton.dto.auth.AuthResponse;
-import cn.badminton.util.JwtUtil;
+import cn.badminton.util.JwtUtil.TokenInfo;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -22,6 +32,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 /**
  * 认证相关接口
  *
@@ -36,47 +48,75 @@ public class AuthController {
     private AuthService authService;
 
     @Autowired
-    private JwtUtil jwtUtil;
+    private TokenSessionService tokenSessionService;
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private VerificationCodeService verificationCodeService;
+
     /**
      * 用户注册
      */
     @PostMapping("/register")
-    public Result<AuthResponse> register(@Valid @RequestBody RegisterRequest req) {
-        log.info("[Auth] 注册入参: phone={}, nickname=***", req.getPhone());
+    public Result<AuthResponse> register(@Valid @RequestBody RegisterRequest req, HttpServletRequest request) {
+        log.debug("[Auth] 注册入参: phone={}, nickname=***", req.getPhone());
         User user = authService.register(req.getPhone(), req.getNickname(), req.getPassword());
-        String token = jwtUtil.generateToken(user.getId());
-        return Result.ok(AuthResponse.of(user, token));
+        return Result.ok(tokenSessionService.issue(user, request.getHeader(HttpHeaders.USER_AGENT)));
     }
 
     /**
      * 用户登录
      */
     @PostMapping("/login")
-    public Result<AuthResponse> login(@Valid @RequestBody LoginRequest req) {
-        log.info("[Auth] 登录入参: phone={}", req.getPhone());
+    public Result<AuthResponse> login(@Valid @RequestBody LoginRequest req, HttpServletRequest request) {
+        log.debug("[Auth] 登录入参: phone={}", req.getPhone());
         User user = authService.login(req.getPhone(), req.getPassword());
-        String token = jwtUtil.generateToken(user.getId());
-        return Result.ok(AuthResponse.of(user, token));
+        return Result.ok(tokenSessionService.issue(user, request.getHeader(HttpHeaders.USER_AGENT)));
+    }
+
+    /**
+     * 发送登录短信验证码（同一手机号有重发间隔）
+     */
+    @PostMapping("/sms/send")
+    public Result<Void> sendSmsCode(@Valid @RequestBody SmsSendRequest req) {
+        log.debug("[Auth] 发送验证码入参: phone={}", req.getPhone());
+        verificationCodeService.sendLoginCode(req.getPhone());
+        return Result.ok();
+    }
+
+    /**
+     * 短信验证码登录
+     */
+    @PostMapping("/sms/login")
+    public Result<AuthResponse> smsLogin(@Valid @RequestBody SmsLoginRequest req, HttpServletRequest request) {
+        log.debug("[Auth] 验证码登录入参: phone={}", req.getPhone());
+        User user = authService.smsLogin(req.getPhone(), req.getCode());
+        return Result.ok(tokenSessionService.issue(user, request.getHeader(HttpHeaders.USER_AGENT)));
     }
 
     /**
      * 微信授权登录（支持网页/小程序）
      */
     @PostMapping("/wechat")
-    public Result<AuthResponse> wechat(@Valid @RequestBody WechatLoginRequest req) {
-        log.info("[Auth] 微信登录入参: code={}***", req.getCode());
+    public Result<AuthResponse> wechat(@Valid @RequestBody WechatLoginRequest req, HttpServletRequest request) {
+        log.debug("[Auth] 微信登录入参: code={}***", req.getCode());
         User user;
         if (req.getEncryptedData() != null && !req.getEncryptedData().isEmpty()) {
             user = authService.wechatMiniProgramLogin(req.getCode(), req.getEncryptedData(), req.getIv());
         } else {
             user = authService.wechatLogin(req.getCode());
         }
-        String token = jwtUtil.generateToken(user.getId());
-        return Result.ok(AuthResponse.of(user, token));
+        return Result.ok(tokenSessionService.issue(user, request.getHeader(HttpHeaders.USER_AGENT)));
+    }
+
+    /**
+     * 刷新访问令牌（刷新令牌一次性使用，响应中返回新的刷新令牌）
+     */
+    @PostMapping("/refresh")
+    public Result<AuthResponse> refresh(@Valid @RequestBody RefreshRequest req) {
+        return Result.ok(authService.refresh(req.getRefreshToken()));
     }
 
     /**
@@ -84,16 +124,7 @@ public class AuthController {
      * 前端调用时需要在请求头携带 Authorization: Bearer <token>
      */
     @PostMapping("/userinfo")
-    public Result<UserResponse> userinfo(@RequestBody(required = false) EmptyRequest req) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || authentication.getPrincipal() == null) {
-            throw new IllegalArgumentException("未登录或登录已过期");
-        }
-        String userId = String.valueOf(authentication.getPrincipal());
-        User user = userService.findById(userId);
-        if (user == null) {
-            throw new IllegalArgumentException("用户不存在");
-        }
+    public Result<UserResponse> userinfo(@CurrentUser User user, @RequestBody(required = false) EmptyRequest req) {
         return Result.ok(UserResponse.from(user));
     }
 
@@ -101,21 +132,59 @@ public class AuthController {
      * 更新个人资料（昵称、头像等）
      */
     @PostMapping("/profile")
-    public Result<UserResponse> updateProfile(@Valid @RequestBody UpdateUserRequest req) {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        if (authentication == null || authentication.getPrincipal() == null) {
-            throw new IllegalArgumentException("未登录或登录已过期");
-        }
-        String userId = String.valueOf(authentication.getPrincipal());
+    public Result<UserResponse> updateProfile(@CurrentUser User u, @Valid @RequestBody UpdateUserRequest req) {
         // 只允许修改自己的资料
-        req.setUserId(userId);
-        User u = userService.findById(userId);
-        if (u == null) {
-            throw new IllegalArgumentException("用户不存在");
-        }
+        req.setUserId(u.getId());
         u.setNickname(req.getNickname());
         u.setAvatar(req.getAvatar());
         User updated = userService.updateUser(u);
         return Result.ok(UserResponse.from(updated));
     }
+
+    /**
+     * 注销当前会话
+     */
+    @PostMapping("/logout")
+    public Result<Void> logout(@RequestBody(required = false) EmptyRequest req) {
+        tokenSessionService.revoke(currentToken());
+        return Result.ok();
+    }
+
+    /**
+     * 注销当前用户的全部会话（所有设备）
+     */
+    @PostMapping("/logoutAll")
+    public Result<Void> logoutAll(@RequestBody(required = false) EmptyRequest req) {
+        tokenSessionService.revokeAll(currentToken().getUserId());
+        return Result.ok();
+    }
+
+    /**
+     * 当前用户的登录会话列表
+     */
+    @PostMapping("/sessions")
+    public Result<List<SessionResponse>> sessions(@RequestBody(required = false) EmptyRequest req) {
+        TokenInfo info = currentToken();
+        return Result.ok(tokenSessionService.listSessions(info.getUserId(), info.getSessionId()));
+    }
+
+    /**
+     * 注销指定会话（如在其他设备上的登录）
+     */
+    @PostMapping("/sessions/revoke")
+    public Result<Void> revokeSession(@Valid @RequestBody SessionIdRequest req) {
+        TokenInfo info = currentToken();
+        if (!tokenSessionService.revoke(info.getUserId(), req.getSessionId())) {
+            throw new IllegalArgumentException("会话不存在");
+        }
+        return Result.ok();
+    }
+
+    private TokenInfo currentToken() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getDetails() instanceof TokenInfo)) {
+            throw new IllegalArgumentException("未登录或登录已过期");
+        }
+        return (TokenInfo) authentication.getDetails();
+    }
 }
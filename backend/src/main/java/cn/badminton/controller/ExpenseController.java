@@ -1,17 +1,23 @@
 package cn.badminton.controller;
 
+import cn.badminton.common.Money;
 import cn.badminton.common.Result;
 import cn.badminton.dto.common.ActivityIdRequest;
 import cn.badminton.dto.common.ExpenseIdRequest;
 import cn.badminton.dto.common.UserIdRequest;
+import cn.badminton.dto.expense.BatchSettleRequest;
+import cn.badminton.dto.expense.BatchSettleResponse;
 import cn.badminton.dto.expense.ConfirmShareRequest;
 import cn.badminton.dto.expense.CreateExpenseRequest;
 import cn.badminton.dto.expense.CreateExpenseSharesRequest;
 import cn.badminton.dto.expense.DeleteExpenseRequest;
 import cn.badminton.dto.expense.MarkPaidRequest;
+import cn.badminton.dto.expense.SettlementPlanResponse;
 import cn.badminton.model.ExpenseRecord;
 import cn.badminton.model.ExpenseShare;
+import cn.badminton.security.CurrentUser;
 import cn.badminton.service.ExpenseService;
+import cn.badminton.service.SettlementService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,7 +26,10 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.math.BigDecimal;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 费用控制器
@@ -34,34 +43,60 @@ public class ExpenseController {
     @Autowired
     private ExpenseService expenseService;
 
+    @Autowired
+    private SettlementService settlementService;
+
     @PostMapping("/create")
     public Result<ExpenseRecord> create(@Valid @RequestBody CreateExpenseRequest req) {
-        log.info("[Expense] 创建入参: activityId={}, payerId={}, title={}, amount={}", req.getActivityId(), req.getPayerId(), req.getTitle(), req.getTotalAmount());
-        ExpenseRecord er = expenseService.createExpense(req.getActivityId(), req.getPayerId(), req.getTitle(), req.getTotalAmount(), req.getDescription(), req.getShareType());
+        log.debug("[Expense] 创建入参: activityId={}, payerId={}, title={}, amount={}", req.getActivityId(), req.getPayerId(), req.getTitle(), req.getTotalAmount());
+        ExpenseRecord er = expenseService.createExpense(req.getActivityId(), req.getPayerId(), req.getTitle(),
+                Money.of(req.getTotalAmount()), req.getDescription(), req.getShareType());
         return Result.ok(er);
     }
 
     @PostMapping("/shares")
     public Result<List<ExpenseShare>> shares(@Valid @RequestBody CreateExpenseSharesRequest req) {
-        log.info("[Expense] 分摊入参: expenseId={}, participants={}", req.getExpenseId(), req.getParticipantIds().size());
-        List<ExpenseShare> list = expenseService.createExpenseShares(req.getExpenseId(), req.getParticipantIds(), req.getCustomAmounts());
+        log.debug("[Expense] 分摊入参: expenseId={}, participants={}", req.getExpenseId(), req.getParticipantIds().size());
+        List<ExpenseShare> list = expenseService.createExpenseShares(req.getExpenseId(), req.getParticipantIds(),
+                toMoney(req.getCustomAmounts()));
         return Result.ok(list);
     }
 
     @PostMapping("/confirm")
     public Result<Void> confirm(@Valid @RequestBody ConfirmShareRequest req) {
-        log.info("[Expense] 确认分摊: shareId={}, userId={}", req.getShareId(), req.getUserId());
+        log.debug("[Expense] 确认分摊: shareId={}, userId={}", req.getShareId(), req.getUserId());
         expenseService.confirmShare(req.getShareId(), req.getUserId());
         return Result.ok();
     }
 
     @PostMapping("/paid")
     public Result<Void> paid(@Valid @RequestBody MarkPaidRequest req) {
-        log.info("[Expense] 标记已支付: shareId={}, userId={}", req.getShareId(), req.getUserId());
+        log.debug("[Expense] 标记已支付: shareId={}, userId={}", req.getShareId(), req.getUserId());
         expenseService.markAsPaid(req.getShareId(), req.getUserId());
         return Result.ok();
     }
 
+    /**
+     * 批量标记已支付：按分摊ID、欠款人、付款人或活动圈定范围，一次结清
+     */
+    @PostMapping("/paidBatch")
+    public Result<BatchSettleResponse> paidBatch(@CurrentUser String userId,
+                                                 @Valid @RequestBody BatchSettleRequest req) {
+        log.debug("[Expense] 批量标记已支付: userId={}, shareIds={}, debtorId={}, payerId={}, activityId={}",
+                userId, req.getShareIds() != null ? req.getShareIds().size() : 0,
+                req.getDebtorId(), req.getPayerId(), req.getActivityId());
+        return Result.ok(expenseService.batchMarkAsPaid(userId, req.getShareIds(), req.getDebtorId(),
+                req.getPayerId(), req.getActivityId()));
+    }
+
+    /**
+     * 活动所在系列的结算方案：各成员净额与“谁付给谁”，一次返回
+     */
+    @PostMapping("/settlement")
+    public Result<SettlementPlanResponse> settlement(@Valid @RequestBody ActivityIdRequest req) {
+        return Result.ok(settlementService.plan(req.getActivityId()));
+    }
+
     @PostMapping("/activityExpenses")
     public Result<List<ExpenseRecord>> activityExpenses(@Valid @RequestBody ActivityIdRequest req) {
         return Result.ok(expenseService.getActivityExpenses(req.getActivityId()));
@@ -79,8 +114,17 @@ public class ExpenseController {
 
     @PostMapping("/delete")
     public Result<Void> delete(@Valid @RequestBody DeleteExpenseRequest req) {
-        log.info("[Expense] 删除费用: expenseId={}, userId={}", req.getExpenseId(), req.getUserId());
+        log.debug("[Expense] 删除费用: expenseId={}, userId={}", req.getExpenseId(), req.getUserId());
         expenseService.deleteExpense(req.getExpenseId(), req.getUserId());
         return Result.ok();
     }
+
+    private static Map<String, Money> toMoney(Map<String, BigDecimal> amounts) {
+        if (amounts == null) {
+            return null;
+        }
+        Map<String, Money> result = new HashMap<>(amounts.size() * 2);
+        amounts.forEach((userId, amount) -> result.put(userId, Money.of(amount)));
+        return result;
+    }
 }
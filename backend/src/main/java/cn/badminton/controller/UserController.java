@@ -6,8 +6,11 @@ import cn.badminton.dto.common.UserIdRequest;
 import cn.badminton.dto.user.UpdateAvatarRequest;
 import cn.badminton.dto.user.UpdateUserRequest;
 import cn.badminton.dto.user.UserResponse;
+import cn.badminton.dto.user.UserSummaryResponse;
 import cn.badminton.model.User;
+import cn.badminton.security.CurrentUser;
 import cn.badminton.service.UserService;
+import cn.badminton.service.UserSummaryService;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,12 +34,24 @@ public class UserController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserSummaryService userSummaryService;
+
     @PostMapping("/detail")
     public Result<UserResponse> detail(@Valid @RequestBody UserIdRequest req) {
         User u = userService.findById(req.getUserId());
         return Result.ok(u == null ? null : UserResponse.from(u));
     }
 
+    /**
+     * 首页汇总：即将开始的活动、待付 / 待收金额与计数，来自预计算的读模型
+     */
+    @PostMapping("/summary")
+    public Result<UserSummaryResponse> summary(@CurrentUser String userId,
+                                               @RequestBody(required = false) EmptyRequest req) {
+        return Result.ok(userSummaryService.getSummary(userId));
+    }
+
     @PostMapping("/list")
     public Result<List<UserResponse>> list(@RequestBody(required = false) EmptyRequest req) {
         List<UserResponse> list = userService.getAllUsers().stream().map(UserResponse::from).collect(Collectors.toList());
@@ -45,7 +60,7 @@ public class UserController {
 
     @PostMapping("/updateProfile")
     public Result<UserResponse> updateProfile(@Valid @RequestBody UpdateUserRequest req) {
-        log.info("[User] 更新资料: userId={}, nickname=***", req.getUserId());
+        log.debug("[User] 更新资料: userId={}, nickname=***", req.getUserId());
         User u = userService.findById(req.getUserId());
         if (u == null) {
             throw new IllegalArgumentException("用户不存在");
@@ -58,7 +73,7 @@ public class UserController {
 
     @PostMapping("/updateAvatar")
     public Result<Void> updateAvatar(@Valid @RequestBody UpdateAvatarRequest req) {
-        log.info("[User] 更新头像: userId={}", req.getUserId());
+        log.debug("[User] 更新头像: userId={}", req.getUserId());
         userService.updateAvatar(req.getUserId(), req.getAvatar());
         return Result.ok();
     }
@@ -0,0 +1,19 @@
+package cn.badminton.dto.activity;
+
+import cn.badminton.model.BookingActivity;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 我的活动分页结果
+ * 作者: xiaolei
+ */
+@Data
+public class ActivityFeedPage {
+    private String scope;
+    private int page;
+    private int size;
+    private boolean hasMore;
+    private List<BookingActivity> items;
+}
@@ -0,0 +1,18 @@
+package cn.badminton.dto.activity;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量活动ID请求
+ * 作者: xiaolei
+ */
+@Data
+public class ActivityIdsRequest {
+    @NotEmpty
+    @Size(max = 100)
+    private List<String> activityIds;
+}
@@ -0,0 +1,24 @@
+package cn.badminton.dto.activity;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+/**
+ * 我的活动分页请求
+ * scope: upcoming（未开始，默认）/ past（已开始）
+ * 作者: xiaolei
+ */
+@Data
+public class MyActivitiesRequest {
+    @Pattern(regexp = "upcoming|past")
+    private String scope = "upcoming";
+
+    @Min(0)
+    private int page = 0;
+
+    @Min(1)
+    @Max(50)
+    private int size = 20;
+}
@@ -0,0 +1,23 @@
+package cn.badminton.dto.activity;
+
+import cn.badminton.model.User;
+import lombok.Data;
+
+/**
+ * 活动名单中的成员（只含展示所需字段）
+ * 作者: xiaolei
+ */
+@Data
+public class RosterMember {
+    private String userId;
+    private String nickname;
+    private String avatar;
+
+    public static RosterMember from(User user) {
+        RosterMember member = new RosterMember();
+        member.setUserId(user.getId());
+        member.setNickname(user.getNickname());
+        member.setAvatar(user.getAvatar());
+        return member;
+    }
+}
@@ -5,17 +5,24 @@ import cn.badminton.model.User;
 import lombok.Data;
 
 /**
- * 认证响应（包含用户与token）
+ * 认证响应（包含用户、访问令牌与刷新令牌）
  * 作者: xiaolei
  */
 @Data
 public class AuthResponse {
     private String token;
+    private String refreshToken;
+    /**
+     * 访问令牌有效期（秒）
+     */
+    private long expiresIn;
     private UserResponse user;
 
-    public static AuthResponse of(User u, String token) {
+    public static AuthResponse of(User u, String token, String refreshToken, long expiresIn) {
         AuthResponse r = new AuthResponse();
         r.token = token;
+        r.refreshToken = refreshToken;
+        r.expiresIn = expiresIn;
         r.user = UserResponse.from(u);
         return r;
     }
@@ -0,0 +1,14 @@
+package cn.badminton.dto.auth;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+/**
+ * 刷新令牌请求
+ * 作者: xiaolei
+ */
+@Data
+public class RefreshRequest {
+    @NotBlank
+    private String refreshToken;
+}
@@ -0,0 +1,19 @@
+package cn.badminton.dto.auth;
+
+import lombok.Data;
+
+/**
+ * 登录会话信息（设备与签发时间）
+ * 作者: xiaolei
+ */
+@Data
+public class SessionResponse {
+    private String sessionId;
+    private String device;
+    private Long issuedAt;
+    private Long expiresAt;
+    /**
+     * 是否为当前请求所用的会话
+     */
+    private boolean current;
+}
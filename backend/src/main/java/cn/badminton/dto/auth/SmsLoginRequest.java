@@ -0,0 +1,19 @@
+package cn.badminton.dto.auth;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+/**
+ * 短信验证码登录请求
+ * 作者: xiaolei
+ */
+@Data
+public class SmsLoginRequest {
+    @NotBlank
+    private String phone;
+
+    @NotBlank
+    @Pattern(regexp = "\\d{6}")
+    private String code;
+}
@@ -0,0 +1,14 @@
+package cn.badminton.dto.auth;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+/**
+ * 发送短信验证码请求
+ * 作者: xiaolei
+ */
+@Data
+public class SmsSendRequest {
+    @NotBlank
+    private String phone;
+}
@@ -0,0 +1,14 @@
+package cn.badminton.dto.common;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+/**
+ * 会话ID请求
+ * 作者: xiaolei
+ */
+@Data
+public class SessionIdRequest {
+    @NotBlank
+    private String sessionId;
+}
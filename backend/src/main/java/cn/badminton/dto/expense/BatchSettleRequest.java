@@ -0,0 +1,30 @@
+package cn.badminton.dto.expense;
+
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * 批量结算请求
+ * 范围条件至少给出一项：shareIds 指定分摊；debtorId / payerId / activityId 可组合，取交集
+ * 操作人取当前登录用户：只能结算自己名下的分摊，或自己垫付的费用下的分摊
+ * 作者: xiaolei
+ */
+public class BatchSettleRequest {
+    @Size(max = 500)
+    private List<String> shareIds;
+
+    private String debtorId;
+
+    private String payerId;
+
+    private String activityId;
+
+    public List<String> getShareIds() { return shareIds; }
+    public void setShareIds(List<String> shareIds) { this.shareIds = shareIds; }
+    public String getDebtorId() { return debtorId; }
+    public void setDebtorId(String debtorId) { this.debtorId = debtorId; }
+    public String getPayerId() { return payerId; }
+    public void setPayerId(String payerId) { this.payerId = payerId; }
+    public String getActivityId() { return activityId; }
+    public void setActivityId(String activityId) { this.activityId = activityId; }
+}
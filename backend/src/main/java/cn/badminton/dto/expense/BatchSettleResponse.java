@@ -0,0 +1,17 @@
+package cn.badminton.dto.expense;
+
+import cn.badminton.common.Money;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量结算结果：本次实际结算的分摊（已结算的会被跳过，重复提交不会重复记账）
+ * 作者: xiaolei
+ */
+@Data
+public class BatchSettleResponse {
+    private int settledCount;
+    private Money totalAmount;
+    private List<String> shareIds;
+}
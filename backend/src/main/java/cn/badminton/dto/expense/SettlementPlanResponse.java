@@ -0,0 +1,35 @@
+package cn.badminton.dto.expense;
+
+import cn.badminton.common.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 结算方案：活动系列内各成员的净额，以及“谁付给谁”的转账方案（笔数不超过非零成员数 - 1）
+ * 作者: xiaolei
+ */
+@Data
+public class SettlementPlanResponse {
+    /**
+     * 活动系列ID（发起人用户ID）
+     */
+    private String groupId;
+    /**
+     * 净额：正数为应收，负数为应付；已结清的成员不出现
+     */
+    private Map<String, Money> balances;
+    private List<Transfer> transfers;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Transfer {
+        private String fromUserId;
+        private String toUserId;
+        private Money amount;
+    }
+}
@@ -0,0 +1,68 @@
+package cn.badminton.dto.user;
+
+import cn.badminton.common.Money;
+import cn.badminton.model.BookingActivity;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 首页汇总：即将开始的活动、待付 / 待收金额与各项计数，一次读取
+ * 作者: xiaolei
+ */
+@Data
+public class UserSummaryResponse {
+    private String userId;
+    /**
+     * 发起的活动数
+     */
+    private long organizedCount;
+    /**
+     * 参加的（他人发起的）活动数
+     */
+    private long joinedCount;
+    /**
+     * 自己名下待结算、且需要付给他人的分摊数
+     */
+    private long pendingShareCount;
+    /**
+     * 待付金额：自己欠他人的
+     */
+    private Money owedAmount;
+    /**
+     * 待收金额：自己垫付、他人尚未结算的
+     */
+    private Money receivableAmount;
+    /**
+     * 即将开始或进行中的活动，按开始时间升序
+     */
+    private List<ActivityCard> upcoming;
+
+    @Data
+    public static class ActivityCard {
+        private String id;
+        private String title;
+        private String venue;
+        private String organizer;
+        private LocalDateTime startTime;
+        private LocalDateTime endTime;
+        private Integer currentPlayers;
+        private Integer maxPlayers;
+        private Integer status;
+
+        public static ActivityCard from(BookingActivity activity) {
+            ActivityCard card = new ActivityCard();
+            card.setId(activity.getId());
+            card.setTitle(activity.getTitle());
+            card.setVenue(activity.getVenue());
+            card.setOrganizer(activity.getOrganizer());
+            card.setStartTime(activity.getStartTime());
+            card.setEndTime(activity.getEndTime());
+            card.setCurrentPlayers(activity.getCurrentPlayers());
+            card.setMaxPlayers(activity.getMaxPlayers());
+            card.setStatus(activity.getStatus());
+            return card;
+        }
+    }
+}
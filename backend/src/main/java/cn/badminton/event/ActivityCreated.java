@@ -0,0 +1,41 @@
+package cn.badminton.event;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 活动已创建，organizerId 为发起人
+ *
+ * 作者: xiaolei
+ */
+@Getter
+public class ActivityCreated extends DomainEvent {
+
+    public static final String TYPE_NAME = "ActivityCreated";
+
+    private final String activityId;
+    private final String organizerId;
+
+    public ActivityCreated(String activityId, String organizerId) {
+        this(activityId, organizerId, null);
+    }
+
+    public ActivityCreated(String activityId, String organizerId, LocalDateTime occurredAt) {
+        super(occurredAt);
+        this.activityId = activityId;
+        this.organizerId = organizerId;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE_NAME;
+    }
+
+    @Override
+    protected void writeFields(Map<String, String> fields) {
+        fields.put("activityId", activityId);
+        fields.put("organizerId", organizerId);
+    }
+}
@@ -0,0 +1,28 @@
+package cn.badminton.event;
+
+import cn.badminton.model.BookingActivity;
+import lombok.Getter;
+
+/**
+ * 活动领域事件：活动保存成功后由 ActivityService 发布
+ * activity 为变更后的快照，userId 为本次操作涉及的用户（发起人、加入或退出的用户）
+ *
+ * 作者: xiaolei
+ */
+@Getter
+public class ActivityEvent {
+
+    public enum Kind {
+        CREATED, JOINED, LEFT, UPDATED, STARTED, CANCELLED, COMPLETED
+    }
+
+    private final Kind kind;
+    private final BookingActivity activity;
+    private final String userId;
+
+    public ActivityEvent(Kind kind, BookingActivity activity, String userId) {
+        this.kind = kind;
+        this.activity = activity;
+        this.userId = userId;
+    }
+}
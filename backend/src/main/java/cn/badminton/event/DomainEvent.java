@@ -0,0 +1,64 @@
+package cn.badminton.event;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 跨进程领域事件：与引起它的数据变更在同一个 Redis 事务中写入事件流，由消费组异步处理
+ * 事件以扁平的字符串字段存储（type、occurredAt 加各事件自身字段），便于排查与跨版本兼容
+ *
+ * 作者: xiaolei
+ */
+@Getter
+public abstract class DomainEvent {
+
+    public static final String TYPE = "type";
+    public static final String OCCURRED_AT = "occurredAt";
+
+    private final LocalDateTime occurredAt;
+
+    protected DomainEvent(LocalDateTime occurredAt) {
+        this.occurredAt = occurredAt != null ? occurredAt : LocalDateTime.now();
+    }
+
+    public abstract String getType();
+
+    /**
+     * 写入事件自身字段
+     */
+    protected abstract void writeFields(Map<String, String> fields);
+
+    public Map<String, String> toFields() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(TYPE, getType());
+        fields.put(OCCURRED_AT, occurredAt.toString());
+        writeFields(fields);
+        return fields;
+    }
+
+    /**
+     * 按 type 还原事件；未知类型返回 null
+     */
+    public static DomainEvent fromFields(Map<String, String> fields) {
+        String type = fields.get(TYPE);
+        String occurredAt = fields.get(OCCURRED_AT);
+        LocalDateTime time = occurredAt != null ? LocalDateTime.parse(occurredAt) : null;
+        if (ActivityCreated.TYPE_NAME.equals(type)) {
+            return new ActivityCreated(fields.get("activityId"), fields.get("organizerId"), time);
+        }
+        if (ParticipantJoined.TYPE_NAME.equals(type)) {
+            return new ParticipantJoined(fields.get("activityId"), fields.get("userId"), time);
+        }
+        if (ShareSettled.TYPE_NAME.equals(type)) {
+            // 合并前写入的记录每条只有一个 shareId
+            String shareIds = fields.containsKey("shareIds") ? fields.get("shareIds") : fields.get("shareId");
+            return new ShareSettled(fields.get("userId"), Long.parseLong(fields.get("amountCents")),
+                    shareIds == null || shareIds.isEmpty() ? List.of() : List.of(shareIds.split(",")), time);
+        }
+        return null;
+    }
+}
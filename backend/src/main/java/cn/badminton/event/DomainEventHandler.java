@@ -0,0 +1,23 @@
+package cn.badminton.event;
+
+/**
+ * 领域事件处理器：每个处理器对应事件流上的一个消费组，各自独立确认与重试
+ * 投递至少一次：同一记录可能被处理多次，有副作用的处理器须以 processedKey 去重；无关类型直接返回
+ *
+ * 作者: xiaolei
+ */
+public interface DomainEventHandler {
+
+    /**
+     * 消费组名称，部署后不可更改（改名等同新建消费组）
+     */
+    String group();
+
+    /**
+     * 处理失败时抛出异常，事件保持未确认并在空闲超时后被重新认领
+     *
+     * @param processedKey 本消费组本记录的已处理标记键；须与处理器自身的写入在同一原子操作中 SET NX，
+     *                     标记已存在时不再重复写入
+     */
+    void handle(DomainEvent event, String processedKey);
+}
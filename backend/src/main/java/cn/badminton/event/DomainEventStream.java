@@ -0,0 +1,77 @@
+package cn.badminton.event;
+
+import cn.badminton.config.RedisConfig;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 领域事件流（Redis Stream，作为事务发件箱）
+ * 由存储库在写入主数据的同一个 MULTI/EXEC 中调用 append，事件与数据变更要么都提交、要么都不提交
+ * 追加时不截断：由 DomainEventConsumer 定时按各消费组已确认的位置 XTRIM MINID，只删除所有消费组都已确认的事件，
+ * 消费落后时流随积压增长而不会丢事件（积压见 events.stream.length 指标）
+ *
+ * 作者: xiaolei
+ */
+public final class DomainEventStream {
+
+    public static final String KEY = RedisConfig.RedisKeys.DOMAIN_EVENTS_STREAM;
+
+    private DomainEventStream() {
+    }
+
+    /**
+     * 在给定的操作上下文（通常已开启 MULTI）中追加事件
+     */
+    public static void append(RedisOperations<String, Object> ops, Collection<? extends DomainEvent> events) {
+        for (DomainEvent event : events) {
+            MapRecord<String, String, String> record = StreamRecords.newRecord().in(KEY).ofMap(event.toFields());
+            ops.opsForStream().add(record);
+        }
+    }
+
+    /**
+     * Lua 脚本内追加事件用的参数：事件数，随后每个事件依次为字段数与字段名/值
+     * 字段名与值按模板的序列化器编码，与 append 写入的记录一致；脚本参数须以原样字节传递
+     */
+    @SuppressWarnings("unchecked")
+    public static void appendScriptArgs(List<byte[]> args, RedisTemplate<String, Object> template,
+                                        Collection<? extends DomainEvent> events) {
+        RedisSerializer<String> fieldSerializer = (RedisSerializer<String>) template.getHashKeySerializer();
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) template.getHashValueSerializer();
+        args.add(plain(events.size()));
+        for (DomainEvent event : events) {
+            Map<String, String> fields = event.toFields();
+            args.add(plain(fields.size()));
+            fields.forEach((name, value) -> {
+                args.add(fieldSerializer.serialize(name));
+                args.add(valueSerializer.serialize(value));
+            });
+        }
+    }
+
+    /**
+     * 数字参数按纯文本传递，供脚本 tonumber
+     */
+    public static byte[] plain(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 读取到的记录还原为字符串字段（值经模板的值序列化器读出）
+     */
+    public static Map<String, String> fields(MapRecord<String, Object, Object> record) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        record.getValue().forEach((key, value) -> fields.put(String.valueOf(key),
+                value != null ? value.toString() : null));
+        return fields;
+    }
+}
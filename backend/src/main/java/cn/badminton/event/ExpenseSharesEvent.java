@@ -0,0 +1,37 @@
+package cn.badminton.event;
+
+import cn.badminton.model.ExpenseRecord;
+import cn.badminton.model.ExpenseShare;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 分摊领域事件：同一笔费用下的一批分摊被创建、结算或随费用删除而作废
+ *
+ * 作者: xiaolei
+ */
+@Getter
+public class ExpenseSharesEvent {
+
+    public enum Kind {
+        CREATED, SETTLED, REVOKED
+    }
+
+    private final Kind kind;
+    private final ExpenseRecord expense;
+    private final List<ExpenseShare> shares;
+
+    public ExpenseSharesEvent(Kind kind, ExpenseRecord expense, List<ExpenseShare> shares) {
+        this.kind = kind;
+        this.expense = expense;
+        this.shares = shares;
+    }
+
+    /**
+     * 对待结算金额的方向：创建为正，结算与作废为负
+     */
+    public int sign() {
+        return kind == Kind.CREATED ? 1 : -1;
+    }
+}
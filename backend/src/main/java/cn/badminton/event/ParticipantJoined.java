@@ -0,0 +1,41 @@
+package cn.badminton.event;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 用户已加入活动
+ *
+ * 作者: xiaolei
+ */
+@Getter
+public class ParticipantJoined extends DomainEvent {
+
+    public static final String TYPE_NAME = "ParticipantJoined";
+
+    private final String activityId;
+    private final String userId;
+
+    public ParticipantJoined(String activityId, String userId) {
+        this(activityId, userId, null);
+    }
+
+    public ParticipantJoined(String activityId, String userId, LocalDateTime occurredAt) {
+        super(occurredAt);
+        this.activityId = activityId;
+        this.userId = userId;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE_NAME;
+    }
+
+    @Override
+    protected void writeFields(Map<String, String> fields) {
+        fields.put("activityId", activityId);
+        fields.put("userId", userId);
+    }
+}
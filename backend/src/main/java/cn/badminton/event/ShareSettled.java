@@ -0,0 +1,73 @@
+package cn.badminton.event;
+
+import cn.badminton.common.Money;
+import cn.badminton.model.ExpenseShare;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分摊已结算：同一次结算中同一用户的分摊合并为一条事件，金额以分记录
+ *
+ * 作者: xiaolei
+ */
+@Getter
+public class ShareSettled extends DomainEvent {
+
+    public static final String TYPE_NAME = "ShareSettled";
+
+    private final String userId;
+    private final long amountCents;
+    private final List<String> shareIds;
+
+    public ShareSettled(String userId, long amountCents, List<String> shareIds) {
+        this(userId, amountCents, shareIds, null);
+    }
+
+    public ShareSettled(String userId, long amountCents, List<String> shareIds, LocalDateTime occurredAt) {
+        super(occurredAt);
+        this.userId = userId;
+        this.amountCents = amountCents;
+        this.shareIds = List.copyOf(shareIds);
+    }
+
+    public static ShareSettled of(ExpenseShare share) {
+        return new ShareSettled(share.getUserId(), share.getAmount().getCents(), List.of(share.getId()),
+                share.getSettledAt());
+    }
+
+    /**
+     * 按分摊者合并：每个用户一条事件，金额为其分摊之和（按首次出现的顺序）
+     */
+    public static List<ShareSettled> perUser(Collection<ExpenseShare> shares) {
+        Map<String, List<ExpenseShare>> byUser = new LinkedHashMap<>();
+        shares.forEach(share -> byUser.computeIfAbsent(share.getUserId(), k -> new ArrayList<>()).add(share));
+        List<ShareSettled> events = new ArrayList<>(byUser.size());
+        byUser.forEach((userId, owned) -> events.add(new ShareSettled(userId,
+                owned.stream().mapToLong(share -> share.getAmount().getCents()).sum(),
+                owned.stream().map(ExpenseShare::getId).toList(),
+                owned.get(0).getSettledAt())));
+        return events;
+    }
+
+    public Money getAmount() {
+        return Money.ofCents(amountCents);
+    }
+
+    @Override
+    public String getType() {
+        return TYPE_NAME;
+    }
+
+    @Override
+    protected void writeFields(Map<String, String> fields) {
+        fields.put("userId", userId);
+        fields.put("amountCents", Long.toString(amountCents));
+        fields.put("shareIds", String.join(",", shareIds));
+    }
+}
@@ -10,6 +10,8 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * 全局异常处理
  * 将异常转换为统一的Result响应
@@ -31,6 +33,13 @@ public class GlobalExceptionHandler {
         return Result.fail(4000, "请求参数不合法");
     }
 
+    @ExceptionHandler(RejectedExecutionException.class)
+    public Result<Void> handleRejected(RejectedExecutionException e) {
+        // 线程池、隔离舱或租约拒绝了任务，异常信息中带有具体的执行器名称与原因
+        log.warn("任务执行被拒绝，资源繁忙: {}", e.getMessage());
+        return Result.fail(5030, "系统繁忙，请稍后重试");
+    }
+
     @ExceptionHandler(Exception.class)
     public Result<Void> handleOther(Exception e) {
         log.error("系统异常: {}", e.getMessage(), e);
@@ -1,6 +1,12 @@
 package cn.badminton.filter;
 
+import cn.badminton.security.AuthenticatedPrincipal;
+import cn.badminton.service.TokenSessionService;
 import cn.badminton.util.JwtUtil;
+import cn.badminton.util.JwtUtil.TokenInfo;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -17,6 +23,9 @@ import java.util.List;
 
 /**
  * JWT认证过滤器：从请求头解析并设置认证上下文
+ * 已吊销的令牌（注销、注销全部、用户禁用）不建立认证；TokenInfo 放在认证对象的 details 中
+ * 用户状态取自访问令牌声明，常规路径不访问数据库与 Redis
+ * 认证主体为 AuthenticatedPrincipal：User 按需加载、本请求内复用，请求结束时记录省下的查询次数
  * 作者: xiaolei
  */
 @Component
@@ -25,21 +34,51 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private TokenSessionService tokenSessionService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private DistributionSummary savedLookups;
+
+    @PostConstruct
+    public void init() {
+        savedLookups = DistributionSummary.builder("auth.principal.lookups.saved")
+                .description("每个请求因复用已加载的当前用户而省下的查询次数")
+                .register(meterRegistry);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
+        AuthenticatedPrincipal principal = null;
         String auth = request.getHeader("Authorization");
         if (auth != null && auth.startsWith("Bearer ")) {
             String token = auth.substring(7);
-            String userId = jwtUtil.parseUserId(token);
-            if (userId != null) {
+            TokenInfo info = jwtUtil.parseToken(token);
+            if (info != null && info.getUserId() != null && isActive(info) && !tokenSessionService.isRevoked(info)) {
+                principal = new AuthenticatedPrincipal(info);
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userId, null, List.of(new SimpleGrantedAuthority("ROLE_USER"))
+                        principal, null, List.of(new SimpleGrantedAuthority("ROLE_USER"))
                 );
+                authentication.setDetails(info);
                 SecurityContextHolder.getContext().setAuthentication(authentication);
             }
         }
-        filterChain.doFilter(request, response);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (principal != null && principal.isLoaded()) {
+                savedLookups.record(principal.getSavedLookups());
+            }
+        }
     }
-}
 
+    /**
+     * 旧版令牌不带状态声明，视为正常；禁用用户的旧令牌已在禁用时整体吊销
+     */
+    private boolean isActive(TokenInfo info) {
+        return info.getStatus() == null || info.getStatus() == 1;
+    }
+}
@@ -0,0 +1,303 @@
+package cn.badminton.filter;
+
+import cn.badminton.common.Result;
+import cn.badminton.config.RateLimitProperties;
+import cn.badminton.config.RateLimitProperties.Policy;
+import cn.badminton.config.RedisConfig.RedisKeys;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UrlPathHelper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 接口限流过滤器（令牌桶，位于 JWT 认证之后）
+ * - 路由按规范化后的路径匹配：去掉上下文路径与 ;jsessionid 等分号参数、URL 解码、合并重复斜杠并去掉末尾斜杠，
+ *   与 Spring MVC 实际分派到的路径一致，避免 /api/auth/login/ 之类的变体绕过限流
+ * - 按路由策略维护每 IP、每登录用户两类桶，所有桶在一次 Redis 脚本中原子判定与扣减（全部有令牌才放行）
+ * - 本地预过滤：每个桶在本节点也按同样参数记账；单节点消耗已超过配额的客户端必然超过全局配额，直接拒绝不访问 Redis；
+ *   Redis 拒绝后在 Retry-After 窗口内同样本地拒绝
+ * - 响应头 RateLimit-Limit / RateLimit-Remaining / RateLimit-Reset，拒绝时 HTTP 429 + Retry-After，业务码 4290
+ * - Redis 不可用时放行（仍受本地预过滤约束）
+ * - 指标 ratelimit.requests，标签 route / outcome(allowed|rejected|rejected_local|error)
+ * 作者: xiaolei
+ */
+@Component
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    /**
+     * 多桶令牌桶：ARGV 依次为每个桶的容量与每毫秒补充量，时间取 Redis 服务器时间
+     * 返回 {是否放行, 剩余令牌, 需等待毫秒, 关键桶下标}；关键桶为拒绝时不足的桶，放行时为剩余最少的桶
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(
+            "local t = redis.call('TIME')\n"
+                    + "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000)\n"
+                    + "local tokens = {}\n"
+                    + "local allowed = 1\n"
+                    + "local wait = 0\n"
+                    + "local critical = 1\n"
+                    + "for i = 1, #KEYS do\n"
+                    + "  local cap = tonumber(ARGV[i * 2 - 1])\n"
+                    + "  local rate = tonumber(ARGV[i * 2])\n"
+                    + "  local h = redis.call('HMGET', KEYS[i], 'tokens', 'ts')\n"
+                    + "  local tk = tonumber(h[1])\n"
+                    + "  local ts = tonumber(h[2])\n"
+                    + "  if tk == nil or ts == nil then tk = cap ts = now end\n"
+                    + "  tk = math.min(cap, tk + math.max(0, now - ts) * rate)\n"
+                    + "  tokens[i] = tk\n"
+                    + "  if tk < 1 then\n"
+                    + "    local w = math.ceil((1 - tk) / rate)\n"
+                    + "    if allowed == 1 or w > wait then critical = i end\n"
+                    + "    allowed = 0\n"
+                    + "    wait = math.max(wait, w)\n"
+                    + "  end\n"
+                    + "end\n"
+                    + "local remaining = -1\n"
+                    + "for i = 1, #KEYS do\n"
+                    + "  local cap = tonumber(ARGV[i * 2 - 1])\n"
+                    + "  local rate = tonumber(ARGV[i * 2])\n"
+                    + "  local tk = tokens[i]\n"
+                    + "  if allowed == 1 then tk = tk - 1 end\n"
+                    + "  redis.call('HSET', KEYS[i], 'tokens', tostring(tk), 'ts', tostring(now))\n"
+                    + "  redis.call('PEXPIRE', KEYS[i], math.ceil(cap / rate) + 1000)\n"
+                    + "  local r = math.floor(tk)\n"
+                    + "  if allowed == 1 and (remaining < 0 or r < remaining) then remaining = r critical = i end\n"
+                    + "end\n"
+                    + "if allowed == 0 then remaining = 0 end\n"
+                    + "return {allowed, remaining, wait, critical}",
+            List.class);
+
+    private static final UrlPathHelper PATH_HELPER = new UrlPathHelper();
+
+    @Autowired
+    private RateLimitProperties properties;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, LocalBucket> localBuckets;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        localBuckets = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaximumSize())
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build();
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !properties.isEnabled() || properties.policyFor(routeOf(request)) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String route = routeOf(request);
+        Policy policy = properties.policyFor(route);
+        List<Bucket> buckets = bucketsFor(route, policy, request);
+        if (buckets.isEmpty()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        // 本地预过滤：任一桶在本节点已无令牌即拒绝
+        long now = System.currentTimeMillis();
+        for (Bucket bucket : buckets) {
+            long wait = bucket.local.waitMillis(now, bucket.capacity, bucket.ratePerMilli);
+            if (wait > 0) {
+                count(route, "rejected_local");
+                reject(response, bucket.capacity, wait);
+                return;
+            }
+        }
+        for (Bucket bucket : buckets) {
+            bucket.local.consume();
+        }
+
+        List<?> result;
+        try {
+            result = evaluate(buckets);
+        } catch (RuntimeException e) {
+            log.debug("限流脚本执行失败，放行: {}", e.getMessage());
+            count(route, "error");
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean allowed = ((Number) result.get(0)).longValue() == 1;
+        long remaining = ((Number) result.get(1)).longValue();
+        long wait = ((Number) result.get(2)).longValue();
+        Bucket critical = buckets.get((int) ((Number) result.get(3)).longValue() - 1);
+        if (!allowed) {
+            critical.local.blockUntil(System.currentTimeMillis() + wait);
+            count(route, "rejected");
+            reject(response, critical.capacity, wait);
+            return;
+        }
+        count(route, "allowed");
+        long resetSeconds = (long) Math.ceil((critical.capacity - remaining) / critical.ratePerMilli / 1000.0);
+        writeHeaders(response, critical.capacity, remaining, resetSeconds);
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * 规范化请求路径作为路由键
+     */
+    private static String routeOf(HttpServletRequest request) {
+        String path = PATH_HELPER.getPathWithinApplication(request).replaceAll("/{2,}", "/");
+        int end = path.length();
+        while (end > 1 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(0, end);
+    }
+
+    private List<Bucket> bucketsFor(String route, Policy policy, HttpServletRequest request) {
+        List<Bucket> buckets = new ArrayList<>(2);
+        if (policy.getIpCapacity() > 0 && policy.getIpRefillPerMinute() > 0) {
+            // 客户端地址由 server.forward-headers-strategy 从可信代理的 X-Forwarded-For 还原
+            buckets.add(bucket(RedisKeys.rateLimitKey(route, "ip", request.getRemoteAddr()),
+                    policy.getIpCapacity(), policy.getIpRefillPerMinute()));
+        }
+        String userId = currentUserId();
+        if (userId != null && policy.getUserCapacity() > 0 && policy.getUserRefillPerMinute() > 0) {
+            buckets.add(bucket(RedisKeys.rateLimitKey(route, "user", userId),
+                    policy.getUserCapacity(), policy.getUserRefillPerMinute()));
+        }
+        return buckets;
+    }
+
+    private Bucket bucket(String key, int capacity, int refillPerMinute) {
+        LocalBucket local = localBuckets.get(key, k -> new LocalBucket(capacity));
+        return new Bucket(key, capacity, refillPerMinute / 60_000.0, local);
+    }
+
+    private List<?> evaluate(List<Bucket> buckets) {
+        List<String> keys = new ArrayList<>(buckets.size());
+        Object[] args = new Object[buckets.size() * 2];
+        for (int i = 0; i < buckets.size(); i++) {
+            Bucket bucket = buckets.get(i);
+            keys.add(bucket.key);
+            args[i * 2] = String.valueOf(bucket.capacity);
+            args[i * 2 + 1] = String.valueOf(bucket.ratePerMilli);
+        }
+        List<?> result = stringRedisTemplate.execute(TOKEN_BUCKET_SCRIPT, keys, args);
+        if (result == null || result.size() < 4) {
+            throw new IllegalStateException("限流脚本返回值异常");
+        }
+        return result;
+    }
+
+    private String currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() != null
+                ? String.valueOf(authentication.getPrincipal()) : null;
+    }
+
+    private void reject(HttpServletResponse response, int limit, long waitMillis) throws IOException {
+        long retryAfter = Math.max(1, (long) Math.ceil(waitMillis / 1000.0));
+        writeHeaders(response, limit, 0, retryAfter);
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(objectMapper.writeValueAsString(Result.fail(4290, "请求过于频繁，请稍后重试")));
+    }
+
+    private void writeHeaders(HttpServletResponse response, int limit, long remaining, long resetSeconds) {
+        response.setHeader("RateLimit-Limit", String.valueOf(limit));
+        response.setHeader("RateLimit-Remaining", String.valueOf(Math.max(0, remaining)));
+        response.setHeader("RateLimit-Reset", String.valueOf(resetSeconds));
+    }
+
+    private void count(String route, String outcome) {
+        counters.computeIfAbsent(route + '|' + outcome, k -> Counter.builder("ratelimit.requests")
+                .tag("route", route)
+                .tag("outcome", outcome)
+                .register(meterRegistry)).increment();
+    }
+
+    private static final class Bucket {
+        private final String key;
+        private final int capacity;
+        private final double ratePerMilli;
+        private final LocalBucket local;
+
+        private Bucket(String key, int capacity, double ratePerMilli, LocalBucket local) {
+            this.key = key;
+            this.capacity = capacity;
+            this.ratePerMilli = ratePerMilli;
+            this.local = local;
+        }
+    }
+
+    /**
+     * 本节点上的同参数令牌桶，另记 Redis 拒绝后的封禁截止时间
+     */
+    private static final class LocalBucket {
+        private double tokens;
+        private long updatedAt;
+        private long blockedUntil;
+
+        private LocalBucket(int capacity) {
+            this.tokens = capacity;
+            this.updatedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * 补充令牌后返回还需等待的毫秒数，0 表示有令牌可用
+         */
+        private synchronized long waitMillis(long now, int capacity, double ratePerMilli) {
+            if (now < blockedUntil) {
+                return blockedUntil - now;
+            }
+            tokens = Math.min(capacity, tokens + Math.max(0, now - updatedAt) * ratePerMilli);
+            updatedAt = Math.max(updatedAt, now);
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / ratePerMilli);
+        }
+
+        private synchronized void consume() {
+            tokens = Math.max(0, tokens - 1);
+        }
+
+        private synchronized void blockUntil(long until) {
+            blockedUntil = Math.max(blockedUntil, until);
+        }
+    }
+}
@@ -1,21 +1,30 @@
 package cn.badminton.filter;
 
+import cn.badminton.metrics.RequestStats;
+import cn.badminton.metrics.RequestStatsReporter;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.UUID;
 
 /**
  * 请求链路追踪ID过滤器
  * - 为每个请求生成/透传 traceId，写入 MDC 与响应头，便于日志关联
+ * - 同时开启本请求的 RequestStats，统计 SQL 等资源消耗
+ * - 位于所有过滤器之前，Server-Timing 响应头在响应体开始写出（或 sendError / 重定向）前补上，
+ *   限流、鉴权在过滤器内直接写出的响应与异常响应同样带有；请求结束时记录资源直方图
  * 作者: xiaolei
  */
 @Component
@@ -25,6 +34,9 @@ public class TraceIdFilter extends OncePerRequestFilter {
     public static final String TRACE_ID = "traceId";
     public static final String TRACE_HEADER = "X-Trace-Id";
 
+    @Autowired
+    private RequestStatsReporter requestStatsReporter;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
@@ -34,11 +46,81 @@ public class TraceIdFilter extends OncePerRequestFilter {
         }
         MDC.put(TRACE_ID, traceId);
         response.setHeader(TRACE_HEADER, traceId);
+        RequestStats stats = RequestStats.begin(traceId);
+        ServerTimingResponse timingResponse = new ServerTimingResponse(response, stats);
+        boolean failed = true;
         try {
-            filterChain.doFilter(request, response);
+            filterChain.doFilter(request, timingResponse);
+            failed = false;
         } finally {
-            MDC.remove(TRACE_ID);
+            try {
+                // 无响应体的请求（204 等）与异常在此补写；异常未提交时容器随后以 500 输出错误页
+                boolean committed = response.isCommitted();
+                timingResponse.writeServerTiming();
+                int status = failed && !committed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+                requestStatsReporter.record(stats, request, status);
+            } finally {
+                RequestStats.end();
+                MDC.remove(TRACE_ID);
+            }
         }
     }
-}
 
+    /**
+     * 在响应提交前写入 Server-Timing：响应体一旦开始写出即可能提交，之后无法再加响应头
+     */
+    private class ServerTimingResponse extends HttpServletResponseWrapper {
+
+        private final RequestStats stats;
+        private boolean written;
+
+        ServerTimingResponse(HttpServletResponse response, RequestStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        void writeServerTiming() {
+            if (written || isCommitted()) {
+                return;
+            }
+            written = true;
+            setHeader(RequestStatsReporter.SERVER_TIMING_HEADER, requestStatsReporter.serverTiming(stats));
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeServerTiming();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeServerTiming();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeServerTiming();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeServerTiming();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeServerTiming();
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeServerTiming();
+            super.sendRedirect(location);
+        }
+    }
+}
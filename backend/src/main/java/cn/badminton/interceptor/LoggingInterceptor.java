@@ -9,6 +9,7 @@ import org.springframework.web.servlet.HandlerInterceptor;
 
 /**
  * 请求响应日志拦截器（简版）
+ * 仅 DEBUG 级别输出；接口耗时与抽样日志由 ApiLogAspect 负责
  * 作者: xiaolei
  */
 @Component
@@ -16,7 +17,10 @@ import org.springframework.web.servlet.HandlerInterceptor;
 public class LoggingInterceptor implements HandlerInterceptor {
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
-        log.info("REQ {} {} traceId={} UA={} ", request.getMethod(), request.getRequestURI(), MDC.get("traceId"), request.getHeader("User-Agent"));
+        if (log.isDebugEnabled()) {
+            log.debug("REQ {} {} traceId={} UA={} ", request.getMethod(), request.getRequestURI(),
+                    MDC.get("traceId"), request.getHeader("User-Agent"));
+        }
         return true;
     }
 }
@@ -0,0 +1,51 @@
+package cn.badminton.metrics;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * 统计载荷字节数的序列化器装饰
+ * 序列化与反序列化都发生在调用线程，直接累加到当前请求的 RequestStats
+ * 作者: xiaolei
+ */
+public class CountingRedisSerializer<T> implements RedisSerializer<T> {
+
+    private final RedisSerializer<T> delegate;
+
+    public CountingRedisSerializer(RedisSerializer<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public byte[] serialize(T value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        count(bytes);
+        return bytes;
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) throws SerializationException {
+        count(bytes);
+        return delegate.deserialize(bytes);
+    }
+
+    @Override
+    public boolean canSerialize(Class<?> type) {
+        return delegate.canSerialize(type);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return delegate.getTargetType();
+    }
+
+    private void count(byte[] bytes) {
+        if (bytes == null) {
+            return;
+        }
+        RequestStats stats = RequestStats.current();
+        if (stats != null) {
+            stats.addRedisBytes(bytes.length);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package cn.badminton.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 性能诊断端点：/actuator/perf
+ * - GET 返回阈值配置、最近的慢查询与 N+1 疑似语句
+ * - DELETE 清空缓冲区
+ * 计时与计数类指标统一走 /actuator/metrics（db.query、repository.invocations 等）
+ * 作者: xiaolei
+ */
+@Component
+@Endpoint(id = "perf")
+public class PerfEndpoint {
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    @Value("${app.perf.slow-query-threshold-ms:200}")
+    private long slowQueryThresholdMs;
+
+    @Value("${app.perf.n-plus-one-threshold:5}")
+    private int nPlusOneThreshold;
+
+    @ReadOperation
+    public Map<String, Object> perf() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("slowQueryThresholdMs", slowQueryThresholdMs);
+        result.put("nPlusOneThreshold", nPlusOneThreshold);
+        result.put("slowQueries", slowQueryLog.slowQueries());
+        result.put("nPlusOneSuspects", slowQueryLog.nPlusOneSuspects());
+        return result;
+    }
+
+    @DeleteOperation
+    public void clear() {
+        slowQueryLog.clear();
+    }
+}
@@ -0,0 +1,146 @@
+package cn.badminton.metrics;
+
+import cn.badminton.aop.RepositoryMetricsAspect;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JDBC执行监听器（datasource-proxy）
+ * - db.query：按语句类型统计耗时
+ * - db.jdbc.batch.size：批量执行的批大小分布
+ * - db.query.slow / 慢查询环形缓冲：超过阈值才格式化语句参数
+ * - db.query.n_plus_one：同一请求内同一 SELECT 重复执行达到阈值时计数一次并告警
+ * 作者: xiaolei
+ */
+@Component
+@Slf4j
+public class QueryMetricsListener implements QueryExecutionListener {
+
+    private static final int MAX_PARAM_LENGTH = 200;
+
+    @Value("${app.perf.slow-query-threshold-ms:200}")
+    private long slowQueryThresholdMs;
+
+    @Value("${app.perf.n-plus-one-threshold:5}")
+    private int nPlusOneThreshold;
+
+    @Value("${app.perf.capture-parameters:false}")
+    private boolean captureParameters;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    private Counter slowCounter;
+    private Counter nPlusOneCounter;
+    private DistributionSummary batchSize;
+
+    @PostConstruct
+    public void init() {
+        slowCounter = Counter.builder("db.query.slow").register(meterRegistry);
+        nPlusOneCounter = Counter.builder("db.query.n_plus_one").register(meterRegistry);
+        batchSize = DistributionSummary.builder("db.jdbc.batch.size").register(meterRegistry);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        // 仅在执行后统计
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        if (queryInfoList.isEmpty()) {
+            return;
+        }
+        String sql = queryInfoList.get(0).getQuery();
+        String type = statementType(sql);
+        long elapsedMs = execInfo.getElapsedTime();
+
+        Timer.builder("db.query")
+                .tag("type", type)
+                .tag("batch", String.valueOf(execInfo.isBatch()))
+                .tag("success", String.valueOf(execInfo.isSuccess()))
+                .register(meterRegistry)
+                .record(elapsedMs, TimeUnit.MILLISECONDS);
+        if (execInfo.isBatch()) {
+            batchSize.record(execInfo.getBatchSize());
+        }
+
+        RequestStats stats = RequestStats.current();
+        String traceId = stats != null ? stats.getTraceId() : null;
+        if (stats != null) {
+            int executions = stats.recordStatement(sql, elapsedMs);
+            if ("select".equals(type) && executions == nPlusOneThreshold) {
+                nPlusOneCounter.increment();
+                String operation = RepositoryMetricsAspect.currentOperation();
+                log.warn("N+1 suspect traceId={} op={} executions={} sql={}", traceId, operation, executions, sql);
+                slowQueryLog.recordNPlusOne(new SlowQueryLog.Entry(LocalDateTime.now(), traceId, operation, sql,
+                        Collections.emptyList(), elapsedMs, 0, executions));
+            }
+        }
+
+        if (elapsedMs >= slowQueryThresholdMs) {
+            slowCounter.increment();
+            String operation = RepositoryMetricsAspect.currentOperation();
+            List<String> params = captureParameters ? formatParameters(queryInfoList) : Collections.emptyList();
+            log.warn("Slow query traceId={} op={} cost={}ms sql={}", traceId, operation, elapsedMs, sql);
+            slowQueryLog.recordSlow(new SlowQueryLog.Entry(LocalDateTime.now(), traceId, operation, sql,
+                    params, elapsedMs, execInfo.getBatchSize(), 1));
+        }
+    }
+
+    /**
+     * 只取第一组参数，批量语句另附批大小
+     */
+    private List<String> formatParameters(List<QueryInfo> queryInfoList) {
+        List<List<ParameterSetOperation>> parametersList = queryInfoList.get(0).getParametersList();
+        if (parametersList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> params = new ArrayList<>();
+        for (ParameterSetOperation op : parametersList.get(0)) {
+            Object[] args = op.getArgs();
+            String value = args.length > 1 ? String.valueOf(args[1]) : "";
+            if (value.length() > MAX_PARAM_LENGTH) {
+                value = value.substring(0, MAX_PARAM_LENGTH) + "...";
+            }
+            params.add(value);
+        }
+        return params;
+    }
+
+    private String statementType(String sql) {
+        String trimmed = sql.trim();
+        int end = trimmed.indexOf(' ');
+        String verb = (end > 0 ? trimmed.substring(0, end) : trimmed).toLowerCase(Locale.ROOT);
+        switch (verb) {
+            case "select":
+            case "insert":
+            case "update":
+            case "delete":
+                return verb;
+            default:
+                return "other";
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package cn.badminton.metrics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 各接口的 Redis 往返预算（单次请求允许的命令数）
+ * 键为 Spring MVC 路由模式，如 /api/activity/join；0 表示不限制
+ * 作者: xiaolei
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.perf.redis-budget")
+public class RedisBudgetProperties {
+
+    /**
+     * 未单独配置的接口使用的默认预算
+     */
+    private int defaultCommands = 0;
+
+    /**
+     * 按接口配置的预算
+     */
+    private Map<String, Integer> endpoints = new HashMap<>();
+
+    public int budgetFor(String uri) {
+        Integer budget = endpoints.get(uri);
+        return budget != null ? budget : defaultCommands;
+    }
+}
@@ -0,0 +1,50 @@
+package cn.badminton.metrics;
+
+import io.lettuce.core.event.command.CommandFailedEvent;
+import io.lettuce.core.event.command.CommandListener;
+import io.lettuce.core.event.command.CommandStartedEvent;
+import io.lettuce.core.event.command.CommandSucceededEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Lettuce 命令监听器：把每条 Redis 命令的往返耗时记到发起请求的 RequestStats 上
+ * - commandStarted 在调用线程执行，此时取得当前请求的统计对象并放入命令上下文
+ * - 完成回调在 IO 线程执行，只能通过命令上下文找回统计对象
+ * 作者: xiaolei
+ */
+@Component
+public class RedisCommandListener implements CommandListener {
+
+    private static final String STATS_KEY = "badminton.requestStats";
+    private static final String START_KEY = "badminton.startNanos";
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        RequestStats stats = RequestStats.current();
+        if (stats != null) {
+            Map<String, Object> context = event.getContext();
+            context.put(STATS_KEY, stats);
+            context.put(START_KEY, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        complete(event.getContext());
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        complete(event.getContext());
+    }
+
+    private void complete(Map<String, Object> context) {
+        Object stats = context.get(STATS_KEY);
+        Object start = context.get(START_KEY);
+        if (stats instanceof RequestStats && start instanceof Long) {
+            ((RequestStats) stats).recordRedisCommand(System.nanoTime() - (Long) start);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package cn.badminton.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个HTTP请求的资源消耗统计（SQL 与 Redis）
+ * - 由 TraceIdFilter 在请求开始时创建、结束时清理，绑定在请求线程上
+ * - 计数字段均为原子类型，允许在异步回调线程中累加
+ * - 非请求线程（定时任务、迁移等）上 current() 返回 null，调用方需判空
+ * 作者: xiaolei
+ */
+public final class RequestStats {
+
+    private static final ThreadLocal<RequestStats> CURRENT = new ThreadLocal<>();
+
+    private final String traceId;
+    private final long startNanos = System.nanoTime();
+
+    private final AtomicInteger sqlCount = new AtomicInteger();
+    private final AtomicLong sqlMillis = new AtomicLong();
+    private final Map<String, AtomicInteger> statementCounts = new ConcurrentHashMap<>();
+
+    private final AtomicInteger redisCommands = new AtomicInteger();
+    private final AtomicLong redisNanos = new AtomicLong();
+    private final AtomicLong redisBytes = new AtomicLong();
+
+    private RequestStats(String traceId) {
+        this.traceId = traceId;
+    }
+
+    /**
+     * 开始统计并绑定到当前线程
+     */
+    public static RequestStats begin(String traceId) {
+        RequestStats stats = new RequestStats(traceId);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    /**
+     * 当前线程上的统计，未处于请求中时返回 null
+     */
+    public static RequestStats current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 解除当前线程绑定
+     */
+    public static void end() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 记录一次SQL执行
+     *
+     * @return 同一语句在本请求内的累计执行次数（用于 N+1 检测）
+     */
+    public int recordStatement(String sql, long elapsedMillis) {
+        sqlCount.incrementAndGet();
+        sqlMillis.addAndGet(elapsedMillis);
+        return statementCounts.computeIfAbsent(sql, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    /**
+     * 记录一次Redis命令往返（在 Lettuce IO 线程上回调）
+     */
+    public void recordRedisCommand(long elapsedNanos) {
+        redisCommands.incrementAndGet();
+        redisNanos.addAndGet(elapsedNanos);
+    }
+
+    /**
+     * 记录Redis读写的载荷字节数（键 + 值，不含协议开销）
+     */
+    public void addRedisBytes(long bytes) {
+        redisBytes.addAndGet(bytes);
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    public int getSqlCount() {
+        return sqlCount.get();
+    }
+
+    public long getSqlMillis() {
+        return sqlMillis.get();
+    }
+
+    public int getRedisCommands() {
+        return redisCommands.get();
+    }
+
+    public long getRedisNanos() {
+        return redisNanos.get();
+    }
+
+    public long getRedisBytes() {
+        return redisBytes.get();
+    }
+}
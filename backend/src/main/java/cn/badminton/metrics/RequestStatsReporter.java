@@ -0,0 +1,99 @@
+package cn.badminton.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 汇总本请求的资源消耗，由 TraceIdFilter 调用，覆盖限流 429、鉴权 401/403 与异常响应
+ * - Server-Timing 响应头（redis / db / app），浏览器开发者工具可直接查看
+ * - 按接口路由模式记录直方图：http.server.requests.redis.commands / .redis.time / .redis.bytes / .db.queries，
+ *   未进入 Spring MVC 分派的请求（如过滤器直接拒绝）路由记为 UNKNOWN，可按 status 标签区分
+ * - Redis 命令数超过预算时计数 http.server.requests.redis.budget.exceeded 并告警，
+ *   其余请求按 app.perf.request-log-sample-percent 抽样以 INFO 输出带 traceId 的资源汇总
+ * 作者: xiaolei
+ */
+@Component
+@Slf4j
+public class RequestStatsReporter {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private RedisBudgetProperties redisBudget;
+
+    @Value("${app.perf.request-log-sample-percent:10}")
+    private int requestLogSamplePercent = 10;
+
+    /**
+     * Server-Timing 响应头的值，app 为请求开始至今的耗时
+     */
+    public String serverTiming(RequestStats stats) {
+        return String.format(
+                "redis;dur=%.2f;desc=\"%d cmd, %d B\", db;dur=%d;desc=\"%d q\", app;dur=%.2f",
+                stats.getRedisNanos() / 1_000_000.0, stats.getRedisCommands(), stats.getRedisBytes(),
+                stats.getSqlMillis(), stats.getSqlCount(), stats.elapsedNanos() / 1_000_000.0);
+    }
+
+    /**
+     * 请求结束时记录直方图、预算告警与抽样日志
+     */
+    public void record(RequestStats stats, HttpServletRequest request, int status) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        String method = request.getMethod();
+        String statusTag = String.valueOf(status);
+
+        int redisCommands = stats.getRedisCommands();
+        long redisNanos = stats.getRedisNanos();
+        long redisBytes = stats.getRedisBytes();
+        int sqlCount = stats.getSqlCount();
+
+        DistributionSummary.builder("http.server.requests.redis.commands")
+                .tag("uri", uri).tag("method", method).tag("status", statusTag)
+                .publishPercentileHistogram()
+                .register(meterRegistry).record(redisCommands);
+        DistributionSummary.builder("http.server.requests.redis.bytes")
+                .baseUnit("bytes")
+                .tag("uri", uri).tag("method", method).tag("status", statusTag)
+                .register(meterRegistry).record(redisBytes);
+        Timer.builder("http.server.requests.redis.time")
+                .tag("uri", uri).tag("method", method).tag("status", statusTag)
+                .publishPercentileHistogram()
+                .register(meterRegistry).record(redisNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("http.server.requests.db.queries")
+                .tag("uri", uri).tag("method", method).tag("status", statusTag)
+                .register(meterRegistry).record(sqlCount);
+
+        int budget = redisBudget.budgetFor(uri);
+        if (budget > 0 && redisCommands > budget) {
+            Counter.builder("http.server.requests.redis.budget.exceeded")
+                    .tag("uri", uri)
+                    .register(meterRegistry).increment();
+            log.warn("Redis budget exceeded traceId={} {} {} status={} commands={} budget={}",
+                    stats.getTraceId(), method, uri, status, redisCommands, budget);
+        } else if (sampled()) {
+            log.info("Request stats traceId={} {} {} status={} redis={}cmd/{}B/{}ms sql={}q/{}ms",
+                    stats.getTraceId(), method, uri, status, redisCommands, redisBytes,
+                    TimeUnit.NANOSECONDS.toMillis(redisNanos), sqlCount, stats.getSqlMillis());
+        }
+    }
+
+    private boolean sampled() {
+        return requestLogSamplePercent >= 100
+                || (requestLogSamplePercent > 0 && ThreadLocalRandom.current().nextInt(100) < requestLogSamplePercent);
+    }
+}
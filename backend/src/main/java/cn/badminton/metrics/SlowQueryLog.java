@@ -0,0 +1,93 @@
+package cn.badminton.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 慢查询 / N+1 疑似记录的环形缓冲区
+ * - 只保存最近 N 条，超出后丢弃最旧的记录
+ * - 只有超过阈值的语句才会进入，正常路径不产生任何分配
+ * 作者: xiaolei
+ */
+@Component
+public class SlowQueryLog {
+
+    @Value("${app.perf.slow-query-buffer-size:100}")
+    private int capacity;
+
+    private final Deque<Entry> slowQueries = new ArrayDeque<>();
+    private final Deque<Entry> nPlusOneSuspects = new ArrayDeque<>();
+
+    public void recordSlow(Entry entry) {
+        append(slowQueries, entry);
+    }
+
+    public void recordNPlusOne(Entry entry) {
+        append(nPlusOneSuspects, entry);
+    }
+
+    /**
+     * 最近的慢查询（新的在前）
+     */
+    public List<Entry> slowQueries() {
+        return snapshot(slowQueries);
+    }
+
+    /**
+     * 最近的 N+1 疑似语句（新的在前）
+     */
+    public List<Entry> nPlusOneSuspects() {
+        return snapshot(nPlusOneSuspects);
+    }
+
+    public void clear() {
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+        synchronized (nPlusOneSuspects) {
+            nPlusOneSuspects.clear();
+        }
+    }
+
+    private void append(Deque<Entry> ring, Entry entry) {
+        synchronized (ring) {
+            ring.addFirst(entry);
+            while (ring.size() > Math.max(1, capacity)) {
+                ring.removeLast();
+            }
+        }
+    }
+
+    private List<Entry> snapshot(Deque<Entry> ring) {
+        synchronized (ring) {
+            return new ArrayList<>(ring);
+        }
+    }
+
+    /**
+     * 单条记录
+     * - operation：触发该语句的存储库方法，如 UserJpaRepository.findById
+     * - parameters：参数快照，未开启采集时为空
+     * - executions：N+1 记录中为本请求内的累计执行次数，慢查询记录中为 1
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final LocalDateTime time;
+        private final String traceId;
+        private final String operation;
+        private final String sql;
+        private final List<String> parameters;
+        private final long elapsedMs;
+        private final int batchSize;
+        private final int executions;
+    }
+}
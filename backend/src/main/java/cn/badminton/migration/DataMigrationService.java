@@ -1,15 +1,16 @@
 package cn.badminton.migration;
 
+import cn.badminton.common.Money;
 import cn.badminton.config.RedisConfig;
 import cn.badminton.model.*;
 import cn.badminton.repository.jpa.*;
+import cn.badminton.util.MoneyCodec;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -263,7 +264,7 @@ public class DataMigrationService {
         user.setAvatar(getString(map, "avatar"));
         user.setStatus(getInteger(map, "status", 1));
         user.setTotalActivities(getInteger(map, "totalActivities", 0));
-        user.setTotalExpense(getBigDecimal(map, "totalExpense", BigDecimal.ZERO));
+        user.setTotalExpense(getMoney(map, "totalExpense", Money.ZERO));
         user.setWxOpenId(getString(map, "wxOpenId"));
         user.setWxUnionId(getString(map, "wxUnionId"));
         user.setTenant(getInteger(map, "tenant", 1));
@@ -286,7 +287,7 @@ public class DataMigrationService {
         activity.setEndTime(getLocalDateTime(map, "endTime"));
         activity.setMaxPlayers(getInteger(map, "maxPlayers", 2));
         activity.setCurrentPlayers(getInteger(map, "currentPlayers", 1));
-        activity.setFee(getBigDecimal(map, "fee", BigDecimal.ZERO));
+        activity.setFee(getMoney(map, "fee", Money.ZERO));
         activity.setDescription(getString(map, "description"));
         activity.setStatus(getInteger(map, "status", 1));
         activity.setTenant(getInteger(map, "tenant", 1));
@@ -305,7 +306,7 @@ public class DataMigrationService {
         expense.setPayerId(getString(map, "payerId"));
         expense.setType(getString(map, "type"));
         expense.setDescription(getString(map, "description"));
-        expense.setTotalAmount(getBigDecimal(map, "totalAmount", BigDecimal.ZERO));
+        expense.setTotalAmount(getMoney(map, "totalAmount", Money.ZERO));
         expense.setSplitMethod(getString(map, "splitMethod", "equal"));
         expense.setTenant(getInteger(map, "tenant", 1));
         expense.setState(getInteger(map, "state", 1));
@@ -321,7 +322,7 @@ public class DataMigrationService {
         share.setId(getString(map, "id"));
         share.setExpenseId(getString(map, "expenseId"));
         share.setUserId(getString(map, "userId"));
-        share.setAmount(getBigDecimal(map, "amount", BigDecimal.ZERO));
+        share.setAmount(getMoney(map, "amount", Money.ZERO));
         share.setStatus(getInteger(map, "status", 1));
         share.setSettledAt(getLocalDateTime(map, "settledAt"));
         share.setTenant(getInteger(map, "tenant", 1));
@@ -361,14 +362,11 @@ public class DataMigrationService {
         return defaultValue;
     }
 
-    private BigDecimal getBigDecimal(Map<Object, Object> map, String key, BigDecimal defaultValue) {
-        Object value = map.get(key);
-        if (value == null) return defaultValue;
-
+    private Money getMoney(Map<Object, Object> map, String key, Money defaultValue) {
         try {
-            return new BigDecimal(value.toString());
-        } catch (NumberFormatException e) {
-            log.warn("转换BigDecimal失败，键: {}, 值: {}, 使用默认值: {}", key, value, defaultValue);
+            return MoneyCodec.read(map, key, defaultValue);
+        } catch (IllegalArgumentException e) {
+            log.warn("转换金额失败，键: {}, 值: {}, 使用默认值: {}", key, map.get(key), defaultValue);
             return defaultValue;
         }
     }
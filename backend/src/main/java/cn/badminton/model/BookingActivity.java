@@ -1,8 +1,10 @@
 package cn.badminton.model;
 
+import cn.badminton.common.Money;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
-import java.math.BigDecimal;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 
 /**
@@ -12,6 +14,8 @@ import java.time.LocalDateTime;
  * 作者: xiaolei
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "activity")
 @Table(name = "booking_activity",
        indexes = {
            @Index(name = "idx_organizer", columnList = "organizer"),
@@ -85,13 +89,10 @@ public class BookingActivity extends BaseEntity {
     private Integer currentPlayers = 1;
 
     /**
-     * 预估费用
-     * 非负数，最多2位小数
+     * 预估费用（以分为单位，库中仍为 DECIMAL(8,2)，见 MoneyConverter）
      */
     @Column(name = "fee", nullable = false, precision = 8, scale = 2)
-    @DecimalMin(value = "0.00", message = "预估费用不能为负数")
-    @Digits(integer = 8, fraction = 2, message = "预估费用格式不正确")
-    private BigDecimal fee = BigDecimal.ZERO;
+    private Money fee = Money.ZERO;
 
     /**
      * 活动描述
@@ -196,12 +197,12 @@ public class BookingActivity extends BaseEntity {
         this.currentPlayers = currentPlayers;
     }
 
-    public BigDecimal getFee() {
+    public Money getFee() {
         return fee;
     }
 
-    public void setFee(BigDecimal fee) {
-        this.fee = fee;
+    public void setFee(Money fee) {
+        this.fee = fee == null ? Money.ZERO : fee;
     }
 
     public String getDescription() {
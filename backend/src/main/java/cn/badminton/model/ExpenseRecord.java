@@ -1,8 +1,10 @@
 package cn.badminton.model;
 
+import cn.badminton.common.Money;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
-import java.math.BigDecimal;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 
 /**
@@ -12,6 +14,8 @@ import java.time.LocalDateTime;
  * 作者: xiaolei
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "expense")
 @Table(name = "expense_record",
        indexes = {
            @Index(name = "idx_activity_id", columnList = "activity_id"),
@@ -52,14 +56,11 @@ public class ExpenseRecord extends BaseEntity {
     private String description;
 
     /**
-     * 总金额
-     * 最小值0.01，最多2位小数
+     * 总金额（以分为单位，库中仍为 DECIMAL(8,2)，见 MoneyConverter）
      */
     @Column(name = "total_amount", nullable = false, precision = 8, scale = 2)
     @NotNull(message = "总金额不能为空")
-    @DecimalMin(value = "0.01", message = "总金额必须大于0.01")
-    @Digits(integer = 8, fraction = 2, message = "总金额格式不正确")
-    private BigDecimal totalAmount;
+    private Money totalAmount;
 
     /**
      * 分摊方式：equal-平均分摊 custom-自定义分摊
@@ -73,7 +74,7 @@ public class ExpenseRecord extends BaseEntity {
         super();
     }
 
-    public ExpenseRecord(String activityId, String payerId, String type, String description, BigDecimal totalAmount) {
+    public ExpenseRecord(String activityId, String payerId, String type, String description, Money totalAmount) {
         super();
         this.activityId = activityId;
         this.payerId = payerId;
@@ -115,11 +116,11 @@ public class ExpenseRecord extends BaseEntity {
         this.description = description;
     }
 
-    public BigDecimal getTotalAmount() {
+    public Money getTotalAmount() {
         return totalAmount;
     }
 
-    public void setTotalAmount(BigDecimal totalAmount) {
+    public void setTotalAmount(Money totalAmount) {
         this.totalAmount = totalAmount;
         updateTimestamp();
     }
@@ -1,8 +1,8 @@
 package cn.badminton.model;
 
+import cn.badminton.common.Money;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 /**
@@ -37,14 +37,11 @@ public class ExpenseShare extends BaseEntity {
     private String userId;
 
     /**
-     * 分摊金额
-     * 最小值0.01，最多2位小数
+     * 分摊金额（以分为单位，库中仍为 DECIMAL(8,2)，见 MoneyConverter）
      */
     @Column(name = "amount", nullable = false, precision = 8, scale = 2)
     @NotNull(message = "分摊金额不能为空")
-    @DecimalMin(value = "0.01", message = "分摊金额必须大于0")
-    @Digits(integer = 8, fraction = 2, message = "分摊金额格式不正确")
-    private BigDecimal amount;
+    private Money amount;
 
     /**
      * 分摊状态：1-待结算 2-已结算
@@ -61,6 +58,12 @@ public class ExpenseShare extends BaseEntity {
     @Column(name = "settled_at")
     private LocalDateTime settledAt;
 
+    /**
+     * 是否已计入结算账本（仅 Redis 中记录；账本上线前创建的分摊为 false，结算或作废时不冲回）
+     */
+    @Transient
+    private boolean ledgerRecorded;
+
     // 状态常量
     public static final int STATUS_PENDING = 1;    // 待结算
     public static final int STATUS_SETTLED = 2;    // 已结算
@@ -69,7 +72,7 @@ public class ExpenseShare extends BaseEntity {
         super();
     }
 
-    public ExpenseShare(String expenseId, String userId, BigDecimal amount) {
+    public ExpenseShare(String expenseId, String userId, Money amount) {
         super();
         this.expenseId = expenseId;
         this.userId = userId;
@@ -93,11 +96,11 @@ public class ExpenseShare extends BaseEntity {
         this.userId = userId;
     }
 
-    public BigDecimal getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(BigDecimal amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
         updateTimestamp();
     }
@@ -119,6 +122,14 @@ public class ExpenseShare extends BaseEntity {
         this.settledAt = settledAt;
     }
 
+    public boolean isLedgerRecorded() {
+        return ledgerRecorded;
+    }
+
+    public void setLedgerRecorded(boolean ledgerRecorded) {
+        this.ledgerRecorded = ledgerRecorded;
+    }
+
     /**
      * 结算分摊
      */
@@ -0,0 +1,276 @@
+package cn.badminton.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 通知发件箱实体模型
+ * 通知先落库再由投递任务按渠道成批发送，记录重试次数与投递结果
+ *
+ * 作者: xiaolei
+ */
+@Entity
+@Table(name = "notification_outbox",
+       uniqueConstraints = {@UniqueConstraint(name = "uk_dedup_key", columnNames = {"dedup_key"})},
+       indexes = {
+           @Index(name = "idx_status_next_attempt", columnList = "status, next_attempt_at"),
+           @Index(name = "idx_activity_id", columnList = "activity_id"),
+           @Index(name = "idx_user_id", columnList = "user_id")
+       })
+public class NotificationOutbox extends BaseEntity {
+
+    /**
+     * 去重键，同一提醒只生成一条
+     */
+    @Column(name = "dedup_key", length = 120, nullable = false)
+    private String dedupKey;
+
+    /**
+     * 通知类型
+     */
+    @Column(name = "type", length = 30, nullable = false)
+    private String type = "";
+
+    /**
+     * 投递渠道
+     */
+    @Column(name = "channel", length = 20, nullable = false)
+    private String channel = "";
+
+    /**
+     * 关联的活动ID
+     */
+    @Column(name = "activity_id", length = 36, nullable = false)
+    private String activityId = "";
+
+    /**
+     * 接收用户ID
+     */
+    @Column(name = "user_id", length = 36, nullable = false)
+    private String userId = "";
+
+    /**
+     * 渠道内的接收地址（如 openid）
+     */
+    @Column(name = "recipient", length = 64, nullable = false)
+    private String recipient = "";
+
+    /**
+     * 通知内容（JSON）
+     */
+    @Column(name = "payload", columnDefinition = "text")
+    private String payload;
+
+    /**
+     * 投递状态
+     */
+    @Column(name = "status", nullable = false)
+    private Integer status = STATUS_PENDING;
+
+    /**
+     * 已尝试次数
+     */
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+
+    /**
+     * 下次投递时间（投递中时为租约到期时间）
+     */
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    /**
+     * 送达时间
+     */
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    /**
+     * 最近一次失败原因
+     */
+    @Column(name = "last_error", length = 255, nullable = false)
+    private String lastError = "";
+
+    // 状态常量
+    public static final int STATUS_PENDING = 1;   // 待投递
+    public static final int STATUS_SENDING = 2;   // 投递中
+    public static final int STATUS_SENT = 3;      // 已送达
+    public static final int STATUS_FAILED = 4;    // 失败
+    public static final int STATUS_SKIPPED = 5;   // 跳过（如未绑定接收地址）
+
+    public NotificationOutbox() {
+        super();
+        this.nextAttemptAt = LocalDateTime.now();
+    }
+
+    public NotificationOutbox(String dedupKey, String type, String channel, String activityId, String userId) {
+        this();
+        this.dedupKey = dedupKey;
+        this.type = type;
+        this.channel = channel;
+        this.activityId = activityId;
+        this.userId = userId;
+    }
+
+    /**
+     * 认领投递：计一次尝试，租约到期前其他节点不会再取到
+     */
+    public void claim(LocalDateTime leaseUntil) {
+        this.status = STATUS_SENDING;
+        this.attempts = attempts + 1;
+        this.nextAttemptAt = leaseUntil;
+        updateTimestamp();
+    }
+
+    /**
+     * 标记已送达
+     */
+    public void markSent() {
+        this.status = STATUS_SENT;
+        this.sentAt = LocalDateTime.now();
+        this.lastError = "";
+        updateTimestamp();
+    }
+
+    /**
+     * 稍后重试
+     */
+    public void retryAt(LocalDateTime nextAttemptAt, String error) {
+        this.status = STATUS_PENDING;
+        this.nextAttemptAt = nextAttemptAt;
+        this.lastError = truncate(error);
+        updateTimestamp();
+    }
+
+    /**
+     * 未真正发出（如限流），退回待投递且不计入尝试次数
+     */
+    public void release() {
+        this.status = STATUS_PENDING;
+        this.attempts = Math.max(0, attempts - 1);
+        this.nextAttemptAt = LocalDateTime.now();
+        updateTimestamp();
+    }
+
+    /**
+     * 标记失败（不再重试）
+     */
+    public void markFailed(String error) {
+        this.status = STATUS_FAILED;
+        this.lastError = truncate(error);
+        updateTimestamp();
+    }
+
+    /**
+     * 标记跳过
+     */
+    public void markSkipped(String reason) {
+        this.status = STATUS_SKIPPED;
+        this.lastError = truncate(reason);
+        updateTimestamp();
+    }
+
+    private static String truncate(String error) {
+        if (error == null) {
+            return "";
+        }
+        return error.length() > 255 ? error.substring(0, 255) : error;
+    }
+
+    // Getter和Setter方法
+    public String getDedupKey() {
+        return dedupKey;
+    }
+
+    public void setDedupKey(String dedupKey) {
+        this.dedupKey = dedupKey;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+
+    public String getActivityId() {
+        return activityId;
+    }
+
+    public void setActivityId(String activityId) {
+        this.activityId = activityId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getRecipient() {
+        return recipient;
+    }
+
+    public void setRecipient(String recipient) {
+        this.recipient = recipient == null ? "" : recipient;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
+
+    public Integer getStatus() {
+        return status;
+    }
+
+    public void setStatus(Integer status) {
+        this.status = status;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public LocalDateTime getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) {
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
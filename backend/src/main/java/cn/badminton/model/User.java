@@ -1,9 +1,13 @@
 package cn.badminton.model;
 
+import cn.badminton.common.Money;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.GenericGenerator;
-import java.math.BigDecimal;
 
 /**
  * 用户实体模型
@@ -12,6 +16,9 @@ import java.math.BigDecimal;
  * 作者: xiaolei
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
+@NaturalIdCache(region = "user-phone")
 @Table(name = "user",
        uniqueConstraints = {@UniqueConstraint(name = "uk_phone", columnNames = "phone")},
        indexes = {
@@ -24,7 +31,9 @@ public class User extends BaseEntity {
     /**
      * 手机号（登录凭证）
      * 必须是11位中国手机号格式
+     * 作为可变自然键，按手机号查找走二级缓存
      */
+    @NaturalId(mutable = true)
     @Column(name = "phone", length = 11, nullable = false)
     @NotBlank(message = "手机号不能为空")
     @Pattern(regexp = "^1[3-9]\\d{9}$", message = "手机号格式不正确")
@@ -64,20 +73,17 @@ public class User extends BaseEntity {
     private Integer status = 1;
 
     /**
-     * 参与活动总数
+     * 参与活动总数（只由事件消费方写回，实体保存时不更新该列）
      */
-    @Column(name = "total_activities", nullable = false)
+    @Column(name = "total_activities", nullable = false, updatable = false)
     @Min(value = 0, message = "参与活动总数不能为负数")
     private Integer totalActivities = 0;
 
     /**
-     * 总消费金额
-     * 使用BigDecimal确保精度
+     * 总消费金额（以分为单位，库中仍为 DECIMAL(10,2)，见 MoneyConverter；实体保存时不更新该列）
      */
-    @Column(name = "total_expense", nullable = false, precision = 10, scale = 2)
-    @DecimalMin(value = "0.00", message = "总消费金额不能为负数")
-    @Digits(integer = 10, fraction = 2, message = "总消费金额格式不正确")
-    private BigDecimal totalExpense = BigDecimal.ZERO;
+    @Column(name = "total_expense", nullable = false, precision = 10, scale = 2, updatable = false)
+    private Money totalExpense = Money.ZERO;
 
     /**
      * 微信OpenID（用于微信登录）
@@ -163,12 +169,12 @@ public class User extends BaseEntity {
         this.totalActivities = totalActivities;
     }
     
-    public BigDecimal getTotalExpense() {
+    public Money getTotalExpense() {
         return totalExpense;
     }
     
-    public void setTotalExpense(BigDecimal totalExpense) {
-        this.totalExpense = totalExpense;
+    public void setTotalExpense(Money totalExpense) {
+        this.totalExpense = totalExpense == null ? Money.ZERO : totalExpense;
     }
     
     public String getWxOpenId() {
@@ -209,9 +215,9 @@ public class User extends BaseEntity {
      * 增加消费金额
      * @param amount 消费金额
      */
-    public void addExpense(BigDecimal amount) {
-        if (amount != null && amount.compareTo(BigDecimal.ZERO) > 0) {
-            this.totalExpense = this.totalExpense.add(amount);
+    public void addExpense(Money amount) {
+        if (amount != null && amount.isPositive()) {
+            this.totalExpense = this.totalExpense.plus(amount);
             updateTimestamp();
         }
     }
@@ -220,10 +226,10 @@ public class User extends BaseEntity {
      * 减少消费金额
      * @param amount 减少金额
      */
-    public void subtractExpense(BigDecimal amount) {
-        if (amount != null && amount.compareTo(BigDecimal.ZERO) > 0) {
-            BigDecimal newExpense = this.totalExpense.subtract(amount);
-            if (newExpense.compareTo(BigDecimal.ZERO) >= 0) {
+    public void subtractExpense(Money amount) {
+        if (amount != null && amount.isPositive()) {
+            Money newExpense = this.totalExpense.minus(amount);
+            if (!newExpense.isNegative()) {
                 this.totalExpense = newExpense;
                 updateTimestamp();
             }
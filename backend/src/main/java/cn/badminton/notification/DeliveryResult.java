@@ -0,0 +1,38 @@
+package cn.badminton.notification;
+
+/**
+ * 单条通知的投递结果
+ * - SENT：已送达
+ * - RETRY：临时失败（网络、限流、服务繁忙），按退避稍后重试
+ * - REJECTED：永久失败（如用户未订阅），不再重试
+ * 作者: xiaolei
+ */
+public class DeliveryResult {
+
+    public enum Outcome { SENT, RETRY, REJECTED }
+
+    private static final DeliveryResult SENT = new DeliveryResult(Outcome.SENT, "");
+
+    private final Outcome outcome;
+    private final String error;
+
+    private DeliveryResult(Outcome outcome, String error) {
+        this.outcome = outcome;
+        this.error = error;
+    }
+
+    public static DeliveryResult sent() {
+        return SENT;
+    }
+
+    public static DeliveryResult retry(String error) {
+        return new DeliveryResult(Outcome.RETRY, error);
+    }
+
+    public static DeliveryResult rejected(String error) {
+        return new DeliveryResult(Outcome.REJECTED, error);
+    }
+
+    public Outcome getOutcome() { return outcome; }
+    public String getError() { return error; }
+}
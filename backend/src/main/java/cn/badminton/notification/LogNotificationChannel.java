@@ -0,0 +1,44 @@
+package cn.badminton.notification;
+
+import cn.badminton.model.User;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地替身：不真正发送通知，只写日志，供开发与联调使用
+ * 仅在 app.reminder.channel=log（默认）时启用
+ * 作者: xiaolei
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "app.reminder", name = "channel", havingValue = "log", matchIfMissing = true)
+public class LogNotificationChannel implements NotificationChannel {
+
+    public static final String NAME = "log";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public String resolveRecipient(User user) {
+        return user.getId();
+    }
+
+    @Override
+    public List<DeliveryResult> send(List<Notification> batch) {
+        List<DeliveryResult> results = new ArrayList<>(batch.size());
+        for (Notification notification : batch) {
+            log.debug("[Notify] 通知（本地替身未实际发送），用户ID: {}, 类型: {}, 内容: {}",
+                    notification.getUserId(), notification.getType(), notification.getFields());
+            results.add(DeliveryResult.sent());
+        }
+        log.info("[Notify] 本地替身处理通知 {} 条", batch.size());
+        return results;
+    }
+}
@@ -0,0 +1,36 @@
+package cn.badminton.notification;
+
+import java.util.Map;
+
+/**
+ * 一条待投递的通知
+ * fields 为通知内容字段（如 title、venue、startTime），由渠道映射到各自的模板
+ * 作者: xiaolei
+ */
+public class Notification {
+
+    public static final String ACTIVITY_ID = "activityId";
+    public static final String TITLE = "title";
+    public static final String START_TIME = "startTime";
+    public static final String VENUE = "venue";
+
+    private final String id;
+    private final String type;
+    private final String userId;
+    private final String recipient;
+    private final Map<String, String> fields;
+
+    public Notification(String id, String type, String userId, String recipient, Map<String, String> fields) {
+        this.id = id;
+        this.type = type;
+        this.userId = userId;
+        this.recipient = recipient;
+        this.fields = fields;
+    }
+
+    public String getId() { return id; }
+    public String getType() { return type; }
+    public String getUserId() { return userId; }
+    public String getRecipient() { return recipient; }
+    public Map<String, String> getFields() { return fields; }
+}
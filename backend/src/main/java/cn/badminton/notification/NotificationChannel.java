@@ -0,0 +1,29 @@
+package cn.badminton.notification;
+
+import cn.badminton.model.User;
+
+import java.util.List;
+
+/**
+ * 通知投递渠道
+ * 接入新渠道时实现本接口并注册为 Bean；由 app.reminder.channel 选择提醒使用的渠道，本地默认实现为 LogNotificationChannel
+ * 作者: xiaolei
+ */
+public interface NotificationChannel {
+
+    /**
+     * 渠道名，写入发件箱的 channel 列
+     */
+    String name();
+
+    /**
+     * 用户在本渠道的接收地址，无法接收时返回 null（该通知记为跳过）
+     */
+    String resolveRecipient(User user);
+
+    /**
+     * 发送一批通知，返回与入参一一对应的结果
+     * 实现不应抛出异常，单条失败以 DeliveryResult 表示
+     */
+    List<DeliveryResult> send(List<Notification> batch);
+}
@@ -0,0 +1,137 @@
+package cn.badminton.notification;
+
+import cn.badminton.model.User;
+import cn.badminton.service.WechatService;
+import cn.badminton.wechat.WechatApiClient;
+import cn.badminton.wechat.WechatApiException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 小程序订阅消息渠道（/cgi-bin/message/subscribe/send）
+ * - 一批共用一次小程序 access_token（已缓存并在到期前后台刷新）
+ * - 微信不提供批量发送接口，批内逐条调用；连接池、并发上限、熔断由 WechatApiClient 统一控制
+ * - 发送有副作用，只在连接未建立时由客户端重试，其余临时失败交给发件箱按退避重试
+ * - 用户未订阅（43101）等为永久失败；熔断打开时本批剩余通知直接退回重试，不再逐条等待
+ * 仅在 app.reminder.channel=wechat 时启用
+ * 作者: xiaolei
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "app.reminder", name = "channel", havingValue = "wechat")
+public class WechatSubscribeChannel implements NotificationChannel {
+
+    public static final String NAME = "wechat";
+
+    private static final String SEND_PATH = "/cgi-bin/message/subscribe/send";
+
+    /**
+     * 用户拒收 / 未订阅、模板参数不合法等，重试也不会成功
+     */
+    private static final int USER_REFUSED = 43101;
+    private static final int INVALID_PARAMETER = 47003;
+
+    @Autowired
+    private WechatService wechatService;
+
+    @Autowired
+    private WechatApiClient wechatApiClient;
+
+    @Value("${app.reminder.wechat.template-id:}")
+    private String templateId;
+
+    @Value("${app.reminder.wechat.page:pages/activity/detail}")
+    private String page;
+
+    @Value("${app.reminder.wechat.miniprogram-state:formal}")
+    private String miniprogramState;
+
+    /**
+     * 通知字段对应的模板关键词，需与订阅消息模板一致
+     */
+    @Value("${app.reminder.wechat.title-key:thing1}")
+    private String titleKey;
+
+    @Value("${app.reminder.wechat.start-time-key:time2}")
+    private String startTimeKey;
+
+    @Value("${app.reminder.wechat.venue-key:thing3}")
+    private String venueKey;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public String resolveRecipient(User user) {
+        return user.isWechatBound() ? user.getWxOpenId() : null;
+    }
+
+    @Override
+    public List<DeliveryResult> send(List<Notification> batch) {
+        List<DeliveryResult> results = new ArrayList<>(batch.size());
+        String accessToken;
+        try {
+            accessToken = wechatService.getMiniProgramAccessToken();
+        } catch (RuntimeException e) {
+            log.warn("获取小程序 access_token 失败，本批 {} 条通知稍后重试: {}", batch.size(), e.getMessage());
+            batch.forEach(notification -> results.add(DeliveryResult.retry("获取 access_token 失败")));
+            return results;
+        }
+
+        boolean unavailable = false;
+        for (Notification notification : batch) {
+            if (unavailable) {
+                results.add(DeliveryResult.retry("微信服务暂不可用"));
+                continue;
+            }
+            try {
+                wechatApiClient.post("subscribe.send", SEND_PATH, Map.of("access_token", accessToken),
+                        body(notification), false);
+                results.add(DeliveryResult.sent());
+            } catch (WechatApiException e) {
+                results.add(e.getErrcode() == USER_REFUSED || e.getErrcode() == INVALID_PARAMETER
+                        ? DeliveryResult.rejected(e.getMessage())
+                        : DeliveryResult.retry(e.getMessage()));
+            } catch (RejectedExecutionException e) {
+                unavailable = true;
+                results.add(DeliveryResult.retry(e.getMessage()));
+            } catch (RuntimeException e) {
+                results.add(DeliveryResult.retry(e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private Map<String, Object> body(Notification notification) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        putField(data, titleKey, notification.getFields().get(Notification.TITLE));
+        putField(data, startTimeKey, notification.getFields().get(Notification.START_TIME));
+        putField(data, venueKey, notification.getFields().get(Notification.VENUE));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("touser", notification.getRecipient());
+        body.put("template_id", templateId);
+        String activityId = notification.getFields().get(Notification.ACTIVITY_ID);
+        body.put("page", activityId == null ? page : page + "?id=" + activityId);
+        body.put("miniprogram_state", miniprogramState);
+        body.put("lang", "zh_CN");
+        body.put("data", data);
+        return body;
+    }
+
+    private static void putField(Map<String, Object> data, String key, String value) {
+        if (value != null) {
+            data.put(key, Map.of("value", value));
+        }
+    }
+}
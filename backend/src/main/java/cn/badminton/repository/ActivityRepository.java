@@ -1,13 +1,25 @@
 package cn.badminton.repository;
 
+import cn.badminton.common.Money;
 import cn.badminton.config.RedisConfig;
+import cn.badminton.event.DomainEvent;
+import cn.badminton.event.DomainEventStream;
 import cn.badminton.model.BookingActivity;
+import cn.badminton.model.Participation;
+import cn.badminton.repository.jpa.ActivityJpaRepository;
+import cn.badminton.repository.jpa.ParticipationJpaRepository;
+import cn.badminton.util.IdGenerator;
+import cn.badminton.util.MoneyCodec;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -22,9 +34,36 @@ import java.util.stream.Collectors;
 @Repository
 public class ActivityRepository {
 
+    /**
+     * 状态比较并设置：仍为预期状态时才改写，并把活动ID从旧状态索引移到新状态索引
+     * 参数与 Hash 中的值经同一个值序列化器，直接按原样比较
+     * 返回 1 已改写，2 已是目标状态（重试时据此补写数据库），0 不处于预期状态
+     */
+    private static final RedisScript<Long> STATUS_CAS_SCRIPT = new DefaultRedisScript<>(
+            "local status = redis.call('HGET', KEYS[1], 'status')\n"
+                    + "if status == ARGV[2] then return 2 end\n"
+                    + "if status ~= ARGV[1] then return 0 end\n"
+                    + "redis.call('HSET', KEYS[1], 'status', ARGV[2], 'updatedAt', ARGV[3])\n"
+                    + "redis.call('SREM', KEYS[2], ARGV[4])\n"
+                    + "redis.call('SADD', KEYS[3], ARGV[4])\n"
+                    + "return 1",
+            Long.class);
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
+    /**
+     * 参与者集合的 ready 标记：标记缺失（名单维护上线前的活动、或集合已过期）时由 participation 表与发起人回填
+     * 放在 badminton:index: 下，避免落入 badminton:activity:* 的活动键扫描
+     */
+    private static final String PARTICIPANTS_READY_PREFIX = "badminton:index:participants_ready:";
+
+    @Autowired
+    private ActivityJpaRepository activityJpaRepository;
+
+    @Autowired
+    private ParticipationJpaRepository participationJpaRepository;
+
     private HashOperations<String, String, Object> hashOps;
 
     @Autowired
@@ -37,24 +76,58 @@ public class ActivityRepository {
      * 保存活动
      */
     public BookingActivity save(BookingActivity activity) {
+        return save(activity, List.of());
+    }
+
+    /**
+     * 保存活动并追加领域事件：活动 Hash、索引与事件在同一个 MULTI/EXEC 中提交，一次管道往返
+     */
+    public BookingActivity save(BookingActivity activity, List<? extends DomainEvent> events) {
         if (activity.getId() == null || activity.getId().isEmpty()) {
-            activity.setId(UUID.randomUUID().toString());
+            activity.setId(IdGenerator.nextId());
         }
         activity.updateTimestamp();
 
+        // 旧状态需在事务外读取（MULTI 内的读命令只排队不返回）
+        Object previousStatus = hashOps.get(RedisConfig.RedisKeys.activityKey(activity.getId()), "status");
+        if (events.isEmpty()) {
+            write(redisTemplate, activity, previousStatus);
+            return activity;
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.multi();
+                write(ops, activity, previousStatus);
+                DomainEventStream.append(ops, events);
+                ops.exec();
+                return null;
+            }
+        });
+        return activity;
+    }
+
+    private void write(RedisOperations<String, Object> ops, BookingActivity activity, Object previousStatus) {
         String key = RedisConfig.RedisKeys.activityKey(activity.getId());
+
+        // 状态有变化时先移出旧状态索引，避免活动同时留在两个状态索引中
+        if (previousStatus != null && activity.getStatus() != null
+                && !previousStatus.toString().equals(activity.getStatus().toString())) {
+            ops.opsForSet().remove(statusIndexKey(previousStatus), activity.getId());
+        }
         
         // 保存活动数据到Hash
         Map<String, Object> activityMap = convertActivityToMap(activity);
-        redisTemplate.opsForHash().putAll(key, activityMap);
+        ops.opsForHash().putAll(key, activityMap);
         
-        // 设置过期时间
-        redisTemplate.expire(key, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+        // 设置过期时间：至少保留到活动结束之后，到期的状态流转任务才读得到
+        ops.expire(key, cacheTtlSeconds(activity), TimeUnit.SECONDS);
 
         // 创建索引
-        createActivityIndexes(activity);
-
-        return activity;
+        createActivityIndexes(ops, activity);
     }
 
     /**
@@ -75,6 +148,74 @@ public class ActivityRepository {
         return convertMapToActivity(activityMap);
     }
 
+    /**
+     * 按ID查找活动，缓存缺失时回源数据库并回填缓存（供延时任务使用，任务到期时缓存可能已过期）
+     */
+    public BookingActivity findByIdOrLoad(String id) {
+        BookingActivity activity = findById(id);
+        if (activity != null || id == null || id.trim().isEmpty()) {
+            return activity;
+        }
+        activity = activityJpaRepository.findById(id).orElse(null);
+        if (activity != null) {
+            write(redisTemplate, activity, null);
+        }
+        return activity;
+    }
+
+    /**
+     * 批量查找活动：一次管道 HGETALL，缓存中已过期的再一次 IN 查询数据库
+     * 返回按入参顺序排列的 活动ID -> 活动，两边都没有的活动不在结果中
+     */
+    public Map<String, BookingActivity> findByIds(Collection<String> ids) {
+        Map<String, BookingActivity> result = new LinkedHashMap<>();
+        if (ids == null || ids.isEmpty()) {
+            return result;
+        }
+        List<String> distinct = ids.stream()
+                .filter(id -> id != null && !id.trim().isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+        if (distinct.isEmpty()) {
+            return result;
+        }
+
+        List<Object> hashes = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String id : distinct) {
+                    ops.opsForHash().entries(RedisConfig.RedisKeys.activityKey(id));
+                }
+                return null;
+            }
+        });
+        Map<String, BookingActivity> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (int i = 0; i < distinct.size(); i++) {
+            Object hash = i < hashes.size() ? hashes.get(i) : null;
+            if (hash instanceof Map && !((Map<?, ?>) hash).isEmpty()) {
+                @SuppressWarnings("unchecked")
+                Map<Object, Object> map = (Map<Object, Object>) hash;
+                found.put(distinct.get(i), convertMapToActivity(map));
+            } else {
+                misses.add(distinct.get(i));
+            }
+        }
+        if (!misses.isEmpty()) {
+            activityJpaRepository.findAllById(misses).forEach(activity -> found.put(activity.getId(), activity));
+        }
+
+        for (String id : distinct) {
+            BookingActivity activity = found.get(id);
+            if (activity != null) {
+                result.put(id, activity);
+            }
+        }
+        return result;
+    }
+
     /**
      * 根据发起人查找活动
      */
@@ -191,6 +332,7 @@ public class ActivityRepository {
         
         redisTemplate.delete(activityKey);
         redisTemplate.delete(participantsKey);
+        redisTemplate.delete(PARTICIPANTS_READY_PREFIX + id);
     }
 
     /**
@@ -228,6 +370,37 @@ public class ActivityRepository {
         }
     }
 
+    /**
+     * 活动仍处于 expected 状态时改为 target（一次 Lua，含状态索引），返回是否改写
+     * 供自动状态流转使用，与手动操作并发时只有一方生效
+     */
+    public boolean compareAndSetStatus(String id, int expected, int target) {
+        if (id == null || id.trim().isEmpty()) {
+            return false;
+        }
+        Long changed = redisTemplate.execute(STATUS_CAS_SCRIPT,
+                List.of(RedisConfig.RedisKeys.activityKey(id), statusIndexKey(expected), statusIndexKey(target)),
+                String.valueOf(expected), String.valueOf(target), LocalDateTime.now().toString(), id);
+        if (changed == null || changed == 0L) {
+            return false;
+        }
+        // 缓存已是目标状态时同样补写，上次写库失败的任务重试时得以补齐
+        persistStatus(id, target);
+        return changed == 1L;
+    }
+
+    /**
+     * 状态写回数据库（已落库的活动）；按实体保存，只失效二级缓存中的这一条
+     */
+    private void persistStatus(String id, int target) {
+        activityJpaRepository.findById(id).ifPresent(row -> {
+            if (row.getStatus() == null || row.getStatus() != target) {
+                row.setStatus(target);
+                activityJpaRepository.save(row);
+            }
+        });
+    }
+
     /**
      * 更新参与人数
      */
@@ -245,27 +418,89 @@ public class ActivityRepository {
 
     /**
      * 添加活动参与者
+     * 返回是否新加入：SADD 本身就是去重判断，已在名单中时返回 false
+     * 集合与 ready 标记一起续期，二者同时过期，过期后整体回填
      */
-    public void addParticipant(String activityId, String userId) {
+    public boolean addParticipant(String activityId, String userId) {
         if (activityId == null || userId == null) {
-            return;
+            return false;
         }
 
+        ensureParticipants(activityId);
         String key = RedisConfig.RedisKeys.activityParticipantsKey(activityId);
-        redisTemplate.opsForSet().add(key, userId);
+        Long added = redisTemplate.opsForSet().add(key, userId);
         redisTemplate.expire(key, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+        redisTemplate.expire(PARTICIPANTS_READY_PREFIX + activityId, RedisConfig.RedisTTL.ACTIVITY_CACHE,
+                TimeUnit.SECONDS);
+        return added != null && added > 0;
     }
 
     /**
-     * 移除活动参与者
+     * 移除活动参与者，返回是否确实在名单中
      */
-    public void removeParticipant(String activityId, String userId) {
+    public boolean removeParticipant(String activityId, String userId) {
         if (activityId == null || userId == null) {
+            return false;
+        }
+
+        ensureParticipants(activityId);
+        String key = RedisConfig.RedisKeys.activityParticipantsKey(activityId);
+        Long removed = redisTemplate.opsForSet().remove(key, userId);
+        return removed != null && removed > 0;
+    }
+
+    /**
+     * 新建活动的名单：只有发起人，直接标记为就绪，无需回填
+     */
+    public void initParticipants(String activityId, String organizerId) {
+        String key = RedisConfig.RedisKeys.activityParticipantsKey(activityId);
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.opsForSet().add(key, organizerId);
+                ops.expire(key, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+                ops.opsForValue().set(PARTICIPANTS_READY_PREFIX + activityId, "1",
+                        RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 参与者集合未就绪时回填：participation 表中已确认的参与者加上发起人，与集合中已有成员合并
+     * 参与记录异步落库，回填时尚未落库的变更以集合中已有的成员为准
+     */
+    public void ensureParticipants(String activityId) {
+        String readyKey = PARTICIPANTS_READY_PREFIX + activityId;
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(readyKey))) {
             return;
         }
+        Set<String> members = participationJpaRepository.findByActivityIdAndDeletedAtIsNull(activityId).stream()
+                .filter(Participation::isConfirmed)
+                .map(Participation::getUserId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Object organizer = hashOps.get(RedisConfig.RedisKeys.activityKey(activityId), "organizer");
+        if (organizer != null) {
+            members.add(organizer.toString());
+        }
 
         String key = RedisConfig.RedisKeys.activityParticipantsKey(activityId);
-        redisTemplate.opsForSet().remove(key, userId);
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                if (!members.isEmpty()) {
+                    ops.opsForSet().add(key, members.toArray());
+                    ops.expire(key, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+                }
+                ops.opsForValue().set(readyKey, "1", RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+                return null;
+            }
+        });
     }
 
     /**
@@ -276,6 +511,7 @@ public class ActivityRepository {
             return Collections.emptySet();
         }
 
+        ensureParticipants(activityId);
         String key = RedisConfig.RedisKeys.activityParticipantsKey(activityId);
         Set<Object> participants = redisTemplate.opsForSet().members(key);
         
@@ -288,21 +524,89 @@ public class ActivityRepository {
                 .collect(Collectors.toSet());
     }
 
+    /**
+     * 批量获取多个活动的参与者名单：一次管道 SMEMBERS，返回 活动ID -> 用户ID集合（按入参顺序）
+     */
+    public Map<String, Set<String>> getParticipantsBatch(Collection<String> activityIds) {
+        Map<String, Set<String>> rosters = new LinkedHashMap<>();
+        if (activityIds == null || activityIds.isEmpty()) {
+            return rosters;
+        }
+        List<String> ids = activityIds.stream()
+                .filter(id -> id != null && !id.trim().isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return rosters;
+        }
+        List<Object> ready = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ids.forEach(id -> ops.hasKey(PARTICIPANTS_READY_PREFIX + id));
+                return null;
+            }
+        });
+        for (int i = 0; i < ids.size(); i++) {
+            if (i >= ready.size() || !Boolean.TRUE.equals(ready.get(i))) {
+                ensureParticipants(ids.get(i));
+            }
+        }
+
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String id : ids) {
+                    ops.opsForSet().members(RedisConfig.RedisKeys.activityParticipantsKey(id));
+                }
+                return null;
+            }
+        });
+        for (int i = 0; i < ids.size(); i++) {
+            Set<String> members = new LinkedHashSet<>();
+            Object result = i < results.size() ? results.get(i) : null;
+            if (result instanceof Collection) {
+                ((Collection<?>) result).forEach(member -> members.add(member.toString()));
+            }
+            rosters.put(ids.get(i), members);
+        }
+        return rosters;
+    }
+
     /**
      * 创建活动索引
      */
-    private void createActivityIndexes(BookingActivity activity) {
+    private void createActivityIndexes(RedisOperations<String, Object> ops, BookingActivity activity) {
         if (activity.getOrganizer() != null && !activity.getOrganizer().trim().isEmpty()) {
             String organizerIndexKey = "badminton:index:organizer:" + activity.getOrganizer();
-            redisTemplate.opsForSet().add(organizerIndexKey, activity.getId());
-            redisTemplate.expire(organizerIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+            ops.opsForSet().add(organizerIndexKey, activity.getId());
+            ops.expire(organizerIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
         }
         
         if (activity.getStatus() != null) {
             String statusIndexKey = "badminton:index:status:" + activity.getStatus();
-            redisTemplate.opsForSet().add(statusIndexKey, activity.getId());
-            redisTemplate.expire(statusIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+            ops.opsForSet().add(statusIndexKey, activity.getId());
+            ops.expire(statusIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 活动 Hash 的过期时间：一个缓存周期，且不早于活动结束之后一个缓存周期
+     */
+    private static long cacheTtlSeconds(BookingActivity activity) {
+        long ttl = RedisConfig.RedisTTL.ACTIVITY_CACHE;
+        if (activity.getEndTime() != null) {
+            long untilEnd = Duration.between(LocalDateTime.now(), activity.getEndTime()).getSeconds();
+            ttl = Math.max(ttl, untilEnd + RedisConfig.RedisTTL.ACTIVITY_CACHE);
         }
+        return ttl;
+    }
+
+    private static String statusIndexKey(Object status) {
+        return "badminton:index:status:" + status;
     }
 
     /**
@@ -334,7 +638,7 @@ public class ActivityRepository {
         map.put("endTime", activity.getEndTime().toString());
         map.put("maxPlayers", activity.getMaxPlayers().toString());
         map.put("currentPlayers", activity.getCurrentPlayers().toString());
-        map.put("fee", activity.getFee().toString());
+        MoneyCodec.write(map, "fee", activity.getFee());
         map.put("description", activity.getDescription() != null ? activity.getDescription() : "");
         map.put("status", activity.getStatus().toString());
         map.put("tenant", activity.getTenant());
@@ -382,10 +686,7 @@ public class ActivityRepository {
             activity.setCurrentPlayers(Integer.valueOf((String) currentPlayers));
         }
         
-        Object feeStr = map.get("fee");
-        if (feeStr != null) {
-            activity.setFee(new BigDecimal(feeStr.toString()));
-        }
+        activity.setFee(MoneyCodec.read(map, "fee", Money.ZERO));
         
         activity.setDescription((String) map.get("description"));
         
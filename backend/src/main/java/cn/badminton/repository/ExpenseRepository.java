@@ -1,14 +1,24 @@
 package cn.badminton.repository;
 
+import cn.badminton.common.Money;
 import cn.badminton.config.RedisConfig;
+import cn.badminton.event.DomainEvent;
+import cn.badminton.event.DomainEventStream;
 import cn.badminton.model.ExpenseRecord;
 import cn.badminton.model.ExpenseShare;
+import cn.badminton.util.IdGenerator;
+import cn.badminton.util.MoneyCodec;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
@@ -23,8 +33,49 @@ import java.util.stream.Collectors;
  * 作者: xiaolei
  */
 @Repository
+@Slf4j
 public class ExpenseRepository {
 
+    /**
+     * 付款人的费用索引、用户待结算分摊索引（批量结算按付款人、按欠款人圈定范围时使用）
+     * 只有对应的 ready 标记存在时索引才是完整的；标记缺失（索引上线前的数据、或已过期）时由既有索引重建
+     */
+    private static final String PAYER_EXPENSE_INDEX = "badminton:index:payer_expense:";
+    private static final String USER_PENDING_SHARE_INDEX = "badminton:index:user_pending_share:";
+    private static final String PAYER_EXPENSE_READY = "badminton:index:payer_expense_ready:";
+    private static final String USER_PENDING_SHARE_READY = "badminton:index:user_pending_share_ready:";
+
+    /**
+     * 条件结算：KEYS 为 n 个分摊键、n 个待结算索引键与事件流键；
+     * ARGV 依次为 n、待结算状态、已结算状态、更新时间，每个分摊的结算时间与ID，随后为事件参数
+     * （见 DomainEventStream.appendScriptArgs）。有分摊不是待结算时不写入，返回这些分摊的下标（从 1 开始）
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SETTLE_SCRIPT = new DefaultRedisScript<>(
+            "local n = tonumber(ARGV[1])\n"
+                    + "local conflicts = {}\n"
+                    + "for i = 1, n do\n"
+                    + "  local s = redis.call('HGET', KEYS[i], 'status')\n"
+                    + "  if s ~= ARGV[2] and s ~= '1' then conflicts[#conflicts + 1] = i end\n"
+                    + "end\n"
+                    + "if #conflicts > 0 then return conflicts end\n"
+                    + "local p = 5\n"
+                    + "for i = 1, n do\n"
+                    + "  redis.call('HSET', KEYS[i], 'status', ARGV[3], 'settledAt', ARGV[p], 'updatedAt', ARGV[4])\n"
+                    + "  redis.call('SREM', KEYS[n + i], ARGV[p + 1])\n"
+                    + "  p = p + 2\n"
+                    + "end\n"
+                    + "local events = tonumber(ARGV[p])\n"
+                    + "p = p + 1\n"
+                    + "for e = 1, events do\n"
+                    + "  local k = tonumber(ARGV[p])\n"
+                    + "  local last = p + k * 2\n"
+                    + "  redis.call('XADD', KEYS[2 * n + 1], '*', unpack(ARGV, p + 1, last))\n"
+                    + "  p = p + 1 + k * 2\n"
+                    + "end\n"
+                    + "return conflicts",
+            List.class);
+
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
 
@@ -43,7 +94,7 @@ public class ExpenseRepository {
      */
     public ExpenseRecord saveExpense(ExpenseRecord expense) {
         if (expense.getId() == null || expense.getId().isEmpty()) {
-            expense.setId(UUID.randomUUID().toString());
+            expense.setId(IdGenerator.nextId());
         }
         expense.updateTimestamp();
 
@@ -138,24 +189,99 @@ public class ExpenseRepository {
      * 保存费用分摊
      */
     public ExpenseShare saveShare(ExpenseShare share) {
+        return saveShare(share, List.of());
+    }
+
+    /**
+     * 保存分摊并追加领域事件：分摊 Hash、索引与事件在同一个 MULTI/EXEC 中提交，一次管道往返
+     */
+    public ExpenseShare saveShare(ExpenseShare share, List<? extends DomainEvent> events) {
         if (share.getId() == null || share.getId().isEmpty()) {
-            share.setId(UUID.randomUUID().toString());
+            share.setId(IdGenerator.nextId());
         }
         share.updateTimestamp();
 
+        if (events.isEmpty()) {
+            writeShare(redisTemplate, share);
+            return share;
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.multi();
+                writeShare(ops, share);
+                DomainEventStream.append(ops, events);
+                ops.exec();
+                return null;
+            }
+        });
+        return share;
+    }
+
+    private void writeShare(RedisOperations<String, Object> ops, ExpenseShare share) {
         String key = RedisConfig.RedisKeys.shareKey(share.getId());
         
         // 保存分摊数据到Hash
         Map<String, Object> shareMap = convertShareToMap(share);
-        redisTemplate.opsForHash().putAll(key, shareMap);
+        ops.opsForHash().putAll(key, shareMap);
         
         // 设置过期时间
-        redisTemplate.expire(key, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+        ops.expire(key, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
 
         // 创建索引
-        createShareIndexes(share);
+        createShareIndexes(ops, share);
+    }
 
-        return share;
+    /**
+     * 批量保存费用分摊：分摊 Hash 与两类索引在一次管道中写入
+     * 每个索引集合只续期一次，N 条分摊约 2N + 索引数 条命令、一次往返
+     */
+    public List<ExpenseShare> saveShares(List<ExpenseShare> shares) {
+        if (shares == null || shares.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<String, Map<String, Object>> shareMaps = new LinkedHashMap<>();
+        Map<String, List<Object>> indexMembers = new LinkedHashMap<>();
+        for (ExpenseShare share : shares) {
+            if (share.getId() == null || share.getId().isEmpty()) {
+                share.setId(IdGenerator.nextId());
+            }
+            share.updateTimestamp();
+            shareMaps.put(RedisConfig.RedisKeys.shareKey(share.getId()), convertShareToMap(share));
+            if (share.getExpenseId() != null && !share.getExpenseId().trim().isEmpty()) {
+                indexMembers.computeIfAbsent("badminton:index:expense_share:" + share.getExpenseId(),
+                        k -> new ArrayList<>()).add(share.getId());
+            }
+            if (share.getUserId() != null && !share.getUserId().trim().isEmpty()) {
+                indexMembers.computeIfAbsent("badminton:index:user_share:" + share.getUserId(),
+                        k -> new ArrayList<>()).add(share.getId());
+                if (share.isPending()) {
+                    indexMembers.computeIfAbsent(USER_PENDING_SHARE_INDEX + share.getUserId(),
+                            k -> new ArrayList<>()).add(share.getId());
+                }
+            }
+        }
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                shareMaps.forEach((key, map) -> {
+                    ops.opsForHash().putAll(key, map);
+                    ops.expire(key, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+                });
+                indexMembers.forEach((key, members) -> {
+                    ops.opsForSet().add(key, members.toArray());
+                    ops.expire(key, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+                });
+                return null;
+            }
+        });
+        return shares;
     }
 
     /**
@@ -185,19 +311,7 @@ public class ExpenseRepository {
         }
 
         String expenseShareIndexKey = "badminton:index:expense_share:" + expenseId;
-        Set<Object> shareIds = redisTemplate.opsForSet().members(expenseShareIndexKey);
-        List<ExpenseShare> shares = new ArrayList<>();
-        
-        if (shareIds != null) {
-            for (Object shareId : shareIds) {
-                ExpenseShare share = findShareById((String) shareId);
-                if (share != null) {
-                    shares.add(share);
-                }
-            }
-        }
-        
-        return shares;
+        return findSharesByIds(toStringSet(redisTemplate.opsForSet().members(expenseShareIndexKey)));
     }
 
     /**
@@ -209,19 +323,7 @@ public class ExpenseRepository {
         }
 
         String userShareIndexKey = "badminton:index:user_share:" + userId;
-        Set<Object> shareIds = redisTemplate.opsForSet().members(userShareIndexKey);
-        List<ExpenseShare> shares = new ArrayList<>();
-        
-        if (shareIds != null) {
-            for (Object shareId : shareIds) {
-                ExpenseShare share = findShareById((String) shareId);
-                if (share != null) {
-                    shares.add(share);
-                }
-            }
-        }
-        
-        return shares;
+        return findSharesByIds(toStringSet(redisTemplate.opsForSet().members(userShareIndexKey)));
     }
 
     /**
@@ -258,22 +360,255 @@ public class ExpenseRepository {
             if (status == ExpenseShare.STATUS_SETTLED) {
                 hashOps.put(key, "settledAt", LocalDateTime.now().toString());
             }
+
+            Object userId = hashOps.get(key, "userId");
+            if (userId != null) {
+                String pendingIndexKey = USER_PENDING_SHARE_INDEX + userId;
+                if (status == ExpenseShare.STATUS_PENDING) {
+                    redisTemplate.opsForSet().add(pendingIndexKey, id);
+                } else {
+                    redisTemplate.opsForSet().remove(pendingIndexKey, id);
+                }
+            }
+        }
+    }
+
+    /**
+     * 批量读取分摊：一次管道 HGETALL，按入参顺序返回，不存在的ID跳过
+     */
+    public List<ExpenseShare> findSharesByIds(Collection<String> ids) {
+        List<String> keys = distinctIds(ids).stream()
+                .map(RedisConfig.RedisKeys::shareKey)
+                .collect(Collectors.toList());
+        List<ExpenseShare> shares = new ArrayList<>();
+        for (Map<Object, Object> map : pipelinedEntries(keys)) {
+            shares.add(convertMapToShare(map));
+        }
+        return shares;
+    }
+
+    /**
+     * 批量读取费用记录：一次管道 HGETALL，返回 费用ID -> 费用记录
+     */
+    public Map<String, ExpenseRecord> findExpensesByIds(Collection<String> ids) {
+        List<String> keys = distinctIds(ids).stream()
+                .map(RedisConfig.RedisKeys::expenseKey)
+                .collect(Collectors.toList());
+        Map<String, ExpenseRecord> expenses = new LinkedHashMap<>();
+        for (Map<Object, Object> map : pipelinedEntries(keys)) {
+            ExpenseRecord expense = convertMapToExpense(map);
+            expenses.put(expense.getId(), expense);
+        }
+        return expenses;
+    }
+
+    /**
+     * 用户名下待结算的分摊ID
+     * 索引未就绪时由 user_share 索引读出全部分摊、筛出待结算的并回填；结果只是候选，调用方仍需校验状态
+     */
+    public Set<String> findPendingShareIdsByUserId(String userId) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return new LinkedHashSet<>();
+        }
+        String indexKey = USER_PENDING_SHARE_INDEX + userId;
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(USER_PENDING_SHARE_READY + userId))) {
+            return toStringSet(redisTemplate.opsForSet().members(indexKey));
+        }
+        Set<String> ids = findSharesByUserId(userId).stream()
+                .filter(ExpenseShare::isPending)
+                .map(ExpenseShare::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        backfillIndex(indexKey, USER_PENDING_SHARE_READY + userId, ids);
+        log.info("待结算分摊索引已回填，用户ID: {}, 分摊数: {}", userId, ids.size());
+        return ids;
+    }
+
+    /**
+     * 活动下的费用ID
+     */
+    public Set<String> findExpenseIdsByActivityId(String activityId) {
+        if (activityId == null || activityId.trim().isEmpty()) {
+            return new LinkedHashSet<>();
+        }
+        return toStringSet(redisTemplate.opsForSet().members("badminton:index:activity_expense:" + activityId));
+    }
+
+    /**
+     * 付款人垫付的费用ID
+     * 索引未就绪时以自己发起的活动下的费用（organizer、activity_expense 索引）与自己有分摊的费用（user_share 索引）
+     * 为候选，按付款人筛选后回填；既未发起活动、也不在分摊名单中的垫付无法由既有索引找回
+     */
+    public Set<String> findExpenseIdsByPayerId(String payerId) {
+        if (payerId == null || payerId.trim().isEmpty()) {
+            return new LinkedHashSet<>();
+        }
+        String indexKey = PAYER_EXPENSE_INDEX + payerId;
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(PAYER_EXPENSE_READY + payerId))) {
+            return toStringSet(redisTemplate.opsForSet().members(indexKey));
+        }
+        Set<String> candidates = pipelinedMembers(
+                toStringSet(redisTemplate.opsForSet().members("badminton:index:organizer:" + payerId)).stream()
+                        .map(activityId -> "badminton:index:activity_expense:" + activityId)
+                        .collect(Collectors.toList()));
+        findSharesByUserId(payerId).forEach(share -> candidates.add(share.getExpenseId()));
+        Set<String> ids = findExpensesByIds(candidates).values().stream()
+                .filter(expense -> payerId.equals(expense.getPayerId()))
+                .map(ExpenseRecord::getId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        backfillIndex(indexKey, PAYER_EXPENSE_READY + payerId, ids);
+        log.info("付款人费用索引已回填，付款人ID: {}, 费用数: {}", payerId, ids.size());
+        return ids;
+    }
+
+    /**
+     * 多笔费用下的全部分摊ID：一次管道 SMEMBERS
+     */
+    public Set<String> findShareIdsByExpenseIds(Collection<String> expenseIds) {
+        return pipelinedMembers(distinctIds(expenseIds).stream()
+                .map(expenseId -> "badminton:index:expense_share:" + expenseId)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * 结算分摊：一次脚本内确认全部分摊仍为待结算，再改写 status/settledAt/updatedAt、移出待结算索引并追加领域事件
+     * 任一分摊已被结算（或已删除）时不做任何写入，避免并发结算重复冲回账本
+     *
+     * @return 已不是待结算状态的分摊ID，为空表示全部结算成功
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> settleShares(List<ExpenseShare> shares, List<? extends DomainEvent> events) {
+        if (shares == null || shares.isEmpty()) {
+            return new ArrayList<>();
         }
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getHashValueSerializer();
+        List<String> keys = new ArrayList<>(shares.size() * 2 + 1);
+        shares.forEach(share -> keys.add(RedisConfig.RedisKeys.shareKey(share.getId())));
+        shares.forEach(share -> keys.add(USER_PENDING_SHARE_INDEX + share.getUserId()));
+        keys.add(DomainEventStream.KEY);
+
+        List<byte[]> args = new ArrayList<>();
+        args.add(DomainEventStream.plain(shares.size()));
+        args.add(valueSerializer.serialize(String.valueOf(ExpenseShare.STATUS_PENDING)));
+        args.add(valueSerializer.serialize(String.valueOf(ExpenseShare.STATUS_SETTLED)));
+        args.add(valueSerializer.serialize(LocalDateTime.now().toString()));
+        for (ExpenseShare share : shares) {
+            LocalDateTime settledAt = share.getSettledAt() != null ? share.getSettledAt() : LocalDateTime.now();
+            args.add(valueSerializer.serialize(settledAt.toString()));
+            args.add(valueSerializer.serialize(share.getId()));
+        }
+        DomainEventStream.appendScriptArgs(args, redisTemplate, events);
+
+        List<Object> conflicts = redisTemplate.execute(SETTLE_SCRIPT, RedisSerializer.byteArray(),
+                (RedisSerializer<List>) (RedisSerializer<?>) RedisSerializer.string(), keys, args.toArray());
+        List<String> conflictIds = new ArrayList<>();
+        if (conflicts != null) {
+            conflicts.forEach(index -> conflictIds.add(shares.get(((Number) index).intValue() - 1).getId()));
+        }
+        return conflictIds;
     }
 
     /**
      * 统计用户总费用
      */
-    public BigDecimal calculateUserTotalExpense(String userId) {
+    public Money calculateUserTotalExpense(String userId) {
         if (userId == null || userId.trim().isEmpty()) {
-            return BigDecimal.ZERO;
+            return Money.ZERO;
         }
 
         List<ExpenseShare> shares = findSharesByUserId(userId);
         return shares.stream()
                 .filter(share -> share.getStatus() == ExpenseShare.STATUS_SETTLED)
                 .map(ExpenseShare::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+                .reduce(Money.ZERO, Money::plus);
+    }
+
+    /**
+     * 一次管道读取多个 Hash，跳过不存在的键
+     */
+    @SuppressWarnings("unchecked")
+    private List<Map<Object, Object>> pipelinedEntries(List<String> keys) {
+        List<Map<Object, Object>> maps = new ArrayList<>();
+        if (keys.isEmpty()) {
+            return maps;
+        }
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String key : keys) {
+                    ops.opsForHash().entries(key);
+                }
+                return null;
+            }
+        });
+        for (Object result : results) {
+            if (result instanceof Map && !((Map<?, ?>) result).isEmpty()) {
+                maps.add((Map<Object, Object>) result);
+            }
+        }
+        return maps;
+    }
+
+    private static List<String> distinctIds(Collection<String> ids) {
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        return ids.stream()
+                .filter(id -> id != null && !id.trim().isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 一次管道读取多个集合，合并成员
+     */
+    private Set<String> pipelinedMembers(List<String> keys) {
+        Set<String> members = new LinkedHashSet<>();
+        if (keys.isEmpty()) {
+            return members;
+        }
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                keys.forEach(key -> ops.opsForSet().members(key));
+                return null;
+            }
+        });
+        for (Object result : results) {
+            if (result instanceof Collection) {
+                members.addAll(toStringSet((Collection<?>) result));
+            }
+        }
+        return members;
+    }
+
+    /**
+     * 回填索引并写 ready 标记，二者同样按 ACTIVITY_CACHE 过期；写入期间并发结算留下的多余成员由调用方按状态过滤
+     */
+    private void backfillIndex(String indexKey, String readyKey, Set<String> ids) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                if (!ids.isEmpty()) {
+                    ops.opsForSet().add(indexKey, ids.toArray());
+                    ops.expire(indexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+                }
+                ops.opsForValue().set(readyKey, "1", RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+                return null;
+            }
+        });
+    }
+
+    private static Set<String> toStringSet(Collection<?> members) {
+        Set<String> result = new LinkedHashSet<>();
+        if (members != null) {
+            members.forEach(member -> result.add(member.toString()));
+        }
+        return result;
     }
 
     /**
@@ -285,6 +620,12 @@ public class ExpenseRepository {
             redisTemplate.opsForSet().add(activityExpenseIndexKey, expense.getId());
             redisTemplate.expire(activityExpenseIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
         }
+
+        if (expense.getPayerId() != null && !expense.getPayerId().trim().isEmpty()) {
+            String payerExpenseIndexKey = PAYER_EXPENSE_INDEX + expense.getPayerId();
+            redisTemplate.opsForSet().add(payerExpenseIndexKey, expense.getId());
+            redisTemplate.expire(payerExpenseIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+        }
     }
 
     /**
@@ -295,22 +636,34 @@ public class ExpenseRepository {
             String activityExpenseIndexKey = "badminton:index:activity_expense:" + expense.getActivityId();
             redisTemplate.opsForSet().remove(activityExpenseIndexKey, expense.getId());
         }
+
+        if (expense.getPayerId() != null && !expense.getPayerId().trim().isEmpty()) {
+            redisTemplate.opsForSet().remove(PAYER_EXPENSE_INDEX + expense.getPayerId(), expense.getId());
+        }
     }
 
     /**
      * 创建分摊索引
      */
-    private void createShareIndexes(ExpenseShare share) {
+    private void createShareIndexes(RedisOperations<String, Object> ops, ExpenseShare share) {
         if (share.getExpenseId() != null && !share.getExpenseId().trim().isEmpty()) {
             String expenseShareIndexKey = "badminton:index:expense_share:" + share.getExpenseId();
-            redisTemplate.opsForSet().add(expenseShareIndexKey, share.getId());
-            redisTemplate.expire(expenseShareIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+            ops.opsForSet().add(expenseShareIndexKey, share.getId());
+            ops.expire(expenseShareIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
         }
         
         if (share.getUserId() != null && !share.getUserId().trim().isEmpty()) {
             String userShareIndexKey = "badminton:index:user_share:" + share.getUserId();
-            redisTemplate.opsForSet().add(userShareIndexKey, share.getId());
-            redisTemplate.expire(userShareIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+            ops.opsForSet().add(userShareIndexKey, share.getId());
+            ops.expire(userShareIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+
+            String pendingIndexKey = USER_PENDING_SHARE_INDEX + share.getUserId();
+            if (share.isPending()) {
+                ops.opsForSet().add(pendingIndexKey, share.getId());
+                ops.expire(pendingIndexKey, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+            } else {
+                ops.opsForSet().remove(pendingIndexKey, share.getId());
+            }
         }
     }
 
@@ -326,6 +679,7 @@ public class ExpenseRepository {
         if (share.getUserId() != null && !share.getUserId().trim().isEmpty()) {
             String userShareIndexKey = "badminton:index:user_share:" + share.getUserId();
             redisTemplate.opsForSet().remove(userShareIndexKey, share.getId());
+            redisTemplate.opsForSet().remove(USER_PENDING_SHARE_INDEX + share.getUserId(), share.getId());
         }
     }
 
@@ -339,7 +693,7 @@ public class ExpenseRepository {
         map.put("payerId", expense.getPayerId());
         map.put("type", expense.getType());
         map.put("description", expense.getDescription());
-        map.put("totalAmount", expense.getTotalAmount().toString());
+        MoneyCodec.write(map, "totalAmount", expense.getTotalAmount());
         map.put("splitMethod", expense.getSplitMethod());
         map.put("tenant", expense.getTenant());
         map.put("state", expense.getState());
@@ -362,10 +716,7 @@ public class ExpenseRepository {
         expense.setType((String) map.get("type"));
         expense.setDescription((String) map.get("description"));
         
-        Object totalAmountStr = map.get("totalAmount");
-        if (totalAmountStr != null) {
-            expense.setTotalAmount(new BigDecimal(totalAmountStr.toString()));
-        }
+        expense.setTotalAmount(MoneyCodec.read(map, "totalAmount", null));
         
         expense.setSplitMethod((String) map.get("splitMethod"));
         
@@ -416,7 +767,7 @@ public class ExpenseRepository {
         map.put("id", share.getId());
         map.put("expenseId", share.getExpenseId());
         map.put("userId", share.getUserId());
-        map.put("amount", share.getAmount().toString());
+        MoneyCodec.write(map, "amount", share.getAmount());
         map.put("status", share.getStatus().toString());
         map.put("settledAt", share.getSettledAt() != null ? share.getSettledAt().toString() : null);
         map.put("tenant", share.getTenant());
@@ -438,10 +789,7 @@ public class ExpenseRepository {
         share.setExpenseId((String) map.get("expenseId"));
         share.setUserId((String) map.get("userId"));
         
-        Object amountStr = map.get("amount");
-        if (amountStr != null) {
-            share.setAmount(new BigDecimal(amountStr.toString()));
-        }
+        share.setAmount(MoneyCodec.read(map, "amount", null));
         
         Object status = map.get("status");
         if (status instanceof Integer) {
@@ -454,6 +802,10 @@ public class ExpenseRepository {
         if (settledAtStr != null && !settledAtStr.toString().isEmpty()) {
             share.setSettledAt(LocalDateTime.parse(settledAtStr.toString()));
         }
+
+        // 结算账本入账标记由 SettlementService 写入，账本上线前创建的分摊没有该字段
+        Object ledger = map.get("ledger");
+        share.setLedgerRecorded(ledger != null && "1".equals(ledger.toString()));
         
         Object tenant = map.get("tenant");
         if (tenant instanceof Integer) {
@@ -0,0 +1,80 @@
+package cn.badminton.repository;
+
+import cn.badminton.model.NotificationOutbox;
+import cn.badminton.repository.jpa.NotificationOutboxJpaRepository;
+import cn.badminton.util.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 通知发件箱MySQL存储库
+ * 生成与认领都是一批一个事务，投递结果同样成批写回
+ *
+ * 作者: xiaolei
+ */
+@Repository
+@Slf4j
+public class NotificationOutboxRepository {
+
+    @Autowired
+    private NotificationOutboxJpaRepository notificationOutboxJpaRepository;
+
+    /**
+     * 写入一批通知，去重键已存在的跳过（同一提醒任务被重复认领时不会重复生成），返回写入条数
+     */
+    @Transactional
+    public int enqueue(List<NotificationOutbox> notifications) {
+        if (notifications == null || notifications.isEmpty()) {
+            return 0;
+        }
+        Set<String> keys = notifications.stream()
+                .map(NotificationOutbox::getDedupKey)
+                .collect(Collectors.toSet());
+        Set<String> seen = new HashSet<>(notificationOutboxJpaRepository.findExistingDedupKeys(keys));
+
+        List<NotificationOutbox> toSave = new ArrayList<>();
+        for (NotificationOutbox notification : notifications) {
+            if (seen.add(notification.getDedupKey())) {
+                if (notification.getId() == null) {
+                    notification.setId(IdGenerator.nextId());
+                }
+                toSave.add(notification);
+            }
+        }
+        notificationOutboxJpaRepository.saveAll(toSave);
+        log.debug("通知批量写入发件箱，提交数: {}, 写入数: {}", notifications.size(), toSave.size());
+        return toSave.size();
+    }
+
+    /**
+     * 认领一批到期通知：行锁（SKIP LOCKED）选出后标记为投递中并把下次投递时间设为租约到期时间
+     * 节点在租约内未写回结果的通知会被重新认领
+     */
+    @Transactional
+    public List<NotificationOutbox> claimDue(int limit, LocalDateTime leaseUntil) {
+        List<NotificationOutbox> due = notificationOutboxJpaRepository.lockDue(LocalDateTime.now(), limit);
+        due.forEach(notification -> notification.claim(leaseUntil));
+        notificationOutboxJpaRepository.saveAll(due);
+        return due;
+    }
+
+    /**
+     * 成批写回投递结果
+     */
+    @Transactional
+    public void saveResults(Collection<NotificationOutbox> notifications) {
+        if (notifications != null && !notifications.isEmpty()) {
+            notificationOutboxJpaRepository.saveAll(notifications);
+        }
+    }
+}
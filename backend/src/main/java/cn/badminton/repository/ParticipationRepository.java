@@ -0,0 +1,138 @@
+package cn.badminton.repository;
+
+import cn.badminton.model.BookingActivity;
+import cn.badminton.model.Participation;
+import cn.badminton.repository.jpa.ActivityJpaRepository;
+import cn.badminton.repository.jpa.ParticipationJpaRepository;
+import cn.badminton.util.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 参与记录MySQL存储库
+ * Redis 参与者集合是名单的实时来源，这里负责把加入 / 退出变更成批写入 participation 表
+ *
+ * 作者: xiaolei
+ */
+@Repository
+@Slf4j
+public class ParticipationRepository {
+
+    @Autowired
+    private ParticipationJpaRepository participationJpaRepository;
+
+    @Autowired
+    private ActivityJpaRepository activityJpaRepository;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    /**
+     * 一批名单变更在一个事务内落库，返回写入的行数
+     * - 同一活动同一用户的多次变更只取最后一次
+     * - 已有记录就地更新（重新确认或取消），没有记录的加入新建一行，没有记录的退出直接忽略
+     * - participation 对活动有外键，库中还没有的活动先从 Redis 补写
+     */
+    @Transactional
+    public int applyChanges(List<Change> changes) {
+        if (changes == null || changes.isEmpty()) {
+            return 0;
+        }
+        Map<String, Change> latest = new LinkedHashMap<>();
+        for (Change change : changes) {
+            latest.put(change.getActivityId() + ":" + change.getUserId(), change);
+        }
+        Set<String> activityIds = latest.values().stream()
+                .map(Change::getActivityId)
+                .collect(Collectors.toSet());
+
+        Set<String> available = ensureActivities(activityIds);
+        latest.values().removeIf(change -> !available.contains(change.getActivityId()));
+        if (latest.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Participation> existing = participationJpaRepository
+                .findByActivityIdInAndDeletedAtIsNull(available).stream()
+                .collect(Collectors.toMap(p -> p.getActivityId() + ":" + p.getUserId(), p -> p, (a, b) -> a));
+
+        List<Participation> toSave = new ArrayList<>();
+        latest.forEach((key, change) -> {
+            Participation participation = existing.get(key);
+            if (change.isJoined()) {
+                if (participation == null) {
+                    participation = new Participation(change.getActivityId(), change.getUserId(), change.isOrganizer());
+                    participation.setId(IdGenerator.nextId());
+                    toSave.add(participation);
+                } else if (participation.isCancelled()) {
+                    participation.reconfirm();
+                    toSave.add(participation);
+                }
+            } else if (participation != null && participation.canCancel()) {
+                participation.cancel();
+                toSave.add(participation);
+            }
+        });
+
+        participationJpaRepository.saveAll(toSave);
+        log.debug("参与记录批量落库，变更数: {}, 写入行数: {}", changes.size(), toSave.size());
+        return toSave.size();
+    }
+
+    /**
+     * 返回库中已有或已补写的活动ID，两边都找不到的活动（缓存已过期）其变更被丢弃
+     */
+    private Set<String> ensureActivities(Set<String> activityIds) {
+        Set<String> persisted = activityJpaRepository.findAllById(activityIds).stream()
+                .map(BookingActivity::getId)
+                .collect(Collectors.toCollection(HashSet::new));
+        List<BookingActivity> missing = new ArrayList<>();
+        for (String activityId : activityIds) {
+            if (!persisted.contains(activityId)) {
+                BookingActivity activity = activityRepository.findById(activityId);
+                if (activity != null) {
+                    missing.add(activity);
+                    persisted.add(activityId);
+                } else {
+                    log.warn("活动在数据库与缓存中都不存在，丢弃其名单变更，活动ID: {}", activityId);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            activityJpaRepository.saveAll(missing);
+        }
+        return persisted;
+    }
+
+    /**
+     * 一条名单变更：加入（joined=true）或退出
+     */
+    public static class Change {
+        private final String activityId;
+        private final String userId;
+        private final boolean joined;
+        private final boolean organizer;
+
+        public Change(String activityId, String userId, boolean joined, boolean organizer) {
+            this.activityId = activityId;
+            this.userId = userId;
+            this.joined = joined;
+            this.organizer = organizer;
+        }
+
+        public String getActivityId() { return activityId; }
+        public String getUserId() { return userId; }
+        public boolean isJoined() { return joined; }
+        public boolean isOrganizer() { return organizer; }
+    }
+}
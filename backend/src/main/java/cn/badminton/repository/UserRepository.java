@@ -1,16 +1,27 @@
 package cn.badminton.repository;
 
+import cn.badminton.common.Money;
 import cn.badminton.config.RedisConfig;
 import cn.badminton.model.User;
 import cn.badminton.repository.jpa.UserJpaRepository;
+import cn.badminton.util.IdGenerator;
+import cn.badminton.util.MoneyCodec;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -27,6 +38,26 @@ import java.util.stream.Collectors;
 @Slf4j
 public class UserRepository {
 
+    /**
+     * 用户缓存中的计数字段：只由 COUNTER_SCRIPT 累加，或在数据库加载时缺失才写入
+     */
+    public static final String TOTAL_ACTIVITIES = "totalActivities";
+    public static final String TOTAL_EXPENSE_CENTS = "totalExpenseCents";
+
+    /**
+     * 计数累加：已处理标记 SET NX 成功才 HINCRBY，标记与增量在同一脚本内，重复投递不会重复累加
+     * 返回 1 已累加，0 已处理过，-1 用户缓存缺失或缺少该字段（标记已撤销，回填缓存后重试）
+     */
+    private static final RedisScript<Long> COUNTER_SCRIPT = new DefaultRedisScript<>(
+            "if not redis.call('SET', KEYS[1], '1', 'NX', 'EX', ARGV[3]) then return 0 end\n"
+                    + "if redis.call('HEXISTS', KEYS[2], ARGV[1]) == 0 then\n"
+                    + "  redis.call('DEL', KEYS[1])\n"
+                    + "  return -1\n"
+                    + "end\n"
+                    + "redis.call('HINCRBY', KEYS[2], ARGV[1], ARGV[2])\n"
+                    + "return 1",
+            Long.class);
+
     @Autowired
     private UserJpaRepository userJpaRepository;
 
@@ -45,16 +76,17 @@ public class UserRepository {
         try {
             // 生成ID（如果是新用户）
             if (user.getId() == null || user.getId().trim().isEmpty()) {
-                user.setId(java.util.UUID.randomUUID().toString());
+                user.setId(IdGenerator.nextId());
             }
             user.updateTimestamp();
 
             // 1. 先保存到MySQL数据库（主存储）
             User savedUser = userJpaRepository.save(user);
+            userJpaRepository.evictCached(savedUser.getId());
             log.debug("用户保存到数据库成功，用户ID: {}", savedUser.getId());
 
-            // 2. 更新Redis缓存
-            updateUserCache(savedUser);
+            // 2. 更新Redis缓存（计数字段只由事件消费方累加，这里不写）
+            updateUserCache(savedUser, false);
 
             return savedUser;
 
@@ -91,7 +123,7 @@ public class UserRepository {
                 log.debug("从数据库获取用户成功，用户ID: {}", userId);
 
                 // 3. 查询成功后更新缓存
-                updateUserCache(user);
+                updateUserCache(user, true);
 
                 return user;
             }
@@ -111,6 +143,70 @@ public class UserRepository {
         }
     }
 
+    /**
+     * 批量按ID查找用户（一次管道读取缓存，未命中的一次 IN 查询数据库并回填缓存）
+     * 返回按入参顺序排列的 userId → User，不存在的用户不在结果中
+     */
+    public Map<String, User> findByIds(Collection<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        List<String> ids = userIds.stream()
+                .filter(id -> id != null && !id.trim().isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, User> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        try {
+            List<Object> hashes = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (String id : ids) {
+                        ops.opsForHash().entries(RedisConfig.RedisKeys.userKey(id));
+                    }
+                    return null;
+                }
+            });
+            for (int i = 0; i < ids.size(); i++) {
+                @SuppressWarnings("unchecked")
+                Map<Object, Object> userMap = i < hashes.size() ? (Map<Object, Object>) hashes.get(i) : null;
+                if (!hasCounters(userMap)) {
+                    misses.add(ids.get(i));
+                } else {
+                    found.put(ids.get(i), convertMapToUser(userMap));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("批量从缓存获取用户失败，改查数据库，数量: {}, 错误信息: {}", ids.size(), e.getMessage());
+            found.clear();
+            misses = ids;
+        }
+
+        if (!misses.isEmpty()) {
+            List<User> loaded = userJpaRepository.findAllById(misses);
+            for (User user : loaded) {
+                found.put(user.getId(), user);
+            }
+            updateUserCaches(loaded);
+            log.debug("批量查询用户，缓存命中: {}, 数据库加载: {}", ids.size() - misses.size(), loaded.size());
+        }
+
+        Map<String, User> result = new LinkedHashMap<>();
+        for (String id : ids) {
+            User user = found.get(id);
+            if (user != null) {
+                result.put(id, user);
+            }
+        }
+        return result;
+    }
+
     /**
      * 根据手机号查找用户（优先查询数据库，确保数据准确性）
      */
@@ -139,7 +235,7 @@ public class UserRepository {
                 log.debug("从数据库通过手机号获取用户成功，phone: {}", phone);
 
                 // 3. 更新缓存和索引
-                updateUserCache(user);
+                updateUserCache(user, true);
                 updateUserIndexes(user);
 
                 return user;
@@ -182,9 +278,15 @@ public class UserRepository {
         }
 
         for (String key : keys) {
+            if (!isUserKey(key)) {
+                continue;
+            }
             Object openIdValue = redisTemplate.opsForHash().get(key, "wxOpenId");
             if (openId.equals(openIdValue)) {
                 Map<Object, Object> userMap = redisTemplate.opsForHash().entries(key);
+                if (!hasCounters(userMap)) {
+                    return null;
+                }
                 User user = convertMapToUser(userMap);
                 // 重建索引
                 createUserIndexes(user);
@@ -246,16 +348,57 @@ public class UserRepository {
     }
 
     /**
-     * 添加用户参与的活动
+     * 按已处理标记累加用户缓存中的计数字段（TOTAL_ACTIVITIES、TOTAL_EXPENSE_CENTS），见 COUNTER_SCRIPT
      */
-    public void addUserActivity(String userId, String activityId) {
-        if (userId == null || activityId == null) {
+    @SuppressWarnings("unchecked")
+    public long incrementCounterOnce(String markerKey, long markerTtlSeconds, String userId, String field,
+                                     long delta) {
+        Long result = redisTemplate.execute(COUNTER_SCRIPT, RedisSerializer.byteArray(),
+                (RedisSerializer<Long>) (RedisSerializer<?>) RedisSerializer.string(),
+                List.of(markerKey, RedisConfig.RedisKeys.userKey(userId)),
+                field.getBytes(StandardCharsets.UTF_8), ascii(delta), ascii(markerTtlSeconds));
+        return result != null ? result : -1;
+    }
+
+    /**
+     * 把缓存中的计数写回数据库；只增不减，并发或乱序的写回不会覆盖更大的值
+     */
+    public void persistCounters(String userId) {
+        List<Object> values = redisTemplate.opsForHash().multiGet(RedisConfig.RedisKeys.userKey(userId),
+                List.of(TOTAL_ACTIVITIES, TOTAL_EXPENSE_CENTS));
+        if (values.get(0) instanceof Number && values.get(1) instanceof Number) {
+            userJpaRepository.raiseCounters(userId, ((Number) values.get(0)).intValue(),
+                    Money.ofCents(((Number) values.get(1)).longValue()));
+        }
+    }
+
+    /**
+     * 由数据库回填用户缓存（计数字段缺失时写入），用户不存在时返回 false
+     */
+    public boolean reloadCache(String userId) {
+        User user = userJpaRepository.findById(userId).orElse(null);
+        if (user == null) {
+            return false;
+        }
+        updateUserCache(user, true);
+        return true;
+    }
+
+    private static byte[] ascii(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 添加用户参与的活动：活动时间线为 ZSET，分值为开始时间（毫秒），发起与参加的活动合并在一条时间线里
+     * 时间线不设过期，历史页面的读取成本与参加过多少活动无关
+     */
+    public void addUserActivity(String userId, String activityId, LocalDateTime startTime) {
+        if (userId == null || activityId == null || startTime == null) {
             return;
         }
 
         String key = RedisConfig.RedisKeys.userActivitiesKey(userId);
-        redisTemplate.opsForSet().add(key, activityId);
-        redisTemplate.expire(key, RedisConfig.RedisTTL.ACTIVITY_CACHE, TimeUnit.SECONDS);
+        redisTemplate.opsForZSet().add(key, activityId, feedScore(startTime));
     }
 
     /**
@@ -267,11 +410,11 @@ public class UserRepository {
         }
 
         String key = RedisConfig.RedisKeys.userActivitiesKey(userId);
-        redisTemplate.opsForSet().remove(key, activityId);
+        redisTemplate.opsForZSet().remove(key, activityId);
     }
 
     /**
-     * 获取用户参与的活动列表
+     * 获取用户参与的活动列表（按开始时间升序）
      */
     public Set<String> getUserActivities(String userId) {
         if (userId == null || userId.trim().isEmpty()) {
@@ -279,7 +422,7 @@ public class UserRepository {
         }
 
         String key = RedisConfig.RedisKeys.userActivitiesKey(userId);
-        Set<Object> activities = redisTemplate.opsForSet().members(key);
+        Set<Object> activities = redisTemplate.opsForZSet().range(key, 0, -1);
         
         if (activities == null || activities.isEmpty()) {
             return Collections.emptySet();
@@ -287,7 +430,106 @@ public class UserRepository {
 
         return activities.stream()
                 .map(Object::toString)
-                .collect(Collectors.toSet());
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * 时间线是否已存在（不存在时由调用方按源数据重建）
+     */
+    public boolean hasUserActivities(String userId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(RedisConfig.RedisKeys.userActivitiesKey(userId)));
+    }
+
+    /**
+     * 标记时间线重建结果为空（空 ZSET 不会留下键），标记期间不再重建；之后的加入直接写出时间线
+     */
+    public void markUserActivitiesEmpty(String userId) {
+        redisTemplate.opsForValue().set(RedisConfig.RedisKeys.userActivitiesEmptyKey(userId), "1",
+                RedisConfig.RedisTTL.EMPTY_FEED, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 是否有未过期的空时间线标记
+     */
+    public boolean isUserActivitiesEmpty(String userId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(RedisConfig.RedisKeys.userActivitiesEmptyKey(userId)));
+    }
+
+    /**
+     * 把同一活动写入（或按新的开始时间改写）多名用户的时间线，一次管道
+     */
+    public void addActivityToFeeds(Collection<String> userIds, String activityId, LocalDateTime startTime) {
+        if (userIds == null || userIds.isEmpty() || activityId == null || startTime == null) {
+            return;
+        }
+        double score = feedScore(startTime);
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String userId : userIds) {
+                    ops.opsForZSet().add(RedisConfig.RedisKeys.userActivitiesKey(userId), activityId, score);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 从多名用户的时间线中移除同一活动，一次管道
+     */
+    public void removeActivityFromFeeds(Collection<String> userIds, String activityId) {
+        if (userIds == null || userIds.isEmpty() || activityId == null) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (String userId : userIds) {
+                    ops.opsForZSet().remove(RedisConfig.RedisKeys.userActivitiesKey(userId), activityId);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 批量写入一名用户的时间线（重建时使用），一次 ZADD
+     */
+    public void addUserActivities(String userId, Map<String, LocalDateTime> startTimes) {
+        if (userId == null || startTimes == null || startTimes.isEmpty()) {
+            return;
+        }
+        Set<ZSetOperations.TypedTuple<Object>> tuples = new HashSet<>();
+        startTimes.forEach((activityId, startTime) ->
+                tuples.add(new DefaultTypedTuple<>(activityId, feedScore(startTime))));
+        redisTemplate.opsForZSet().add(RedisConfig.RedisKeys.userActivitiesKey(userId), tuples);
+    }
+
+    /**
+     * 分页读取时间线中的活动ID
+     * upcoming=true 时取开始时间不早于 now 的，按开始时间升序；否则取更早的，按开始时间倒序
+     * 一次 ZRANGEBYSCORE ... LIMIT，与时间线总长度无关
+     */
+    public List<String> pageUserActivities(String userId, boolean upcoming, LocalDateTime now,
+                                           long offset, long count) {
+        String key = RedisConfig.RedisKeys.userActivitiesKey(userId);
+        double pivot = feedScore(now);
+        Set<Object> ids = upcoming
+                ? redisTemplate.opsForZSet().rangeByScore(key, pivot, Double.POSITIVE_INFINITY, offset, count)
+                : redisTemplate.opsForZSet().reverseRangeByScore(key, Double.NEGATIVE_INFINITY, pivot - 1,
+                        offset, count);
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        return ids.stream().map(Object::toString).collect(Collectors.toList());
+    }
+
+    private static double feedScore(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
     /**
@@ -299,6 +541,9 @@ public class UserRepository {
         
         if (keys != null) {
             for (String key : keys) {
+                if (!isUserKey(key)) {
+                    continue;
+                }
                 String userId = key.substring(RedisConfig.RedisKeys.USER_PREFIX.length());
                 User user = findById(userId);
                 if (user != null) {
@@ -330,7 +575,14 @@ public class UserRepository {
      */
     public long count() {
         Set<String> keys = redisTemplate.keys(RedisConfig.RedisKeys.USER_PREFIX + "*");
-        return keys != null ? keys.size() : 0;
+        return keys != null ? keys.stream().filter(UserRepository::isUserKey).count() : 0;
+    }
+
+    /**
+     * 用户前缀下还有活动列表、结算账本等子键（badminton:user:activities:*、badminton:user:debts:*），只有一级的才是用户
+     */
+    private static boolean isUserKey(String key) {
+        return key.indexOf(':', RedisConfig.RedisKeys.USER_PREFIX.length()) < 0;
     }
 
     /**
@@ -366,7 +618,7 @@ public class UserRepository {
     }
 
     /**
-     * 将User对象转换为Map
+     * 将User对象转换为Map（资料字段，不含计数字段）
      */
     private Map<String, Object> convertUserToMap(User user) {
         Map<String, Object> map = new HashMap<>();
@@ -376,8 +628,6 @@ public class UserRepository {
         map.put("password", user.getPassword());
         map.put("avatar", user.getAvatar());
         map.put("status", user.getStatus());
-        map.put("totalActivities", user.getTotalActivities());
-        map.put("totalExpense", user.getTotalExpense().toString());
         map.put("wxOpenId", user.getWxOpenId());
         map.put("wxUnionId", user.getWxUnionId());
         map.put("tenant", user.getTenant());
@@ -399,7 +649,8 @@ public class UserRepository {
             String key = RedisConfig.RedisKeys.userKey(userId);
             Map<Object, Object> userMap = redisTemplate.opsForHash().entries(key);
 
-            if (userMap == null || userMap.isEmpty()) {
+            if (!hasCounters(userMap)) {
+                // 未缓存，或只有保存时写入的资料字段：按未命中处理，由数据库回填计数
                 return null;
             }
 
@@ -410,15 +661,28 @@ public class UserRepository {
         }
     }
 
+    /**
+     * 缓存中是否带有计数字段（改造前写入的金额字段为 totalExpense）
+     */
+    private static boolean hasCounters(Map<Object, Object> userMap) {
+        return userMap != null && userMap.containsKey(TOTAL_ACTIVITIES)
+                && (userMap.containsKey(TOTAL_EXPENSE_CENTS) || userMap.containsKey("totalExpense"));
+    }
+
     /**
      * 更新用户缓存
+     * 资料字段整体覆盖；计数字段由 COUNTER_SCRIPT 累加，从不整体覆盖：
+     * fillCounters 为 true（数据库加载）时仅在缺失时写入，为 false（保存）时不写
      */
-    private void updateUserCache(User user) {
+    private void updateUserCache(User user, boolean fillCounters) {
         try {
             String key = RedisConfig.RedisKeys.userKey(user.getId());
             Map<String, Object> userMap = convertUserToMap(user);
 
             redisTemplate.opsForHash().putAll(key, userMap);
+            if (fillCounters) {
+                putCountersIfAbsent(redisTemplate, key, user);
+            }
             // 缓存7天，用作热点数据加速
             redisTemplate.expire(key, RedisConfig.RedisTTL.USER_SESSION, TimeUnit.SECONDS);
 
@@ -428,6 +692,38 @@ public class UserRepository {
         }
     }
 
+    /**
+     * 批量回填用户缓存（一次管道）
+     */
+    private void updateUserCaches(List<User> users) {
+        if (users.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (User user : users) {
+                        String key = RedisConfig.RedisKeys.userKey(user.getId());
+                        ops.opsForHash().putAll(key, convertUserToMap(user));
+                        putCountersIfAbsent(ops, key, user);
+                        ops.expire(key, RedisConfig.RedisTTL.USER_SESSION, TimeUnit.SECONDS);
+                    }
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.warn("批量更新用户缓存失败，数量: {}, 错误信息: {}", users.size(), e.getMessage());
+        }
+    }
+
+    private static void putCountersIfAbsent(RedisOperations<String, Object> ops, String key, User user) {
+        ops.opsForHash().putIfAbsent(key, TOTAL_ACTIVITIES, user.getTotalActivities());
+        ops.opsForHash().putIfAbsent(key, TOTAL_EXPENSE_CENTS, user.getTotalExpense().getCents());
+    }
+
     /**
      * 更新用户索引
      */
@@ -477,10 +773,6 @@ public class UserRepository {
                 }
             }
 
-            // 清理活动列表缓存
-            String activitiesKey = RedisConfig.RedisKeys.userActivitiesKey(userId);
-            redisTemplate.delete(activitiesKey);
-
             log.debug("清理用户缓存成功，用户ID: {}", userId);
         } catch (Exception e) {
             log.warn("清理用户缓存失败，用户ID: {}, 错误信息: {}", userId, e.getMessage());
@@ -512,10 +804,7 @@ public class UserRepository {
             user.setTotalActivities(Integer.valueOf((String) totalActivities));
         }
         
-        Object totalExpenseStr = map.get("totalExpense");
-        if (totalExpenseStr != null) {
-            user.setTotalExpense(new BigDecimal(totalExpenseStr.toString()));
-        }
+        user.setTotalExpense(MoneyCodec.read(map, "totalExpense", Money.ZERO));
         
         user.setWxOpenId((String) map.get("wxOpenId"));
         user.setWxUnionId((String) map.get("wxUnionId"));
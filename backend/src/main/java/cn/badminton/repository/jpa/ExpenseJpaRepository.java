@@ -1,5 +1,6 @@
 package cn.badminton.repository.jpa;
 
+import cn.badminton.common.Money;
 import cn.badminton.model.ExpenseRecord;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -38,8 +39,8 @@ public interface ExpenseJpaRepository extends JpaRepository<ExpenseRecord, Strin
      * 查找指定金额范围内的费用记录
      */
     @Query("SELECT e FROM ExpenseRecord e WHERE e.totalAmount >= :minAmount AND e.totalAmount <= :maxAmount AND e.deletedAt IS NULL")
-    List<ExpenseRecord> findByAmountRange(@Param("minAmount") BigDecimal minAmount,
-                                        @Param("maxAmount") BigDecimal maxAmount);
+    List<ExpenseRecord> findByAmountRange(@Param("minAmount") Money minAmount,
+                                        @Param("maxAmount") Money maxAmount);
 
     /**
      * 根据分摊方式查找记录
@@ -56,19 +57,22 @@ public interface ExpenseJpaRepository extends JpaRepository<ExpenseRecord, Strin
     /**
      * 统计活动的总费用
      */
-    @Query("SELECT COALESCE(SUM(e.totalAmount), 0) FROM ExpenseRecord e WHERE e.activityId = :activityId AND e.deletedAt IS NULL")
+    @Query(value = "SELECT COALESCE(SUM(total_amount), 0) FROM expense_record "
+            + "WHERE activity_id = :activityId AND deleted_at IS NULL", nativeQuery = true)
     BigDecimal sumTotalAmountByActivityId(@Param("activityId") String activityId);
 
     /**
      * 统计用户支付的总金额
      */
-    @Query("SELECT COALESCE(SUM(e.totalAmount), 0) FROM ExpenseRecord e WHERE e.payerId = :payerId AND e.deletedAt IS NULL")
+    @Query(value = "SELECT COALESCE(SUM(total_amount), 0) FROM expense_record "
+            + "WHERE payer_id = :payerId AND deleted_at IS NULL", nativeQuery = true)
     BigDecimal sumTotalAmountByPayerId(@Param("payerId") String payerId);
 
     /**
      * 根据费用类型统计总金额
      */
-    @Query("SELECT e.type, COALESCE(SUM(e.totalAmount), 0) FROM ExpenseRecord e WHERE e.deletedAt IS NULL GROUP BY e.type")
+    @Query(value = "SELECT type, COALESCE(SUM(total_amount), 0) FROM expense_record "
+            + "WHERE deleted_at IS NULL GROUP BY type", nativeQuery = true)
     List<Object[]> sumAmountByType();
 
     /**
@@ -85,10 +89,10 @@ public interface ExpenseJpaRepository extends JpaRepository<ExpenseRecord, Strin
     /**
      * 统计每月费用趋势
      */
-    @Query("SELECT YEAR(e.createdAt), MONTH(e.createdAt), COALESCE(SUM(e.totalAmount), 0) " +
-           "FROM ExpenseRecord e WHERE e.deletedAt IS NULL " +
-           "GROUP BY YEAR(e.createdAt), MONTH(e.createdAt) " +
-           "ORDER BY YEAR(e.createdAt) DESC, MONTH(e.createdAt) DESC")
+    @Query(value = "SELECT YEAR(created_at), MONTH(created_at), COALESCE(SUM(total_amount), 0) " +
+           "FROM expense_record WHERE deleted_at IS NULL " +
+           "GROUP BY YEAR(created_at), MONTH(created_at) " +
+           "ORDER BY YEAR(created_at) DESC, MONTH(created_at) DESC", nativeQuery = true)
     List<Object[]> findMonthlyExpenseTrends();
 
     /**
@@ -55,25 +55,29 @@ public interface ExpenseShareJpaRepository extends JpaRepository<ExpenseShare, S
     /**
      * 统计费用记录的分摊总金额
      */
-    @Query("SELECT COALESCE(SUM(s.amount), 0) FROM ExpenseShare s WHERE s.expenseId = :expenseId AND s.deletedAt IS NULL")
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM expense_share "
+            + "WHERE expense_id = :expenseId AND deleted_at IS NULL", nativeQuery = true)
     BigDecimal sumAmountByExpenseId(@Param("expenseId") String expenseId);
 
     /**
      * 统计用户的总分摊金额
      */
-    @Query("SELECT COALESCE(SUM(s.amount), 0) FROM ExpenseShare s WHERE s.userId = :userId AND s.deletedAt IS NULL")
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM expense_share "
+            + "WHERE user_id = :userId AND deleted_at IS NULL", nativeQuery = true)
     BigDecimal sumAmountByUserId(@Param("userId") String userId);
 
     /**
      * 统计用户已结算的分摊金额
      */
-    @Query("SELECT COALESCE(SUM(s.amount), 0) FROM ExpenseShare s WHERE s.userId = :userId AND s.status = 2 AND s.deletedAt IS NULL")
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM expense_share "
+            + "WHERE user_id = :userId AND status = 2 AND deleted_at IS NULL", nativeQuery = true)
     BigDecimal sumSettledAmountByUserId(@Param("userId") String userId);
 
     /**
      * 统计用户待结算的分摊金额
      */
-    @Query("SELECT COALESCE(SUM(s.amount), 0) FROM ExpenseShare s WHERE s.userId = :userId AND s.status = 1 AND s.deletedAt IS NULL")
+    @Query(value = "SELECT COALESCE(SUM(amount), 0) FROM expense_share "
+            + "WHERE user_id = :userId AND status = 1 AND deleted_at IS NULL", nativeQuery = true)
     BigDecimal sumPendingAmountByUserId(@Param("userId") String userId);
 
     /**
@@ -110,9 +114,9 @@ public interface ExpenseShareJpaRepository extends JpaRepository<ExpenseShare, S
     /**
      * 统计每个用户的分摊统计信息
      */
-    @Query("SELECT s.userId, COUNT(s), COALESCE(SUM(s.amount), 0), " +
-           "SUM(CASE WHEN s.status = 1 THEN s.amount ELSE 0 END), " +
-           "SUM(CASE WHEN s.status = 2 THEN s.amount ELSE 0 END) " +
-           "FROM ExpenseShare s WHERE s.deletedAt IS NULL GROUP BY s.userId")
+    @Query(value = "SELECT user_id, COUNT(*), COALESCE(SUM(amount), 0), " +
+           "SUM(CASE WHEN status = 1 THEN amount ELSE 0 END), " +
+           "SUM(CASE WHEN status = 2 THEN amount ELSE 0 END) " +
+           "FROM expense_share WHERE deleted_at IS NULL GROUP BY user_id", nativeQuery = true)
     List<Object[]> getUserShareStatistics();
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package cn.badminton.repository.jpa;
+
+import cn.badminton.model.NotificationOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 通知发件箱JPA存储库接口
+ *
+ * 作者: xiaolei
+ */
+@Repository
+public interface NotificationOutboxJpaRepository extends JpaRepository<NotificationOutbox, String> {
+
+    /**
+     * 按去重键查找已存在的通知（生成提醒前一次 IN 查询去重）
+     */
+    @Query("SELECT n.dedupKey FROM NotificationOutbox n WHERE n.dedupKey IN :dedupKeys")
+    List<String> findExistingDedupKeys(@Param("dedupKeys") Collection<String> dedupKeys);
+
+    /**
+     * 锁定一批到期的待投递通知（含租约已过期的投递中通知）
+     * SKIP LOCKED：多个节点同时投递时各取不同的行，不互相等待；需在事务内调用
+     */
+    @Query(value = "SELECT * FROM notification_outbox WHERE status IN (1, 2) AND next_attempt_at <= :now "
+            + "ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<NotificationOutbox> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * 按状态统计数量
+     */
+    long countByStatus(Integer status);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,6 +25,11 @@ public interface ParticipationJpaRepository extends JpaRepository<Participation,
      */
     List<Participation> findByActivityIdAndDeletedAtIsNull(String activityId);
 
+    /**
+     * 批量查找多个活动的参与记录（名单批量落库时使用）
+     */
+    List<Participation> findByActivityIdInAndDeletedAtIsNull(Collection<String> activityIds);
+
     /**
      * 根据用户ID查找参与记录
      */
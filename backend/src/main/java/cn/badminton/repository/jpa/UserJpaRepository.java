@@ -1,8 +1,10 @@
 package cn.badminton.repository.jpa;
 
 import cn.badminton.model.User;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -12,20 +14,17 @@ import java.util.Optional;
 /**
  * 用户JPA存储库接口
  * 提供基础的CRUD操作和自定义查询方法
+ * 按手机号查找由 {@link UserJpaRepositoryCustom} 通过自然键缓存实现
  *
  * 作者: xiaolei
  */
 @Repository
-public interface UserJpaRepository extends JpaRepository<User, String> {
+public interface UserJpaRepository extends JpaRepository<User, String>, UserJpaRepositoryCustom {
 
     /**
-     * 根据手机号查找用户
-     */
-    Optional<User> findByPhone(String phone);
-
-    /**
-     * 根据微信OpenID查找用户
+     * 根据微信OpenID查找用户（查询缓存）
      */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Optional<User> findByWxOpenId(String wxOpenId);
 
     /**
@@ -62,14 +61,16 @@ public interface UserJpaRepository extends JpaRepository<User, String> {
     long countActiveUsers();
 
     /**
-     * 查找参与活动数最多的前N个用户
+     * 查找参与活动数最多的前N个用户（查询缓存，user 表变更时自动失效）
      */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     @Query("SELECT u FROM User u WHERE u.deletedAt IS NULL ORDER BY u.totalActivities DESC LIMIT :limit")
     List<User> findTopUsersByActivities(@Param("limit") int limit);
 
     /**
-     * 查找消费金额最多的前N个用户
+     * 查找消费金额最多的前N个用户（查询缓存，user 表变更时自动失效）
      */
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     @Query("SELECT u FROM User u WHERE u.deletedAt IS NULL ORDER BY u.totalExpense DESC LIMIT :limit")
     List<User> findTopUsersByExpense(@Param("limit") int limit);
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package cn.badminton.repository.jpa;
+
+import cn.badminton.common.Money;
+import cn.badminton.model.User;
+
+import java.util.Optional;
+
+/**
+ * 用户JPA存储库扩展接口
+ *
+ * 作者: xiaolei
+ */
+public interface UserJpaRepositoryCustom {
+
+    /**
+     * 根据手机号查找用户
+     * 手机号为自然键，命中自然键缓存与实体缓存时不访问数据库
+     */
+    Optional<User> findByPhone(String phone);
+
+    /**
+     * 计数只增不减地写回（计数以缓存为准，由事件消费方写回），返回更新行数
+     * 只失效二级缓存中的这一个用户，不波及其他用户与查询缓存
+     */
+    int raiseCounters(String id, int totalActivities, Money totalExpense);
+
+    /**
+     * 从二级缓存驱逐一个用户
+     * 保存实体时计数列不更新，但二级缓存会记下实体上的（可能过时的）计数，保存后需驱逐
+     */
+    void evictCached(String id);
+}
@@ -0,0 +1,76 @@
+package cn.badminton.repository.jpa;
+
+import cn.badminton.common.Money;
+import cn.badminton.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+/**
+ * 用户JPA存储库扩展实现
+ * 通过 Hibernate 自然键 API 查询，复用 user-phone 自然键缓存区域
+ * 计数写回用原生语句：JPQL 批量更新会清空整个 user 区域与相关查询缓存
+ *
+ * 作者: xiaolei
+ */
+public class UserJpaRepositoryImpl implements UserJpaRepositoryCustom {
+
+    private static final String COUNTER_QUERY_SPACE = "user_counters";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByPhone(String phone) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(User.class)
+                .loadOptional(phone);
+    }
+
+    /**
+     * 原生语句默认视为影响全部表；同步到一个不对应任何实体的查询空间，
+     * 二级缓存只按ID驱逐这一条，排行榜等查询缓存按自身过期时间刷新
+     */
+    @Override
+    @Transactional
+    public int raiseCounters(String id, int totalActivities, Money totalExpense) {
+        int updated = entityManager.createNativeQuery(
+                        "UPDATE user SET total_activities = GREATEST(total_activities, :activities), "
+                                + "total_expense = GREATEST(total_expense, :expense) "
+                                + "WHERE id = :id AND (total_activities < :activities OR total_expense < :expense)")
+                .unwrap(NativeQuery.class)
+                .addSynchronizedQuerySpace(COUNTER_QUERY_SPACE)
+                .setParameter("activities", totalActivities)
+                .setParameter("expense", totalExpense.toBigDecimal())
+                .setParameter("id", id)
+                .executeUpdate();
+        if (updated > 0) {
+            evictCached(id);
+        }
+        return updated;
+    }
+
+    /**
+     * 事务中调用时在事务结束后驱逐：提交时二级缓存会以实体上的状态回写该条目
+     */
+    @Override
+    public void evictCached(String id) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            entityManager.getEntityManagerFactory().getCache().evict(User.class, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                entityManager.getEntityManagerFactory().getCache().evict(User.class, id);
+            }
+        });
+    }
+}
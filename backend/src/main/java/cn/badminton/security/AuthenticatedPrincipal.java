@@ -0,0 +1,70 @@
+package cn.badminton.security;
+
+import cn.badminton.model.User;
+import cn.badminton.util.JwtUtil.TokenInfo;
+
+import java.security.Principal;
+import java.util.function.Function;
+
+/**
+ * 已认证主体：由 JwtAuthenticationFilter 放入 SecurityContext，生命周期即一次请求
+ * - 令牌声明（userId、会话ID、状态）直接可用，不访问存储
+ * - User 首次需要时才加载，同一请求内后续使用直接复用，并记录因此省下的查询次数
+ * - toString/getName 返回 userId，兼容按 String.valueOf(principal) 取用户ID的旧代码
+ *
+ * 作者: xiaolei
+ */
+public final class AuthenticatedPrincipal implements Principal {
+
+    private final TokenInfo tokenInfo;
+
+    private User user;
+    private boolean loaded;
+    private int savedLookups;
+
+    public AuthenticatedPrincipal(TokenInfo tokenInfo) {
+        this.tokenInfo = tokenInfo;
+    }
+
+    public String getUserId() {
+        return tokenInfo.getUserId();
+    }
+
+    public TokenInfo getTokenInfo() {
+        return tokenInfo;
+    }
+
+    /**
+     * 取当前用户，首次调用时用 loader 按 userId 加载（结果为 null 也缓存）
+     */
+    public synchronized User getUser(Function<String, User> loader) {
+        if (loaded) {
+            savedLookups++;
+            return user;
+        }
+        user = loader.apply(getUserId());
+        loaded = true;
+        return user;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * 本次请求中因复用已加载用户而省下的存储查询次数
+     */
+    public synchronized int getSavedLookups() {
+        return savedLookups;
+    }
+
+    @Override
+    public String getName() {
+        return getUserId();
+    }
+
+    @Override
+    public String toString() {
+        return getUserId();
+    }
+}
@@ -0,0 +1,22 @@
+package cn.badminton.security;
+
+import io.swagger.v3.oas.annotations.Parameter;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 控制器方法参数注入当前登录用户，参数类型可为 User、AuthenticatedPrincipal 或 String（userId）
+ * 未登录时返回“未登录或登录已过期”；同一请求内 User 只加载一次
+ *
+ * 作者: xiaolei
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Parameter(hidden = true)
+public @interface CurrentUser {
+}
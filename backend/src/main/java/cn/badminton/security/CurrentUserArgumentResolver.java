@@ -0,0 +1,40 @@
+package cn.badminton.security;
+
+import cn.badminton.model.User;
+import cn.badminton.service.CurrentUserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * 解析 @CurrentUser 参数
+ * 作者: xiaolei
+ */
+@Component
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Autowired
+    private CurrentUserService currentUserService;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        Class<?> type = parameter.getParameterType();
+        return parameter.hasParameterAnnotation(CurrentUser.class)
+                && (type == User.class || type == AuthenticatedPrincipal.class || type == String.class);
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Class<?> type = parameter.getParameterType();
+        if (type == User.class) {
+            return currentUserService.currentUser();
+        }
+        AuthenticatedPrincipal principal = currentUserService.requirePrincipal();
+        return type == String.class ? principal.getUserId() : principal;
+    }
+}
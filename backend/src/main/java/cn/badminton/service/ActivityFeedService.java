@@ -0,0 +1,157 @@
+package cn.badminton.service;
+
+import cn.badminton.dto.activity.ActivityFeedPage;
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.model.Participation;
+import cn.badminton.repository.ActivityRepository;
+import cn.badminton.repository.UserRepository;
+import cn.badminton.repository.jpa.ParticipationJpaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * “我的活动”时间线
+ * 每个用户一个 ZSET badminton:user:activities:{userId}（成员为活动ID，分值为开始时间），发起与参加的活动合并
+ * - 由活动事件维护：创建、加入写入，退出、取消移除，修改时按新的开始时间改写名单内所有人
+ * - 分页只做一次 ZRANGEBYSCORE ... LIMIT 与一次管道回填，成本与历史长度无关
+ * - 时间线不存在时按发起索引与 participation 表重建一次；重建结果为空时写短期标记，期间不再重建
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class ActivityFeedService {
+
+    public static final String SCOPE_UPCOMING = "upcoming";
+    public static final String SCOPE_PAST = "past";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ParticipationJpaRepository participationJpaRepository;
+
+    @EventListener
+    public void onActivityEvent(ActivityEvent event) {
+        BookingActivity activity = event.getActivity();
+        try {
+            switch (event.getKind()) {
+                case CREATED:
+                case JOINED:
+                    userRepository.addUserActivity(event.getUserId(), activity.getId(), activity.getStartTime());
+                    break;
+                case LEFT:
+                    userRepository.removeUserActivity(event.getUserId(), activity.getId());
+                    break;
+                case CANCELLED:
+                    userRepository.removeActivityFromFeeds(roster(activity), activity.getId());
+                    break;
+                case UPDATED:
+                    userRepository.addActivityToFeeds(roster(activity), activity.getId(), activity.getStartTime());
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            log.error("活动时间线更新失败，活动ID: {}, 事件: {}, 错误信息: {}",
+                    activity.getId(), event.getKind(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 分页读取用户的活动
+     * upcoming：尚未开始的，按开始时间升序；past：已开始的，按开始时间倒序
+     */
+    public ActivityFeedPage page(String userId, String scope, int page, int size) {
+        log.debug("获取我的活动，用户ID: {}, 范围: {}, 页码: {}, 每页: {}", userId, scope, page, size);
+        if (page < 0 || size <= 0) {
+            throw new IllegalArgumentException("分页参数不正确");
+        }
+        boolean upcoming = !SCOPE_PAST.equals(scope);
+
+        ensureTimeline(userId);
+
+        // 多取一条判断是否还有下一页
+        List<String> ids = userRepository.pageUserActivities(userId, upcoming, LocalDateTime.now(),
+                (long) page * size, size + 1L);
+        boolean hasMore = ids.size() > size;
+        if (hasMore) {
+            ids = ids.subList(0, size);
+        }
+        Map<String, BookingActivity> activities = activityRepository.findByIds(ids);
+
+        ActivityFeedPage result = new ActivityFeedPage();
+        result.setScope(upcoming ? SCOPE_UPCOMING : SCOPE_PAST);
+        result.setPage(page);
+        result.setSize(size);
+        result.setHasMore(hasMore);
+        result.setItems(new ArrayList<>(activities.values()));
+        return result;
+    }
+
+    /**
+     * 时间线不存在时先重建（分页与首页汇总重建共用）；没有任何活动的用户由空时间线标记挡住重复重建
+     */
+    public void ensureTimeline(String userId) {
+        if (!userRepository.hasUserActivities(userId) && !userRepository.isUserActivitiesEmpty(userId)) {
+            rebuild(userId);
+        }
+    }
+
+    /**
+     * 按源数据重建时间线：自己发起的（发起索引）加上已确认参加的（participation 表）
+     */
+    public void rebuild(String userId) {
+        Set<String> ids = new LinkedHashSet<>();
+        Map<String, LocalDateTime> startTimes = new HashMap<>();
+        for (BookingActivity activity : activityRepository.findByOrganizer(userId)) {
+            if (!isCancelled(activity)) {
+                startTimes.put(activity.getId(), activity.getStartTime());
+            }
+        }
+        participationJpaRepository.findByUserIdAndDeletedAtIsNull(userId).stream()
+                .filter(Participation::isConfirmed)
+                .map(Participation::getActivityId)
+                .filter(id -> !startTimes.containsKey(id))
+                .forEach(ids::add);
+        activityRepository.findByIds(ids).values().stream()
+                .filter(activity -> !isCancelled(activity))
+                .forEach(activity -> startTimes.put(activity.getId(), activity.getStartTime()));
+
+        startTimes.values().removeIf(Objects::isNull);
+        if (startTimes.isEmpty()) {
+            userRepository.markUserActivitiesEmpty(userId);
+        }
+        userRepository.addUserActivities(userId, startTimes);
+        log.debug("活动时间线已重建，用户ID: {}, 活动数: {}", userId, startTimes.size());
+    }
+
+    /**
+     * 活动名单（含发起人）
+     */
+    private List<String> roster(BookingActivity activity) {
+        Set<String> members = new LinkedHashSet<>(activityRepository.getParticipants(activity.getId()));
+        members.add(activity.getOrganizer());
+        return members.stream().filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private static boolean isCancelled(BookingActivity activity) {
+        return Integer.valueOf(BookingActivity.STATUS_CANCELLED).equals(activity.getStatus());
+    }
+}
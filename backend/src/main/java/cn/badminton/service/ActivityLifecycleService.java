@@ -0,0 +1,218 @@
+package cn.badminton.service;
+
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.repository.ActivityRepository;
+import cn.badminton.service.DelayedJobQueue.DelayedJob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 活动状态自动流转
+ * 活动创建 / 修改时在延时队列登记三个任务，到期由任一节点认领执行：
+ * - AUTO_START：开始时间到，待确认 → 进行中
+ * - AUTO_COMPLETE：结束时间到，进行中 → 已完成
+ * - EXPIRE：结束时间到仍未开始（关闭了自动开始或开始任务未能执行），待确认 → 已取消
+ * 状态以比较并设置方式改写（同时维护状态索引并写回数据库），与手动操作并发时只有一方生效；任务可重复执行
+ * 活动缓存保留到结束之后，缓存仍缺失时（改动前写入的活动）回源数据库
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class ActivityLifecycleService {
+
+    public static final String AUTO_START = "AUTO_START";
+    public static final String AUTO_COMPLETE = "AUTO_COMPLETE";
+    public static final String EXPIRE = "EXPIRE";
+
+    public static final String QUEUE = "activity_lifecycle";
+
+    @Autowired
+    private DelayedJobQueue delayedJobQueue;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.activity.lifecycle.auto-start:true}")
+    private boolean autoStart = true;
+
+    @Value("${app.activity.lifecycle.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${app.activity.lifecycle.lease-ms:60000}")
+    private long leaseMs = 60000;
+
+    @Value("${app.activity.lifecycle.max-batches-per-tick:10}")
+    private int maxBatchesPerTick = 10;
+
+    private Counter failedCounter;
+    private Timer lagTimer;
+
+    @PostConstruct
+    public void init() {
+        failedCounter = Counter.builder("activity.lifecycle.jobs.failed").register(meterRegistry);
+        lagTimer = Timer.builder("activity.lifecycle.jobs.lag").register(meterRegistry);
+    }
+
+    @EventListener
+    public void onActivityEvent(ActivityEvent event) {
+        BookingActivity activity = event.getActivity();
+        try {
+            switch (event.getKind()) {
+                case CREATED:
+                case UPDATED:
+                    delayedJobQueue.schedule(QUEUE, jobsFor(activity));
+                    break;
+                case STARTED:
+                    delayedJobQueue.cancel(QUEUE, List.of(new DelayedJob(AUTO_START, activity.getId()),
+                            new DelayedJob(EXPIRE, activity.getId())));
+                    break;
+                case CANCELLED:
+                case COMPLETED:
+                    delayedJobQueue.cancel(QUEUE, List.of(new DelayedJob(AUTO_START, activity.getId()),
+                            new DelayedJob(AUTO_COMPLETE, activity.getId()),
+                            new DelayedJob(EXPIRE, activity.getId())));
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            log.error("活动延时任务登记失败，活动ID: {}, 事件: {}, 错误信息: {}",
+                    activity.getId(), event.getKind(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 启动时为尚未结束的活动补登任务（已存在的任务不改动）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            List<DelayedJob> jobs = new ArrayList<>();
+            activityRepository.findPendingActivities().forEach(activity -> jobs.addAll(jobsFor(activity)));
+            activityRepository.findOngoingActivities().forEach(activity -> jobs.add(
+                    new DelayedJob(AUTO_COMPLETE, activity.getId(), epochMillis(activity.getEndTime()))));
+            delayedJobQueue.scheduleIfAbsent(QUEUE, jobs);
+            log.info("活动延时任务补登完成，任务数: {}", jobs.size());
+        } catch (Exception e) {
+            log.warn("活动延时任务补登失败，错误信息: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每次只认领已到期的任务；一轮满批时继续认领，单次最多 maxBatchesPerTick 批
+     */
+    @Scheduled(fixedDelayString = "${app.activity.lifecycle.tick-interval-ms:1000}")
+    public void tick() {
+        for (int round = 0; round < maxBatchesPerTick; round++) {
+            long now = System.currentTimeMillis();
+            List<DelayedJob> jobs;
+            try {
+                jobs = delayedJobQueue.claimDue(QUEUE, now, batchSize, leaseMs);
+            } catch (Exception e) {
+                log.warn("认领活动延时任务失败，错误信息: {}", e.getMessage());
+                return;
+            }
+            for (DelayedJob job : jobs) {
+                run(job, now);
+            }
+            if (jobs.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private void run(DelayedJob job, long now) {
+        try {
+            lagTimer.record(Math.max(0, now - job.getDueAt()), TimeUnit.MILLISECONDS);
+            execute(job);
+            delayedJobQueue.ack(QUEUE, job);
+        } catch (Exception e) {
+            // 不确认，租约到期后重新执行
+            failedCounter.increment();
+            log.error("活动延时任务执行失败，任务: {}, 错误信息: {}", job.member(), e.getMessage(), e);
+        }
+    }
+
+    private void execute(DelayedJob job) {
+        BookingActivity activity = activityRepository.findByIdOrLoad(job.getTargetId());
+        if (activity == null) {
+            log.debug("活动已不存在，丢弃延时任务: {}", job.member());
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        switch (job.getType()) {
+            case AUTO_START:
+                // 开始时间被改晚时，改期后的任务会在新时间到期
+                if (autoStart && !activity.getStartTime().isAfter(now)) {
+                    transition(activity, BookingActivity.STATUS_PENDING, BookingActivity.STATUS_ONGOING,
+                            ActivityEvent.Kind.STARTED, job);
+                }
+                break;
+            case AUTO_COMPLETE:
+                if (!activity.getEndTime().isAfter(now)) {
+                    transition(activity, BookingActivity.STATUS_ONGOING, BookingActivity.STATUS_COMPLETED,
+                            ActivityEvent.Kind.COMPLETED, job);
+                }
+                break;
+            case EXPIRE:
+                if (!activity.getEndTime().isAfter(now)) {
+                    transition(activity, BookingActivity.STATUS_PENDING, BookingActivity.STATUS_CANCELLED,
+                            ActivityEvent.Kind.CANCELLED, job);
+                }
+                break;
+            default:
+                log.warn("未知的活动延时任务类型，已丢弃: {}", job.member());
+                break;
+        }
+    }
+
+    private void transition(BookingActivity activity, int expected, int target, ActivityEvent.Kind kind,
+                            DelayedJob job) {
+        if (!activityRepository.compareAndSetStatus(activity.getId(), expected, target)) {
+            log.debug("活动已不处于预期状态，跳过延时任务: {}", job.member());
+            return;
+        }
+        activity.setStatus(target);
+        meterRegistry.counter("activity.lifecycle.transitions", "type", job.getType()).increment();
+        log.info("活动状态自动流转，活动ID: {}, {} -> {}", activity.getId(), expected, target);
+        eventPublisher.publishEvent(new ActivityEvent(kind, activity, activity.getOrganizer()));
+    }
+
+    private List<DelayedJob> jobsFor(BookingActivity activity) {
+        List<DelayedJob> jobs = new ArrayList<>();
+        if (autoStart) {
+            jobs.add(new DelayedJob(AUTO_START, activity.getId(), epochMillis(activity.getStartTime())));
+        }
+        jobs.add(new DelayedJob(AUTO_COMPLETE, activity.getId(), epochMillis(activity.getEndTime())));
+        jobs.add(new DelayedJob(EXPIRE, activity.getId(), epochMillis(activity.getEndTime())));
+        return jobs;
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
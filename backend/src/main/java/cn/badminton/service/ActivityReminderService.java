@@ -0,0 +1,396 @@
+package cn.badminton.service;
+
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.model.NotificationOutbox;
+import cn.badminton.model.User;
+import cn.badminton.notification.DeliveryResult;
+import cn.badminton.notification.Notification;
+import cn.badminton.notification.NotificationChannel;
+import cn.badminton.repository.ActivityRepository;
+import cn.badminton.repository.NotificationOutboxRepository;
+import cn.badminton.repository.UserRepository;
+import cn.badminton.service.DelayedJobQueue.DelayedJob;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 活动开始前提醒
+ * 1. 登记：活动创建 / 修改时在延时队列登记提醒任务（开始前 lead-minutes），取消时撤销
+ * 2. 生成：认领一批到期任务，活动一次管道回填、名单一次管道展开、用户一次批量查询，
+ *    每人一条写入发件箱 notification_outbox（去重键含开始时间，改期后会重新提醒）
+ * 3. 投递：行锁认领一批待投递通知，按渠道分组成批发送，每个渠道独立限速；
+ *    临时失败按指数退避重试，超过次数或永久失败记为失败，结果成批写回
+ * 请求线程只做一次 ZADD，数据库与通知服务的压力都在后台按批分摊
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class ActivityReminderService {
+
+    public static final String QUEUE = "activity_reminder";
+    public static final String REMIND = "REMIND";
+    public static final String TYPE = "activity_reminder";
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    @Autowired
+    private DelayedJobQueue delayedJobQueue;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private NotificationOutboxRepository notificationOutboxRepository;
+
+    @Autowired
+    private List<NotificationChannel> notificationChannels;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.reminder.channel:log}")
+    private String channelName = "log";
+
+    @Value("${app.reminder.lead-minutes:60}")
+    private long leadMinutes = 60;
+
+    @Value("${app.reminder.plan-batch-size:100}")
+    private int planBatchSize = 100;
+
+    @Value("${app.reminder.deliver-batch-size:500}")
+    private int deliverBatchSize = 500;
+
+    @Value("${app.reminder.max-batches-per-tick:10}")
+    private int maxBatchesPerTick = 10;
+
+    @Value("${app.reminder.permits-per-second:50}")
+    private int permitsPerSecond = 50;
+
+    @Value("${app.reminder.rate-wait-ms:2000}")
+    private long rateWaitMs = 2000;
+
+    @Value("${app.reminder.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    @Value("${app.reminder.retry-base-ms:30000}")
+    private long retryBaseMs = 30000;
+
+    @Value("${app.reminder.lease-ms:60000}")
+    private long leaseMs = 60000;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, NotificationChannel> channels = new HashMap<>();
+    private final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        notificationChannels.forEach(channel -> channels.put(channel.name(), channel));
+        if (!channels.containsKey(channelName)) {
+            throw new IllegalStateException("提醒渠道未注册: " + channelName);
+        }
+    }
+
+    @EventListener
+    public void onActivityEvent(ActivityEvent event) {
+        BookingActivity activity = event.getActivity();
+        DelayedJob job = new DelayedJob(REMIND, activity.getId(), remindAt(activity));
+        try {
+            switch (event.getKind()) {
+                case CREATED:
+                case UPDATED:
+                    if (job.getDueAt() > System.currentTimeMillis()) {
+                        delayedJobQueue.schedule(QUEUE, List.of(job));
+                    } else {
+                        delayedJobQueue.cancel(QUEUE, List.of(job));
+                    }
+                    break;
+                case CANCELLED:
+                case COMPLETED:
+                    delayedJobQueue.cancel(QUEUE, List.of(job));
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            log.error("活动提醒任务登记失败，活动ID: {}, 事件: {}, 错误信息: {}",
+                    activity.getId(), event.getKind(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 启动时为尚未到提醒时间的待确认活动补登任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        try {
+            long now = System.currentTimeMillis();
+            List<DelayedJob> jobs = activityRepository.findPendingActivities().stream()
+                    .map(activity -> new DelayedJob(REMIND, activity.getId(), remindAt(activity)))
+                    .filter(job -> job.getDueAt() > now)
+                    .collect(Collectors.toList());
+            delayedJobQueue.scheduleIfAbsent(QUEUE, jobs);
+            log.info("活动提醒任务补登完成，任务数: {}", jobs.size());
+        } catch (Exception e) {
+            log.warn("活动提醒任务补登失败，错误信息: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 生成：到期的提醒任务展开为发件箱中的通知
+     */
+    @Scheduled(fixedDelayString = "${app.reminder.plan-interval-ms:5000}")
+    public void plan() {
+        for (int round = 0; round < maxBatchesPerTick; round++) {
+            List<DelayedJob> jobs;
+            try {
+                jobs = delayedJobQueue.claimDue(QUEUE, System.currentTimeMillis(), planBatchSize, leaseMs);
+                if (jobs.isEmpty()) {
+                    return;
+                }
+                int created = notificationOutboxRepository.enqueue(expand(jobs));
+                jobs.forEach(job -> delayedJobQueue.ack(QUEUE, job));
+                meterRegistry.counter("reminder.planned").increment(created);
+            } catch (Exception e) {
+                // 未确认的任务在租约到期后重新生成，发件箱按去重键跳过已写入的
+                log.error("生成活动提醒失败，错误信息: {}", e.getMessage(), e);
+                return;
+            }
+            if (jobs.size() < planBatchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 投递：按渠道成批发送发件箱中到期的通知
+     */
+    @Scheduled(fixedDelayString = "${app.reminder.deliver-interval-ms:1000}")
+    public void deliver() {
+        for (int round = 0; round < maxBatchesPerTick; round++) {
+            List<NotificationOutbox> claimed;
+            try {
+                claimed = notificationOutboxRepository.claimDue(deliverBatchSize,
+                        LocalDateTime.now().plus(Duration.ofMillis(leaseMs)));
+            } catch (Exception e) {
+                log.warn("认领待投递通知失败，错误信息: {}", e.getMessage());
+                return;
+            }
+            if (claimed.isEmpty()) {
+                return;
+            }
+            Map<String, List<NotificationOutbox>> byChannel = claimed.stream()
+                    .collect(Collectors.groupingBy(NotificationOutbox::getChannel, LinkedHashMap::new,
+                            Collectors.toList()));
+            byChannel.forEach(this::deliver);
+            try {
+                notificationOutboxRepository.saveResults(claimed);
+            } catch (Exception e) {
+                // 结果未写回的通知在租约到期后会被重新投递
+                log.error("投递结果写回失败，条数: {}, 错误信息: {}", claimed.size(), e.getMessage(), e);
+                return;
+            }
+            if (claimed.size() < deliverBatchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 把提醒任务展开为通知：活动、名单、用户各一次批量读取
+     */
+    List<NotificationOutbox> expand(List<DelayedJob> jobs) {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> activityIds = jobs.stream().map(DelayedJob::getTargetId).collect(Collectors.toList());
+        List<BookingActivity> activities = activityRepository.findByIds(activityIds).values().stream()
+                .filter(activity -> isRemindable(activity, now))
+                .collect(Collectors.toList());
+        if (activities.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, Set<String>> rosters = activityRepository.getParticipantsBatch(
+                activities.stream().map(BookingActivity::getId).collect(Collectors.toList()));
+        Map<String, Set<String>> members = new LinkedHashMap<>();
+        Set<String> userIds = new LinkedHashSet<>();
+        for (BookingActivity activity : activities) {
+            Set<String> roster = new LinkedHashSet<>(rosters.getOrDefault(activity.getId(), Set.of()));
+            if (activity.getOrganizer() != null) {
+                roster.add(activity.getOrganizer());
+            }
+            members.put(activity.getId(), roster);
+            userIds.addAll(roster);
+        }
+        Map<String, User> users = userRepository.findByIds(userIds);
+
+        NotificationChannel channel = channels.get(channelName);
+        List<NotificationOutbox> notifications = new ArrayList<>();
+        for (BookingActivity activity : activities) {
+            String payload = payload(activity);
+            long startMillis = epochMillis(activity.getStartTime());
+            for (String userId : members.get(activity.getId())) {
+                User user = users.get(userId);
+                if (user == null) {
+                    continue;
+                }
+                NotificationOutbox notification = new NotificationOutbox(
+                        "reminder:" + activity.getId() + ":" + userId + ":" + startMillis,
+                        TYPE, channel.name(), activity.getId(), userId);
+                notification.setPayload(payload);
+                String recipient = channel.resolveRecipient(user);
+                if (recipient == null || recipient.isEmpty()) {
+                    notification.markSkipped("用户在渠道 " + channel.name() + " 无接收地址");
+                } else {
+                    notification.setRecipient(recipient);
+                }
+                notifications.add(notification);
+            }
+        }
+        return notifications;
+    }
+
+    /**
+     * 同一渠道的通知按限速分块发送：每块等待与块大小相同的令牌，拿不到令牌的退回待投递
+     */
+    private void deliver(String name, List<NotificationOutbox> batch) {
+        NotificationChannel channel = channels.get(name);
+        if (channel == null) {
+            batch.forEach(notification -> notification.markFailed("渠道不可用: " + name));
+            return;
+        }
+        RateLimiter rateLimiter = rateLimiters.computeIfAbsent(name, this::newRateLimiter);
+        int chunkSize = Math.max(1, permitsPerSecond);
+        for (int from = 0; from < batch.size(); from += chunkSize) {
+            List<NotificationOutbox> chunk = batch.subList(from, Math.min(batch.size(), from + chunkSize));
+            if (!rateLimiter.acquirePermission(chunk.size())) {
+                batch.subList(from, batch.size()).forEach(NotificationOutbox::release);
+                meterRegistry.counter("reminder.throttled", "channel", name)
+                        .increment(batch.size() - from);
+                return;
+            }
+            List<DeliveryResult> results = send(channel, chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                DeliveryResult result = i < results.size() ? results.get(i) : DeliveryResult.retry("渠道未返回结果");
+                apply(chunk.get(i), result);
+                meterRegistry.counter("reminder.delivered", "channel", name,
+                        "outcome", result.getOutcome().name()).increment();
+            }
+        }
+    }
+
+    private List<DeliveryResult> send(NotificationChannel channel, List<NotificationOutbox> chunk) {
+        List<Notification> notifications = new ArrayList<>(chunk.size());
+        for (NotificationOutbox outbox : chunk) {
+            notifications.add(new Notification(outbox.getId(), outbox.getType(), outbox.getUserId(),
+                    outbox.getRecipient(), fields(outbox.getPayload())));
+        }
+        try {
+            return channel.send(notifications);
+        } catch (RuntimeException e) {
+            log.warn("渠道 {} 发送异常，本批 {} 条稍后重试: {}", channel.name(), chunk.size(), e.getMessage());
+            List<DeliveryResult> results = new ArrayList<>(chunk.size());
+            chunk.forEach(outbox -> results.add(DeliveryResult.retry(e.getMessage())));
+            return results;
+        }
+    }
+
+    private void apply(NotificationOutbox notification, DeliveryResult result) {
+        switch (result.getOutcome()) {
+            case SENT:
+                notification.markSent();
+                break;
+            case REJECTED:
+                notification.markFailed(result.getError());
+                break;
+            default:
+                if (notification.getAttempts() >= maxAttempts) {
+                    notification.markFailed(result.getError());
+                } else {
+                    // 指数退避：base、2*base、4*base ...，最长 1 小时
+                    long delay = Math.min(retryBaseMs << Math.min(notification.getAttempts() - 1, 16),
+                            Duration.ofHours(1).toMillis());
+                    notification.retryAt(LocalDateTime.now().plus(Duration.ofMillis(delay)), result.getError());
+                }
+                break;
+        }
+    }
+
+    private RateLimiter newRateLimiter(String name) {
+        return RateLimiter.of("notification-" + name, RateLimiterConfig.custom()
+                .limitForPeriod(Math.max(1, permitsPerSecond))
+                .limitRefreshPeriod(Duration.ofSeconds(1))
+                .timeoutDuration(Duration.ofMillis(rateWaitMs))
+                .build());
+    }
+
+    private boolean isRemindable(BookingActivity activity, LocalDateTime now) {
+        Integer status = activity.getStatus();
+        return (Integer.valueOf(BookingActivity.STATUS_PENDING).equals(status)
+                || Integer.valueOf(BookingActivity.STATUS_ONGOING).equals(status))
+                && activity.getStartTime() != null && activity.getStartTime().isAfter(now);
+    }
+
+    private String payload(BookingActivity activity) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put(Notification.ACTIVITY_ID, activity.getId());
+        fields.put(Notification.TITLE, activity.getTitle());
+        fields.put(Notification.START_TIME, activity.getStartTime().format(TIME_FORMAT));
+        fields.put(Notification.VENUE, activity.getVenue());
+        try {
+            return objectMapper.writeValueAsString(fields);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("提醒内容序列化失败", e);
+        }
+    }
+
+    private Map<String, String> fields(String payload) {
+        if (payload == null || payload.isEmpty()) {
+            return Map.of();
+        }
+        try {
+            return objectMapper.readValue(payload, new TypeReference<Map<String, String>>() { });
+        } catch (JsonProcessingException e) {
+            log.warn("通知内容无法解析: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    private long remindAt(BookingActivity activity) {
+        return epochMillis(activity.getStartTime()) - Duration.ofMinutes(leadMinutes).toMillis();
+    }
+
+    private static long epochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -1,14 +1,26 @@
 package cn.badminton.service;
 
+import cn.badminton.dto.activity.RosterMember;
+import cn.badminton.event.ActivityCreated;
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.event.ParticipantJoined;
 import cn.badminton.model.BookingActivity;
 import cn.badminton.model.Participation;
+import cn.badminton.model.User;
 import cn.badminton.repository.ActivityRepository;
+import cn.badminton.util.IdGenerator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -27,13 +39,19 @@ public class ActivityService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private CurrentUserService currentUserService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 创建约球活动
      */
     public BookingActivity createActivity(String organizerId, String title, String venue, 
                                         LocalDateTime startTime, LocalDateTime endTime, 
                                         Integer maxPlayers, String description, String address) {
-        log.info("创建约球活动，发起人: {}, 标题: {}", organizerId, title);
+        log.debug("创建约球活动，发起人: {}, 标题: {}", organizerId, title);
         
         try {
             // 参数验证
@@ -66,7 +84,7 @@ public class ActivityService {
             }
             
             // 验证发起人是否存在
-            if (userService.findById(organizerId) == null) {
+            if (currentUserService.findUser(organizerId) == null) {
                 throw new IllegalArgumentException("发起人不存在");
             }
             
@@ -80,10 +98,12 @@ public class ActivityService {
                 activity.setAddress(address.trim());
             }
             
-            activity = activityRepository.save(activity);
-            
-            // 增加发起人的活动参与次数
-            userService.incrementUserActivities(organizerId);
+            // 先分配ID，活动与 ActivityCreated 事件一起提交；发起人的参与次数由事件消费方异步累加
+            activity.setId(IdGenerator.nextId());
+            activity = activityRepository.save(activity,
+                    List.of(new ActivityCreated(activity.getId(), organizerId)));
+            activityRepository.initParticipants(activity.getId(), organizerId);
+            eventPublisher.publishEvent(new ActivityEvent(ActivityEvent.Kind.CREATED, activity, organizerId));
             
             log.info("创建约球活动成功，活动ID: {}", activity.getId());
             return activity;
@@ -98,7 +118,7 @@ public class ActivityService {
      * 参加活动
      */
     public boolean joinActivity(String activityId, String userId, String remark) {
-        log.info("用户参加活动，活动ID: {}, 用户ID: {}", activityId, userId);
+        log.debug("用户参加活动，活动ID: {}, 用户ID: {}", activityId, userId);
         
         try {
             // 获取活动
@@ -108,7 +128,7 @@ public class ActivityService {
             }
             
             // 验证用户是否存在
-            if (userService.findById(userId) == null) {
+            if (currentUserService.findUser(userId) == null) {
                 throw new IllegalArgumentException("用户不存在");
             }
             
@@ -122,16 +142,20 @@ public class ActivityService {
                 throw new IllegalArgumentException("发起人无需重复参加");
             }
             
+            // 加入名单：SADD 即去重判断，重复提交不会重复占位
+            if (!activityRepository.addParticipant(activityId, userId)) {
+                throw new IllegalArgumentException("已参加该活动");
+            }
+            
             // 增加参与人数
             if (!activity.addPlayer()) {
+                activityRepository.removeParticipant(activityId, userId);
                 throw new IllegalArgumentException("活动已满员");
             }
             
-            // 保存活动
-            activityRepository.save(activity);
-            
-            // 增加用户的活动参与次数
-            userService.incrementUserActivities(userId);
+            // 保存活动，ParticipantJoined 事件一起提交；参与次数由事件消费方异步累加
+            activityRepository.save(activity, List.of(new ParticipantJoined(activityId, userId)));
+            eventPublisher.publishEvent(new ActivityEvent(ActivityEvent.Kind.JOINED, activity, userId));
             
             log.info("用户参加活动成功，活动ID: {}, 用户ID: {}", activityId, userId);
             return true;
@@ -146,7 +170,7 @@ public class ActivityService {
      * 退出活动
      */
     public boolean leaveActivity(String activityId, String userId) {
-        log.info("用户退出活动，活动ID: {}, 用户ID: {}", activityId, userId);
+        log.debug("用户退出活动，活动ID: {}, 用户ID: {}", activityId, userId);
         
         try {
             // 获取活动
@@ -166,9 +190,15 @@ public class ActivityService {
                 throw new IllegalArgumentException("已结束或已取消的活动不能退出");
             }
             
+            // 移出名单，不在名单中的用户不能退出
+            if (!activityRepository.removeParticipant(activityId, userId)) {
+                throw new IllegalArgumentException("未参加该活动");
+            }
+            
             // 减少参与人数
             if (activity.removePlayer()) {
                 activityRepository.save(activity);
+                eventPublisher.publishEvent(new ActivityEvent(ActivityEvent.Kind.LEFT, activity, userId));
                 log.info("用户退出活动成功，活动ID: {}, 用户ID: {}", activityId, userId);
                 return true;
             } else {
@@ -185,7 +215,7 @@ public class ActivityService {
      * 取消活动
      */
     public void cancelActivity(String activityId, String userId) {
-        log.info("取消活动，活动ID: {}, 用户ID: {}", activityId, userId);
+        log.debug("取消活动，活动ID: {}, 用户ID: {}", activityId, userId);
         
         try {
             // 获取活动
@@ -207,6 +237,7 @@ public class ActivityService {
             // 更新活动状态
             activity.setStatus(BookingActivity.STATUS_CANCELLED);
             activityRepository.save(activity);
+            eventPublisher.publishEvent(new ActivityEvent(ActivityEvent.Kind.CANCELLED, activity, userId));
             
             log.info("取消活动成功，活动ID: {}", activityId);
             
@@ -220,7 +251,7 @@ public class ActivityService {
      * 开始活动
      */
     public void startActivity(String activityId, String userId) {
-        log.info("开始活动，活动ID: {}, 用户ID: {}", activityId, userId);
+        log.debug("开始活动，活动ID: {}, 用户ID: {}", activityId, userId);
         
         try {
             // 获取活动
@@ -242,6 +273,7 @@ public class ActivityService {
             // 更新活动状态
             activity.setStatus(BookingActivity.STATUS_ONGOING);
             activityRepository.save(activity);
+            eventPublisher.publishEvent(new ActivityEvent(ActivityEvent.Kind.STARTED, activity, userId));
             
             log.info("开始活动成功，活动ID: {}", activityId);
             
@@ -255,7 +287,7 @@ public class ActivityService {
      * 完成活动
      */
     public void completeActivity(String activityId, String userId) {
-        log.info("完成活动，活动ID: {}, 用户ID: {}", activityId, userId);
+        log.debug("完成活动，活动ID: {}, 用户ID: {}", activityId, userId);
         
         try {
             // 获取活动
@@ -277,6 +309,7 @@ public class ActivityService {
             // 更新活动状态
             activity.setStatus(BookingActivity.STATUS_COMPLETED);
             activityRepository.save(activity);
+            eventPublisher.publishEvent(new ActivityEvent(ActivityEvent.Kind.COMPLETED, activity, userId));
             
             log.info("完成活动成功，活动ID: {}", activityId);
             
@@ -354,6 +387,34 @@ public class ActivityService {
         }
     }
 
+    /**
+     * 批量获取活动名单：各活动参与者集合一次管道读取，涉及的用户再一次批量查询
+     * 返回 活动ID -> 成员列表（按入参顺序；已不存在的用户不出现）
+     */
+    public Map<String, List<RosterMember>> getRosters(List<String> activityIds) {
+        log.debug("批量获取活动名单，活动数: {}", activityIds != null ? activityIds.size() : 0);
+        
+        try {
+            Map<String, Set<String>> rosters = activityRepository.getParticipantsBatch(activityIds);
+            Set<String> userIds = new HashSet<>();
+            rosters.values().forEach(userIds::addAll);
+            Map<String, User> users = userService.findByIds(userIds);
+            
+            Map<String, List<RosterMember>> result = new LinkedHashMap<>();
+            rosters.forEach((activityId, members) -> result.put(activityId, members.stream()
+                    .map(users::get)
+                    .filter(Objects::nonNull)
+                    .map(RosterMember::from)
+                    .collect(Collectors.toList())));
+            log.debug("批量获取活动名单成功，活动数: {}, 用户数: {}", result.size(), users.size());
+            return result;
+            
+        } catch (Exception e) {
+            log.error("批量获取活动名单失败，错误信息: {}", e.getMessage(), e);
+            throw e;
+        }
+    }
+
     /**
      * 获取可参加的活动（待确认且未满员）
      */
@@ -396,7 +457,7 @@ public class ActivityService {
      * 更新活动信息
      */
     public BookingActivity updateActivity(BookingActivity activity) {
-        log.info("更新活动信息，活动ID: {}", activity.getId());
+        log.debug("更新活动信息，活动ID: {}", activity.getId());
         
         try {
             // 验证活动是否存在
@@ -416,6 +477,8 @@ public class ActivityService {
             }
             
             BookingActivity updatedActivity = activityRepository.save(activity);
+            eventPublisher.publishEvent(new ActivityEvent(ActivityEvent.Kind.UPDATED, updatedActivity,
+                    updatedActivity.getOrganizer()));
             log.info("活动信息更新成功，活动ID: {}", activity.getId());
             return updatedActivity;
             
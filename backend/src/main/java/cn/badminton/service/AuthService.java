@@ -1,11 +1,21 @@
 package cn.badminton.service;
 
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.dto.auth.AuthResponse;
 import cn.badminton.model.User;
+import cn.badminton.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
 /**
  * 认证服务
  * 负责用户登录、注册、微信授权登录等认证相关业务
@@ -15,6 +25,11 @@ import org.springframework.stereotype.Service;
 @Service
 @Slf4j
 public class AuthService {
+
+    /**
+     * 微信新用户建档的跨节点租约（含一次微信资料拉取与入库）
+     */
+    private static final Duration PROVISION_LEASE = Duration.ofSeconds(10);
     
     @Autowired
     private UserService userService;
@@ -23,13 +38,34 @@ public class AuthService {
     private WechatService wechatService;
     
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashService passwordHashService;
+
+    @Autowired
+    private TokenSessionService tokenSessionService;
+
+    @Autowired
+    private VerificationCodeService verificationCodeService;
+
+    @Autowired
+    private DistributedLease distributedLease;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final SingleFlight<String, User> provisionFlights = new SingleFlight<>();
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("wechat.login.coalesced", provisionFlights, SingleFlight::sharedCount)
+                .tag("stage", "provision")
+                .register(meterRegistry);
+    }
 
     /**
      * 用户登录
      */
     public User login(String phone, String password) {
-        log.info("用户登录，手机号: {}", phone);
+        log.debug("用户登录，手机号: {}", phone);
         
         try {
             // 查找用户
@@ -44,9 +80,10 @@ public class AuthService {
             }
             
             // 验证密码
-            if (!passwordEncoder.matches(password, user.getPassword())) {
+            if (!passwordHashService.matches(password, user.getPassword())) {
                 throw new IllegalArgumentException("密码错误");
             }
+            rehashIfNeeded(user, password);
             
             log.info("用户登录成功，用户ID: {}", user.getId());
             return user;
@@ -61,7 +98,7 @@ public class AuthService {
      * 用户注册
      */
     public User register(String phone, String nickname, String password) {
-        log.info("用户注册，手机号: {}, 昵称: {}", phone, nickname);
+        log.debug("用户注册，手机号: {}, 昵称: {}", phone, nickname);
         
         try {
             User user = userService.register(phone, nickname, password);
@@ -74,54 +111,110 @@ public class AuthService {
         }
     }
 
+    /**
+     * 短信验证码登录：一次 Redis 脚本校验验证码，不做密码哈希
+     */
+    public User smsLogin(String phone, String code) {
+        log.debug("短信验证码登录，手机号: {}", phone);
+
+        verificationCodeService.verifyLoginCode(phone, code);
+        User user = userService.findByPhone(phone);
+        if (user == null) {
+            throw new IllegalArgumentException("用户不存在");
+        }
+        if (user.getStatus() != 1) {
+            throw new IllegalArgumentException("用户账号已被禁用");
+        }
+        log.info("短信验证码登录成功，用户ID: {}", user.getId());
+        return user;
+    }
+
+    /**
+     * 成本因子调整后，登录成功时在后台以新成本重算哈希，不阻塞本次登录
+     */
+    private void rehashIfNeeded(User user, String password) {
+        String oldHash = user.getPassword();
+        if (!passwordHashService.needsRehash(oldHash)) {
+            return;
+        }
+        CompletableFuture<String> rehash = passwordHashService.rehashInBackground(password);
+        if (rehash == null) {
+            return;
+        }
+        rehash.thenAcceptAsync(newHash -> userService.replacePasswordHash(user.getId(), oldHash, newHash))
+                .exceptionally(e -> {
+                    log.warn("密码哈希升级失败，用户ID: {}, 错误信息: {}", user.getId(), e.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * 刷新访问令牌：轮换刷新令牌并在此处校验用户状态
+     * 访问令牌携带状态声明，鉴权过滤器不再查库，状态变更最迟在下一次刷新时生效
+     */
+    public AuthResponse refresh(String refreshToken) {
+        TokenSessionService.Rotation rotation = tokenSessionService.rotate(refreshToken);
+        User user = userService.findById(rotation.getUserId());
+        if (user == null || user.getStatus() != 1) {
+            tokenSessionService.revokeSession(rotation.getUserId(), rotation.getSessionId());
+            log.info("刷新被拒绝，用户不存在或已禁用，用户ID: {}", rotation.getUserId());
+            throw new IllegalArgumentException("用户账号已被禁用");
+        }
+        return tokenSessionService.refreshed(user, rotation);
+    }
+
     /**
      * 微信授权登录
+     * 授权码换取 openId 后先查本地用户，老用户直接登录；只有新用户才拉取微信资料
      */
     public User wechatLogin(String code) {
-        log.info("微信授权登录，授权码: {}", code);
+        log.debug("微信授权登录");
         
         try {
-            // 通过授权码获取微信用户信息
-            WechatService.WechatUserInfo wechatUserInfo = wechatService.getUserInfoByCode(code);
-            if (wechatUserInfo == null) {
+            // 通过授权码换取微信身份
+            WechatService.WechatUserInfo identity = wechatService.authorize(code);
+            if (identity == null) {
                 throw new IllegalArgumentException("微信授权失败，无法获取用户信息");
             }
             
             // 根据微信OpenID查找已存在的用户
-            User existingUser = userService.findByWxOpenId(wechatUserInfo.getOpenId());
+            User existingUser = userService.findByWxOpenId(identity.getOpenId());
             
             if (existingUser != null) {
                 // 用户已存在，直接登录
                 log.info("微信用户已存在，直接登录，用户ID: {}", existingUser.getId());
                 return existingUser;
             } else {
-                // 新用户，创建账号
-                User newUser = createWechatUser(wechatUserInfo);
-                log.info("微信新用户注册成功，用户ID: {}", newUser.getId());
-                return newUser;
+                // 新用户，拉取资料后创建账号；资料拉取失败时以默认昵称建档
+                return provisionWechatUser(identity.getOpenId(), () -> {
+                    WechatService.WechatUserInfo wechatUserInfo = wechatService.getUserInfo(identity.getOpenId());
+                    return wechatUserInfo != null ? wechatUserInfo : identity;
+                });
             }
             
         } catch (Exception e) {
-            log.error("微信授权登录失败，授权码: {}, 错误信息: {}", code, e.getMessage(), e);
+            log.error("微信授权登录失败，错误信息: {}", e.getMessage(), e);
             throw e;
         }
     }
 
     /**
      * 微信快捷登录（小程序）
+     * 老用户无需解密资料；新用户用本次登录缓存的 session_key 解密，不再调用微信
      */
     public User wechatMiniProgramLogin(String code, String encryptedData, String iv) {
-        log.info("微信小程序快捷登录");
+        log.debug("微信小程序快捷登录");
         
         try {
-            // 通过小程序授权获取用户信息
-            WechatService.WechatUserInfo wechatUserInfo = wechatService.getMiniProgramUserInfo(code, encryptedData, iv);
-            if (wechatUserInfo == null) {
+            // 通过小程序授权获取 openId 与 session_key
+            Map<String, String> session = wechatService.getMiniProgramSession(code);
+            if (session == null) {
                 throw new IllegalArgumentException("微信小程序授权失败");
             }
+            String openId = session.get("openid");
             
             // 根据微信OpenID查找已存在的用户
-            User existingUser = userService.findByWxOpenId(wechatUserInfo.getOpenId());
+            User existingUser = userService.findByWxOpenId(openId);
             
             if (existingUser != null) {
                 // 用户已存在，直接登录
@@ -129,9 +222,17 @@ public class AuthService {
                 return existingUser;
             } else {
                 // 新用户，创建账号
-                User newUser = createWechatUser(wechatUserInfo);
-                log.info("微信小程序新用户注册成功，用户ID: {}", newUser.getId());
-                return newUser;
+                return provisionWechatUser(openId, () -> {
+                    WechatService.WechatUserInfo wechatUserInfo =
+                            wechatService.decryptUserInfo(openId, encryptedData, iv);
+                    if (wechatUserInfo == null) {
+                        throw new IllegalArgumentException("微信小程序授权失败");
+                    }
+                    if (wechatUserInfo.getUnionId() == null) {
+                        wechatUserInfo.setUnionId(session.get("unionid"));
+                    }
+                    return wechatUserInfo;
+                });
             }
             
         } catch (Exception e) {
@@ -144,11 +245,11 @@ public class AuthService {
      * 绑定微信账号
      */
     public void bindWechat(String userId, String code) {
-        log.info("绑定微信账号，用户ID: {}", userId);
+        log.debug("绑定微信账号，用户ID: {}", userId);
         
         try {
-            // 获取微信用户信息
-            WechatService.WechatUserInfo wechatUserInfo = wechatService.getUserInfoByCode(code);
+            // 绑定只需要 openId/unionId，不拉取微信资料
+            WechatService.WechatUserInfo wechatUserInfo = wechatService.authorize(code);
             if (wechatUserInfo == null) {
                 throw new IllegalArgumentException("微信授权失败，无法获取用户信息");
             }
@@ -168,7 +269,7 @@ public class AuthService {
      * 修改密码
      */
     public void changePassword(String userId, String oldPassword, String newPassword) {
-        log.info("修改密码，用户ID: {}", userId);
+        log.debug("修改密码，用户ID: {}", userId);
         
         try {
             // 获取用户
@@ -178,7 +279,7 @@ public class AuthService {
             }
             
             // 验证旧密码
-            if (!passwordEncoder.matches(oldPassword, user.getPassword())) {
+            if (!passwordHashService.matches(oldPassword, user.getPassword())) {
                 throw new IllegalArgumentException("原密码错误");
             }
             
@@ -188,7 +289,7 @@ public class AuthService {
             }
             
             // 更新密码
-            user.setPassword(passwordEncoder.encode(newPassword));
+            user.setPassword(passwordHashService.encode(newPassword));
             userService.updateUser(user);
             
             log.info("修改密码成功，用户ID: {}", userId);
@@ -203,7 +304,7 @@ public class AuthService {
      * 重置密码
      */
     public void resetPassword(String phone, String newPassword) {
-        log.info("重置密码，手机号: {}", phone);
+        log.debug("重置密码，手机号: {}", phone);
         
         try {
             // 查找用户
@@ -218,7 +319,7 @@ public class AuthService {
             }
             
             // 更新密码
-            user.setPassword(passwordEncoder.encode(newPassword));
+            user.setPassword(passwordHashService.encode(newPassword));
             userService.updateUser(user);
             
             log.info("重置密码成功，手机号: {}", phone);
@@ -249,8 +350,20 @@ public class AuthService {
     }
 
     /**
-     * 创建微信用户
+     * 首次登录建档：同一 openId 本节点只建一次（SingleFlight），跨节点由租约持有者建档，
+     * 其余并发请求等待后直接读取已建好的用户，避免重复账号
      */
+    private User provisionWechatUser(String openId, Supplier<WechatService.WechatUserInfo> profile) {
+        return provisionFlights.execute(openId, () -> distributedLease.runOnce(
+                RedisKeys.wechatLeaseKey("provision:" + openId), PROVISION_LEASE,
+                () -> userService.findByWxOpenId(openId),
+                () -> {
+                    User newUser = createWechatUser(profile.get());
+                    log.info("微信新用户注册成功，用户ID: {}", newUser.getId());
+                    return newUser;
+                }));
+    }
+
     private User createWechatUser(WechatService.WechatUserInfo wechatUserInfo) {
         // 交给 UserService 以合规方式创建（生成有效手机号、编码密码、唯一性校验）
         return userService.createWechatUser(
@@ -0,0 +1,62 @@
+package cn.badminton.service;
+
+import cn.badminton.model.User;
+import cn.badminton.security.AuthenticatedPrincipal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+/**
+ * 当前登录用户
+ * 用户实体按请求缓存在 AuthenticatedPrincipal 中，控制器与各服务共用一次加载结果
+ *
+ * 作者: xiaolei
+ */
+@Service
+public class CurrentUserService {
+
+    @Autowired
+    private UserService userService;
+
+    /**
+     * 当前主体，未登录时返回 null
+     */
+    public AuthenticatedPrincipal principal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof AuthenticatedPrincipal) {
+            return (AuthenticatedPrincipal) authentication.getPrincipal();
+        }
+        return null;
+    }
+
+    public AuthenticatedPrincipal requirePrincipal() {
+        AuthenticatedPrincipal principal = principal();
+        if (principal == null) {
+            throw new IllegalArgumentException("未登录或登录已过期");
+        }
+        return principal;
+    }
+
+    /**
+     * 当前登录用户（本请求内只查询一次）
+     */
+    public User currentUser() {
+        User user = requirePrincipal().getUser(userService::findById);
+        if (user == null) {
+            throw new IllegalArgumentException("用户不存在");
+        }
+        return user;
+    }
+
+    /**
+     * 按ID查找用户；是当前登录用户时复用本请求已加载的实体
+     */
+    public User findUser(String userId) {
+        AuthenticatedPrincipal principal = principal();
+        if (principal != null && principal.getUserId().equals(userId)) {
+            return principal.getUser(userService::findById);
+        }
+        return userService.findById(userId);
+    }
+}
@@ -0,0 +1,176 @@
+package cn.badminton.service;
+
+import cn.badminton.config.RedisConfig.RedisKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 延时任务队列（每个队列一个 Redis ZSET badminton:jobs:delayed:{队列}，分值为到期时间毫秒）
+ * - 同一类型同一目标只有一个任务，重复登记即改期
+ * - 认领为一次 Lua：取出已到期的至多 limit 个任务，并把分值推后一个租约，只有一个节点能拿到同一任务
+ * - 处理完成后确认删除；节点崩溃未确认的任务在租约到期后重新到期，至少执行一次
+ * 每次认领的成本为 O(log N + 到期数)，与队列中的任务总数无关
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class DelayedJobQueue {
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'WITHSCORES', 'LIMIT', 0, ARGV[2])\n"
+                    + "for i = 1, #due, 2 do\n"
+                    + "  redis.call('ZADD', KEYS[1], 'XX', ARGV[3], due[i])\n"
+                    + "end\n"
+                    + "return due",
+            List.class);
+
+    /**
+     * 仅当分值仍是认领时写入的租约到期时间才删除；处理期间任务被改期则保留新的任务
+     */
+    private static final RedisScript<Long> ACK_SCRIPT = new DefaultRedisScript<>(
+            "if tonumber(redis.call('ZSCORE', KEYS[1], ARGV[1])) == tonumber(ARGV[2]) then\n"
+                    + "  return redis.call('ZREM', KEYS[1], ARGV[1])\n"
+                    + "end\n"
+                    + "return 0",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 登记（或改期）一批任务，一次 ZADD
+     */
+    public void schedule(String queue, Collection<DelayedJob> jobs) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = toTuples(jobs);
+        if (!tuples.isEmpty()) {
+            stringRedisTemplate.opsForZSet().add(RedisKeys.delayedJobsKey(queue), tuples);
+        }
+    }
+
+    /**
+     * 仅登记尚不存在的任务（补登时使用，不改动已有任务的到期时间）
+     */
+    public void scheduleIfAbsent(String queue, Collection<DelayedJob> jobs) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = toTuples(jobs);
+        if (!tuples.isEmpty()) {
+            stringRedisTemplate.opsForZSet().addIfAbsent(RedisKeys.delayedJobsKey(queue), tuples);
+        }
+    }
+
+    /**
+     * 撤销任务，一次 ZREM
+     */
+    public void cancel(String queue, Collection<DelayedJob> jobs) {
+        if (jobs == null || jobs.isEmpty()) {
+            return;
+        }
+        Object[] members = jobs.stream().map(DelayedJob::member).toArray();
+        stringRedisTemplate.opsForZSet().remove(RedisKeys.delayedJobsKey(queue), members);
+    }
+
+    /**
+     * 认领到期任务
+     *
+     * @param queue   队列名
+     * @param now     当前时间毫秒
+     * @param limit   本次最多认领的任务数
+     * @param leaseMs 租约时长，超过后未确认的任务重新到期
+     */
+    @SuppressWarnings("unchecked")
+    public List<DelayedJob> claimDue(String queue, long now, int limit, long leaseMs) {
+        String key = RedisKeys.delayedJobsKey(queue);
+        long leaseUntil = now + leaseMs;
+        List<Object> reply = stringRedisTemplate.execute(CLAIM_SCRIPT, List.of(key),
+                String.valueOf(now), String.valueOf(limit), String.valueOf(leaseUntil));
+        List<DelayedJob> jobs = new ArrayList<>();
+        if (reply == null) {
+            return jobs;
+        }
+        for (int i = 0; i + 1 < reply.size(); i += 2) {
+            DelayedJob job = DelayedJob.parse(String.valueOf(reply.get(i)));
+            if (job == null) {
+                log.warn("无法识别的延时任务，已丢弃: {}", reply.get(i));
+                stringRedisTemplate.opsForZSet().remove(key, String.valueOf(reply.get(i)));
+                continue;
+            }
+            job.dueAt = (long) Double.parseDouble(String.valueOf(reply.get(i + 1)));
+            job.leaseUntil = leaseUntil;
+            jobs.add(job);
+        }
+        return jobs;
+    }
+
+    /**
+     * 确认任务已处理
+     */
+    public void ack(String queue, DelayedJob job) {
+        stringRedisTemplate.execute(ACK_SCRIPT, List.of(RedisKeys.delayedJobsKey(queue)),
+                job.member(), String.valueOf(job.leaseUntil));
+    }
+
+    /**
+     * 队列中的任务数（含已认领未确认的）
+     */
+    public long size(String queue) {
+        Long size = stringRedisTemplate.opsForZSet().zCard(RedisKeys.delayedJobsKey(queue));
+        return size == null ? 0 : size;
+    }
+
+    private static Set<ZSetOperations.TypedTuple<String>> toTuples(Collection<DelayedJob> jobs) {
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+        if (jobs != null) {
+            for (DelayedJob job : jobs) {
+                tuples.add(new DefaultTypedTuple<>(job.member(), (double) job.dueAt));
+            }
+        }
+        return tuples;
+    }
+
+    /**
+     * 一个延时任务：类型 + 目标ID 唯一确定，成员格式 {类型}:{目标ID}
+     */
+    public static class DelayedJob {
+        private final String type;
+        private final String targetId;
+        private long dueAt;
+        private long leaseUntil;
+
+        public DelayedJob(String type, String targetId, long dueAt) {
+            this.type = type;
+            this.targetId = targetId;
+            this.dueAt = dueAt;
+        }
+
+        public DelayedJob(String type, String targetId) {
+            this(type, targetId, 0);
+        }
+
+        static DelayedJob parse(String member) {
+            int separator = member.indexOf(':');
+            if (separator <= 0 || separator == member.length() - 1) {
+                return null;
+            }
+            return new DelayedJob(member.substring(0, separator), member.substring(separator + 1));
+        }
+
+        public String member() { return type + ":" + targetId; }
+        public String getType() { return type; }
+        public String getTargetId() { return targetId; }
+        public long getDueAt() { return dueAt; }
+        public long getLeaseUntil() { return leaseUntil; }
+    }
+}
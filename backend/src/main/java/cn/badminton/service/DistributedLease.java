@@ -0,0 +1,86 @@
+package cn.badminton.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 跨节点“只做一次”协调（Redis SET NX PX 租约）
+ * - 拿到租约的节点执行 loader，loader 负责把结果写到共享位置（Redis 缓存、数据库等）
+ * - 未拿到租约的节点轮询 readShared，直到读到结果；持有者失败释放租约后由等待者接手
+ * - 租约到期仍无结果时抛出 RejectedExecutionException（接口返回 5030）
+ * 本节点内的并发合并由调用方配合 SingleFlight 完成，避免同节点线程争抢租约
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class DistributedLease {
+
+    private static final long POLL_INTERVAL_MS = 50;
+
+    /**
+     * 仅当租约仍归自己所有时释放，避免误删他人在租约过期后重新获得的租约
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n"
+                    + "return 0",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * @param leaseKey   租约键
+     * @param lease      租约时长，也是等待他人结果的最长时间
+     * @param readShared 读取共享结果，尚无可用结果时返回 null
+     * @param loader     持有租约时执行，返回结果并负责写回共享位置
+     */
+    public <T> T runOnce(String leaseKey, Duration lease, Supplier<T> readShared, Supplier<T> loader) {
+        T shared = readShared.get();
+        if (shared != null) {
+            return shared;
+        }
+        String owner = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + lease.toMillis();
+        while (true) {
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(leaseKey, owner, lease))) {
+                try {
+                    // 拿到租约前结果可能刚被上一个持有者写回
+                    T again = readShared.get();
+                    return again != null ? again : loader.get();
+                } finally {
+                    stringRedisTemplate.execute(RELEASE_SCRIPT, List.of(leaseKey), owner);
+                }
+            }
+            if (System.currentTimeMillis() >= deadline || !sleepQuietly()) {
+                break;
+            }
+            shared = readShared.get();
+            if (shared != null) {
+                return shared;
+            }
+        }
+        log.warn("等待租约超时，键: {}", leaseKey);
+        throw new RejectedExecutionException("请求处理中，请稍后重试");
+    }
+
+    private static boolean sleepQuietly() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package cn.badminton.service;
+
+import cn.badminton.config.RedisConfig;
+import cn.badminton.event.DomainEvent;
+import cn.badminton.event.DomainEventHandler;
+import cn.badminton.event.DomainEventStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo.XInfoGroup;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 领域事件消费：每个 DomainEventHandler 一个消费组，各节点以 {主机名}#{进程号} 作为消费者加入
+ * - 拉取：非阻塞 XREADGROUP，每批至多 batch-size 条，满批时继续拉取
+ * - 去重：每条记录带上 {前缀}{消费组}:{记录ID} 的已处理标记键交给处理器，由处理器把标记与自身写入放在同一原子操作中
+ * - 重试：处理失败不确认；空闲超过 claim-idle-ms 的未确认记录由任一节点 XCLAIM 后重新处理，
+ *   投递次数超过 max-deliveries 的记录记录日志后确认丢弃
+ * - 截断：每 trim-interval-ms 取所有消费组中最早的未确认位置（无未确认时为已投递位置），XTRIM MINID 删除更早的记录；
+ *   只删除全部消费组都已确认的事件，已下线的处理器须 XGROUP DESTROY 其消费组，否则流不会截断
+ * 投递至少一次：处理成功与确认之间崩溃时会重新投递，由处理器的标记去重
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class DomainEventConsumer {
+
+    @Autowired
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Autowired
+    private List<DomainEventHandler> handlers;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.events.consumer.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${app.events.consumer.batch-size:100}")
+    private int batchSize = 100;
+
+    @Value("${app.events.consumer.max-batches-per-poll:10}")
+    private int maxBatchesPerPoll = 10;
+
+    @Value("${app.events.consumer.claim-idle-ms:60000}")
+    private long claimIdleMs = 60000;
+
+    @Value("${app.events.consumer.max-deliveries:10}")
+    private long maxDeliveries = 10;
+
+    private final String consumerName = resolveConsumerName();
+
+    private final Set<String> readyGroups = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void init() {
+        meterRegistry.gauge("events.stream.length", this, consumer -> consumer.streamLength());
+    }
+
+    /**
+     * 启动时创建消费组（从流的开头读起，部署前已写入的事件同样会被处理）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureGroups() {
+        if (!enabled) {
+            return;
+        }
+        for (DomainEventHandler handler : handlers) {
+            ensureGroup(handler.group());
+        }
+    }
+
+    /**
+     * 拉取新事件
+     */
+    @Scheduled(fixedDelayString = "${app.events.consumer.poll-interval-ms:200}")
+    public void poll() {
+        if (!enabled) {
+            return;
+        }
+        for (DomainEventHandler handler : handlers) {
+            if (!ensureGroup(handler.group())) {
+                continue;
+            }
+            for (int round = 0; round < maxBatchesPerPoll; round++) {
+                List<MapRecord<String, Object, Object>> records;
+                try {
+                    records = redisTemplate.opsForStream().read(
+                            Consumer.from(handler.group(), consumerName),
+                            StreamReadOptions.empty().count(batchSize),
+                            StreamOffset.create(DomainEventStream.KEY, ReadOffset.lastConsumed()));
+                } catch (Exception e) {
+                    log.warn("拉取领域事件失败，消费组: {}, 错误信息: {}", handler.group(), e.getMessage());
+                    break;
+                }
+                if (records == null || records.isEmpty()) {
+                    break;
+                }
+                process(handler, records);
+                if (records.size() < batchSize) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 认领其他消费者长时间未确认的事件（节点崩溃、处理失败）
+     */
+    @Scheduled(fixedDelayString = "${app.events.consumer.claim-interval-ms:30000}")
+    public void reclaim() {
+        if (!enabled) {
+            return;
+        }
+        for (DomainEventHandler handler : handlers) {
+            if (!readyGroups.contains(handler.group())) {
+                continue;
+            }
+            try {
+                reclaim(handler);
+            } catch (Exception e) {
+                log.warn("认领未确认的领域事件失败，消费组: {}, 错误信息: {}", handler.group(), e.getMessage());
+            }
+        }
+    }
+
+    private void reclaim(DomainEventHandler handler) {
+        String group = handler.group();
+        PendingMessages pending = redisTemplate.opsForStream().pending(DomainEventStream.KEY, group,
+                Range.unbounded(), batchSize);
+        Duration minIdle = Duration.ofMillis(claimIdleMs);
+        List<RecordId> retry = new ArrayList<>();
+        List<RecordId> dead = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) < 0) {
+                continue;
+            }
+            if (message.getTotalDeliveryCount() >= maxDeliveries) {
+                dead.add(message.getId());
+            } else {
+                retry.add(message.getId());
+            }
+        }
+        if (!dead.isEmpty()) {
+            log.error("领域事件超过最大投递次数，已丢弃，消费组: {}, 记录: {}", group, dead);
+            meterRegistry.counter("events.dead", "group", group).increment(dead.size());
+            redisTemplate.opsForStream().acknowledge(DomainEventStream.KEY, group, dead.toArray(new RecordId[0]));
+        }
+        if (!retry.isEmpty()) {
+            List<MapRecord<String, Object, Object>> claimed = redisTemplate.opsForStream().claim(
+                    DomainEventStream.KEY, group, consumerName, minIdle, retry.toArray(new RecordId[0]));
+            log.info("认领未确认的领域事件，消费组: {}, 条数: {}", group, claimed.size());
+            process(handler, claimed);
+        }
+    }
+
+    /**
+     * 截断所有消费组都已确认的事件
+     */
+    @Scheduled(fixedDelayString = "${app.events.consumer.trim-interval-ms:60000}")
+    public void trim() {
+        if (!enabled || !readyGroups.containsAll(handlers.stream().map(DomainEventHandler::group).toList())) {
+            return;
+        }
+        try {
+            RecordId safe = null;
+            for (XInfoGroup group : redisTemplate.opsForStream().groups(DomainEventStream.KEY)) {
+                RecordId position = RecordId.of(group.lastDeliveredId());
+                if (group.pendingCount() != null && group.pendingCount() > 0) {
+                    PendingMessagesSummary pending = redisTemplate.opsForStream().pending(DomainEventStream.KEY,
+                            group.groupName());
+                    if (pending.minRecordId() != null) {
+                        position = earlier(position, pending.minRecordId());
+                    }
+                }
+                safe = safe == null ? position : earlier(safe, position);
+            }
+            if (safe == null || safe.getTimestamp() == 0) {
+                return;
+            }
+            byte[] minId = safe.getValue().getBytes(StandardCharsets.US_ASCII);
+            Object trimmed = redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("XTRIM",
+                    DomainEventStream.KEY.getBytes(StandardCharsets.UTF_8),
+                    "MINID".getBytes(StandardCharsets.US_ASCII), "~".getBytes(StandardCharsets.US_ASCII), minId));
+            log.debug("领域事件流已截断至 {}，删除条数: {}", safe, trimmed);
+        } catch (Exception e) {
+            log.warn("截断领域事件流失败，错误信息: {}", e.getMessage());
+        }
+    }
+
+    private void process(DomainEventHandler handler, List<MapRecord<String, Object, Object>> records) {
+        String group = handler.group();
+        List<RecordId> done = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            DomainEvent event;
+            try {
+                event = DomainEvent.fromFields(DomainEventStream.fields(record));
+            } catch (RuntimeException e) {
+                event = null;
+            }
+            if (event == null) {
+                log.warn("无法解析的领域事件，已确认丢弃，消费组: {}, 记录: {}", group, record.getId());
+                done.add(record.getId());
+                continue;
+            }
+            try {
+                handler.handle(event, processedKey(group, record.getId()));
+                done.add(record.getId());
+                meterRegistry.counter("events.consumed", "group", group, "type", event.getType()).increment();
+                meterRegistry.timer("events.lag", "group", group).record(
+                        Duration.between(event.getOccurredAt(), LocalDateTime.now()));
+            } catch (Exception e) {
+                // 不确认，空闲超时后重新认领
+                meterRegistry.counter("events.failed", "group", group, "type", event.getType()).increment();
+                log.error("领域事件处理失败，消费组: {}, 记录: {}, 类型: {}, 错误信息: {}",
+                        group, record.getId(), event.getType(), e.getMessage(), e);
+            }
+        }
+        if (!done.isEmpty()) {
+            redisTemplate.opsForStream().acknowledge(DomainEventStream.KEY, group, done.toArray(new RecordId[0]));
+        }
+    }
+
+    private boolean ensureGroup(String group) {
+        if (readyGroups.contains(group)) {
+            return true;
+        }
+        try {
+            redisTemplate.opsForStream().createGroup(DomainEventStream.KEY, ReadOffset.from("0"), group);
+            log.info("创建领域事件消费组: {}", group);
+        } catch (Exception e) {
+            if (!isBusyGroup(e)) {
+                log.warn("创建领域事件消费组失败，消费组: {}, 错误信息: {}", group, e.getMessage());
+                return false;
+            }
+        }
+        readyGroups.add(group);
+        return true;
+    }
+
+    private static boolean isBusyGroup(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("BUSYGROUP")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private double streamLength() {
+        try {
+            Long size = redisTemplate.opsForStream().size(DomainEventStream.KEY);
+            return size != null ? size : 0;
+        } catch (Exception e) {
+            return Double.NaN;
+        }
+    }
+
+    private static RecordId earlier(RecordId a, RecordId b) {
+        if (a.getTimestamp() != b.getTimestamp()) {
+            return a.getTimestamp() < b.getTimestamp() ? a : b;
+        }
+        return a.getSequence() <= b.getSequence() ? a : b;
+    }
+
+    private static String processedKey(String group, RecordId id) {
+        return RedisConfig.RedisKeys.DOMAIN_EVENTS_PROCESSED_PREFIX + group + ":" + id.getValue();
+    }
+
+    private static String resolveConsumerName() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "#" + ProcessHandle.current().pid();
+    }
+}
@@ -1,18 +1,27 @@
 package cn.badminton.service;
 
+import cn.badminton.common.Money;
+import cn.badminton.dto.expense.BatchSettleResponse;
+import cn.badminton.event.ExpenseSharesEvent;
+import cn.badminton.event.ShareSettled;
 import cn.badminton.model.BookingActivity;
 import cn.badminton.model.ExpenseRecord;
 import cn.badminton.model.ExpenseShare;
+import cn.badminton.model.User;
 import cn.badminton.repository.ExpenseRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * 费用管理服务
@@ -23,6 +32,11 @@ import java.util.Map;
 @Service
 @Slf4j
 public class ExpenseService {
+
+    /**
+     * 批量结算遇到并发结算时的最多尝试次数
+     */
+    private static final int MAX_SETTLE_ATTEMPTS = 3;
     
     @Autowired
     private ExpenseRepository expenseRepository;
@@ -33,12 +47,21 @@ public class ExpenseService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private CurrentUserService currentUserService;
+
+    @Autowired
+    private SettlementService settlementService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     /**
      * 创建费用记录
      */
     public ExpenseRecord createExpense(String activityId, String payerId, String title, 
-                                     BigDecimal totalAmount, String description, Integer shareType) {
-        log.info("创建费用记录，活动ID: {}, 付款人: {}, 标题: {}, 金额: {}", activityId, payerId, title, totalAmount);
+                                     Money totalAmount, String description, Integer shareType) {
+        log.debug("创建费用记录，活动ID: {}, 付款人: {}, 标题: {}, 金额: {}", activityId, payerId, title, totalAmount);
         
         try {
             // 参数验证
@@ -54,7 +77,7 @@ public class ExpenseService {
                 throw new IllegalArgumentException("费用标题不能为空");
             }
             
-            if (totalAmount == null || totalAmount.compareTo(BigDecimal.ZERO) <= 0) {
+            if (totalAmount == null || !totalAmount.isPositive()) {
                 throw new IllegalArgumentException("费用金额必须大于0");
             }
             
@@ -65,7 +88,7 @@ public class ExpenseService {
             }
             
             // 验证付款人是否存在
-            if (userService.findById(payerId) == null) {
+            if (currentUserService.findUser(payerId) == null) {
                 throw new IllegalArgumentException("付款人不存在");
             }
             
@@ -92,8 +115,8 @@ public class ExpenseService {
      * 计算并创建费用分摊
      */
     public List<ExpenseShare> createExpenseShares(String expenseId, List<String> participantIds, 
-                                                Map<String, BigDecimal> customAmounts) {
-        log.info("创建费用分摊，费用ID: {}, 参与人数: {}", expenseId, participantIds.size());
+                                                Map<String, Money> customAmounts) {
+        log.debug("创建费用分摊，费用ID: {}, 参与人数: {}", expenseId, participantIds.size());
         
         try {
             // 获取费用记录
@@ -110,15 +133,16 @@ public class ExpenseService {
                 throw new IllegalArgumentException("参与分摊的用户不能为空");
             }
             
-            // 验证所有参与者是否存在
+            // 验证所有参与者是否存在（一次批量查询）
+            Map<String, User> participants = userService.findByIds(participantIds);
             for (String userId : participantIds) {
-                if (userService.findById(userId) == null) {
+                if (!participants.containsKey(userId)) {
                     throw new IllegalArgumentException("用户不存在: " + userId);
                 }
             }
             
             List<ExpenseShare> shares = new ArrayList<>();
-            BigDecimal totalAmount = expense.getTotalAmount();
+            Money totalAmount = expense.getTotalAmount();
             
             if (expense.isEqualSplit()) {
                 // 平均分摊
@@ -132,10 +156,10 @@ public class ExpenseService {
                 shares = createAverageShares(expenseId, participantIds, totalAmount);
             }
             
-            // 保存分摊记录
-            for (ExpenseShare share : shares) {
-                expenseRepository.saveShare(share);
-            }
+            // 保存分摊记录（一次管道写入），并计入活动系列的净额账本
+            expenseRepository.saveShares(shares);
+            settlementService.recordShares(expense, shares);
+            eventPublisher.publishEvent(new ExpenseSharesEvent(ExpenseSharesEvent.Kind.CREATED, expense, shares));
             
             // 费用记录已经保存，无需更新状态
             
@@ -152,7 +176,7 @@ public class ExpenseService {
      * 确认分摊
      */
     public void confirmShare(String shareId, String userId) {
-        log.info("确认分摊，分摊ID: {}, 用户ID: {}", shareId, userId);
+        log.debug("确认分摊，分摊ID: {}, 用户ID: {}", shareId, userId);
         
         try {
             ExpenseShare share = expenseRepository.findShareById(shareId);
@@ -169,8 +193,15 @@ public class ExpenseService {
                 throw new IllegalArgumentException("分摊记录不可结算");
             }
             
+            // 状态校验与写回在同一个脚本内完成，并发结算只有一方成功并冲回账本
             share.settle();
-            expenseRepository.saveShare(share);
+            if (!expenseRepository.settleShares(List.of(share), List.of()).isEmpty()) {
+                throw new IllegalArgumentException("分摊记录不可结算");
+            }
+            ExpenseRecord expense = expenseRepository.findExpenseById(share.getExpenseId());
+            settlementService.reverseShares(expense, List.of(share));
+            eventPublisher.publishEvent(
+                    new ExpenseSharesEvent(ExpenseSharesEvent.Kind.SETTLED, expense, List.of(share)));
             
             log.info("确认分摊成功，分摊ID: {}", shareId);
             
@@ -184,7 +215,7 @@ public class ExpenseService {
      * 标记为已支付
      */
     public void markAsPaid(String shareId, String userId) {
-        log.info("标记为已支付，分摊ID: {}, 用户ID: {}", shareId, userId);
+        log.debug("标记为已支付，分摊ID: {}, 用户ID: {}", shareId, userId);
         
         try {
             ExpenseShare share = expenseRepository.findShareById(shareId);
@@ -202,11 +233,14 @@ public class ExpenseService {
                 throw new IllegalArgumentException("分摊记录不可结算");
             }
             
+            // 分摊状态与 ShareSettled 事件一起提交，提交前在脚本内再次确认仍为待结算；消费金额由事件消费方异步累加
             share.settle();
-            expenseRepository.saveShare(share);
-            
-            // 增加用户消费金额
-            userService.addUserExpense(share.getUserId(), share.getAmount());
+            if (!expenseRepository.settleShares(List.of(share), List.of(ShareSettled.of(share))).isEmpty()) {
+                throw new IllegalArgumentException("分摊记录不可结算");
+            }
+            settlementService.reverseShares(expense, List.of(share));
+            eventPublisher.publishEvent(
+                    new ExpenseSharesEvent(ExpenseSharesEvent.Kind.SETTLED, expense, List.of(share)));
             
             log.info("标记为已支付成功，分摊ID: {}", shareId);
             
@@ -216,6 +250,85 @@ public class ExpenseService {
         }
     }
 
+    /**
+     * 批量标记为已支付
+     * 范围：指定分摊ID，或按欠款人 / 付款人 / 活动圈定（后三者可组合取交集），只处理待结算的分摊
+     * 先整体校验权限（分摊者或付款人），任一不满足则整批拒绝；通过后分摊状态、待结算索引与 ShareSettled 事件
+     * 由一次脚本原子写回（见 settleConcurrently），结算账本一次管道冲回；ShareSettled 每个分摊者一条，
+     * 消费金额由事件消费方按用户一次累加
+     */
+    public BatchSettleResponse batchMarkAsPaid(String userId, List<String> shareIds, String debtorId,
+                                               String payerId, String activityId) {
+        log.debug("批量标记为已支付，用户ID: {}, 分摊数: {}, 欠款人: {}, 付款人: {}, 活动ID: {}",
+                userId, shareIds != null ? shareIds.size() : 0, debtorId, payerId, activityId);
+
+        try {
+            boolean explicit = shareIds != null && !shareIds.isEmpty();
+            if (!explicit && isBlank(debtorId) && isBlank(payerId) && isBlank(activityId)) {
+                throw new IllegalArgumentException("请指定结算范围");
+            }
+
+            Collection<String> candidateIds;
+            if (explicit) {
+                candidateIds = shareIds;
+            } else if (!isBlank(debtorId)) {
+                candidateIds = expenseRepository.findPendingShareIdsByUserId(debtorId);
+            } else if (!isBlank(activityId)) {
+                candidateIds = expenseRepository.findShareIdsByExpenseIds(
+                        expenseRepository.findExpenseIdsByActivityId(activityId));
+            } else {
+                candidateIds = expenseRepository.findShareIdsByExpenseIds(
+                        expenseRepository.findExpenseIdsByPayerId(payerId));
+            }
+
+            List<ExpenseShare> shares = expenseRepository.findSharesByIds(candidateIds);
+            if (explicit && shares.size() < new HashSet<>(shareIds).size()) {
+                throw new IllegalArgumentException("分摊记录不存在");
+            }
+            Map<String, ExpenseRecord> expenses = expenseRepository.findExpensesByIds(
+                    shares.stream().map(ExpenseShare::getExpenseId).collect(Collectors.toSet()));
+
+            List<ExpenseShare> selected = new ArrayList<>();
+            for (ExpenseShare share : shares) {
+                ExpenseRecord expense = expenses.get(share.getExpenseId());
+                if (expense == null || !share.canSettle()
+                        || (!isBlank(debtorId) && !debtorId.equals(share.getUserId()))
+                        || (!isBlank(payerId) && !payerId.equals(expense.getPayerId()))
+                        || (!isBlank(activityId) && !activityId.equals(expense.getActivityId()))) {
+                    continue;
+                }
+                if (!userId.equals(share.getUserId()) && !userId.equals(expense.getPayerId())) {
+                    throw new IllegalArgumentException("只有分摊者或付款人可以标记为已支付，分摊ID: " + share.getId());
+                }
+                selected.add(share);
+            }
+
+            selected.forEach(ExpenseShare::settle);
+            settleConcurrently(selected);
+
+            Map<ExpenseRecord, List<ExpenseShare>> byExpense = new LinkedHashMap<>();
+            Money total = Money.ZERO;
+            for (ExpenseShare share : selected) {
+                byExpense.computeIfAbsent(expenses.get(share.getExpenseId()), k -> new ArrayList<>()).add(share);
+                total = total.plus(share.getAmount());
+            }
+            settlementService.reverseShares(byExpense);
+            byExpense.forEach((expense, settled) -> eventPublisher.publishEvent(
+                    new ExpenseSharesEvent(ExpenseSharesEvent.Kind.SETTLED, expense, settled)));
+
+            BatchSettleResponse response = new BatchSettleResponse();
+            response.setSettledCount(selected.size());
+            response.setTotalAmount(total);
+            response.setShareIds(selected.stream().map(ExpenseShare::getId).collect(Collectors.toList()));
+            log.info("批量标记为已支付成功，用户ID: {}, 结算数: {}, 金额: {}", userId, selected.size(), total);
+            return response;
+
+        } catch (Exception e) {
+            log.error("批量标记为已支付失败，用户ID: {}, 错误信息: {}", userId, e.getMessage(), e);
+            throw e;
+        }
+    }
+
     /**
      * 获取活动的费用记录
      */
@@ -271,7 +384,7 @@ public class ExpenseService {
      * 删除费用记录
      */
     public void deleteExpense(String expenseId, String userId) {
-        log.info("删除费用记录，费用ID: {}, 用户ID: {}", expenseId, userId);
+        log.debug("删除费用记录，费用ID: {}, 用户ID: {}", expenseId, userId);
         
         try {
             ExpenseRecord expense = expenseRepository.findExpenseById(expenseId);
@@ -289,6 +402,13 @@ public class ExpenseService {
                 throw new IllegalArgumentException("费用记录状态不正确，不能删除");
             }
             
+            // 冲回尚未结算的分摊
+            List<ExpenseShare> pending = expenseRepository.findSharesByExpenseId(expenseId).stream()
+                    .filter(ExpenseShare::isPending)
+                    .collect(Collectors.toList());
+            settlementService.reverseShares(expense, pending);
+            eventPublisher.publishEvent(new ExpenseSharesEvent(ExpenseSharesEvent.Kind.REVOKED, expense, pending));
+
             expenseRepository.deleteExpenseById(expenseId);
             
             log.info("删除费用记录成功，费用ID: {}", expenseId);
@@ -300,31 +420,14 @@ public class ExpenseService {
     }
 
     /**
-     * 创建平均分摊
+     * 创建平均分摊（按分整除，余下的分给前几个参与者，总和恒等于总额）
      */
-    private List<ExpenseShare> createAverageShares(String expenseId, List<String> participantIds, BigDecimal totalAmount) {
-        List<ExpenseShare> shares = new ArrayList<>();
-        int participantCount = participantIds.size();
-        
-        // 计算平均金额（保留2位小数）
-        BigDecimal averageAmount = totalAmount.divide(BigDecimal.valueOf(participantCount), 2, RoundingMode.DOWN);
-        
-        // 计算余额
-        BigDecimal remainder = totalAmount.subtract(averageAmount.multiply(BigDecimal.valueOf(participantCount)));
-        
-        for (int i = 0; i < participantIds.size(); i++) {
-            String userId = participantIds.get(i);
-            BigDecimal shareAmount = averageAmount;
-            
-            // 将余额分配给前几个参与者
-            if (i < remainder.multiply(BigDecimal.valueOf(100)).intValue()) {
-                shareAmount = shareAmount.add(BigDecimal.valueOf(0.01));
-            }
-            
-            ExpenseShare share = new ExpenseShare(expenseId, userId, shareAmount);
-            shares.add(share);
+    private List<ExpenseShare> createAverageShares(String expenseId, List<String> participantIds, Money totalAmount) {
+        Money[] amounts = totalAmount.allocate(participantIds.size());
+        List<ExpenseShare> shares = new ArrayList<>(amounts.length);
+        for (int i = 0; i < amounts.length; i++) {
+            shares.add(new ExpenseShare(expenseId, participantIds.get(i), amounts[i]));
         }
-        
         return shares;
     }
 
@@ -332,31 +435,31 @@ public class ExpenseService {
      * 创建自定义分摊
      */
     private List<ExpenseShare> createCustomShares(String expenseId, List<String> participantIds, 
-                                                Map<String, BigDecimal> customAmounts, BigDecimal totalAmount) {
+                                                Map<String, Money> customAmounts, Money totalAmount) {
         if (customAmounts == null || customAmounts.isEmpty()) {
             throw new IllegalArgumentException("自定义分摊金额不能为空");
         }
         
         List<ExpenseShare> shares = new ArrayList<>();
-        BigDecimal customTotal = BigDecimal.ZERO;
+        Money customTotal = Money.ZERO;
         
         // 计算自定义金额总和
         for (String userId : participantIds) {
-            BigDecimal amount = customAmounts.get(userId);
-            if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            Money amount = customAmounts.get(userId);
+            if (amount == null || !amount.isPositive()) {
                 throw new IllegalArgumentException("用户 " + userId + " 的分摊金额无效");
             }
-            customTotal = customTotal.add(amount);
+            customTotal = customTotal.plus(amount);
         }
         
         // 验证总金额是否匹配
-        if (customTotal.compareTo(totalAmount) != 0) {
+        if (!customTotal.equals(totalAmount)) {
             throw new IllegalArgumentException("自定义分摊金额总和与费用总额不匹配");
         }
         
         // 创建分摊记录
         for (String userId : participantIds) {
-            BigDecimal amount = customAmounts.get(userId);
+            Money amount = customAmounts.get(userId);
             ExpenseShare share = new ExpenseShare(expenseId, userId, amount);
             shares.add(share);
         }
@@ -380,4 +483,27 @@ public class ExpenseService {
             return null;
         }
     }
+
+    /**
+     * 原子结算一批分摊：其中已被并发请求结算的分摊剔除后重试，最终 selected 只保留本次结算成功的分摊
+     */
+    private void settleConcurrently(List<ExpenseShare> selected) {
+        for (int attempt = 1; !selected.isEmpty(); attempt++) {
+            List<ShareSettled> events = ShareSettled.perUser(selected);
+            List<String> conflicts = expenseRepository.settleShares(selected, events);
+            if (conflicts.isEmpty()) {
+                return;
+            }
+            if (attempt >= MAX_SETTLE_ATTEMPTS) {
+                throw new IllegalArgumentException("分摊记录正在结算中，请稍后重试");
+            }
+            log.info("批量结算时部分分摊已被结算，剔除后重试，分摊ID: {}", conflicts);
+            Set<String> settledElsewhere = new HashSet<>(conflicts);
+            selected.removeIf(share -> settledElsewhere.contains(share.getId()));
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
 }
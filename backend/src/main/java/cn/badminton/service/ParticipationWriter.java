@@ -0,0 +1,162 @@
+package cn.badminton.service;
+
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.repository.ParticipationRepository;
+import cn.badminton.repository.ParticipationRepository.Change;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 参与记录异步落库
+ * 加入 / 退出时 Redis 参与者集合已同步更新（名单的实时来源），participation 表只做持久化，
+ * 因此变更先进入内存队列，由定时任务按批写库，请求线程不再等待 MySQL
+ * - 按入队顺序逐批写库：一批失败时留到下次 flush 重试，之后的变更不会越过它先落库，
+ *   同一用户同一活动的变更始终按发生顺序生效；连续失败 max-attempts 次的批次记录日志后丢弃
+ * - 队列满时请求线程先按顺序写出一批腾出位置再入队（而不是直接写库越过队列中更早的变更），
+ *   写库持续失败、仍无法入队时记录日志后丢弃
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class ParticipationWriter {
+
+    @Autowired
+    private ParticipationRepository participationRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.participation.batch-size:200}")
+    private int batchSize = 200;
+
+    @Value("${app.participation.queue-capacity:10000}")
+    private int queueCapacity = 10000;
+
+    @Value("${app.participation.max-attempts:5}")
+    private int maxAttempts = 5;
+
+    private BlockingQueue<Change> queue;
+
+    /**
+     * 正在写（或等待重试）的一批，只在持有本对象锁时访问
+     */
+    private final List<Change> batch = new ArrayList<>();
+    private int attempts;
+
+    private Counter rowsCounter;
+    private Counter failedCounter;
+    private Counter overflowCounter;
+    private Counter droppedCounter;
+
+    @PostConstruct
+    public void init() {
+        queue = new LinkedBlockingQueue<>(queueCapacity);
+        rowsCounter = Counter.builder("participation.writer.rows").register(meterRegistry);
+        failedCounter = Counter.builder("participation.writer.failed").register(meterRegistry);
+        overflowCounter = Counter.builder("participation.writer.overflow").register(meterRegistry);
+        droppedCounter = Counter.builder("participation.writer.dropped").register(meterRegistry);
+        Gauge.builder("participation.writer.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    @EventListener
+    public void onActivityEvent(ActivityEvent event) {
+        String activityId = event.getActivity().getId();
+        switch (event.getKind()) {
+            case CREATED:
+                enqueue(new Change(activityId, event.getUserId(), true, true));
+                break;
+            case JOINED:
+                enqueue(new Change(activityId, event.getUserId(), true, false));
+                break;
+            case LEFT:
+                enqueue(new Change(activityId, event.getUserId(), false, false));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 排空队列，每批最多 batchSize 条、一个事务；某批失败时停止，下次 flush 从这一批重试
+     */
+    @Scheduled(fixedDelayString = "${app.participation.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        while (writeNextBatch()) {
+            // 逐批写出，直到队列为空或当前批失败
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (!batch.isEmpty() || !queue.isEmpty()) {
+            log.error("关闭时仍有参与记录未落库，变更数: {}", batch.size() + queue.size());
+        }
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    private void enqueue(Change change) {
+        if (queue.offer(change)) {
+            return;
+        }
+        overflowCounter.increment();
+        log.warn("参与记录队列已满（{}），先按顺序写出一批再入队，活动ID: {}", queueCapacity, change.getActivityId());
+        writeNextBatch();
+        if (!queue.offer(change)) {
+            droppedCounter.increment();
+            log.error("参与记录无法入队，已丢弃，活动ID: {}, 用户ID: {}, 加入: {}",
+                    change.getActivityId(), change.getUserId(), change.isJoined());
+        }
+    }
+
+    /**
+     * 写出下一批：先重试上次失败的批次，否则从队列取一批
+     *
+     * @return 是否写出（或丢弃）了一批，可以继续写下一批
+     */
+    private synchronized boolean writeNextBatch() {
+        if (batch.isEmpty() && queue.drainTo(batch, batchSize) == 0) {
+            return false;
+        }
+        if (!write(batch)) {
+            if (++attempts < maxAttempts) {
+                return false;
+            }
+            droppedCounter.increment(batch.size());
+            log.error("参与记录批量落库连续失败 {} 次，已丢弃，变更数: {}", attempts, batch.size());
+        }
+        batch.clear();
+        attempts = 0;
+        return true;
+    }
+
+    private boolean write(List<Change> changes) {
+        try {
+            rowsCounter.increment(participationRepository.applyChanges(changes));
+            return true;
+        } catch (Exception e) {
+            failedCounter.increment(changes.size());
+            log.error("参与记录批量落库失败，变更数: {}, 第 {} 次, 错误信息: {}",
+                    changes.size(), attempts + 1, e.getMessage(), e);
+            return false;
+        }
+    }
+}
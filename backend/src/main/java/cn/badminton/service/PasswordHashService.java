@@ -0,0 +1,217 @@
+package cn.badminton.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 密码哈希服务
+ * - BCrypt 计算放在独立的有界线程池执行，不占用 Tomcat 请求线程；登录高峰时普通接口不受影响
+ * - 队列满时立即拒绝（RejectedExecutionException，接口返回 5030），等待超时同样拒绝
+ * - 成本因子由 app.password.bcrypt-strength 配置（用 BCryptCostBenchmark 标定），
+ *   登录时发现库中哈希的成本与配置不一致，在后台以新成本重算
+ * - 指标：password.hash（计算耗时）、password.hash.wait（排队耗时）、password.hash.queue.depth、
+ *   password.hash.active、password.hash.rejected、password.rehash
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class PasswordHashService {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d{2})\\$");
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.password.bcrypt-strength:10}")
+    private int strength = 10;
+
+    /**
+     * 哈希线程数，0 表示取 CPU 核数的一半，给请求线程留出算力
+     */
+    @Value("${app.password.threads:0}")
+    private int threads;
+
+    @Value("${app.password.queue-capacity:64}")
+    private int queueCapacity = 64;
+
+    /**
+     * 调用方等待结果的最长时间（含排队）
+     */
+    @Value("${app.password.timeout-ms:2000}")
+    private long timeoutMs = 2000;
+
+    /**
+     * 启动自检：配置成本下单次哈希超过该值时告警
+     */
+    @Value("${app.password.max-hash-ms:300}")
+    private long maxHashMs = 300;
+
+    private BCryptPasswordEncoder encoder;
+    private ThreadPoolExecutor executor;
+
+    private Timer encodeTimer;
+    private Timer matchTimer;
+    private Timer waitTimer;
+    private Counter queueFullCounter;
+    private Counter timeoutCounter;
+    private Counter rehashCounter;
+
+    @PostConstruct
+    public void init() {
+        encoder = new BCryptPasswordEncoder(strength);
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), r -> {
+                    Thread t = new Thread(r, "pwd-hash-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        encodeTimer = Timer.builder("password.hash").tag("op", "encode").register(meterRegistry);
+        matchTimer = Timer.builder("password.hash").tag("op", "matches").register(meterRegistry);
+        waitTimer = Timer.builder("password.hash.wait").register(meterRegistry);
+        queueFullCounter = Counter.builder("password.hash.rejected").tag("reason", "queue_full").register(meterRegistry);
+        timeoutCounter = Counter.builder("password.hash.rejected").tag("reason", "timeout").register(meterRegistry);
+        rehashCounter = Counter.builder("password.rehash").register(meterRegistry);
+        Gauge.builder("password.hash.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("password.hash.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+
+        long start = System.nanoTime();
+        encoder.encode("calibration");
+        long costMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (costMs > maxHashMs) {
+            log.warn("BCrypt 成本 {} 单次耗时 {}ms，超过 {}ms，建议用 BCryptCostBenchmark 重新标定",
+                    strength, costMs, maxHashMs);
+        } else {
+            log.info("密码哈希线程池就绪，线程数: {}, 队列: {}, BCrypt 成本: {}, 单次耗时: {}ms",
+                    poolSize, queueCapacity, strength, costMs);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 计算密码哈希（在哈希线程池上执行，调用方阻塞等待）
+     */
+    public String encode(CharSequence rawPassword) {
+        return await(submit(() -> encoder.encode(rawPassword), encodeTimer));
+    }
+
+    /**
+     * 校验密码（在哈希线程池上执行，调用方阻塞等待）
+     */
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) {
+            return false;
+        }
+        return await(submit(() -> encoder.matches(rawPassword, encodedPassword), matchTimer));
+    }
+
+    /**
+     * 库中哈希的成本因子与当前配置不一致时需要重算
+     */
+    public boolean needsRehash(String encodedPassword) {
+        int cost = costOf(encodedPassword);
+        return cost > 0 && cost != strength;
+    }
+
+    /**
+     * 后台以当前成本重算哈希；线程池繁忙（队列过半）时放弃，留待下次登录
+     *
+     * @return 新哈希；放弃时返回 null
+     */
+    public CompletableFuture<String> rehashInBackground(CharSequence rawPassword) {
+        if (executor.getQueue().size() * 2 >= queueCapacity) {
+            return null;
+        }
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(encodeTimer.record(() -> encoder.encode(rawPassword)));
+                    rehashCounter.increment();
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+        return future;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    /**
+     * 解析 BCrypt 哈希中的成本因子，非 BCrypt 格式返回 -1
+     */
+    public static int costOf(String encodedPassword) {
+        if (encodedPassword == null) {
+            return -1;
+        }
+        Matcher m = BCRYPT_COST.matcher(encodedPassword);
+        return m.find() ? Integer.parseInt(m.group(1)) : -1;
+    }
+
+    private <T> Future<T> submit(Callable<T> task, Timer timer) {
+        long enqueued = System.nanoTime();
+        try {
+            return executor.submit(() -> {
+                waitTimer.record(System.nanoTime() - enqueued, TimeUnit.NANOSECONDS);
+                return timer.recordCallable(task);
+            });
+        } catch (RejectedExecutionException e) {
+            queueFullCounter.increment();
+            throw new RejectedExecutionException("密码哈希线程池(pwd-hash)队列已满", e);
+        }
+    }
+
+    private <T> T await(Future<T> future) {
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeoutCounter.increment();
+            throw new RejectedExecutionException("密码哈希线程池(pwd-hash)等待超时", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new RejectedExecutionException("等待密码哈希线程池(pwd-hash)时被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package cn.badminton.service;
+
+import cn.badminton.common.Money;
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.dto.expense.SettlementPlanResponse;
+import cn.badminton.dto.expense.SettlementPlanResponse.Transfer;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.model.ExpenseRecord;
+import cn.badminton.model.ExpenseShare;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * 结算服务：按活动系列维护成员净额账本，并生成“谁付给谁”的转账方案（笔数不超过非零成员数 - 1）
+ * - 活动系列以发起人区分（同一发起人组织的活动视为同一群体），账本为 badminton:user:debts:{发起人ID}
+ * - 创建分摊时付款人 +金额、分摊人 -金额；结算或删除待结算分摊时反向记账；自己付给自己的分摊不入账
+ * - 入账时在分摊 Hash 上写 ledger 标记；账本上线前创建的分摊没有标记，冲回时跳过，避免冲回从未记过的金额
+ * - 账本只做 HINCRBY 增量更新，查询方案只需一次 HGETALL
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class SettlementService {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ActivityService activityService;
+
+    /**
+     * 费用所属的活动系列ID
+     */
+    public String groupOf(ExpenseRecord expense) {
+        BookingActivity activity = activityService.getActivityById(expense.getActivityId());
+        if (activity == null) {
+            throw new IllegalArgumentException("活动不存在");
+        }
+        return activity.getOrganizer();
+    }
+
+    /**
+     * 新建分摊入账：分摊人欠付款人，并与账本增量同一管道写入分摊的入账标记
+     */
+    public void recordShares(ExpenseRecord expense, Collection<ExpenseShare> shares) {
+        Map<String, Long> deltas = new TreeMap<>();
+        accumulate(deltas, expense.getPayerId(), shares, 1);
+        Map<String, Map<String, Long>> deltasByGroup = new TreeMap<>();
+        deltasByGroup.put(groupOf(expense), deltas);
+        flush(deltasByGroup, shares);
+    }
+
+    /**
+     * 分摊结算或作废：冲回入账时的金额（未入账的分摊跳过）
+     */
+    public void reverseShares(ExpenseRecord expense, Collection<ExpenseShare> shares) {
+        Map<ExpenseRecord, Collection<ExpenseShare>> sharesByExpense = new HashMap<>();
+        sharesByExpense.put(expense, shares);
+        reverseShares(sharesByExpense);
+    }
+
+    /**
+     * 活动系列内非零的成员净额（分），按用户ID排序
+     */
+    public Map<String, Long> balances(String groupId) {
+        Map<Object, Object> raw = stringRedisTemplate.opsForHash().entries(RedisKeys.userDebtsKey(groupId));
+        Map<String, Long> balances = new TreeMap<>();
+        raw.forEach((userId, cents) -> {
+            long value = Long.parseLong(cents.toString());
+            if (value != 0) {
+                balances.put(userId.toString(), value);
+            }
+        });
+        return balances;
+    }
+
+    /**
+     * 活动所在系列的结算方案
+     */
+    public SettlementPlanResponse plan(String activityId) {
+        BookingActivity activity = activityService.getActivityById(activityId);
+        if (activity == null) {
+            throw new IllegalArgumentException("活动不存在");
+        }
+        String groupId = activity.getOrganizer();
+        Map<String, Long> balances = balances(groupId);
+
+        SettlementPlanResponse response = new SettlementPlanResponse();
+        response.setGroupId(groupId);
+        Map<String, Money> display = new TreeMap<>();
+        balances.forEach((userId, cents) -> display.put(userId, Money.ofCents(cents)));
+        response.setBalances(display);
+        response.setTransfers(planTransfers(balances));
+        return response;
+    }
+
+    /**
+     * 贪心生成转账方案：每次让当前欠款最多的人付给应收最多的人，金额取两者较小值
+     * 每一步至少结清一人，转账笔数不超过非零成员数 - 1，复杂度 O(n log n)
+     */
+    public static List<Transfer> planTransfers(Map<String, Long> balances) {
+        Comparator<Map.Entry<String, Long>> largestFirst = Map.Entry.<String, Long>comparingByValue().reversed()
+                .thenComparing(Map.Entry.<String, Long>comparingByKey());
+        PriorityQueue<Map.Entry<String, Long>> creditors = new PriorityQueue<>(largestFirst);
+        PriorityQueue<Map.Entry<String, Long>> debtors = new PriorityQueue<>(largestFirst);
+        long sum = 0;
+        for (Map.Entry<String, Long> e : balances.entrySet()) {
+            long cents = e.getValue();
+            sum += cents;
+            if (cents > 0) {
+                creditors.add(Map.entry(e.getKey(), cents));
+            } else if (cents < 0) {
+                debtors.add(Map.entry(e.getKey(), -cents));
+            }
+        }
+        if (sum != 0) {
+            log.warn("结算账本净额之和不为0，差额: {} 分，多出部分不生成转账", sum);
+        }
+
+        List<Transfer> transfers = new ArrayList<>();
+        while (!creditors.isEmpty() && !debtors.isEmpty()) {
+            Map.Entry<String, Long> creditor = creditors.poll();
+            Map.Entry<String, Long> debtor = debtors.poll();
+            long amount = Math.min(creditor.getValue(), debtor.getValue());
+            transfers.add(new Transfer(debtor.getKey(), creditor.getKey(), Money.ofCents(amount)));
+            if (creditor.getValue() > amount) {
+                creditors.add(Map.entry(creditor.getKey(), creditor.getValue() - amount));
+            }
+            if (debtor.getValue() > amount) {
+                debtors.add(Map.entry(debtor.getKey(), debtor.getValue() - amount));
+            }
+        }
+        return transfers;
+    }
+
+    /**
+     * 批量冲回多笔费用下的分摊：每个活动只查一次所属系列，所有账本的增量合并后一次管道写入
+     */
+    public void reverseShares(Map<ExpenseRecord, ? extends Collection<ExpenseShare>> sharesByExpense) {
+        Map<String, String> groupByActivity = new HashMap<>();
+        Map<String, Map<String, Long>> deltasByGroup = new TreeMap<>();
+        sharesByExpense.forEach((expense, shares) -> {
+            List<ExpenseShare> recorded = new ArrayList<>();
+            shares.forEach(share -> {
+                if (share.isLedgerRecorded()) {
+                    recorded.add(share);
+                }
+            });
+            if (recorded.size() < shares.size()) {
+                log.debug("跳过未入账的分摊，费用ID: {}, 条数: {}", expense.getId(), shares.size() - recorded.size());
+            }
+            if (recorded.isEmpty()) {
+                return;
+            }
+            String groupId = groupByActivity.computeIfAbsent(expense.getActivityId(), id -> groupOf(expense));
+            accumulate(deltasByGroup.computeIfAbsent(groupId, k -> new TreeMap<>()), expense.getPayerId(),
+                    recorded, -1);
+        });
+        flush(deltasByGroup, List.of());
+    }
+
+    private static void accumulate(Map<String, Long> deltas, String payerId,
+                                   Collection<ExpenseShare> shares, int sign) {
+        for (ExpenseShare share : shares) {
+            if (share.getUserId() == null || share.getUserId().equals(payerId)) {
+                continue;
+            }
+            long cents = share.getAmount().getCents() * sign;
+            deltas.merge(payerId, cents, Long::sum);
+            deltas.merge(share.getUserId(), -cents, Long::sum);
+        }
+    }
+
+    private void flush(Map<String, Map<String, Long>> deltasByGroup, Collection<ExpenseShare> recorded) {
+        deltasByGroup.values().removeIf(Map::isEmpty);
+        if (deltasByGroup.isEmpty() && recorded.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection c = (StringRedisConnection) connection;
+            deltasByGroup.forEach((groupId, deltas) -> {
+                String key = RedisKeys.userDebtsKey(groupId);
+                deltas.forEach((userId, delta) -> c.hIncrBy(key, userId, delta));
+            });
+            recorded.forEach(share -> c.hSet(RedisKeys.shareKey(share.getId()), "ledger", "1"));
+            return null;
+        });
+        recorded.forEach(share -> share.setLedgerRecorded(true));
+        log.debug("结算账本记账，系列数: {}", deltasByGroup.size());
+    }
+}
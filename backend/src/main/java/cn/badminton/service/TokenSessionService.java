@@ -0,0 +1,517 @@
+package cn.badminton.service;
+
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.dto.auth.AuthResponse;
+import cn.badminton.dto.auth.SessionResponse;
+import cn.badminton.model.User;
+import cn.badminton.util.BloomFilter;
+import cn.badminton.util.IdGenerator;
+import cn.badminton.util.JwtUtil;
+import cn.badminton.util.JwtUtil.TokenInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 令牌会话登记与吊销
+ *
+ * Redis 结构：
+ * - badminton:token:{sid}            HASH  userId / device / issuedAt / expiresAt / refresh（刷新令牌摘要），随会话过期
+ * - badminton:token:user:{userId}    SET   该用户的会话ID
+ * - badminton:token:revoked          ZSET  已吊销会话ID，score 为该会话最后一个访问令牌的过期时间，过期后清理
+ * - badminton:token:revoked_before   HASH  userId -> 截止时间，此前签发的令牌全部失效（注销全部、禁用用户）
+ * - badminton:token:revocations      频道  吊销广播
+ *
+ * 刷新令牌形如 {sid}.{随机串}，Redis 只存随机串的 SHA-256；刷新时在会话哈希上原子比对并轮换。
+ * 访问令牌短时有效，按会话的吊销记录只需保留一个访问令牌有效期，集合规模随之很小；
+ * 按用户的截止时间还要覆盖没有会话ID的旧版长效令牌，保留到仍被接受的最长令牌有效期之后。
+ *
+ * 每个节点在内存中维护已吊销会话的布隆过滤器与用户截止时间表：
+ * 请求鉴权时过滤器判定"一定不存在"即放行，不产生任何 IO；只有可能命中时才用 ZSCORE 确认。
+ * 过滤器由定时任务从 Redis 全量重建（剔除已过期的吊销记录），两次重建之间靠频道广播增量更新，
+ * 重建期间收到的广播在新过滤器替换前补放一遍，避免丢失。
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class TokenSessionService implements MessageListener {
+
+    private static final int MAX_DEVICE_LENGTH = 200;
+    private static final long DEFAULT_EXPECTED_INSERTIONS = 100_000;
+    private static final double DEFAULT_FPP = 0.001;
+    private static final int REFRESH_SECRET_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * 刷新令牌轮换：摘要一致才替换，返回 {ok, userId} / {mismatch} / {missing}
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ROTATE_SCRIPT = new DefaultRedisScript<>(
+            "local h = redis.call('HMGET', KEYS[1], 'refresh', 'userId')\n"
+                    + "if not h[1] then return {'missing'} end\n"
+                    + "if h[1] ~= ARGV[1] then return {'mismatch'} end\n"
+                    + "redis.call('HSET', KEYS[1], 'refresh', ARGV[2])\n"
+                    + "return {'ok', h[2]}",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.token.revocation.expected-insertions:100000}")
+    private long expectedInsertions = DEFAULT_EXPECTED_INSERTIONS;
+
+    @Value("${app.token.revocation.fpp:0.001}")
+    private double fpp = DEFAULT_FPP;
+
+    private volatile RevocationState state =
+            new RevocationState(new BloomFilter(DEFAULT_EXPECTED_INSERTIONS, DEFAULT_FPP), new ConcurrentHashMap<>());
+
+    /**
+     * 首次从 Redis 加载完成前，过滤器不可信，所有带会话ID的令牌都回源确认
+     */
+    private volatile boolean loaded;
+
+    private final Object rebuildLock = new Object();
+
+    /**
+     * 重建进行中时收集广播，非重建期间为 null；受 rebuildLock 保护
+     */
+    private List<String> pendingEvents;
+
+    private Counter possibleHits;
+    private Counter confirmedHits;
+    private Counter refreshFailures;
+
+    @PostConstruct
+    public void init() {
+        possibleHits = Counter.builder("token.revocation.possible_hits").register(meterRegistry);
+        confirmedHits = Counter.builder("token.revocation.confirmed_hits").register(meterRegistry);
+        refreshFailures = Counter.builder("token.refresh.failures").register(meterRegistry);
+        listenerContainer.addMessageListener(this, new ChannelTopic(RedisKeys.TOKEN_REVOCATION_CHANNEL));
+    }
+
+    /**
+     * 登录：登记会话并签发访问令牌与刷新令牌
+     *
+     * @param device 设备描述（一般为 User-Agent），可为空
+     */
+    public AuthResponse issue(User user, String device) {
+        String sessionId = IdGenerator.nextId();
+        String refreshSecret = newRefreshSecret();
+        long issuedAt = System.currentTimeMillis();
+        long expiresAt = issuedAt + jwtUtil.getRefreshExpireMillis();
+        long ttlSeconds = jwtUtil.getRefreshExpireMillis() / 1000;
+
+        Map<String, String> fields = new HashMap<>();
+        fields.put("userId", user.getId());
+        fields.put("device", truncate(device));
+        fields.put("issuedAt", String.valueOf(issuedAt));
+        fields.put("expiresAt", String.valueOf(expiresAt));
+        fields.put("refresh", sha256Hex(refreshSecret));
+
+        String sessionKey = RedisKeys.tokenKey(sessionId);
+        String userKey = RedisKeys.userTokensKey(user.getId());
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection c = (StringRedisConnection) connection;
+            c.hMSet(sessionKey, fields);
+            c.expire(sessionKey, ttlSeconds);
+            c.sAdd(userKey, sessionId);
+            // 集合随最近一次登录续期，最长与会话同寿命
+            c.expire(userKey, ttlSeconds);
+            return null;
+        });
+        return tokens(user, sessionId, sessionId + "." + refreshSecret);
+    }
+
+    /**
+     * 轮换刷新令牌：一次 EVAL 在会话哈希上比对并替换刷新令牌摘要
+     * 旧刷新令牌随即失效；会话已注销或过期时会话哈希不存在，刷新失败
+     *
+     * @return 会话所属用户与新的刷新令牌
+     */
+    public Rotation rotate(String refreshToken) {
+        int dot = refreshToken == null ? -1 : refreshToken.indexOf('.');
+        if (dot <= 0 || dot == refreshToken.length() - 1) {
+            throw new IllegalArgumentException("登录已过期，请重新登录");
+        }
+        String sessionId = refreshToken.substring(0, dot);
+        String nextSecret = newRefreshSecret();
+        List<?> result = stringRedisTemplate.execute(ROTATE_SCRIPT, List.of(RedisKeys.tokenKey(sessionId)),
+                sha256Hex(refreshToken.substring(dot + 1)), sha256Hex(nextSecret));
+        String outcome = result == null || result.isEmpty() ? "missing" : String.valueOf(result.get(0));
+        if (!"ok".equals(outcome)) {
+            if ("mismatch".equals(outcome)) {
+                // 旧刷新令牌被重放（或并发刷新），不轮换
+                log.warn("刷新令牌不匹配，会话ID: {}", sessionId);
+            }
+            refreshFailures.increment();
+            throw new IllegalArgumentException("登录已过期，请重新登录");
+        }
+        return new Rotation(String.valueOf(result.get(1)), sessionId, sessionId + "." + nextSecret);
+    }
+
+    /**
+     * 刷新：为已轮换的会话签发新的访问令牌
+     */
+    public AuthResponse refreshed(User user, Rotation rotation) {
+        return tokens(user, rotation.getSessionId(), rotation.getRefreshToken());
+    }
+
+    private AuthResponse tokens(User user, String sessionId, String refreshToken) {
+        String accessToken = jwtUtil.generateToken(user.getId(), sessionId, user.getStatus(), user.getTenant());
+        return AuthResponse.of(user, accessToken, refreshToken, jwtUtil.getExpireMillis() / 1000);
+    }
+
+    /**
+     * 注销单个会话
+     */
+    public void revoke(TokenInfo info) {
+        if (info.getSessionId() == null) {
+            // 旧版令牌没有会话ID，只能按用户整体失效
+            revokeAll(info.getUserId());
+            return;
+        }
+        revokeSession(info.getUserId(), info.getSessionId());
+    }
+
+    /**
+     * 注销指定会话（需属于该用户）
+     *
+     * @return 会话不存在或不属于该用户时返回 false
+     */
+    public boolean revoke(String userId, String sessionId) {
+        Object owner = stringRedisTemplate.opsForHash().get(RedisKeys.tokenKey(sessionId), "userId");
+        if (!userId.equals(owner)) {
+            return false;
+        }
+        revokeSession(userId, sessionId);
+        return true;
+    }
+
+    /**
+     * 删除会话哈希即令刷新令牌失效；已签发的访问令牌最多再存活一个有效期，吊销记录保留到那时为止
+     */
+    public void revokeSession(String userId, String sessionId) {
+        long until = accessTokenHorizon();
+        String event = "s:" + sessionId;
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection c = (StringRedisConnection) connection;
+            c.zAdd(RedisKeys.TOKEN_REVOKED, until, sessionId);
+            c.del(RedisKeys.tokenKey(sessionId));
+            c.sRem(RedisKeys.userTokensKey(userId), sessionId);
+            c.publish(RedisKeys.TOKEN_REVOCATION_CHANNEL, event);
+            return null;
+        });
+        onEvent(event);
+        log.info("会话已注销，用户ID: {}, 会话ID: {}", userId, sessionId);
+    }
+
+    /**
+     * 注销用户的全部会话：登记截止时间（覆盖未登记的旧版令牌），并逐个吊销已登记会话
+     */
+    public void revokeAll(String userId) {
+        // JWT 的 iat 为秒精度，截止时间取整到秒，避免误伤之后同一秒内签发的新令牌
+        long cutoff = System.currentTimeMillis() / 1000 * 1000;
+        String userKey = RedisKeys.userTokensKey(userId);
+        List<String> sessionIds = new ArrayList<>(membersOf(userKey));
+        long until = accessTokenHorizon();
+
+        String event = "u:" + userId + ":" + cutoff + ":" + String.join(",", sessionIds);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection c = (StringRedisConnection) connection;
+            c.hSet(RedisKeys.TOKEN_REVOKED_BEFORE, userId, String.valueOf(cutoff));
+            for (String sid : sessionIds) {
+                c.zAdd(RedisKeys.TOKEN_REVOKED, until, sid);
+                c.del(RedisKeys.tokenKey(sid));
+            }
+            c.del(userKey);
+            c.publish(RedisKeys.TOKEN_REVOCATION_CHANNEL, event);
+            return null;
+        });
+        onEvent(event);
+        log.info("用户全部会话已注销，用户ID: {}, 会话数: {}", userId, sessionIds.size());
+    }
+
+    /**
+     * 列出用户的有效会话，按签发时间倒序；顺带清理集合中已过期的会话ID
+     */
+    public List<SessionResponse> listSessions(String userId, String currentSessionId) {
+        String userKey = RedisKeys.userTokensKey(userId);
+        List<String> sessionIds = new ArrayList<>(membersOf(userKey));
+        if (sessionIds.isEmpty()) {
+            return List.of();
+        }
+        List<Object> hashes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection c = (StringRedisConnection) connection;
+            for (String sid : sessionIds) {
+                c.hGetAll(RedisKeys.tokenKey(sid));
+            }
+            return null;
+        });
+
+        List<SessionResponse> sessions = new ArrayList<>();
+        List<String> stale = new ArrayList<>();
+        for (int i = 0; i < sessionIds.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> hash = (Map<String, String>) hashes.get(i);
+            String sid = sessionIds.get(i);
+            if (hash == null || hash.isEmpty()) {
+                stale.add(sid);
+                continue;
+            }
+            SessionResponse r = new SessionResponse();
+            r.setSessionId(sid);
+            r.setDevice(hash.get("device"));
+            r.setIssuedAt(parseLong(hash.get("issuedAt"), 0L));
+            r.setExpiresAt(parseLong(hash.get("expiresAt"), 0L));
+            r.setCurrent(sid.equals(currentSessionId));
+            sessions.add(r);
+        }
+        if (!stale.isEmpty()) {
+            stringRedisTemplate.opsForSet().remove(userKey, stale.toArray());
+        }
+        sessions.sort(Comparator.comparing(SessionResponse::getIssuedAt).reversed());
+        return sessions;
+    }
+
+    /**
+     * 令牌是否已吊销。常规路径只读本地过滤器，可能命中时才访问 Redis
+     */
+    public boolean isRevoked(TokenInfo info) {
+        RevocationState s = state;
+        Long cutoff = s.cutoffs.get(info.getUserId());
+        if (cutoff != null && info.getIssuedAt() < cutoff) {
+            return true;
+        }
+        String sessionId = info.getSessionId();
+        if (sessionId == null) {
+            return false;
+        }
+        if (loaded && !s.filter.mightContain(sessionId)) {
+            return false;
+        }
+        possibleHits.increment();
+        try {
+            boolean revoked = stringRedisTemplate.opsForZSet().score(RedisKeys.TOKEN_REVOKED, sessionId) != null;
+            if (revoked) {
+                confirmedHits.increment();
+            }
+            return revoked;
+        } catch (RuntimeException e) {
+            // 可能命中却无法确认时按已吊销处理
+            log.warn("吊销状态确认失败，会话ID: {}, 错误信息: {}", sessionId, e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * 从 Redis 全量重建本地过滤器，并清理过期的吊销记录
+     */
+    @Scheduled(fixedDelayString = "${app.token.revocation.rebuild-interval-ms:60000}")
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            pendingEvents = new ArrayList<>();
+        }
+        try {
+            long now = System.currentTimeMillis();
+            stringRedisTemplate.opsForZSet().removeRangeByScore(RedisKeys.TOKEN_REVOKED, 0, now);
+            Set<String> revoked = stringRedisTemplate.opsForZSet()
+                    .rangeByScore(RedisKeys.TOKEN_REVOKED, now, Double.POSITIVE_INFINITY);
+            Map<Object, Object> cutoffs = stringRedisTemplate.opsForHash().entries(RedisKeys.TOKEN_REVOKED_BEFORE);
+
+            int size = revoked == null ? 0 : revoked.size();
+            BloomFilter filter = new BloomFilter(Math.max(expectedInsertions, size * 2L), fpp);
+            if (revoked != null) {
+                revoked.forEach(filter::put);
+            }
+            Map<String, Long> cutoffMap = new ConcurrentHashMap<>();
+            List<Object> expired = new ArrayList<>();
+            long maxAge = jwtUtil.getMaxAcceptedLifetimeMillis();
+            cutoffs.forEach((userId, value) -> {
+                long cutoff = parseLong(value, 0L);
+                if (cutoff + maxAge < now) {
+                    // 截止时间之前签发的令牌都已自然过期
+                    expired.add(userId);
+                } else {
+                    cutoffMap.put(String.valueOf(userId), cutoff);
+                }
+            });
+            if (!expired.isEmpty()) {
+                stringRedisTemplate.opsForHash().delete(RedisKeys.TOKEN_REVOKED_BEFORE, expired.toArray());
+            }
+
+            RevocationState next = new RevocationState(filter, cutoffMap);
+            synchronized (rebuildLock) {
+                for (String event : pendingEvents) {
+                    apply(next, event);
+                }
+                state = next;
+                loaded = true;
+                pendingEvents = null;
+            }
+            log.debug("吊销过滤器已重建，会话数: {}, 用户截止数: {}", size, cutoffMap.size());
+        } catch (RuntimeException e) {
+            synchronized (rebuildLock) {
+                pendingEvents = null;
+            }
+            log.warn("吊销过滤器重建失败，沿用旧过滤器: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        onEvent(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private void onEvent(String event) {
+        synchronized (rebuildLock) {
+            apply(state, event);
+            if (pendingEvents != null) {
+                pendingEvents.add(event);
+            }
+        }
+    }
+
+    /**
+     * 事件格式：s:{sid}，或 u:{userId}:{cutoff}:{sid,sid,...}
+     */
+    private static void apply(RevocationState target, String event) {
+        if (event.startsWith("s:")) {
+            target.filter.put(event.substring(2));
+        } else if (event.startsWith("u:")) {
+            String[] parts = event.split(":", 4);
+            if (parts.length < 3) {
+                return;
+            }
+            target.cutoffs.merge(parts[1], parseLong(parts[2], 0L), Math::max);
+            if (parts.length == 4 && !parts[3].isEmpty()) {
+                for (String sid : parts[3].split(",")) {
+                    target.filter.put(sid);
+                }
+            }
+        }
+    }
+
+    private Set<String> membersOf(String key) {
+        Set<String> members = stringRedisTemplate.opsForSet().members(key);
+        return members == null ? Set.of() : members;
+    }
+
+    /**
+     * 此刻之前签发的访问令牌全部过期的时间点（留 1 秒余量）
+     */
+    private long accessTokenHorizon() {
+        return System.currentTimeMillis() + jwtUtil.getExpireMillis() + 1000;
+    }
+
+    private static String newRefreshSecret() {
+        byte[] bytes = new byte[REFRESH_SECRET_BYTES];
+        RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long parseLong(Object value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.toString());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static String truncate(String device) {
+        if (device == null) {
+            return "";
+        }
+        return device.length() > MAX_DEVICE_LENGTH ? device.substring(0, MAX_DEVICE_LENGTH) : device;
+    }
+
+    /**
+     * 刷新令牌轮换结果
+     */
+    public static final class Rotation {
+        private final String userId;
+        private final String sessionId;
+        private final String refreshToken;
+
+        private Rotation(String userId, String sessionId, String refreshToken) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.refreshToken = refreshToken;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public String getRefreshToken() {
+            return refreshToken;
+        }
+    }
+
+    /**
+     * 一次重建的快照：过滤器与用户截止时间表一起替换
+     */
+    private static final class RevocationState {
+        private final BloomFilter filter;
+        private final Map<String, Long> cutoffs;
+
+        private RevocationState(BloomFilter filter, Map<String, Long> cutoffs) {
+            this.filter = filter;
+            this.cutoffs = cutoffs;
+        }
+    }
+}
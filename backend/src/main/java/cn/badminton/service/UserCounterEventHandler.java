@@ -0,0 +1,42 @@
+package cn.badminton.service;
+
+import cn.badminton.event.ActivityCreated;
+import cn.badminton.event.DomainEvent;
+import cn.badminton.event.DomainEventHandler;
+import cn.badminton.event.ParticipantJoined;
+import cn.badminton.event.ShareSettled;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * 用户计数：活动参与次数与累计消费金额
+ * 原先在创建活动、参加活动、结算分摊的请求内同步读改写用户，现由事件流异步累加
+ * 已处理标记与增量在同一 Lua 脚本内写入，重复投递不会重复累加；结算事件每批每个用户一条
+ *
+ * 作者: xiaolei
+ */
+@Component
+public class UserCounterEventHandler implements DomainEventHandler {
+
+    public static final String GROUP = "user_counters";
+
+    @Autowired
+    private UserService userService;
+
+    @Override
+    public String group() {
+        return GROUP;
+    }
+
+    @Override
+    public void handle(DomainEvent event, String processedKey) {
+        if (event instanceof ActivityCreated) {
+            userService.incrementUserActivities(processedKey, ((ActivityCreated) event).getOrganizerId());
+        } else if (event instanceof ParticipantJoined) {
+            userService.incrementUserActivities(processedKey, ((ParticipantJoined) event).getUserId());
+        } else if (event instanceof ShareSettled) {
+            ShareSettled settled = (ShareSettled) event;
+            userService.addUserExpense(processedKey, settled.getUserId(), settled.getAmount());
+        }
+    }
+}
@@ -1,14 +1,16 @@
 package cn.badminton.service;
 
+import cn.badminton.common.Money;
 import cn.badminton.model.User;
 import cn.badminton.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
-import java.math.BigDecimal;
+import java.util.Map;
 import java.util.regex.Pattern;
 import java.security.SecureRandom;
 
@@ -29,13 +31,19 @@ public class UserService {
     private UserRepository userRepository;
     
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private PasswordHashService passwordHashService;
+
+    @Autowired
+    private TokenSessionService tokenSessionService;
+
+    @Value("${app.events.consumer.processed-ttl-hours:168}")
+    private long processedTtlHours = 168;
 
     /**
      * 用户注册
      */
     public User register(String phone, String nickname, String password) {
-        log.info("开始用户注册，手机号: {}, 昵称: {}", phone, nickname);
+        log.debug("开始用户注册，手机号: {}, 昵称: {}", phone, nickname);
         
         try {
             // 参数验证
@@ -57,7 +65,7 @@ public class UserService {
             }
             
             // 创建用户
-            User user = new User(phone, nickname.trim(), passwordEncoder.encode(password));
+            User user = new User(phone, nickname.trim(), passwordHashService.encode(password));
             user = userRepository.save(user);
             
             log.info("用户注册成功，用户ID: {}", user.getId());
@@ -77,7 +85,7 @@ public class UserService {
      * - 设置微信OpenID/UnionID与头像；
      */
     public User createWechatUser(String nickname, String wxOpenId, String wxUnionId, String avatarUrl) {
-        log.info("创建微信新用户，昵称: {}", nickname);
+        log.debug("创建微信新用户，昵称: {}", nickname);
 
         try {
             if (wxOpenId == null || wxOpenId.trim().isEmpty()) {
@@ -96,7 +104,7 @@ public class UserService {
             }
 
             String rawPwd = "wx" + System.currentTimeMillis();
-            User user = new User(phone, nickname == null ? "微信用户" : nickname.trim(), passwordEncoder.encode(rawPwd));
+            User user = new User(phone, nickname == null ? "微信用户" : nickname.trim(), passwordHashService.encode(rawPwd));
             user.setAvatar(avatarUrl == null ? "" : avatarUrl);
             user.setWxOpenId(wxOpenId);
             user.setWxUnionId(wxUnionId == null ? "" : wxUnionId);
@@ -165,6 +173,25 @@ public class UserService {
         }
     }
 
+    /**
+     * 批量按ID查找用户，返回 userId → User（不存在的不在结果中）
+     */
+    public Map<String, User> findByIds(Collection<String> userIds) {
+        log.debug("批量查找用户，数量: {}", userIds != null ? userIds.size() : 0);
+        return userRepository.findByIds(userIds);
+    }
+
+    /**
+     * 判断给定的用户是否全部存在
+     */
+    public boolean existsAll(Collection<String> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            return true;
+        }
+        Map<String, User> users = findByIds(userIds);
+        return userIds.stream().allMatch(users::containsKey);
+    }
+
     /**
      * 根据微信OpenID查找用户
      */
@@ -186,11 +213,24 @@ public class UserService {
         }
     }
 
+    /**
+     * 替换密码哈希（成本因子升级），仅当库中哈希仍为 expectedHash 时写入，避免覆盖期间修改过的密码
+     */
+    public void replacePasswordHash(String userId, String expectedHash, String newHash) {
+        User user = userRepository.findById(userId);
+        if (user == null || !expectedHash.equals(user.getPassword())) {
+            return;
+        }
+        user.setPassword(newHash);
+        userRepository.save(user);
+        log.debug("密码哈希已升级，用户ID: {}", userId);
+    }
+
     /**
      * 更新用户信息
      */
     public User updateUser(User user) {
-        log.info("更新用户信息，用户ID: {}", user.getId());
+        log.debug("更新用户信息，用户ID: {}", user.getId());
         
         try {
             // 验证用户是否存在
@@ -225,7 +265,7 @@ public class UserService {
      * 更新用户头像
      */
     public void updateAvatar(String userId, String avatarUrl) {
-        log.info("更新用户头像，用户ID: {}", userId);
+        log.debug("更新用户头像，用户ID: {}", userId);
         
         try {
             User user = userRepository.findById(userId);
@@ -248,7 +288,7 @@ public class UserService {
      * 更新用户昵称
      */
     public void updateNickname(String userId, String nickname) {
-        log.info("更新用户昵称，用户ID: {}", userId);
+        log.debug("更新用户昵称，用户ID: {}", userId);
         
         try {
             if (nickname == null || nickname.trim().isEmpty()) {
@@ -275,7 +315,7 @@ public class UserService {
      * 绑定微信
      */
     public void bindWechat(String userId, String wxOpenId, String wxUnionId) {
-        log.info("绑定微信，用户ID: {}", userId);
+        log.debug("绑定微信，用户ID: {}", userId);
         
         try {
             User user = userRepository.findById(userId);
@@ -302,40 +342,52 @@ public class UserService {
     }
 
     /**
-     * 增加用户活动参与次数
+     * 增加用户活动参与次数（由领域事件消费方调用，失败时抛出以便事件重试）
      */
-    public void incrementUserActivities(String userId) {
-        log.debug("增加用户活动参与次数，用户ID: {}", userId);
-        
-        try {
-            User user = userRepository.findById(userId);
-            if (user != null) {
-                user.incrementActivities();
-                userRepository.save(user);
-                log.debug("用户活动参与次数增加成功，用户ID: {}", userId);
-            }
-            
-        } catch (Exception e) {
-            log.error("增加用户活动参与次数失败，用户ID: {}, 错误信息: {}", userId, e.getMessage(), e);
+    public void incrementUserActivities(String processedKey, String userId) {
+        applyCounterOnce(processedKey, userId, UserRepository.TOTAL_ACTIVITIES, 1);
+    }
+
+    /**
+     * 增加用户消费金额（由领域事件消费方调用，失败时抛出以便事件重试）
+     */
+    public void addUserExpense(String processedKey, String userId, Money amount) {
+        if (amount != null && amount.isPositive()) {
+            applyCounterOnce(processedKey, userId, UserRepository.TOTAL_EXPENSE_CENTS, amount.getCents());
         }
     }
 
     /**
-     * 增加用户消费金额
+     * 计数累加：已处理标记与增量在缓存中一次原子写入，随后只增不减地写回数据库
+     * 重复投递不再累加也不写回；累加后、写回前崩溃时，该用户下一次累加会一并写回
      */
-    public void addUserExpense(String userId, BigDecimal amount) {
-        log.debug("增加用户消费金额，用户ID: {}, 金额: {}", userId, amount);
-        
+    private void applyCounterOnce(String processedKey, String userId, String field, long delta) {
+        log.debug("累加用户计数，用户ID: {}, 字段: {}, 增量: {}", userId, field, delta);
+
         try {
-            User user = userRepository.findById(userId);
-            if (user != null) {
-                user.addExpense(amount);
-                userRepository.save(user);
-                log.debug("用户消费金额增加成功，用户ID: {}", userId);
+            long result = userRepository.incrementCounterOnce(processedKey, processedTtlHours * 3600, userId, field,
+                    delta);
+            if (result < 0) {
+                // 缓存缺失或为旧格式：由数据库回填后重试
+                if (!userRepository.reloadCache(userId)) {
+                    return;
+                }
+                result = userRepository.incrementCounterOnce(processedKey, processedTtlHours * 3600, userId, field,
+                        delta);
+                if (result < 0) {
+                    throw new IllegalStateException("用户缓存回填失败，用户ID: " + userId);
+                }
             }
-            
+            if (result == 0) {
+                log.debug("重复投递，计数不变，用户ID: {}, 字段: {}", userId, field);
+                return;
+            }
+            userRepository.persistCounters(userId);
+            log.debug("用户计数累加完成，用户ID: {}, 字段: {}", userId, field);
+
         } catch (Exception e) {
-            log.error("增加用户消费金额失败，用户ID: {}, 错误信息: {}", userId, e.getMessage(), e);
+            log.error("累加用户计数失败，用户ID: {}, 字段: {}, 错误信息: {}", userId, field, e.getMessage(), e);
+            throw e;
         }
     }
 
@@ -343,10 +395,12 @@ public class UserService {
      * 禁用用户
      */
     public void disableUser(String userId) {
-        log.info("禁用用户，用户ID: {}", userId);
+        log.debug("禁用用户，用户ID: {}", userId);
         
         try {
             userRepository.updateStatus(userId, 2); // 2表示禁用
+            // 已签发的令牌立即失效
+            tokenSessionService.revokeAll(userId);
             log.info("用户禁用成功，用户ID: {}", userId);
             
         } catch (Exception e) {
@@ -359,7 +413,7 @@ public class UserService {
      * 启用用户
      */
     public void enableUser(String userId) {
-        log.info("启用用户，用户ID: {}", userId);
+        log.debug("启用用户，用户ID: {}", userId);
         
         try {
             userRepository.updateStatus(userId, 1); // 1表示正常
@@ -391,7 +445,7 @@ public class UserService {
     /**
      * 验证手机号格式
      */
-    private boolean isValidPhone(String phone) {
+    public boolean isValidPhone(String phone) {
         return phone != null && PHONE_PATTERN.matcher(phone).matches();
     }
 }
@@ -0,0 +1,344 @@
+package cn.badminton.service;
+
+import cn.badminton.common.Money;
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.config.RedisConfig.RedisTTL;
+import cn.badminton.dto.user.UserSummaryResponse;
+import cn.badminton.dto.user.UserSummaryResponse.ActivityCard;
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.event.ExpenseSharesEvent;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.model.ExpenseRecord;
+import cn.badminton.model.ExpenseShare;
+import cn.badminton.model.User;
+import cn.badminton.repository.ActivityRepository;
+import cn.badminton.repository.ExpenseRepository;
+import cn.badminton.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 首页汇总读模型：每个用户一个 Hash badminton:summary:user:{userId}，首页一次 HGETALL 即可
+ * - 计数与金额（分）由活动、分摊领域事件增量维护；即将开始的活动以 card:{活动ID} 字段存卡片 JSON
+ * - 活动变更时按 badminton:summary:holders:{活动ID} 扇出，改写所有持有该卡片的用户
+ * - 增量只作用于已构建的读模型（脚本先判断键存在），缺失或过期时按源数据重建，过期即自愈
+ * - 投影失败只记日志，不影响业务操作
+ *
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class UserSummaryService {
+
+    private static final String BUILT = "built";
+    private static final String ORGANIZED = "organizedCount";
+    private static final String JOINED = "joinedCount";
+    private static final String PENDING_SHARES = "pendingShareCount";
+    private static final String OWED = "owedCents";
+    private static final String RECEIVABLE = "receivableCents";
+    private static final String CARD_PREFIX = "card:";
+
+    /**
+     * 重建卡片时从时间线读取开始时间不早于 当前时间 - CARD_LOOKBACK 的活动（覆盖进行中的活动），至多 MAX_CARDS 个
+     */
+    private static final Duration CARD_LOOKBACK = Duration.ofDays(1);
+    private static final int MAX_CARDS = 100;
+
+    /**
+     * KEYS[1] 读模型键；ARGV 为 (操作, 字段, 值) 三元组，操作为 incr / set / del
+     * 读模型不存在时不做任何修改，避免增量写出只有部分字段的读模型
+     */
+    private static final String APPLY_SCRIPT =
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n"
+                    + "for i = 1, #ARGV, 3 do\n"
+                    + "  if ARGV[i] == 'incr' then redis.call('HINCRBY', KEYS[1], ARGV[i + 1], ARGV[i + 2])\n"
+                    + "  elseif ARGV[i] == 'set' then redis.call('HSET', KEYS[1], ARGV[i + 1], ARGV[i + 2])\n"
+                    + "  else redis.call('HDEL', KEYS[1], ARGV[i + 1]) end\n"
+                    + "end\n"
+                    + "return 1";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ActivityRepository activityRepository;
+
+    @Autowired
+    private ExpenseRepository expenseRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ActivityFeedService activityFeedService;
+
+    /**
+     * 读取用户首页汇总，读模型缺失时先重建
+     */
+    public UserSummaryResponse getSummary(String userId) {
+        Map<Object, Object> hash = stringRedisTemplate.opsForHash().entries(RedisKeys.userSummaryKey(userId));
+        if (!hash.containsKey(BUILT)) {
+            hash = rebuild(userId);
+        }
+        return toResponse(userId, hash);
+    }
+
+    @EventListener
+    public void onActivityEvent(ActivityEvent event) {
+        try {
+            BookingActivity activity = event.getActivity();
+            String holdersKey = RedisKeys.summaryHoldersKey(activity.getId());
+            Map<String, List<String>> ops = new LinkedHashMap<>();
+
+            switch (event.getKind()) {
+                case CREATED:
+                    ops.put(event.getUserId(), incr(new ArrayList<>(), ORGANIZED, 1));
+                    addHolder(holdersKey, event.getUserId());
+                    break;
+                case JOINED:
+                    ops.put(event.getUserId(), incr(new ArrayList<>(), JOINED, 1));
+                    addHolder(holdersKey, event.getUserId());
+                    break;
+                case LEFT:
+                    List<String> left = incr(new ArrayList<>(), JOINED, -1);
+                    left.addAll(List.of("del", CARD_PREFIX + activity.getId(), ""));
+                    ops.put(event.getUserId(), left);
+                    stringRedisTemplate.opsForSet().remove(holdersKey, event.getUserId());
+                    break;
+                default:
+                    break;
+            }
+
+            Set<String> holders = stringRedisTemplate.opsForSet().members(holdersKey);
+            if (holders != null) {
+                List<String> cardOp = isUpcoming(activity)
+                        ? List.of("set", CARD_PREFIX + activity.getId(), objectMapper.writeValueAsString(
+                                ActivityCard.from(activity)))
+                        : List.of("del", CARD_PREFIX + activity.getId(), "");
+                for (String holder : holders) {
+                    ops.computeIfAbsent(holder, k -> new ArrayList<>()).addAll(cardOp);
+                }
+            }
+            if (!isUpcoming(activity)) {
+                stringRedisTemplate.delete(holdersKey);
+            }
+            apply(ops);
+        } catch (Exception e) {
+            log.error("首页汇总投影活动事件失败，活动ID: {}, 事件: {}, 错误信息: {}",
+                    event.getActivity().getId(), event.getKind(), e.getMessage(), e);
+        }
+    }
+
+    @EventListener
+    public void onExpenseSharesEvent(ExpenseSharesEvent event) {
+        try {
+            String payerId = event.getExpense().getPayerId();
+            int sign = event.sign();
+            Map<String, long[]> deltas = new LinkedHashMap<>();
+            for (ExpenseShare share : event.getShares()) {
+                if (share.getUserId() == null || share.getUserId().equals(payerId)) {
+                    continue;
+                }
+                long cents = share.getAmount().getCents() * sign;
+                long[] debtor = deltas.computeIfAbsent(share.getUserId(), k -> new long[3]);
+                debtor[0] += cents;
+                debtor[1] += sign;
+                deltas.computeIfAbsent(payerId, k -> new long[3])[2] += cents;
+            }
+
+            Map<String, List<String>> ops = new LinkedHashMap<>();
+            deltas.forEach((userId, d) -> {
+                List<String> args = new ArrayList<>();
+                incr(args, OWED, d[0]);
+                incr(args, PENDING_SHARES, d[1]);
+                incr(args, RECEIVABLE, d[2]);
+                ops.put(userId, args);
+            });
+            apply(ops);
+        } catch (Exception e) {
+            log.error("首页汇总投影分摊事件失败，费用ID: {}, 事件: {}, 错误信息: {}",
+                    event.getExpense().getId(), event.getKind(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 按源数据重建读模型：发起的活动、待结算分摊与自己垫付的费用各做一次批量读取
+     * 参加次数取用户累计参与次数减去发起数（累计次数不随退出减少，重建后可能略高）
+     * 卡片取自“我的活动”时间线（发起与参加合并，缺失时按发起索引与 participation 表重建），不只是发起的活动
+     */
+    public Map<Object, Object> rebuild(String userId) {
+        Map<Object, Object> hash = new HashMap<>();
+        User user = userService.findById(userId);
+        if (user == null) {
+            return hash;
+        }
+
+        List<BookingActivity> organized = activityRepository.findByOrganizer(userId);
+        long joined = Math.max(0, (user.getTotalActivities() != null ? user.getTotalActivities() : 0)
+                - organized.size());
+
+        long owed = 0;
+        long pendingShares = 0;
+        List<ExpenseShare> myShares = expenseRepository.findSharesByIds(
+                expenseRepository.findPendingShareIdsByUserId(userId));
+        Map<String, ExpenseRecord> myExpenses = expenseRepository.findExpensesByIds(
+                myShares.stream().map(ExpenseShare::getExpenseId).collect(Collectors.toSet()));
+        for (ExpenseShare share : myShares) {
+            ExpenseRecord expense = myExpenses.get(share.getExpenseId());
+            if (share.isPending() && expense != null && !userId.equals(expense.getPayerId())) {
+                owed += share.getAmount().getCents();
+                pendingShares++;
+            }
+        }
+
+        long receivable = expenseRepository.findSharesByIds(expenseRepository.findShareIdsByExpenseIds(
+                        expenseRepository.findExpenseIdsByPayerId(userId))).stream()
+                .filter(share -> share.isPending() && !userId.equals(share.getUserId()))
+                .mapToLong(share -> share.getAmount().getCents())
+                .sum();
+
+        hash.put(BUILT, "1");
+        hash.put(ORGANIZED, String.valueOf(organized.size()));
+        hash.put(JOINED, String.valueOf(joined));
+        hash.put(PENDING_SHARES, String.valueOf(pendingShares));
+        hash.put(OWED, String.valueOf(owed));
+        hash.put(RECEIVABLE, String.valueOf(receivable));
+        Map<String, BookingActivity> candidates = new LinkedHashMap<>();
+        organized.forEach(activity -> candidates.put(activity.getId(), activity));
+        activityFeedService.ensureTimeline(userId);
+        List<String> timeline = userRepository.pageUserActivities(userId, true,
+                LocalDateTime.now().minus(CARD_LOOKBACK), 0, MAX_CARDS);
+        timeline.removeIf(candidates::containsKey);
+        candidates.putAll(activityRepository.findByIds(timeline));
+
+        List<String> cardIds = new ArrayList<>();
+        for (BookingActivity activity : candidates.values()) {
+            if (isUpcoming(activity)) {
+                try {
+                    hash.put(CARD_PREFIX + activity.getId(),
+                            objectMapper.writeValueAsString(ActivityCard.from(activity)));
+                    cardIds.add(activity.getId());
+                } catch (JsonProcessingException e) {
+                    log.warn("活动卡片序列化失败，活动ID: {}", activity.getId());
+                }
+            }
+        }
+
+        String key = RedisKeys.userSummaryKey(userId);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection c = (StringRedisConnection) connection;
+            c.del(key);
+            hash.forEach((field, value) -> c.hSet(key, field.toString(), value.toString()));
+            c.expire(key, RedisTTL.USER_SUMMARY);
+            for (String activityId : cardIds) {
+                c.sAdd(RedisKeys.summaryHoldersKey(activityId), userId);
+                c.expire(RedisKeys.summaryHoldersKey(activityId), RedisTTL.USER_SUMMARY);
+            }
+            return null;
+        });
+        log.debug("首页汇总读模型已重建，用户ID: {}, 卡片数: {}", userId, cardIds.size());
+        return hash;
+    }
+
+    private UserSummaryResponse toResponse(String userId, Map<Object, Object> hash) {
+        UserSummaryResponse response = new UserSummaryResponse();
+        response.setUserId(userId);
+        response.setOrganizedCount(longField(hash, ORGANIZED));
+        response.setJoinedCount(longField(hash, JOINED));
+        response.setPendingShareCount(longField(hash, PENDING_SHARES));
+        response.setOwedAmount(Money.ofCents(longField(hash, OWED)));
+        response.setReceivableAmount(Money.ofCents(longField(hash, RECEIVABLE)));
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ActivityCard> upcoming = new ArrayList<>();
+        hash.forEach((field, value) -> {
+            if (!field.toString().startsWith(CARD_PREFIX)) {
+                return;
+            }
+            try {
+                ActivityCard card = objectMapper.readValue(value.toString(), ActivityCard.class);
+                if (card.getEndTime() == null || card.getEndTime().isAfter(now)) {
+                    upcoming.add(card);
+                }
+            } catch (JsonProcessingException e) {
+                log.warn("活动卡片解析失败，用户ID: {}, 字段: {}", userId, field);
+            }
+        });
+        upcoming.sort(Comparator.comparing(ActivityCard::getStartTime,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        response.setUpcoming(upcoming);
+        return response;
+    }
+
+    private void addHolder(String holdersKey, String userId) {
+        stringRedisTemplate.opsForSet().add(holdersKey, userId);
+        stringRedisTemplate.expire(holdersKey, RedisTTL.USER_SUMMARY, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 每个用户一次脚本调用，全部在一次管道中发出
+     */
+    private void apply(Map<String, List<String>> opsByUser) {
+        opsByUser.values().removeIf(List::isEmpty);
+        if (opsByUser.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection c = (StringRedisConnection) connection;
+            opsByUser.forEach((userId, args) -> {
+                String[] keysAndArgs = new String[args.size() + 1];
+                keysAndArgs[0] = RedisKeys.userSummaryKey(userId);
+                for (int i = 0; i < args.size(); i++) {
+                    keysAndArgs[i + 1] = args.get(i);
+                }
+                c.eval(APPLY_SCRIPT, ReturnType.INTEGER, 1, keysAndArgs);
+            });
+            return null;
+        });
+    }
+
+    private static List<String> incr(List<String> args, String field, long delta) {
+        if (delta != 0) {
+            args.addAll(List.of("incr", field, String.valueOf(delta)));
+        }
+        return args;
+    }
+
+    private static boolean isUpcoming(BookingActivity activity) {
+        Integer status = activity.getStatus();
+        return status != null
+                && (status == BookingActivity.STATUS_PENDING || status == BookingActivity.STATUS_ONGOING)
+                && (activity.getEndTime() == null || activity.getEndTime().isAfter(LocalDateTime.now()));
+    }
+
+    private static long longField(Map<Object, Object> hash, String field) {
+        Object value = hash.get(field);
+        return value == null ? 0 : Long.parseLong(value.toString());
+    }
+}
@@ -0,0 +1,128 @@
+package cn.badminton.service;
+
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.config.RedisConfig.RedisTTL;
+import cn.badminton.sms.SmsSender;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.util.List;
+
+/**
+ * 短信验证码服务
+ * - 发送：一次脚本完成重发节流（SET NX EX）与验证码写入（HASH code/attempts + TTL）
+ * - 校验：一次脚本完成比对、错误计数与销毁；验证通过或错误次数用尽后验证码立即作废
+ * 验证码登录只需一次 Redis 往返，不经过 BCrypt
+ * 必须有 SmsSender 实现：日志替身只在 local / dev 环境注册，其他环境缺少真实服务商时启动失败
+ * 作者: xiaolei
+ */
+@Service
+@Slf4j
+public class VerificationCodeService {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * KEYS[1] 验证码键，KEYS[2] 节流键；ARGV 依次为验证码、有效期秒数、重发间隔秒数
+     * 返回 1 表示已写入，0 表示处于重发间隔内
+     */
+    private static final RedisScript<Long> SEND_SCRIPT = new DefaultRedisScript<>(
+            "if not redis.call('SET', KEYS[2], '1', 'NX', 'EX', ARGV[3]) then return 0 end\n"
+                    + "redis.call('DEL', KEYS[1])\n"
+                    + "redis.call('HSET', KEYS[1], 'code', ARGV[1], 'attempts', '0')\n"
+                    + "redis.call('EXPIRE', KEYS[1], ARGV[2])\n"
+                    + "return 1",
+            Long.class);
+
+    /**
+     * KEYS[1] 验证码键；ARGV 依次为提交的验证码、最大错误次数
+     * 返回 {ok, 0} / {missing, 0} / {mismatch, 剩余可尝试次数}，次数用尽时验证码同时删除
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> VERIFY_SCRIPT = new DefaultRedisScript<>(
+            "local h = redis.call('HMGET', KEYS[1], 'code', 'attempts')\n"
+                    + "if not h[1] then return {'missing', 0} end\n"
+                    + "if h[1] == ARGV[1] then\n"
+                    + "  redis.call('DEL', KEYS[1])\n"
+                    + "  return {'ok', 0}\n"
+                    + "end\n"
+                    + "local attempts = redis.call('HINCRBY', KEYS[1], 'attempts', 1)\n"
+                    + "local left = tonumber(ARGV[2]) - attempts\n"
+                    + "if left <= 0 then redis.call('DEL', KEYS[1]) left = 0 end\n"
+                    + "return {'mismatch', left}",
+            List.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired(required = false)
+    private SmsSender smsSender;
+
+    @Autowired
+    private UserService userService;
+
+    @Value("${app.sms.resend-interval-seconds:60}")
+    private long resendIntervalSeconds;
+
+    @Value("${app.sms.max-attempts:5}")
+    private int maxAttempts;
+
+    @PostConstruct
+    public void init() {
+        if (smsSender == null) {
+            throw new IllegalStateException("未配置短信服务商：非 local/dev 环境须提供 SmsSender 实现（app.sms.provider）");
+        }
+    }
+
+    /**
+     * 生成并发送登录验证码
+     */
+    public void sendLoginCode(String phone) {
+        log.debug("发送登录验证码，手机号: {}", phone);
+        if (!userService.isValidPhone(phone)) {
+            throw new IllegalArgumentException("手机号格式不正确");
+        }
+        String code = String.format("%06d", RANDOM.nextInt(1_000_000));
+        Long written = stringRedisTemplate.execute(SEND_SCRIPT,
+                List.of(RedisKeys.verificationCodeKey(phone), RedisKeys.verificationThrottleKey(phone)),
+                code, String.valueOf(RedisTTL.VERIFICATION_CODE), String.valueOf(resendIntervalSeconds));
+        if (written == null || written != 1L) {
+            throw new IllegalArgumentException("验证码发送过于频繁，请稍后再试");
+        }
+        try {
+            smsSender.sendVerificationCode(phone, code, RedisTTL.VERIFICATION_CODE);
+        } catch (RuntimeException e) {
+            // 发送失败时撤销验证码与节流，允许立即重试
+            stringRedisTemplate.delete(List.of(RedisKeys.verificationCodeKey(phone),
+                    RedisKeys.verificationThrottleKey(phone)));
+            log.error("验证码发送失败，手机号: {}, 错误信息: {}", phone, e.getMessage(), e);
+            throw new IllegalArgumentException("验证码发送失败，请稍后重试");
+        }
+    }
+
+    /**
+     * 校验登录验证码，通过后验证码作废；失败时抛出 IllegalArgumentException
+     */
+    public void verifyLoginCode(String phone, String code) {
+        List<?> result = stringRedisTemplate.execute(VERIFY_SCRIPT,
+                List.of(RedisKeys.verificationCodeKey(phone)), code, String.valueOf(maxAttempts));
+        String outcome = result == null || result.isEmpty() ? "missing" : String.valueOf(result.get(0));
+        if ("ok".equals(outcome)) {
+            return;
+        }
+        if ("mismatch".equals(outcome)) {
+            long left = ((Number) result.get(1)).longValue();
+            if (left > 0) {
+                throw new IllegalArgumentException("验证码错误，还可尝试" + left + "次");
+            }
+        }
+        throw new IllegalArgumentException("验证码已失效，请重新获取");
+    }
+}
@@ -1,28 +1,58 @@
 package cn.badminton.service;
 
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.config.RedisConfig.RedisTTL;
+import cn.badminton.util.SingleFlight;
+import cn.badminton.wechat.WechatApiClient;
+import cn.badminton.wechat.WechatCredentialStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * 微信API集成服务
  * 负责与微信API的交互，包括授权登录、获取用户信息等
+ * HTTP 调用经 WechatApiClient（连接池、超时、熔断、隔离与重试）
+ * 授权凭证与 session_key 缓存在 WechatCredentialStore，老用户登录只需一次授权码换取
  * 
  * 作者: xiaolei
  */
 @Service
 @Slf4j
 public class WechatService {
+
+    /**
+     * 授权码换取的跨节点租约（覆盖一次带重试的微信调用）
+     */
+    private static final Duration CODE_LEASE = Duration.ofSeconds(10);
     
     @Value("${wechat.appid:}")
     private String appId;
@@ -36,39 +66,54 @@ public class WechatService {
     @Value("${wechat.miniprogram.secret:}")
     private String miniAppSecret;
     
-    private final RestTemplate restTemplate = new RestTemplate();
+    @Autowired
+    private WechatApiClient wechatApiClient;
+
+    @Autowired
+    private WechatCredentialStore wechatCredentialStore;
+
+    @Autowired
+    private DistributedLease distributedLease;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    /**
+     * 已换取的授权码结果（按授权码摘要），同一授权码的重复请求直接复用
+     */
+    private final Cache<String, Map<String, String>> exchangedCodes = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofSeconds(RedisTTL.WECHAT_CODE))
+            .build();
+    private final SingleFlight<String, Map<String, String>> codeFlights = new SingleFlight<>();
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("wechat.login.coalesced", codeFlights, SingleFlight::sharedCount)
+                .tag("stage", "code")
+                .register(meterRegistry);
+    }
+
     /**
      * 通过授权码获取access_token
      */
     public String getAccessToken(String code) {
-        log.info("获取微信access_token，授权码: {}", code);
+        log.debug("获取微信access_token");
         
         try {
-            String url = String.format(
-                "https://api.weixin.qq.com/sns/oauth2/access_token?appid=%s&secret=%s&code=%s&grant_type=authorization_code",
-                appId, appSecret, code
-            );
-            
-            String response = restTemplate.getForObject(url, String.class);
-            log.debug("微信API响应: {}", response);
-            
-            JsonNode jsonNode = objectMapper.readTree(response);
-            
-            if (jsonNode.has("errcode")) {
-                int errcode = jsonNode.get("errcode").asInt();
-                String errmsg = jsonNode.get("errmsg").asText();
-                log.error("获取access_token失败，错误码: {}, 错误信息: {}", errcode, errmsg);
-                throw new RuntimeException("微信授权失败: " + errmsg);
-            }
-            
-            String accessToken = jsonNode.get("access_token").asText();
+            String accessToken = exchangeCode(code).get("access_token").asText();
             log.info("获取access_token成功");
             return accessToken;
             
+        } catch (RejectedExecutionException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("获取微信access_token异常，授权码: {}, 错误信息: {}", code, e.getMessage(), e);
+            log.error("获取微信access_token异常，错误信息: {}", e.getMessage(), e);
             throw new RuntimeException("获取微信授权令牌失败", e);
         }
     }
@@ -77,25 +122,15 @@ public class WechatService {
      * 通过access_token获取用户信息
      */
     public WechatUserInfo getUserInfo(String accessToken, String openId) {
-        log.info("获取微信用户信息，openId: {}", openId);
+        log.debug("获取微信用户信息，openId: {}", openId);
         
         try {
-            String url = String.format(
-                "https://api.weixin.qq.com/sns/userinfo?access_token=%s&openid=%s&lang=zh_CN",
-                accessToken, openId
-            );
-            
-            String response = restTemplate.getForObject(url, String.class);
-            log.debug("微信用户信息API响应: {}", response);
-            
-            JsonNode jsonNode = objectMapper.readTree(response);
-            
-            if (jsonNode.has("errcode")) {
-                int errcode = jsonNode.get("errcode").asInt();
-                String errmsg = jsonNode.get("errmsg").asText();
-                log.error("获取用户信息失败，错误码: {}, 错误信息: {}", errcode, errmsg);
-                throw new RuntimeException("获取微信用户信息失败: " + errmsg);
-            }
+            Map<String, String> params = new LinkedHashMap<>();
+            params.put("access_token", accessToken);
+            params.put("openid", openId);
+            params.put("lang", "zh_CN");
+            // 只读接口，超时或微信繁忙时可安全重试
+            JsonNode jsonNode = wechatApiClient.get("sns.userinfo", "/sns/userinfo", params, true);
             
             WechatUserInfo userInfo = new WechatUserInfo();
             userInfo.setOpenId(jsonNode.get("openid").asText());
@@ -106,6 +141,8 @@ public class WechatService {
             log.info("获取微信用户信息成功，昵称: {}", userInfo.getNickname());
             return userInfo;
             
+        } catch (RejectedExecutionException e) {
+            throw e;
         } catch (Exception e) {
             log.error("获取微信用户信息异常，openId: {}, 错误信息: {}", openId, e.getMessage(), e);
             throw new RuntimeException("获取微信用户信息失败", e);
@@ -113,85 +150,194 @@ public class WechatService {
     }
 
     /**
-     * 通过授权码直接获取用户信息
+     * 通过授权码换取 openId/unionId（一次微信调用），网页授权凭证存入缓存供后续拉取资料
+     * 返回的用户信息只含 openId 与 unionId；失败时返回 null
      */
-    public WechatUserInfo getUserInfoByCode(String code) {
-        log.info("通过授权码获取微信用户信息");
+    public WechatUserInfo authorize(String code) {
+        log.debug("通过授权码换取微信身份");
         
         try {
-            // 获取access_token和openid
-            String tokenUrl = String.format(
-                "https://api.weixin.qq.com/sns/oauth2/access_token?appid=%s&secret=%s&code=%s&grant_type=authorization_code",
-                appId, appSecret, code
-            );
-            
-            String tokenResponse = restTemplate.getForObject(tokenUrl, String.class);
-            JsonNode tokenNode = objectMapper.readTree(tokenResponse);
-            
-            if (tokenNode.has("errcode")) {
-                int errcode = tokenNode.get("errcode").asInt();
-                String errmsg = tokenNode.get("errmsg").asText();
-                log.error("获取access_token失败，错误码: {}, 错误信息: {}", errcode, errmsg);
-                return null;
-            }
+            Map<String, String> result = exchangeOnce("oauth2", code, () -> {
+                JsonNode tokenNode = exchangeCode(code);
+                String openId = tokenNode.get("openid").asText();
+                wechatCredentialStore.saveUserToken(openId, tokenNode.get("access_token").asText(),
+                        tokenNode.path("expires_in").asLong(7200), tokenNode.path("refresh_token").asText(null));
+                Map<String, String> identity = new HashMap<>();
+                identity.put("openid", openId);
+                if (tokenNode.has("unionid")) {
+                    identity.put("unionid", tokenNode.get("unionid").asText());
+                }
+                return identity;
+            });
             
-            String accessToken = tokenNode.get("access_token").asText();
-            String openId = tokenNode.get("openid").asText();
+            WechatUserInfo identity = new WechatUserInfo();
+            identity.setOpenId(result.get("openid"));
+            identity.setUnionId(result.get("unionid"));
+            return identity;
             
-            // 获取用户信息
+        } catch (RejectedExecutionException e) {
+            // 熔断或并发已满，交给全局异常处理返回 5030
+            throw e;
+        } catch (Exception e) {
+            log.error("通过授权码换取微信身份异常，错误信息: {}", e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * 用缓存的网页授权凭证拉取用户资料（凭证临近到期时自动续期）；无可用凭证时返回 null
+     */
+    public WechatUserInfo getUserInfo(String openId) {
+        String accessToken = wechatCredentialStore.getUserAccessToken(openId, appId);
+        if (accessToken == null) {
+            return null;
+        }
+        try {
             return getUserInfo(accessToken, openId);
-            
+        } catch (RejectedExecutionException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("通过授权码获取微信用户信息异常，错误信息: {}", e.getMessage(), e);
             return null;
         }
     }
 
+    /**
+     * 通过授权码直接获取用户信息
+     */
+    public WechatUserInfo getUserInfoByCode(String code) {
+        WechatUserInfo identity = authorize(code);
+        return identity == null ? null : getUserInfo(identity.getOpenId());
+    }
+
+    /**
+     * 公众号接口调用凭证（应用级 access_token，缓存并在到期前后台刷新）
+     */
+    public String getAppAccessToken() {
+        return wechatCredentialStore.getAppAccessToken(appId, appSecret);
+    }
+
+    /**
+     * 小程序接口调用凭证（应用级 access_token，缓存并在到期前后台刷新）
+     */
+    public String getMiniProgramAccessToken() {
+        return wechatCredentialStore.getAppAccessToken(miniAppId, miniAppSecret);
+    }
+
     /**
      * 小程序登录，获取session_key和openid
      */
     public Map<String, String> getMiniProgramSession(String code) {
-        log.info("小程序登录，获取session信息");
+        log.debug("小程序登录，获取session信息");
         
         try {
-            String url = String.format(
-                "https://api.weixin.qq.com/sns/jscode2session?appid=%s&secret=%s&js_code=%s&grant_type=authorization_code",
-                miniAppId, miniAppSecret, code
-            );
-            
-            String response = restTemplate.getForObject(url, String.class);
-            log.debug("小程序登录API响应: {}", response);
-            
-            JsonNode jsonNode = objectMapper.readTree(response);
-            
-            if (jsonNode.has("errcode")) {
-                int errcode = jsonNode.get("errcode").asInt();
-                String errmsg = jsonNode.get("errmsg").asText();
-                log.error("小程序登录失败，错误码: {}, 错误信息: {}", errcode, errmsg);
-                return null;
-            }
-            
-            Map<String, String> sessionInfo = new HashMap<>();
-            sessionInfo.put("openid", jsonNode.get("openid").asText());
-            sessionInfo.put("session_key", jsonNode.get("session_key").asText());
-            if (jsonNode.has("unionid")) {
-                sessionInfo.put("unionid", jsonNode.get("unionid").asText());
-            }
+            Map<String, String> sessionInfo = exchangeOnce("jscode2session", code, () -> {
+                Map<String, String> params = new LinkedHashMap<>();
+                params.put("appid", miniAppId);
+                params.put("secret", miniAppSecret);
+                params.put("js_code", code);
+                params.put("grant_type", "authorization_code");
+                // js_code 只能使用一次，不做超时重试
+                JsonNode jsonNode = wechatApiClient.get("sns.jscode2session", "/sns/jscode2session", params, false);
+                
+                Map<String, String> session = new HashMap<>();
+                session.put("openid", jsonNode.get("openid").asText());
+                session.put("session_key", jsonNode.get("session_key").asText());
+                if (jsonNode.has("unionid")) {
+                    session.put("unionid", jsonNode.get("unionid").asText());
+                }
+                // 缓存 session_key，后续解密无需再调用微信
+                wechatCredentialStore.saveSessionKey(session.get("openid"), session.get("session_key"));
+                return session;
+            });
             
             log.info("小程序登录成功");
             return sessionInfo;
             
+        } catch (RejectedExecutionException e) {
+            throw e;
         } catch (Exception e) {
             log.error("小程序登录异常，错误信息: {}", e.getMessage(), e);
             return null;
         }
     }
 
+    /**
+     * 同一授权码只向微信换取一次：本地缓存 → 本节点单飞 → Redis 结果缓存 + 跨节点租约
+     * 小程序启动时常重复提交同一授权码，重复请求共享第一次的结果（授权码本身也只能使用一次）
+     */
+    private Map<String, String> exchangeOnce(String kind, String code, Supplier<Map<String, String>> exchange) {
+        String codeId = kind + ":" + sha256Hex(code);
+        Map<String, String> cached = exchangedCodes.getIfPresent(codeId);
+        if (cached != null) {
+            countExchange("local");
+            return cached;
+        }
+        return codeFlights.execute(codeId, () -> {
+            AtomicBoolean upstream = new AtomicBoolean();
+            Map<String, String> result = distributedLease.runOnce(RedisKeys.wechatLeaseKey("code:" + codeId),
+                    CODE_LEASE, () -> readExchangedCode(codeId), () -> {
+                        upstream.set(true);
+                        Map<String, String> fresh = Map.copyOf(exchange.get());
+                        writeExchangedCode(codeId, fresh);
+                        return fresh;
+                    });
+            countExchange(upstream.get() ? "upstream" : "redis");
+            exchangedCodes.put(codeId, result);
+            return result;
+        });
+    }
+
+    private Map<String, String> readExchangedCode(String codeId) {
+        String json = stringRedisTemplate.opsForValue().get(RedisKeys.wechatCodeKey(codeId));
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        try {
+            return Map.copyOf(objectMapper.readValue(json, new TypeReference<Map<String, String>>() { }));
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private void writeExchangedCode(String codeId, Map<String, String> result) {
+        try {
+            stringRedisTemplate.opsForValue().set(RedisKeys.wechatCodeKey(codeId),
+                    objectMapper.writeValueAsString(result), Duration.ofSeconds(RedisTTL.WECHAT_CODE));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void countExchange(String result) {
+        Counter.builder("wechat.code.exchanges").tag("result", result).register(meterRegistry).increment();
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 授权码换取网页授权 access_token；code 只能使用一次，不做超时重试
+     */
+    private JsonNode exchangeCode(String code) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("appid", appId);
+        params.put("secret", appSecret);
+        params.put("code", code);
+        params.put("grant_type", "authorization_code");
+        return wechatApiClient.get("sns.oauth2.access_token", "/sns/oauth2/access_token", params, false);
+    }
+
     /**
      * 解密小程序用户信息
      */
     public WechatUserInfo getMiniProgramUserInfo(String code, String encryptedData, String iv) {
-        log.info("解密小程序用户信息");
+        log.debug("解密小程序用户信息");
         
         try {
             // 获取session信息
@@ -205,35 +351,59 @@ public class WechatService {
             String openId = sessionInfo.get("openid");
             String unionId = sessionInfo.get("unionid");
             
-            // 如果有加密数据，进行解密
-            if (encryptedData != null && iv != null && !encryptedData.isEmpty() && !iv.isEmpty()) {
-                String decryptedData = decrypt(encryptedData, sessionKey, iv);
-                JsonNode userNode = objectMapper.readTree(decryptedData);
-                
-                WechatUserInfo userInfo = new WechatUserInfo();
-                userInfo.setOpenId(userNode.get("openId").asText());
-                userInfo.setNickname(userNode.get("nickName").asText());
-                userInfo.setAvatarUrl(userNode.get("avatarUrl").asText());
-                userInfo.setUnionId(userNode.has("unionId") ? userNode.get("unionId").asText() : unionId);
-                
-                return userInfo;
-            } else {
-                // 没有加密数据，只返回基本信息
-                WechatUserInfo userInfo = new WechatUserInfo();
-                userInfo.setOpenId(openId);
-                userInfo.setUnionId(unionId);
-                userInfo.setNickname("微信用户");
-                userInfo.setAvatarUrl("");
-                
-                return userInfo;
-            }
+            return toUserInfo(openId, unionId, sessionKey, encryptedData, iv);
             
+        } catch (RejectedExecutionException e) {
+            throw e;
         } catch (Exception e) {
             log.error("解密小程序用户信息异常，错误信息: {}", e.getMessage(), e);
             return null;
         }
     }
 
+    /**
+     * 用缓存的 session_key 解密小程序用户信息，不调用微信；session_key 不存在或解密失败时返回 null
+     */
+    public WechatUserInfo decryptUserInfo(String openId, String encryptedData, String iv) {
+        String sessionKey = wechatCredentialStore.getSessionKey(openId);
+        if (sessionKey == null) {
+            log.warn("小程序 session_key 不存在，openId: {}", openId);
+            return null;
+        }
+        try {
+            return toUserInfo(openId, null, sessionKey, encryptedData, iv);
+        } catch (Exception e) {
+            log.error("解密小程序用户信息异常，openId: {}, 错误信息: {}", openId, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private WechatUserInfo toUserInfo(String openId, String unionId, String sessionKey,
+                                      String encryptedData, String iv) throws Exception {
+        // 如果有加密数据，进行解密
+        if (encryptedData != null && iv != null && !encryptedData.isEmpty() && !iv.isEmpty()) {
+            String decryptedData = decrypt(encryptedData, sessionKey, iv);
+            JsonNode userNode = objectMapper.readTree(decryptedData);
+            
+            WechatUserInfo userInfo = new WechatUserInfo();
+            userInfo.setOpenId(userNode.get("openId").asText());
+            userInfo.setNickname(userNode.get("nickName").asText());
+            userInfo.setAvatarUrl(userNode.get("avatarUrl").asText());
+            userInfo.setUnionId(userNode.has("unionId") ? userNode.get("unionId").asText() : unionId);
+            
+            return userInfo;
+        } else {
+            // 没有加密数据，只返回基本信息
+            WechatUserInfo userInfo = new WechatUserInfo();
+            userInfo.setOpenId(openId);
+            userInfo.setUnionId(unionId);
+            userInfo.setNickname("微信用户");
+            userInfo.setAvatarUrl("");
+            
+            return userInfo;
+        }
+    }
+
     /**
      * AES解密
      */
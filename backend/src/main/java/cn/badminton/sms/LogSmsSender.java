@@ -0,0 +1,24 @@
+package cn.badminton.sms;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地替身：不真正发送短信，只把验证码写入日志，供开发与联调使用
+ * 只在 local / dev 环境且 app.sms.provider=log（默认）时启用，验证码以明文写入日志；
+ * 其他环境不会注册该实现，必须提供真实服务商的 SmsSender，否则启动失败
+ * 作者: xiaolei
+ */
+@Component
+@Slf4j
+@Profile({"local", "dev"})
+@ConditionalOnProperty(prefix = "app.sms", name = "provider", havingValue = "log", matchIfMissing = true)
+public class LogSmsSender implements SmsSender {
+
+    @Override
+    public void sendVerificationCode(String phone, String code, long ttlSeconds) {
+        log.info("[SMS] 验证码已生成（本地替身未实际发送），手机号: {}, 验证码: {}, 有效期: {}秒", phone, code, ttlSeconds);
+    }
+}
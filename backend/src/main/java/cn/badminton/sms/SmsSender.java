@@ -0,0 +1,18 @@
+package cn.badminton.sms;
+
+/**
+ * 短信发送通道
+ * 接入具体服务商时实现本接口并注册为 Bean，本地默认实现为 LogSmsSender
+ * 作者: xiaolei
+ */
+public interface SmsSender {
+
+    /**
+     * 发送登录验证码
+     *
+     * @param phone      手机号
+     * @param code       验证码
+     * @param ttlSeconds 有效期（秒），供短信模板展示
+     */
+    void sendVerificationCode(String phone, String code, long ttlSeconds);
+}
@@ -0,0 +1,148 @@
+package cn.badminton.util;
+
+import java.net.InetAddress;
+
+/**
+ * 时间有序的紧凑ID生成器（Snowflake 风格）
+ * - 64位布局：1位符号(恒为0) | 41位毫秒时间戳(自 2025-01-01 起) | 10位节点号 | 12位序列号
+ * - 对外编码为固定 11 位 Base62 字符串，字符表按 ASCII 升序排列，字典序即生成顺序
+ * - MySQL 以 ascii_bin 列存储，聚簇索引按时间追加写入；Redis 键后缀由 36 字节缩短到 11 字节
+ *
+ * 节点号优先读取系统属性 app.id.worker-id 或环境变量 APP_ID_WORKER_ID，
+ * 未配置时由主机名与进程号散列得到；多副本部署建议显式配置以避免冲突。
+ *
+ * 作者: xiaolei
+ */
+public final class IdGenerator {
+
+    /**
+     * 自定义纪元：2025-01-01T00:00:00Z，41位时间戳可用约69年
+     */
+    public static final long EPOCH = 1735689600000L;
+
+    /**
+     * 编码后的固定长度
+     */
+    public static final int ID_LENGTH = 11;
+
+    private static final int WORKER_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+
+    public static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+
+    private static final char[] ALPHABET =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+    private static final int BASE = ALPHABET.length;
+
+    private static final IdGenerator INSTANCE = new IdGenerator(resolveWorkerId());
+
+    private final long workerId;
+    private long lastTimestamp = -1L;
+    private long sequence = 0L;
+
+    public IdGenerator(long workerId) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("节点号超出范围: " + workerId);
+        }
+        this.workerId = workerId;
+    }
+
+    /**
+     * 生成下一个紧凑ID（全局单例）
+     */
+    public static String nextId() {
+        return encode(INSTANCE.nextLong());
+    }
+
+    /**
+     * 生成下一个数值ID
+     * 时钟回拨或同毫秒序列耗尽时沿用/借用后续毫秒，保证单节点内严格递增
+     */
+    public synchronized long nextLong() {
+        long now = Math.max(0L, System.currentTimeMillis() - EPOCH);
+        if (now < lastTimestamp) {
+            now = lastTimestamp;
+        }
+        if (now == lastTimestamp) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                now = lastTimestamp + 1;
+            }
+        } else {
+            sequence = 0L;
+        }
+        lastTimestamp = now;
+        return compose(now, workerId, sequence);
+    }
+
+    /**
+     * 数值ID编码为定长Base62
+     */
+    public static String encode(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("ID不能为负数: " + value);
+        }
+        char[] buf = new char[ID_LENGTH];
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            buf[i] = ALPHABET[(int) (value % BASE)];
+            value /= BASE;
+        }
+        return new String(buf);
+    }
+
+    /**
+     * 定长Base62解码为数值ID
+     */
+    public static long decode(String id) {
+        if (id == null || id.length() != ID_LENGTH) {
+            throw new IllegalArgumentException("非法的紧凑ID: " + id);
+        }
+        long value = 0L;
+        for (int i = 0; i < ID_LENGTH; i++) {
+            int digit = indexOf(id.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("非法的紧凑ID: " + id);
+            }
+            value = value * BASE + digit;
+        }
+        return value;
+    }
+
+    private static long compose(long timestamp, long workerId, long sequence) {
+        return (timestamp << (WORKER_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+    }
+
+    private static int indexOf(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 36;
+        }
+        return -1;
+    }
+
+    private static long resolveWorkerId() {
+        String configured = System.getProperty("app.id.worker-id", System.getenv("APP_ID_WORKER_ID"));
+        if (configured != null && !configured.trim().isEmpty()) {
+            // 显式配置的节点号不取模，越界直接拒绝，避免两个节点折叠到同一节点号
+            long workerId = Long.parseLong(configured.trim());
+            if (workerId < 0 || workerId > MAX_WORKER_ID) {
+                throw new IllegalStateException("APP_ID_WORKER_ID 超出范围(0-" + MAX_WORKER_ID + "): " + workerId);
+            }
+            return workerId;
+        }
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        int hash = (host + "#" + ProcessHandle.current().pid()).hashCode();
+        return (hash & Integer.MAX_VALUE) % (MAX_WORKER_ID + 1);
+    }
+}
@@ -1,6 +1,9 @@
 package cn.badminton.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -8,26 +11,82 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * JWT工具类：生成与解析JWT
+ * - 签名密钥与解析器首次使用时构建一次，之后复用（二者均线程安全）
+ * - 最近验证通过的令牌按 SHA-256 摘要缓存，重复请求跳过 HMAC 校验与 JSON 解析；命中时仍校验 exp
+ * - 令牌携带会话ID（jti），用于会话登记与吊销
+ * - 访问令牌短时有效（默认15分钟）并携带用户状态与租户，鉴权过滤器无需查库；长期登录态由刷新令牌维持
  * 作者: xiaolei
  */
 @Component
 public class JwtUtil {
 
+    private static final String CLAIM_STATUS = "status";
+    private static final String CLAIM_TENANT = "tenant";
+
     @Value("${jwt.secret:badminton-secret}")
     private String secret;
 
-    @Value("${jwt.expireMinutes:43200}") // 30天
+    @Value("${jwt.expireMinutes:15}")
     private long expireMinutes;
 
+    @Value("${jwt.refreshExpireMinutes:43200}") // 30天
+    private long refreshExpireMinutes = 43200;
+
+    /**
+     * 改为短时访问令牌之前签发的旧版令牌（无会话ID、无状态声明）的有效期，仍在其 exp 之内被接受
+     */
+    @Value("${jwt.legacyExpireMinutes:43200}") // 30天
+    private long legacyExpireMinutes = 43200;
+
+    /**
+     * 已验证令牌缓存容量，0 表示关闭
+     */
+    @Value("${jwt.cache.maximum-size:10000}")
+    private long cacheMaximumSize = 10000;
+
+    /**
+     * 已验证令牌在缓存中的最长停留时间
+     */
+    @Value("${jwt.cache.max-ttl-seconds:300}")
+    private long cacheMaxTtlSeconds = 300;
+
+    private volatile SecretKey key;
+    private volatile JwtParser parser;
+    private volatile Cache<ByteBuffer, TokenInfo> verifiedTokens;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     private SecretKey getKey() {
+        SecretKey k = key;
+        if (k == null) {
+            synchronized (this) {
+                k = key;
+                if (k == null) {
+                    k = buildKey();
+                    key = k;
+                }
+            }
+        }
+        return k;
+    }
+
+    private SecretKey buildKey() {
         // jjwt 0.12+ 推荐使用 SecretKey
         byte[] raw = secret.getBytes(StandardCharsets.UTF_8);
         // HS256 需要 >= 256 bits(32 bytes)。若不足则以 SHA-256 派生稳定密钥，避免 WeakKeyException
@@ -41,23 +100,186 @@ public class JwtUtil {
         return Keys.hmacShaKeyFor(raw);
     }
 
+    private JwtParser getParser() {
+        JwtParser p = parser;
+        if (p == null) {
+            synchronized (this) {
+                p = parser;
+                if (p == null) {
+                    p = Jwts.parser().verifyWith(getKey()).build();
+                    parser = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    private Cache<ByteBuffer, TokenInfo> getVerifiedTokens() {
+        if (cacheMaximumSize <= 0) {
+            return null;
+        }
+        Cache<ByteBuffer, TokenInfo> c = verifiedTokens;
+        if (c == null) {
+            synchronized (this) {
+                c = verifiedTokens;
+                if (c == null) {
+                    c = Caffeine.newBuilder()
+                            .maximumSize(cacheMaximumSize)
+                            .expireAfterWrite(cacheMaxTtlSeconds, TimeUnit.SECONDS)
+                            .build();
+                    verifiedTokens = c;
+                }
+            }
+        }
+        return c;
+    }
+
     public String generateToken(String userId) {
+        return generateToken(userId, null);
+    }
+
+    /**
+     * 生成带会话ID的令牌
+     */
+    public String generateToken(String userId, String sessionId) {
+        return generateToken(userId, sessionId, null, null);
+    }
+
+    /**
+     * 生成访问令牌：会话ID + 用户状态/租户声明
+     */
+    public String generateToken(String userId, String sessionId, Integer status, Integer tenant) {
         long now = System.currentTimeMillis();
         long exp = now + expireMinutes * 60 * 1000;
         return Jwts.builder()
+                .id(sessionId)
                 .subject(userId)
+                .claim(CLAIM_STATUS, status)
+                .claim(CLAIM_TENANT, tenant)
                 .issuedAt(new Date(now))
                 .expiration(new Date(exp))
                 .signWith(getKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * 访问令牌有效期（毫秒）
+     */
+    public long getExpireMillis() {
+        return expireMinutes * 60 * 1000;
+    }
+
+    /**
+     * 仍被接受的令牌中最长的有效期（毫秒）：访问令牌与旧版令牌取大
+     * 按用户的吊销截止时间至少保留这么久，否则旧版令牌会在截止时间清理后重新生效
+     */
+    public long getMaxAcceptedLifetimeMillis() {
+        return Math.max(getExpireMillis(), legacyExpireMinutes * 60 * 1000);
+    }
+
+    /**
+     * 刷新令牌（即登录会话）有效期（毫秒）
+     */
+    public long getRefreshExpireMillis() {
+        return refreshExpireMinutes * 60 * 1000;
+    }
+
     public String parseUserId(String token) {
+        TokenInfo info = parseToken(token);
+        return info != null ? info.getUserId() : null;
+    }
+
+    /**
+     * 解析并验证令牌，无效或过期返回 null
+     */
+    public TokenInfo parseToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        Cache<ByteBuffer, TokenInfo> cache = getVerifiedTokens();
+        ByteBuffer cacheKey = null;
+        if (cache != null) {
+            cacheKey = tokenHash(token);
+            TokenInfo hit = cache.getIfPresent(cacheKey);
+            if (hit != null) {
+                if (hit.getExpiresAt() > System.currentTimeMillis()) {
+                    return hit;
+                }
+                cache.invalidate(cacheKey);
+                return null;
+            }
+        }
         try {
-            Claims claims = Jwts.parser().verifyWith(getKey()).build().parseSignedClaims(token).getPayload();
-            return claims.getSubject();
+            Claims claims = getParser().parseSignedClaims(token).getPayload();
+            TokenInfo info = new TokenInfo(claims.getSubject(), claims.getId(),
+                    claims.getIssuedAt() != null ? claims.getIssuedAt().getTime() : 0L,
+                    claims.getExpiration() != null ? claims.getExpiration().getTime() : Long.MAX_VALUE,
+                    claims.get(CLAIM_STATUS, Integer.class), claims.get(CLAIM_TENANT, Integer.class));
+            if (cache != null && claims.getExpiration() != null) {
+                cache.put(cacheKey, info);
+            }
+            return info;
         } catch (Exception e) {
             return null;
         }
     }
+
+    private ByteBuffer tokenHash(String token) {
+        return ByteBuffer.wrap(SHA256.get().digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * 已验证令牌的内容
+     */
+    public static final class TokenInfo {
+        private final String userId;
+        private final String sessionId;
+        private final long issuedAt;
+        private final long expiresAt;
+        private final Integer status;
+        private final Integer tenant;
+
+        public TokenInfo(String userId, String sessionId, long issuedAt, long expiresAt,
+                         Integer status, Integer tenant) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+            this.status = status;
+            this.tenant = tenant;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        /**
+         * 会话ID（jti），旧版令牌为 null
+         */
+        public String getSessionId() {
+            return sessionId;
+        }
+
+        public long getIssuedAt() {
+            return issuedAt;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        /**
+         * 签发时的用户状态，旧版令牌为 null
+         */
+        public Integer getStatus() {
+            return status;
+        }
+
+        /**
+         * 签发时的租户，旧版令牌为 null
+         */
+        public Integer getTenant() {
+            return tenant;
+        }
+    }
 }
@@ -0,0 +1,41 @@
+package cn.badminton.util;
+
+import cn.badminton.common.Money;
+
+import java.util.Map;
+
+/**
+ * Money 在 Redis Hash 中的编码
+ * - 写入 {field}Cents，值为以分为单位的整数，读取时不再解析十进制字符串
+ * - 读取时兼容改造前写入的 {field}（两位小数字符串），缓存过期后自然迁移
+ *
+ * 作者: xiaolei
+ */
+public final class MoneyCodec {
+
+    private static final String CENTS_SUFFIX = "Cents";
+
+    private MoneyCodec() {}
+
+    public static void write(Map<String, Object> map, String field, Money value) {
+        map.put(field + CENTS_SUFFIX, value != null ? value.getCents() : null);
+    }
+
+    /**
+     * 读取金额，字段缺失时返回 defaultValue
+     */
+    public static Money read(Map<?, ?> map, String field, Money defaultValue) {
+        Object cents = map.get(field + CENTS_SUFFIX);
+        if (cents instanceof Number) {
+            return Money.ofCents(((Number) cents).longValue());
+        }
+        if (cents instanceof String && !((String) cents).isEmpty()) {
+            return Money.ofCents(Long.parseLong((String) cents));
+        }
+        Object legacy = map.get(field);
+        if (legacy != null && !legacy.toString().isEmpty()) {
+            return Money.parse(legacy.toString());
+        }
+        return defaultValue;
+    }
+}
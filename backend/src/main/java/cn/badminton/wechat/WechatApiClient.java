@@ -0,0 +1,305 @@
+package cn.badminton.wechat;
+
+import cn.badminton.config.WechatHttpProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedRetryMetrics;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 微信接口 HTTP 客户端
+ * - 连接池复用 TLS 连接；连接、借连接、读响应均有超时，慢的微信接口不会无限占住 Tomcat 线程
+ * - 调用链：重试（外）→ 熔断 → 隔离舱（内）；熔断打开或隔离舱已满时立即拒绝（RejectedExecutionException，接口返回 5030）
+ * - 重试带指数退避与随机抖动：幂等接口在超时、5xx、errcode=-1 时重试；
+ *   授权码换取等非幂等接口（code 只能用一次）仅在连接未建立时重试，此时请求一定没有发出
+ * - 授权码无效等调用方错误不计入熔断失败率
+ * - 指标：wechat.api.requests{api, outcome}、wechat.http.pool.leased/pending 及 resilience4j 自带指标
+ * - URL 含 secret，日志与异常信息中只出现接口名
+ * 作者: xiaolei
+ */
+@Component
+@Slf4j
+public class WechatApiClient {
+
+    private static final String NAME = "wechat";
+
+    @Autowired
+    private WechatHttpProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient httpClient;
+    private RestTemplate restTemplate;
+
+    private CircuitBreaker circuitBreaker;
+    private Bulkhead bulkhead;
+    private Retry idempotentRetry;
+    private Retry connectRetry;
+
+    @PostConstruct
+    public void init() {
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxConnections())
+                .setMaxConnPerRoute(properties.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(properties.getConnectTimeoutMs()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(properties.getReadTimeoutMs()))
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .build())
+                .build();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(properties.getPoolTimeoutMs()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(properties.getReadTimeoutMs()))
+                        .build())
+                // 重试由下方 Retry 统一控制，避免两层重试叠加
+                .disableAutomaticRetries()
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .build();
+        restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
+        CircuitBreakerRegistry breakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(properties.getSlidingWindowSize())
+                .minimumNumberOfCalls(properties.getMinimumNumberOfCalls())
+                .failureRateThreshold(properties.getFailureRateThreshold())
+                .slowCallRateThreshold(properties.getFailureRateThreshold())
+                .slowCallDurationThreshold(Duration.ofMillis(properties.getSlowCallThresholdMs()))
+                .waitDurationInOpenState(Duration.ofSeconds(properties.getOpenStateSeconds()))
+                .permittedNumberOfCallsInHalfOpenState(3)
+                .recordException(WechatApiClient::isFailure)
+                .build());
+        circuitBreaker = breakerRegistry.circuitBreaker(NAME);
+        circuitBreaker.getEventPublisher().onStateTransition(event ->
+                log.warn("微信接口熔断状态变更: {}", event.getStateTransition()));
+
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(properties.getMaxConcurrentCalls())
+                .maxWaitDuration(Duration.ofMillis(properties.getBulkheadMaxWaitMs()))
+                .build());
+        bulkhead = bulkheadRegistry.bulkhead(NAME);
+
+        IntervalFunction backoff = IntervalFunction.ofExponentialRandomBackoff(
+                Duration.ofMillis(properties.getRetryInitialIntervalMs()), 2.0, 0.5);
+        RetryRegistry retryRegistry = RetryRegistry.ofDefaults();
+        idempotentRetry = retryRegistry.retry(NAME + "-idempotent", RetryConfig.custom()
+                .maxAttempts(properties.getRetryMaxAttempts())
+                .intervalFunction(backoff)
+                .retryOnException(WechatApiClient::isRetryable)
+                .build());
+        connectRetry = retryRegistry.retry(NAME + "-connect", RetryConfig.custom()
+                .maxAttempts(properties.getRetryMaxAttempts())
+                .intervalFunction(backoff)
+                .retryOnException(WechatApiClient::isConnectFailure)
+                .build());
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(breakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+        TaggedRetryMetrics.ofRetryRegistry(retryRegistry).bindTo(meterRegistry);
+        Gauge.builder("wechat.http.pool.leased", connectionManager, m -> m.getTotalStats().getLeased())
+                .register(meterRegistry);
+        Gauge.builder("wechat.http.pool.pending", connectionManager, m -> m.getTotalStats().getPending())
+                .register(meterRegistry);
+
+        log.info("微信 HTTP 客户端就绪，地址: {}, 连接池: {}, 并发上限: {}, 连接/读超时: {}ms/{}ms",
+                properties.getBaseUrl(), properties.getMaxConnections(), properties.getMaxConcurrentCalls(),
+                properties.getConnectTimeoutMs(), properties.getReadTimeoutMs());
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        httpClient.close();
+    }
+
+    /**
+     * 以 GET 调用微信接口并返回 JSON
+     *
+     * @param api        接口名，用于指标与日志
+     * @param path       接口路径，如 /sns/userinfo
+     * @param params     查询参数（值会被编码）
+     * @param idempotent 重复调用是否无副作用；为 false 时只在连接未建立时重试
+     * @throws WechatApiException        微信返回非零 errcode
+     * @throws RejectedExecutionException 熔断打开或并发已满
+     */
+    public JsonNode get(String api, String path, Map<String, String> params, boolean idempotent) {
+        URI uri = buildUri(path, params);
+        return call(api, idempotent, () -> exchange(api, () -> restTemplate.getForObject(uri, String.class)));
+    }
+
+    /**
+     * 以 POST（JSON 请求体）调用微信接口并返回 JSON，重试、熔断、隔离舱与 GET 相同
+     *
+     * @param api        接口名，用于指标与日志
+     * @param path       接口路径，如 /cgi-bin/message/subscribe/send
+     * @param params     查询参数（值会被编码），如 access_token
+     * @param body       请求体，序列化为 JSON
+     * @param idempotent 重复调用是否无副作用；发送消息等接口应传 false，只在连接未建立时重试
+     * @throws WechatApiException        微信返回非零 errcode
+     * @throws RejectedExecutionException 熔断打开或并发已满
+     */
+    public JsonNode post(String api, String path, Map<String, String> params, Object body, boolean idempotent) {
+        URI uri = buildUri(path, params);
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("微信接口 " + api + " 请求体无法序列化", e);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<String> request = new HttpEntity<>(json, headers);
+        return call(api, idempotent, () -> exchange(api, () -> restTemplate.postForObject(uri, request, String.class)));
+    }
+
+    private URI buildUri(String path, Map<String, String> params) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(properties.getBaseUrl()).path(path);
+        params.keySet().forEach(name -> builder.queryParam(name, "{" + name + "}"));
+        return builder.encode().buildAndExpand(params).toUri();
+    }
+
+    private JsonNode call(String api, boolean idempotent, Supplier<JsonNode> exchange) {
+        Supplier<JsonNode> call = Bulkhead.decorateSupplier(bulkhead, exchange);
+        call = CircuitBreaker.decorateSupplier(circuitBreaker, call);
+        call = Retry.decorateSupplier(idempotent ? idempotentRetry : connectRetry, call);
+
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            JsonNode result = call.get();
+            outcome = "success";
+            return result;
+        } catch (CallNotPermittedException e) {
+            outcome = "circuit_open";
+            throw new RejectedExecutionException("微信服务暂不可用，请稍后重试", e);
+        } catch (BulkheadFullException e) {
+            outcome = "bulkhead_full";
+            throw new RejectedExecutionException("微信服务繁忙，请稍后重试", e);
+        } catch (WechatApiException e) {
+            outcome = "wechat_error";
+            throw e;
+        } finally {
+            Timer.builder("wechat.api.requests")
+                    .tag("api", api)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private JsonNode exchange(String api, Supplier<String> request) {
+        String body;
+        try {
+            body = request.get();
+        } catch (ResourceAccessException e) {
+            // 原异常信息包含完整 URL（含 secret），只保留接口名与底层原因
+            Throwable cause = e.getCause();
+            IOException io = cause instanceof IOException ? (IOException) cause : new IOException(e.getMessage());
+            throw new ResourceAccessException("微信接口 " + api + " I/O 异常: " + io, io);
+        }
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(body == null ? "{}" : body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("微信接口 " + api + " 响应不是合法 JSON", e);
+        }
+        if (node.has("errcode") && node.get("errcode").asInt() != 0) {
+            throw new WechatApiException(node.get("errcode").asInt(), node.path("errmsg").asText());
+        }
+        return node;
+    }
+
+    /**
+     * 是否计入熔断失败率：网络异常、5xx、微信系统繁忙
+     */
+    static boolean isFailure(Throwable e) {
+        if (e instanceof WechatApiException) {
+            return ((WechatApiException) e).isSystemError();
+        }
+        return !(e instanceof HttpClientErrorException);
+    }
+
+    static boolean isRetryable(Throwable e) {
+        if (isConnectFailure(e)) {
+            return true;
+        }
+        if (e instanceof WechatApiException) {
+            return ((WechatApiException) e).isSystemError();
+        }
+        return e instanceof HttpServerErrorException || hasCause(e, SocketTimeoutException.class);
+    }
+
+    /**
+     * 连接未建立（拒绝连接、连接超时、域名解析失败），请求一定没有到达微信
+     */
+    static boolean isConnectFailure(Throwable e) {
+        return hasCause(e, ConnectException.class)
+                || hasCause(e, ConnectTimeoutException.class)
+                || hasCause(e, UnknownHostException.class);
+    }
+
+    private static boolean hasCause(Throwable e, Class<? extends Throwable> type) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (type.isInstance(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
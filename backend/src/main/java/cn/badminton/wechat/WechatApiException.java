@@ -0,0 +1,31 @@
+package cn.badminton.wechat;
+
+/**
+ * 微信接口返回非零 errcode
+ * 作者: xiaolei
+ */
+public class WechatApiException extends RuntimeException {
+
+    /**
+     * 微信侧“系统繁忙”，可重试并计入熔断失败率
+     */
+    public static final int SYSTEM_BUSY = -1;
+
+    private final int errcode;
+
+    public WechatApiException(int errcode, String errmsg) {
+        super("微信接口错误 " + errcode + ": " + errmsg);
+        this.errcode = errcode;
+    }
+
+    public int getErrcode() {
+        return errcode;
+    }
+
+    /**
+     * 是否为微信侧故障；授权码无效等调用方错误不视为故障
+     */
+    public boolean isSystemError() {
+        return errcode == SYSTEM_BUSY;
+    }
+}
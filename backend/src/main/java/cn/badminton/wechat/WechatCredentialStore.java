@@ -0,0 +1,314 @@
+package cn.badminton.wechat;
+
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.config.RedisConfig.RedisTTL;
+import cn.badminton.service.DistributedLease;
+import cn.badminton.util.SingleFlight;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 微信凭证缓存（Redis 共享，多节点一致）
+ * - 应用级 access_token（cgi-bin/token）：本地副本 + Redis 哈希；后台定时在到期前 refresh-ahead 刷新，请求线程通常直接命中
+ * - 网页授权 access_token / refresh_token（按 openId）：临近到期时用 refresh_token 续期，无需用户重新授权
+ * - 小程序 session_key（按 openId）：每次 jscode2session 后覆盖，解密时直接读取
+ * - 刷新合并：本节点同键只发起一次（SingleFlight），跨节点用 DistributedLease 租约，未拿到租约的节点等待持有者写回
+ * - 指标：wechat.credential.lookups{type, result=local/redis/miss}、wechat.credential.refreshes{type, outcome}、
+ *   wechat.credential.refreshes.coalesced
+ * 作者: xiaolei
+ */
+@Component
+@Slf4j
+public class WechatCredentialStore {
+
+    private static final String APP_TOKEN = "app_token";
+    private static final String USER_TOKEN = "user_token";
+    private static final String SESSION_KEY = "session_key";
+
+    private static final String FIELD_TOKEN = "token";
+    private static final String FIELD_EXPIRES_AT = "expiresAt";
+    private static final String FIELD_REFRESH = "refresh";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private WechatApiClient wechatApiClient;
+
+    @Autowired
+    private DistributedLease distributedLease;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 距到期不足该秒数即刷新（微信令牌有效期 7200 秒）
+     */
+    @Value("${wechat.credential.refresh-ahead-seconds:600}")
+    private long refreshAheadSeconds = 600;
+
+    /**
+     * 跨节点刷新租约时长，也是未拿到租约时的最长等待时间
+     */
+    @Value("${wechat.credential.lease-ms:5000}")
+    private long leaseMs = 5000;
+
+    /**
+     * 已使用过的应用（appId -> secret），由后台任务保持其令牌新鲜
+     */
+    private final Map<String, String> appSecrets = new ConcurrentHashMap<>();
+    private final Map<String, Credential> localAppTokens = new ConcurrentHashMap<>();
+    private final SingleFlight<String, Credential> refreshFlights = new SingleFlight<>();
+
+    @PostConstruct
+    public void init() {
+        FunctionCounter.builder("wechat.credential.refreshes.coalesced", refreshFlights, SingleFlight::sharedCount)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获取应用级 access_token；正常情况下命中本地副本，不访问 Redis 与微信
+     */
+    public String getAppAccessToken(String appId, String secret) {
+        appSecrets.put(appId, secret);
+        long now = System.currentTimeMillis();
+        Credential local = localAppTokens.get(appId);
+        if (local != null && !local.needsRefresh(now, refreshAheadMillis())) {
+            lookup(APP_TOKEN, "local");
+            return local.token;
+        }
+        Credential shared = readCredential(RedisKeys.wechatAppTokenKey(appId));
+        if (shared != null && !shared.isExpired(now)) {
+            localAppTokens.put(appId, shared);
+            lookup(APP_TOKEN, "redis");
+            return shared.token;
+        }
+        lookup(APP_TOKEN, "miss");
+        return refreshAppToken(appId, secret).token;
+    }
+
+    /**
+     * 后台 refresh-ahead：到期前刷新已使用过的应用令牌，并同步其他节点刷新的结果到本地
+     */
+    @Scheduled(fixedDelayString = "${wechat.credential.refresh-check-ms:60000}")
+    public void refreshAhead() {
+        appSecrets.forEach((appId, secret) -> {
+            try {
+                Credential shared = readCredential(RedisKeys.wechatAppTokenKey(appId));
+                if (shared == null || shared.needsRefresh(System.currentTimeMillis(), refreshAheadMillis())) {
+                    refreshAppToken(appId, secret);
+                } else {
+                    localAppTokens.put(appId, shared);
+                }
+            } catch (RuntimeException e) {
+                log.warn("微信应用令牌预刷新失败，appId: {}, 错误信息: {}", appId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 保存网页授权凭证（授权码换取后调用）
+     */
+    public void saveUserToken(String openId, String accessToken, long expiresInSeconds, String refreshToken) {
+        Credential credential = new Credential(accessToken,
+                System.currentTimeMillis() + expiresInSeconds * 1000, refreshToken);
+        writeCredential(RedisKeys.wechatUserTokenKey(openId), credential, null);
+    }
+
+    /**
+     * 获取用户的网页授权 access_token，临近到期时用 refresh_token 续期；无可用凭证时返回 null
+     */
+    public String getUserAccessToken(String openId, String appId) {
+        String key = RedisKeys.wechatUserTokenKey(openId);
+        Credential current = readCredential(key);
+        long now = System.currentTimeMillis();
+        if (current == null) {
+            lookup(USER_TOKEN, "miss");
+            return null;
+        }
+        if (!current.needsRefresh(now, refreshAheadMillis()) || current.refreshToken == null) {
+            lookup(USER_TOKEN, current.isExpired(now) ? "miss" : "redis");
+            return current.isExpired(now) ? null : current.token;
+        }
+        lookup(USER_TOKEN, "miss");
+        try {
+            return refresh(USER_TOKEN, USER_TOKEN + ":" + openId,
+                    () -> readCredential(key),
+                    () -> fetchUserToken(appId, current.refreshToken),
+                    fresh -> writeCredential(key, fresh, null)).token;
+        } catch (RuntimeException e) {
+            log.warn("微信网页授权凭证续期失败，openId: {}, 错误信息: {}", openId, e.getMessage());
+            return null;
+        }
+    }
+
+    public void saveSessionKey(String openId, String sessionKey) {
+        stringRedisTemplate.opsForValue().set(RedisKeys.wechatSessionKeyKey(openId), sessionKey,
+                Duration.ofSeconds(RedisTTL.WECHAT_SESSION_KEY));
+    }
+
+    /**
+     * 读取小程序 session_key；不存在时返回 null，需要用户重新 wx.login
+     */
+    public String getSessionKey(String openId) {
+        String sessionKey = stringRedisTemplate.opsForValue().get(RedisKeys.wechatSessionKeyKey(openId));
+        lookup(SESSION_KEY, sessionKey == null ? "miss" : "redis");
+        return sessionKey;
+    }
+
+    private Credential refreshAppToken(String appId, String secret) {
+        String key = RedisKeys.wechatAppTokenKey(appId);
+        Credential fresh = refresh(APP_TOKEN, APP_TOKEN + ":" + appId,
+                () -> readCredential(key),
+                () -> fetchAppToken(appId, secret),
+                c -> writeCredential(key, c, c.expiresAt));
+        localAppTokens.put(appId, fresh);
+        return fresh;
+    }
+
+    /**
+     * 合并刷新：本节点同名只执行一次（SingleFlight），跨节点由持有租约者调用微信并写回，其余节点等待写回结果
+     * 刷新失败但旧凭证尚未过期时继续使用旧凭证
+     */
+    private Credential refresh(String type, String name, Supplier<Credential> current,
+                               Supplier<Credential> fetch, Consumer<Credential> write) {
+        return refreshFlights.execute(name, () -> {
+            Credential before = current.get();
+            Supplier<Credential> fresh = () -> {
+                Credential c = current.get();
+                return c != null && !c.needsRefresh(System.currentTimeMillis(), refreshAheadMillis()) ? c : null;
+            };
+            AtomicBoolean fetched = new AtomicBoolean();
+            try {
+                Credential result = distributedLease.runOnce(RedisKeys.wechatLeaseKey(name),
+                        Duration.ofMillis(leaseMs), fresh, () -> {
+                            fetched.set(true);
+                            Credential c = fetch.get();
+                            write.accept(c);
+                            log.info("微信凭证已刷新，类型: {}", type);
+                            return c;
+                        });
+                refreshed(type, fetched.get() ? "success" : "remote");
+                return result;
+            } catch (RuntimeException e) {
+                if (fetched.get()) {
+                    refreshed(type, "failure");
+                }
+                if (before != null && !before.isExpired(System.currentTimeMillis())) {
+                    log.warn("微信凭证刷新失败，继续使用旧凭证，类型: {}, 错误信息: {}", type, e.getMessage());
+                    return before;
+                }
+                throw e;
+            }
+        });
+    }
+
+    private Credential fetchAppToken(String appId, String secret) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("grant_type", "client_credential");
+        params.put("appid", appId);
+        params.put("secret", secret);
+        JsonNode node = wechatApiClient.get("cgi-bin.token", "/cgi-bin/token", params, true);
+        return new Credential(node.get("access_token").asText(),
+                System.currentTimeMillis() + node.get("expires_in").asLong() * 1000, null);
+    }
+
+    private Credential fetchUserToken(String appId, String refreshToken) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("appid", appId);
+        params.put("grant_type", "refresh_token");
+        params.put("refresh_token", refreshToken);
+        JsonNode node = wechatApiClient.get("sns.oauth2.refresh_token", "/sns/oauth2/refresh_token", params, true);
+        return new Credential(node.get("access_token").asText(),
+                System.currentTimeMillis() + node.get("expires_in").asLong() * 1000,
+                node.path("refresh_token").asText(refreshToken));
+    }
+
+    private Credential readCredential(String key) {
+        Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(key);
+        Object token = fields.get(FIELD_TOKEN);
+        Object expiresAt = fields.get(FIELD_EXPIRES_AT);
+        if (token == null || expiresAt == null) {
+            return null;
+        }
+        Object refreshToken = fields.get(FIELD_REFRESH);
+        return new Credential(token.toString(), Long.parseLong(expiresAt.toString()),
+                refreshToken == null ? null : refreshToken.toString());
+    }
+
+    /**
+     * 写入凭证哈希；expireAtMillis 为 null 时按网页授权 refresh_token 寿命过期
+     */
+    private void writeCredential(String key, Credential credential, Long expireAtMillis) {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_TOKEN, credential.token);
+        fields.put(FIELD_EXPIRES_AT, String.valueOf(credential.expiresAt));
+        if (credential.refreshToken != null) {
+            fields.put(FIELD_REFRESH, credential.refreshToken);
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection c = (StringRedisConnection) connection;
+            c.hMSet(key, fields);
+            if (expireAtMillis != null) {
+                c.pExpireAt(key, expireAtMillis);
+            } else {
+                c.expire(key, RedisTTL.WECHAT_USER_TOKEN);
+            }
+            return null;
+        });
+    }
+
+    private long refreshAheadMillis() {
+        return refreshAheadSeconds * 1000;
+    }
+
+    private void lookup(String type, String result) {
+        Counter.builder("wechat.credential.lookups").tag("type", type).tag("result", result)
+                .register(meterRegistry).increment();
+    }
+
+    private void refreshed(String type, String outcome) {
+        Counter.builder("wechat.credential.refreshes").tag("type", type).tag("outcome", outcome)
+                .register(meterRegistry).increment();
+    }
+
+    private static final class Credential {
+        private final String token;
+        private final long expiresAt;
+        private final String refreshToken;
+
+        private Credential(String token, long expiresAt, String refreshToken) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+            this.refreshToken = refreshToken;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+
+        private boolean needsRefresh(long now, long aheadMillis) {
+            return now >= expiresAt - aheadMillis;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package db.migration;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Statement;
+
+/**
+ * 主键改为时间有序的紧凑ID
+ * 1. 暂时移除外键，主键及引用列改为 ascii_bin（UUID 与紧凑ID都只含 ASCII 字符，比较按字节进行）
+ * 2. 恢复外键
+ * 已有行保留原 UUID：Redis 中的活动、费用、分摊、参与者集合以及已签发令牌的 subject 都引用旧ID，
+ * 只改 MySQL 会使这些数据失联；新行由 IdGenerator 生成紧凑ID，两种格式在同一列中共存
+ *
+ * 作者: xiaolei
+ */
+public class V002__Compact_Time_Ordered_Ids extends BaseJavaMigration {
+
+    private static final String ASCII_ID = "varchar(36) CHARACTER SET ascii COLLATE ascii_bin NOT NULL";
+
+    private static final String[] ENTITY_TABLES = {
+            "user", "booking_activity", "participation", "expense_record", "expense_share"
+    };
+
+    /**
+     * 引用列：{表, 列}
+     */
+    private static final String[][] REFERENCES = {
+            {"booking_activity", "organizer"},
+            {"participation", "activity_id"},
+            {"participation", "user_id"},
+            {"expense_record", "activity_id"},
+            {"expense_record", "payer_id"},
+            {"expense_share", "expense_id"},
+            {"expense_share", "user_id"}
+    };
+    private static final String[] DROP_FOREIGN_KEYS = {
+            "ALTER TABLE `booking_activity` DROP FOREIGN KEY `fk_activity_organizer`",
+            "ALTER TABLE `participation` DROP FOREIGN KEY `fk_participation_activity`",
+            "ALTER TABLE `participation` DROP FOREIGN KEY `fk_participation_user`",
+            "ALTER TABLE `expense_record` DROP FOREIGN KEY `fk_expense_activity`",
+            "ALTER TABLE `expense_record` DROP FOREIGN KEY `fk_expense_payer`",
+            "ALTER TABLE `expense_share` DROP FOREIGN KEY `fk_share_expense`",
+            "ALTER TABLE `expense_share` DROP FOREIGN KEY `fk_share_user`"
+    };
+
+    private static final String[] ADD_FOREIGN_KEYS = {
+            "ALTER TABLE `booking_activity` ADD CONSTRAINT `fk_activity_organizer` "
+                    + "FOREIGN KEY (`organizer`) REFERENCES `user` (`id`) ON DELETE RESTRICT",
+            "ALTER TABLE `participation` ADD CONSTRAINT `fk_participation_activity` "
+                    + "FOREIGN KEY (`activity_id`) REFERENCES `booking_activity` (`id`) ON DELETE CASCADE",
+            "ALTER TABLE `participation` ADD CONSTRAINT `fk_participation_user` "
+                    + "FOREIGN KEY (`user_id`) REFERENCES `user` (`id`) ON DELETE CASCADE",
+            "ALTER TABLE `expense_record` ADD CONSTRAINT `fk_expense_activity` "
+                    + "FOREIGN KEY (`activity_id`) REFERENCES `booking_activity` (`id`) ON DELETE CASCADE",
+            "ALTER TABLE `expense_record` ADD CONSTRAINT `fk_expense_payer` "
+                    + "FOREIGN KEY (`payer_id`) REFERENCES `user` (`id`) ON DELETE RESTRICT",
+            "ALTER TABLE `expense_share` ADD CONSTRAINT `fk_share_expense` "
+                    + "FOREIGN KEY (`expense_id`) REFERENCES `expense_record` (`id`) ON DELETE CASCADE",
+            "ALTER TABLE `expense_share` ADD CONSTRAINT `fk_share_user` "
+                    + "FOREIGN KEY (`user_id`) REFERENCES `user` (`id`) ON DELETE CASCADE"
+    };
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        try (Statement statement = context.getConnection().createStatement()) {
+            for (String sql : DROP_FOREIGN_KEYS) {
+                statement.execute(sql);
+            }
+            for (String table : ENTITY_TABLES) {
+                statement.execute("ALTER TABLE `" + table + "` MODIFY `id` " + ASCII_ID + " COMMENT '主键ID'");
+            }
+            for (String[] ref : REFERENCES) {
+                statement.execute("ALTER TABLE `" + ref[0] + "` MODIFY `" + ref[1] + "` "
+                        + ASCII_ID + " DEFAULT '' COMMENT '" + columnComment(ref[1]) + "'");
+            }
+            for (String sql : ADD_FOREIGN_KEYS) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    private String columnComment(String column) {
+        switch (column) {
+            case "organizer":
+                return "发起人用户ID";
+            case "activity_id":
+                return "关联的活动ID";
+            case "payer_id":
+                return "付款人用户ID";
+            case "expense_id":
+                return "关联的费用记录ID";
+            default:
+                return "用户ID";
+        }
+    }
+}
@@ -0,0 +1,34 @@
+-- 通知发件箱
+-- 作者: xiaolei
+-- 说明: 活动提醒等通知先落库再投递，记录渠道、重试次数与投递结果；dedup_key 保证同一提醒只生成一次
+-- 排在 V002（Java 迁移，主键改为 ascii_bin）之后，ID 列同样使用 ascii_bin
+
+CREATE TABLE `notification_outbox` (
+    `id` varchar(36) CHARACTER SET ascii COLLATE ascii_bin NOT NULL COMMENT '通知ID',
+    `dedup_key` varchar(120) NOT NULL COMMENT '去重键，如 reminder:{活动ID}:{用户ID}',
+    `type` varchar(30) NOT NULL DEFAULT '' COMMENT '通知类型：activity_reminder-活动提醒',
+    `channel` varchar(20) NOT NULL DEFAULT '' COMMENT '投递渠道：log-日志替身 wechat-小程序订阅消息',
+    `activity_id` varchar(36) CHARACTER SET ascii COLLATE ascii_bin NOT NULL DEFAULT '' COMMENT '关联的活动ID',
+    `user_id` varchar(36) CHARACTER SET ascii COLLATE ascii_bin NOT NULL DEFAULT '' COMMENT '接收用户ID',
+    `recipient` varchar(64) NOT NULL DEFAULT '' COMMENT '渠道内的接收地址（如 openid）',
+    `payload` text COMMENT '通知内容（JSON）',
+    `status` int(11) NOT NULL DEFAULT 1 COMMENT '投递状态：1-待投递 2-投递中 3-已送达 4-失败 5-跳过',
+    `attempts` int(11) NOT NULL DEFAULT 0 COMMENT '已尝试次数',
+    `next_attempt_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '下次投递时间（投递中时为租约到期时间）',
+    `sent_at` datetime DEFAULT NULL COMMENT '送达时间',
+    `last_error` varchar(255) NOT NULL DEFAULT '' COMMENT '最近一次失败原因',
+
+    -- 基础字段
+    `tenant` int(11) NOT NULL DEFAULT 1 COMMENT '租户，为了应对私有部署',
+    `state` int(11) NOT NULL DEFAULT 1 COMMENT '状态 0 未知 1 上架 2 下架',
+    `created_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    `updated_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    `deleted_at` datetime DEFAULT NULL COMMENT '删除时间',
+    `organization_id` int(11) DEFAULT 0 COMMENT '组织id',
+
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_dedup_key` (`dedup_key`),
+    KEY `idx_status_next_attempt` (`status`, `next_attempt_at`),
+    KEY `idx_activity_id` (`activity_id`),
+    KEY `idx_user_id` (`user_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='通知发件箱';
@@ -0,0 +1,76 @@
+package benchmark;
+
+import cn.badminton.util.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ID生成与有序索引插入基准（纯内存，无需数据库）
+ * TreeMap 近似 B+树：随机UUID插入位置分散，紧凑ID始终追加到尾部
+ *
+ * 运行方式见 docs/perf.md
+ *
+ * 作者: xiaolei
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IdGeneratorBenchmark {
+
+    @Param({"10000"})
+    public int rows;
+
+    @Benchmark
+    public String generateUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public String generateCompact() {
+        return IdGenerator.nextId();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int indexInsertUuid() {
+        TreeMap<String, Boolean> index = new TreeMap<>();
+        for (int i = 0; i < rows; i++) {
+            index.put(UUID.randomUUID().toString(), Boolean.TRUE);
+        }
+        return index.size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public int indexInsertCompact() {
+        TreeMap<String, Boolean> index = new TreeMap<>();
+        for (int i = 0; i < rows; i++) {
+            index.put(IdGenerator.nextId(), Boolean.TRUE);
+        }
+        return index.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IdGeneratorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,116 @@
+package benchmark;
+
+import cn.badminton.util.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MySQL 批量插入吞吐基准：随机UUID(utf8mb4) 对比 紧凑ID(ascii_bin)
+ * 表结构模拟 participation：主键 + 两个引用列二级索引
+ * 每次调用插入一个批次，分数 × batchSize 即每秒写入行数
+ *
+ * 需要可用的 MySQL，连接参数通过系统属性 bench.jdbc.url / bench.jdbc.user / bench.jdbc.password 传入，
+ * 运行方式见 docs/perf.md
+ *
+ * 作者: xiaolei
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IdInsertBenchmark {
+
+    @Param({"uuid", "compact"})
+    public String keyType;
+
+    @Param({"200"})
+    public int batchSize;
+
+    private Connection connection;
+    private PreparedStatement insert;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("bench.jdbc.url",
+                        "jdbc:mysql://localhost:3306/badminton_bench?rewriteBatchedStatements=true"),
+                System.getProperty("bench.jdbc.user", "root"),
+                System.getProperty("bench.jdbc.password", "123456"));
+        String table = "bench_" + keyType;
+        String idType = "uuid".equals(keyType)
+                ? "varchar(36) NOT NULL"
+                : "varchar(36) CHARACTER SET ascii COLLATE ascii_bin NOT NULL";
+        try (Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS `" + table + "`");
+            st.execute("CREATE TABLE `" + table + "` ("
+                    + "`id` " + idType + ","
+                    + "`activity_id` " + idType + ","
+                    + "`user_id` " + idType + ","
+                    + "`created_at` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+                    + "PRIMARY KEY (`id`),"
+                    + "KEY `idx_activity_id` (`activity_id`),"
+                    + "KEY `idx_user_id` (`user_id`)"
+                    + ") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4");
+        }
+        connection.setAutoCommit(false);
+        insert = connection.prepareStatement(
+                "INSERT INTO `" + table + "` (`id`, `activity_id`, `user_id`) VALUES (?, ?, ?)");
+    }
+
+    @Benchmark
+    public int insertBatch() throws SQLException {
+        for (int i = 0; i < batchSize; i++) {
+            insert.setString(1, nextId());
+            insert.setString(2, nextId());
+            insert.setString(3, nextId());
+            insert.addBatch();
+        }
+        int rows = insert.executeBatch().length;
+        connection.commit();
+        return rows;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (insert != null) {
+            insert.close();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private String nextId() {
+        return "uuid".equals(keyType) ? UUID.randomUUID().toString() : IdGenerator.nextId();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IdInsertBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,128 @@
+package benchmark;
+
+import cn.badminton.filter.JwtAuthenticationFilter;
+import cn.badminton.service.TokenSessionService;
+import cn.badminton.util.IdGenerator;
+import cn.badminton.util.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT 认证过滤器路径基准
+ * - legacyParse：改造前的写法，每次重建密钥与解析器
+ * - parseWithoutTokenCache：复用密钥与解析器，每次完整验签
+ * - parseWithTokenCache：命中已验证令牌缓存
+ * - filterWithTokenCache：完整的 JwtAuthenticationFilter 调用（含本地吊销过滤器判定，未命中时无 IO）
+ *
+ * 运行方式见 docs/perf.md
+ *
+ * 作者: xiaolei
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-key-1234567890-ABCDEF-XYZ";
+
+    private JwtUtil cachedJwt;
+    private JwtUtil uncachedJwt;
+    private JwtAuthenticationFilter filter;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+    private String token;
+
+    @Setup
+    public void setUp() throws Exception {
+        cachedJwt = newJwtUtil(10000L);
+        uncachedJwt = newJwtUtil(0L);
+        token = cachedJwt.generateToken("u-benchmark", IdGenerator.nextId());
+
+        // 空的吊销过滤器，视为已加载：常规路径不访问 Redis
+        TokenSessionService sessions = new TokenSessionService();
+        setField(TokenSessionService.class, sessions, "loaded", true);
+
+        filter = new JwtAuthenticationFilter();
+        setField(JwtAuthenticationFilter.class, filter, "jwtUtil", cachedJwt);
+        setField(JwtAuthenticationFilter.class, filter, "tokenSessionService", sessions);
+        setField(JwtAuthenticationFilter.class, filter, "meterRegistry", new SimpleMeterRegistry());
+        filter.init();
+        request = new MockHttpServletRequest("POST", "/api/user/detail");
+        request.addHeader("Authorization", "Bearer " + token);
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public String legacyParse() {
+        Claims claims = Jwts.parser()
+                .verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseSignedClaims(token)
+                .getPayload();
+        return claims.getSubject();
+    }
+
+    @Benchmark
+    public String parseWithoutTokenCache() {
+        return uncachedJwt.parseUserId(token);
+    }
+
+    @Benchmark
+    public String parseWithTokenCache() {
+        return cachedJwt.parseUserId(token);
+    }
+
+    @Benchmark
+    public Object filterWithTokenCache() throws Exception {
+        filter.doFilter(request, response, new MockFilterChain());
+        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+        SecurityContextHolder.clearContext();
+        return principal;
+    }
+
+    private JwtUtil newJwtUtil(long cacheSize) throws Exception {
+        JwtUtil jwt = new JwtUtil();
+        setField(JwtUtil.class, jwt, "secret", SECRET);
+        setField(JwtUtil.class, jwt, "expireMinutes", 60L);
+        setField(JwtUtil.class, jwt, "cacheMaximumSize", cacheSize);
+        return jwt;
+    }
+
+    private void setField(Class<?> type, Object target, String name, Object value) throws Exception {
+        Field field = type.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,130 @@
+package cn.badminton.repository;
+
+import cn.badminton.config.RedisConfig;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.repository.jpa.ActivityJpaRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 自动状态流转依赖的活动缓存在真实 Redis 上的语义（无 Docker 环境时跳过）
+ * 提前一天以上创建的活动在结束时仍可读取，状态流转写回数据库，写库失败的重试仍会补写
+ *
+ * 作者: xiaolei
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class ActivityRepositoryLifecycleRedisTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private ActivityJpaRepository activityJpaRepository;
+    private ActivityRepository activityRepository;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        activityJpaRepository = mock(ActivityJpaRepository.class);
+        activityRepository = new ActivityRepository();
+        activityRepository.setRedisTemplate(redisTemplate);
+        ReflectionTestUtils.setField(activityRepository, "activityJpaRepository", activityJpaRepository);
+    }
+
+    @Test
+    void testActivityBookedAWeekAheadIsCachedUntilAfterItEnds() {
+        LocalDateTime start = LocalDateTime.now().plusDays(7);
+        activityRepository.save(activity("a1", start));
+
+        Long ttl = redisTemplate.getExpire(RedisConfig.RedisKeys.activityKey("a1"), TimeUnit.SECONDS);
+        assertNotNull(ttl);
+        assertTrue(ttl > TimeUnit.DAYS.toSeconds(7) + TimeUnit.HOURS.toSeconds(2),
+                "缓存须保留到活动结束之后，实际剩余秒数: " + ttl);
+    }
+
+    @Test
+    void testTransitionIsWrittenBackAndRetriedWriteBackStillApplies() {
+        activityRepository.save(activity("a1", LocalDateTime.now().plusDays(7)));
+        BookingActivity row = activity("a1", LocalDateTime.now().plusDays(7));
+        when(activityJpaRepository.findById("a1")).thenReturn(Optional.of(row));
+        when(activityJpaRepository.save(any(BookingActivity.class))).thenThrow(new IllegalStateException("db down"));
+
+        assertThrows(IllegalStateException.class, () -> activityRepository.compareAndSetStatus("a1",
+                BookingActivity.STATUS_PENDING, BookingActivity.STATUS_ONGOING));
+
+        // 重试：缓存已是目标状态，不再算作本次改写，但仍写回数据库
+        BookingActivity retried = activity("a1", LocalDateTime.now().plusDays(7));
+        when(activityJpaRepository.findById("a1")).thenReturn(Optional.of(retried));
+        when(activityJpaRepository.save(any(BookingActivity.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        assertFalse(activityRepository.compareAndSetStatus("a1",
+                BookingActivity.STATUS_PENDING, BookingActivity.STATUS_ONGOING));
+        assertEquals(BookingActivity.STATUS_ONGOING, retried.getStatus());
+        verify(activityJpaRepository).save(retried);
+    }
+
+    @Test
+    void testExpiredCacheIsLoadedFromDatabase() {
+        BookingActivity row = activity("a1", LocalDateTime.now().minusHours(3));
+        when(activityJpaRepository.findById("a1")).thenReturn(Optional.of(row));
+
+        assertNull(activityRepository.findById("a1"));
+        assertEquals("a1", activityRepository.findByIdOrLoad("a1").getId());
+        assertNotNull(activityRepository.findById("a1"));
+    }
+
+    @Test
+    void testLostRaceDoesNotWriteBack() {
+        BookingActivity cancelled = activity("a1", LocalDateTime.now().plusDays(7));
+        cancelled.setStatus(BookingActivity.STATUS_CANCELLED);
+        activityRepository.save(cancelled);
+
+        assertFalse(activityRepository.compareAndSetStatus("a1",
+                BookingActivity.STATUS_PENDING, BookingActivity.STATUS_ONGOING));
+        verify(activityJpaRepository, never()).findById(any());
+    }
+
+    private static BookingActivity activity(String id, LocalDateTime startTime) {
+        BookingActivity activity = new BookingActivity("周末球局", "org", "体育馆",
+                startTime, startTime.plusHours(2), 8);
+        activity.setId(id);
+        return activity;
+    }
+}
@@ -0,0 +1,109 @@
+package cn.badminton.repository;
+
+import cn.badminton.common.Money;
+import cn.badminton.config.RedisConfig;
+import cn.badminton.model.ExpenseRecord;
+import cn.badminton.model.ExpenseShare;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 待结算分摊索引与付款人费用索引在未就绪时由既有索引回填（无 Docker 环境时跳过）
+ * 删除新索引键模拟索引上线前写入的数据
+ *
+ * 作者: xiaolei
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class ExpenseRepositoryIndexRedisTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private ExpenseRepository expenseRepository;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        expenseRepository = new ExpenseRepository();
+        expenseRepository.setRedisTemplate(redisTemplate);
+    }
+
+    @Test
+    void testPendingIndexIsBackfilledFromUserShares() {
+        ExpenseShare settled = share("s2", "e1", 2000);
+        settled.settle();
+        expenseRepository.saveShares(List.of(share("s1", "e1", 3000), settled));
+        redisTemplate.delete("badminton:index:user_pending_share:debtor");
+
+        assertEquals(Set.of("s1"), expenseRepository.findPendingShareIdsByUserId("debtor"));
+        assertEquals(Boolean.TRUE, redisTemplate.hasKey("badminton:index:user_pending_share_ready:debtor"));
+        assertEquals(Boolean.TRUE, redisTemplate.opsForSet().isMember("badminton:index:user_pending_share:debtor", "s1"));
+    }
+
+    @Test
+    void testPartialPendingIndexStillIncludesLegacyShares() {
+        expenseRepository.saveShares(List.of(share("s1", "e1", 3000)));
+        redisTemplate.delete("badminton:index:user_pending_share:debtor");
+        // 上线后新建的分摊让索引键重新出现，但其中没有旧分摊
+        expenseRepository.saveShares(List.of(share("s3", "e2", 1000)));
+
+        assertEquals(Set.of("s1", "s3"), expenseRepository.findPendingShareIdsByUserId("debtor"));
+    }
+
+    @Test
+    void testPayerIndexIsBackfilledFromOrganizedActivitiesAndOwnShares() {
+        ExpenseRecord organized = expenseRepository.saveExpense(expense("e1", "a1", "payer"));
+        ExpenseRecord shared = expenseRepository.saveExpense(expense("e2", "a2", "payer"));
+        expenseRepository.saveExpense(expense("e3", "a1", "other"));
+        redisTemplate.opsForSet().add("badminton:index:organizer:payer", "a1");
+        expenseRepository.saveShares(List.of(new ExpenseShare(shared.getId(), "payer", Money.ofCents(500))));
+        redisTemplate.delete("badminton:index:payer_expense:payer");
+
+        assertEquals(Set.of(organized.getId(), shared.getId()), expenseRepository.findExpenseIdsByPayerId("payer"));
+        assertEquals(Boolean.TRUE, redisTemplate.hasKey("badminton:index:payer_expense_ready:payer"));
+    }
+
+    private static ExpenseShare share(String id, String expenseId, long cents) {
+        ExpenseShare share = new ExpenseShare(expenseId, "debtor", Money.ofCents(cents));
+        share.setId(id);
+        return share;
+    }
+
+    private static ExpenseRecord expense(String id, String activityId, String payerId) {
+        ExpenseRecord expense = new ExpenseRecord(activityId, payerId, "court", "场地费", Money.ofCents(6000));
+        expense.setId(id);
+        return expense;
+    }
+}
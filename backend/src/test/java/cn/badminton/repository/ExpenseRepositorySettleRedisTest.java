@@ -0,0 +1,109 @@
+package cn.badminton.repository;
+
+import cn.badminton.common.Money;
+import cn.badminton.config.RedisConfig;
+import cn.badminton.event.DomainEvent;
+import cn.badminton.event.DomainEventStream;
+import cn.badminton.event.ShareSettled;
+import cn.badminton.model.ExpenseShare;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 条件结算脚本在真实 Redis 上的语义（无 Docker 环境时跳过）
+ * 状态比较、待结算索引成员与事件字段均须与模板序列化后的值一致
+ *
+ * 作者: xiaolei
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class ExpenseRepositorySettleRedisTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private ExpenseRepository expenseRepository;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        expenseRepository = new ExpenseRepository();
+        expenseRepository.setRedisTemplate(redisTemplate);
+    }
+
+    @Test
+    void testSettleWritesStatusIndexAndEventsTogether() {
+        List<ExpenseShare> shares = expenseRepository.saveShares(List.of(share("s1", 3000), share("s2", 2000)));
+        shares.forEach(ExpenseShare::settle);
+
+        List<String> conflicts = expenseRepository.settleShares(shares, ShareSettled.perUser(shares));
+
+        assertTrue(conflicts.isEmpty());
+        assertTrue(expenseRepository.findShareById("s1").isSettled());
+        assertNotNull(expenseRepository.findShareById("s2").getSettledAt());
+        assertTrue(expenseRepository.findPendingShareIdsByUserId("debtor").isEmpty());
+
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                .read(StreamOffset.fromStart(DomainEventStream.KEY));
+        assertEquals(1, records.size());
+        ShareSettled event = (ShareSettled) DomainEvent.fromFields(DomainEventStream.fields(records.get(0)));
+        assertEquals(List.of("s1", "s2"), event.getShareIds());
+        assertEquals(5000, event.getAmountCents());
+    }
+
+    @Test
+    void testSecondSettleIsRejectedWithoutWrites() {
+        List<ExpenseShare> first = expenseRepository.saveShares(List.of(share("s1", 3000)));
+        first.forEach(ExpenseShare::settle);
+        assertTrue(expenseRepository.settleShares(first, List.of(ShareSettled.of(first.get(0)))).isEmpty());
+
+        ExpenseShare stale = share("s1", 3000);
+        stale.settle();
+        ExpenseShare fresh = expenseRepository.saveShares(List.of(share("s2", 1000))).get(0);
+        fresh.settle();
+        List<String> conflicts = expenseRepository.settleShares(List.of(stale, fresh),
+                List.of(ShareSettled.of(stale), ShareSettled.of(fresh)));
+
+        assertEquals(List.of("s1"), conflicts);
+        assertTrue(expenseRepository.findShareById("s2").isPending());
+        assertEquals(1L, redisTemplate.opsForStream().size(DomainEventStream.KEY));
+    }
+
+    private static ExpenseShare share(String id, long cents) {
+        ExpenseShare share = new ExpenseShare("e1", "debtor", Money.ofCents(cents));
+        share.setId(id);
+        return share;
+    }
+}
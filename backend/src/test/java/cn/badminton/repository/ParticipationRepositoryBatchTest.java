@@ -0,0 +1,114 @@
+package cn.badminton.repository;
+
+import cn.badminton.model.BookingActivity;
+import cn.badminton.model.Participation;
+import cn.badminton.repository.ParticipationRepository.Change;
+import cn.badminton.repository.jpa.ActivityJpaRepository;
+import cn.badminton.repository.jpa.ParticipationJpaRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 参与记录批量落库测试
+ * 同一用户的多次变更只取最后一次，库中缺少的活动先补写，缓存中也没有的活动丢弃
+ *
+ * 作者: xiaolei
+ */
+@ExtendWith(MockitoExtension.class)
+public class ParticipationRepositoryBatchTest {
+
+    @Mock
+    private ParticipationJpaRepository participationJpaRepository;
+
+    @Mock
+    private ActivityJpaRepository activityJpaRepository;
+
+    @Mock
+    private ActivityRepository activityRepository;
+
+    @InjectMocks
+    private ParticipationRepository participationRepository;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testApplyChangesCollapsesAndUpserts() {
+        BookingActivity persisted = activity("a1");
+        when(activityJpaRepository.findAllById(any())).thenReturn(List.of(persisted));
+        BookingActivity cachedOnly = activity("a2");
+        when(activityRepository.findById("a2")).thenReturn(cachedOnly);
+
+        Participation cancelled = new Participation("a1", "u1");
+        cancelled.setId("p1");
+        cancelled.cancel();
+        Participation confirmed = new Participation("a1", "u2");
+        confirmed.setId("p2");
+        when(participationJpaRepository.findByActivityIdInAndDeletedAtIsNull(any()))
+                .thenReturn(List.of(cancelled, confirmed));
+
+        List<Change> changes = new ArrayList<>();
+        changes.add(new Change("a1", "u1", true, false));   // 已取消的记录重新确认
+        changes.add(new Change("a1", "u2", false, false));  // 已确认的记录取消
+        changes.add(new Change("a2", "u3", true, false));   // 先加入
+        changes.add(new Change("a2", "u3", false, false));  // 又退出：库中无记录，忽略
+        changes.add(new Change("a2", "u4", true, false));   // 新建
+
+        int written = participationRepository.applyChanges(changes);
+
+        assertEquals(3, written);
+        assertTrue(cancelled.isConfirmed());
+        assertTrue(confirmed.isCancelled());
+        verify(activityJpaRepository).saveAll(List.of(cachedOnly));
+
+        ArgumentCaptor<List<Participation>> saved = ArgumentCaptor.forClass(List.class);
+        verify(participationJpaRepository).saveAll(saved.capture());
+        Participation created = saved.getValue().get(2);
+        assertEquals("a2", created.getActivityId());
+        assertEquals("u4", created.getUserId());
+        assertNotNull(created.getId());
+    }
+
+    @Test
+    void testChangesForVanishedActivityAreDropped() {
+        when(activityJpaRepository.findAllById(any())).thenReturn(List.of());
+        when(activityRepository.findById("gone")).thenReturn(null);
+
+        int written = participationRepository.applyChanges(List.of(new Change("gone", "u1", true, false)));
+
+        assertEquals(0, written);
+        verify(activityJpaRepository, never()).saveAll(any());
+        verifyNoInteractions(participationJpaRepository);
+    }
+
+    @Test
+    void testFindUsesOnlyAvailableActivities() {
+        when(activityJpaRepository.findAllById(any())).thenReturn(List.of(activity("a1")));
+        when(activityRepository.findById("gone")).thenReturn(null);
+        when(participationJpaRepository.findByActivityIdInAndDeletedAtIsNull(Set.of("a1"))).thenReturn(List.of());
+
+        int written = participationRepository.applyChanges(List.of(
+                new Change("a1", "u1", true, false),
+                new Change("gone", "u1", true, false)));
+
+        assertEquals(1, written);
+    }
+
+    private static BookingActivity activity(String id) {
+        BookingActivity activity = new BookingActivity("周末球局", "org", "体育馆",
+                LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(1).plusHours(2), 8);
+        activity.setId(id);
+        return activity;
+    }
+}
@@ -0,0 +1,104 @@
+package cn.badminton.repository;
+
+import cn.badminton.model.User;
+import cn.badminton.repository.jpa.UserJpaRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * UserRepository 批量查询测试
+ * 缓存一次管道读取，未命中的一次 IN 查询数据库并回填
+ *
+ * 作者: xiaolei
+ */
+@ExtendWith(MockitoExtension.class)
+public class UserRepositoryBatchTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private UserJpaRepository userJpaRepository;
+
+    @InjectMocks
+    private UserRepository userRepository;
+
+    @Test
+    void testFindByIdsMixesCacheAndDatabase() {
+        Map<Object, Object> cached = new HashMap<>();
+        cached.put("id", "u1");
+        cached.put("phone", "18569660001");
+        cached.put("nickname", "缓存用户");
+        cached.put("status", 1);
+        cached.put("totalActivities", 0);
+        cached.put("totalExpense", "0.00");
+        List<Object> hashes = new ArrayList<>();
+        hashes.add(cached);
+        hashes.add(new HashMap<>());
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenReturn(hashes)
+                .thenReturn(new ArrayList<>());
+
+        User fromDb = new User("18569660002", "数据库用户", "x");
+        fromDb.setId("u2");
+        when(userJpaRepository.findAllById(List.of("u2"))).thenReturn(List.of(fromDb));
+
+        Map<String, User> users = userRepository.findByIds(Arrays.asList("u1", "u2", "u1", null));
+
+        assertEquals(List.of("u1", "u2"), new ArrayList<>(users.keySet()));
+        assertEquals("缓存用户", users.get("u1").getNickname());
+        assertSame(fromDb, users.get("u2"));
+        // 一次管道读取 + 一次管道回填，数据库只查未命中部分
+        verify(redisTemplate, times(2)).executePipelined(any(SessionCallback.class));
+        verify(userJpaRepository).findAllById(List.of("u2"));
+    }
+
+    @Test
+    void testFindByIdsAllCachedSkipsDatabase() {
+        Map<Object, Object> cached = new HashMap<>();
+        cached.put("id", "u1");
+        cached.put("status", "1");
+        cached.put("totalActivities", 3);
+        cached.put("totalExpenseCents", 1200);
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenReturn(List.<Object>of(cached));
+
+        Map<String, User> users = userRepository.findByIds(List.of("u1"));
+
+        assertEquals(1, users.size());
+        verifyNoInteractions(userJpaRepository);
+    }
+
+    @Test
+    void testProfileOnlyHashIsLoadedFromDatabase() {
+        // 只有保存时写入的资料字段、缺少计数字段的缓存按未命中处理
+        Map<Object, Object> profileOnly = new HashMap<>();
+        profileOnly.put("id", "u1");
+        profileOnly.put("nickname", "缓存用户");
+        when(redisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenReturn(List.<Object>of(profileOnly))
+                .thenReturn(new ArrayList<>());
+        User fromDb = new User("18569660001", "数据库用户", "x");
+        fromDb.setId("u1");
+        fromDb.setTotalActivities(5);
+        when(userJpaRepository.findAllById(List.of("u1"))).thenReturn(List.of(fromDb));
+
+        Map<String, User> users = userRepository.findByIds(List.of("u1"));
+
+        assertEquals(5, users.get("u1").getTotalActivities());
+    }
+}
@@ -0,0 +1,131 @@
+package cn.badminton.repository;
+
+import cn.badminton.common.Money;
+import cn.badminton.config.RedisConfig;
+import cn.badminton.model.User;
+import cn.badminton.repository.jpa.UserJpaRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 计数累加脚本在真实 Redis 上的语义（无 Docker 环境时跳过）
+ * 标记与增量同一脚本写入；计数字段须按模板的值序列化器存为纯数字，HINCRBY 才能累加
+ * 保存资料不覆盖计数字段，只有资料字段的缓存按未命中处理并由数据库补齐计数
+ *
+ * 作者: xiaolei
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class UserRepositoryCounterRedisTest {
+
+    private static final String MARKER = "badminton:stream:processed:user_counters:1-0";
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static RedisTemplate<String, Object> redisTemplate;
+
+    private UserJpaRepository userJpaRepository;
+    private UserRepository userRepository;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new RedisConfig().redisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        userJpaRepository = mock(UserJpaRepository.class);
+        when(userJpaRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        userRepository = new UserRepository();
+        ReflectionTestUtils.setField(userRepository, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(userRepository, "userJpaRepository", userJpaRepository);
+    }
+
+    @Test
+    void testRedeliveredEventIsCountedOnce() {
+        givenCachedUser("u1", 2, 1000);
+
+        assertEquals(1, userRepository.incrementCounterOnce(MARKER, 60, "u1", "totalExpenseCents", 550));
+        assertEquals(0, userRepository.incrementCounterOnce(MARKER, 60, "u1", "totalExpenseCents", 550));
+        assertEquals(Money.ofCents(1550), userRepository.findById("u1").getTotalExpense());
+
+        userRepository.persistCounters("u1");
+        verify(userJpaRepository).raiseCounters("u1", 2, Money.ofCents(1550));
+    }
+
+    @Test
+    void testProfileSaveDoesNotOverwriteCounters() {
+        givenCachedUser("u1", 2, 1000);
+        User stale = userRepository.findById("u1");
+        assertEquals(1, userRepository.incrementCounterOnce(MARKER, 60, "u1", "totalActivities", 1));
+
+        stale.setNickname("新昵称");
+        userRepository.save(stale);
+
+        User cached = userRepository.findById("u1");
+        assertEquals("新昵称", cached.getNickname());
+        assertEquals(3, cached.getTotalActivities());
+    }
+
+    @Test
+    void testProfileOnlyHashIsReloadedFromDatabase() {
+        User user = user("u1", 4, 800);
+        userRepository.save(user);
+        when(userJpaRepository.findById("u1")).thenReturn(Optional.of(user));
+
+        // 仅有资料字段的缓存按未命中处理，由数据库补齐计数
+        assertEquals(4, userRepository.findById("u1").getTotalActivities());
+        assertEquals(1, userRepository.incrementCounterOnce(MARKER, 60, "u1", "totalActivities", 1));
+    }
+
+    @Test
+    void testMissingCacheReleasesMarker() {
+        assertEquals(-1, userRepository.incrementCounterOnce(MARKER, 60, "u1", "totalActivities", 1));
+        assertFalse(Boolean.TRUE.equals(redisTemplate.hasKey(MARKER)));
+    }
+
+    private void givenCachedUser(String id, int activities, long expenseCents) {
+        User user = user(id, activities, expenseCents);
+        when(userJpaRepository.findById(id)).thenReturn(Optional.of(user));
+        assertTrue(userRepository.reloadCache(id));
+    }
+
+    private static User user(String id, int activities, long expenseCents) {
+        User user = new User();
+        user.setId(id);
+        user.setNickname("球友");
+        user.setTotalActivities(activities);
+        user.setTotalExpense(Money.ofCents(expenseCents));
+        return user;
+    }
+}
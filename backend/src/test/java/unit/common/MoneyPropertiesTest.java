@@ -0,0 +1,123 @@
+package unit.common;
+
+import cn.badminton.common.Money;
+import cn.badminton.model.MoneyConverter;
+import cn.badminton.util.MoneyCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.LongRange;
+import net.jqwik.api.constraints.Size;
+import org.junit.jupiter.api.Assertions;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Money 的性质测试：分摊守恒、公平，以及各编码的往返一致
+ */
+public class MoneyPropertiesTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Property
+    void equalAllocationSumsToTotalAndDiffersByAtMostOneCent(
+            @ForAll @LongRange(min = 0, max = 9_999_999_999L) long cents,
+            @ForAll @IntRange(min = 1, max = 500) int parts) {
+        Money[] shares = Money.ofCents(cents).allocate(parts);
+
+        Assertions.assertEquals(parts, shares.length);
+        Assertions.assertEquals(cents, sum(shares));
+        long min = Arrays.stream(shares).mapToLong(Money::getCents).min().getAsLong();
+        long max = Arrays.stream(shares).mapToLong(Money::getCents).max().getAsLong();
+        Assertions.assertTrue(max - min <= 1);
+    }
+
+    @Property
+    void ratioAllocationSumsToTotalAndStaysWithinOneCentOfExactShare(
+            @ForAll @LongRange(min = 0, max = 9_999_999_999L) long cents,
+            @ForAll @Size(min = 1, max = 50) List<@LongRange(min = 0, max = 9_999_999_999L) Long> ratioList) {
+        long[] ratios = ratioList.stream().mapToLong(Long::longValue).toArray();
+        long total = Arrays.stream(ratios).sum();
+        if (total == 0) {
+            ratios[0] = 1;
+            total = 1;
+        }
+        Money[] shares = Money.ofCents(cents).allocate(ratios);
+
+        Assertions.assertEquals(cents, sum(shares));
+        for (int i = 0; i < ratios.length; i++) {
+            long floor = BigInteger.valueOf(cents).multiply(BigInteger.valueOf(ratios[i]))
+                    .divide(BigInteger.valueOf(total)).longValueExact();
+            long share = shares[i].getCents();
+            Assertions.assertTrue(share == floor || share == floor + 1, "share " + i);
+        }
+    }
+
+    @Property
+    void decimalRoundTripIsExact(@ForAll @LongRange(min = -9_999_999_999L, max = 9_999_999_999L) long cents) {
+        Money money = Money.ofCents(cents);
+        Assertions.assertEquals(money, Money.of(money.toBigDecimal()));
+        Assertions.assertEquals(money, Money.parse(money.toString()));
+        Assertions.assertEquals(2, money.toBigDecimal().scale());
+    }
+
+    @Property
+    void plusAndMinusAreInverse(@ForAll @LongRange(min = -1_000_000_000L, max = 1_000_000_000L) long a,
+                                @ForAll @LongRange(min = -1_000_000_000L, max = 1_000_000_000L) long b) {
+        Money x = Money.ofCents(a);
+        Money y = Money.ofCents(b);
+        Assertions.assertEquals(x, x.plus(y).minus(y));
+        Assertions.assertEquals(Long.signum(a), x.signum());
+    }
+
+    @Property
+    void codecsRoundTrip(@ForAll @LongRange(min = 0, max = 9_999_999_999L) long cents) throws Exception {
+        Money money = Money.ofCents(cents);
+
+        MoneyConverter converter = new MoneyConverter();
+        Assertions.assertEquals(money, converter.convertToEntityAttribute(converter.convertToDatabaseColumn(money)));
+
+        Map<String, Object> hash = new HashMap<>();
+        MoneyCodec.write(hash, "amount", money);
+        Assertions.assertEquals(money, MoneyCodec.read(hash, "amount", null));
+
+        String json = objectMapper.writeValueAsString(money);
+        Assertions.assertEquals(money.toBigDecimal().toPlainString(), json);
+        Assertions.assertEquals(money, objectMapper.readValue(json, Money.class));
+    }
+
+    @Example
+    void legacyDecimalHashFieldIsStillReadable() {
+        Map<Object, Object> hash = new HashMap<>();
+        hash.put("totalAmount", "123.40");
+        Assertions.assertEquals(Money.ofCents(12340), MoneyCodec.read(hash, "totalAmount", null));
+        Assertions.assertEquals(Money.ZERO, MoneyCodec.read(new HashMap<>(), "totalAmount", Money.ZERO));
+    }
+
+    @Example
+    void rejectsSubCentPrecision() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Money.of(new BigDecimal("0.001")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Money.parse("abc"));
+        Assertions.assertEquals(Money.ofCents(100), Money.of(new BigDecimal("1.000")));
+    }
+
+    @Example
+    void averageSplitMatchesLegacyBehaviour() {
+        // 100.00 / 3 → 33.34, 33.33, 33.33（余下的分给靠前的参与者）
+        Money[] shares = Money.ofCents(10000).allocate(3);
+        Assertions.assertEquals("33.34", shares[0].toString());
+        Assertions.assertEquals("33.33", shares[1].toString());
+        Assertions.assertEquals("33.33", shares[2].toString());
+    }
+
+    private static long sum(Money[] shares) {
+        return Arrays.stream(shares).mapToLong(Money::getCents).sum();
+    }
+}
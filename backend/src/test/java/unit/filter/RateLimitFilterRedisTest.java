@@ -0,0 +1,129 @@
+package unit.filter;
+
+import cn.badminton.config.RateLimitProperties;
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.filter.RateLimitFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 限流令牌桶脚本在真实 Redis 上的语义（无 Docker 环境时跳过）
+ * - 多个节点共享同一个全局桶：各节点本地都还有令牌时，由脚本按全局配额拒绝
+ * - 多个桶全部有令牌才放行；任一桶不足时整体拒绝，其余桶不扣减
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class RateLimitFilterRedisTest {
+
+    private static final String ROUTE = "/api/activity/join";
+    private static final String IP = "10.0.0.2";
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private RateLimitProperties properties;
+
+    @BeforeAll
+    public static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    public static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        SecurityContextHolder.clearContext();
+        RateLimitProperties.Policy policy = new RateLimitProperties.Policy();
+        policy.setIpCapacity(3);
+        policy.setIpRefillPerMinute(1);
+        policy.setUserCapacity(1);
+        policy.setUserRefillPerMinute(1);
+        properties = new RateLimitProperties();
+        properties.setRoutes(Map.of(ROUTE, policy));
+    }
+
+    @Test
+    public void testNodesShareTheGlobalBucket() throws Exception {
+        RateLimitFilter nodeA = newNode();
+        RateLimitFilter nodeB = newNode();
+
+        Assertions.assertEquals(200, call(nodeA).getStatus());
+        Assertions.assertEquals(200, call(nodeA).getStatus());
+        MockHttpServletResponse lastToken = call(nodeB);
+        Assertions.assertEquals(200, lastToken.getStatus());
+        Assertions.assertEquals("0", lastToken.getHeader("RateLimit-Remaining"));
+
+        // nodeB 本地仍有 2 个令牌，由 Redis 按全局配额拒绝，并给出补满一个令牌所需的等待时间
+        MockHttpServletResponse rejected = call(nodeB);
+        Assertions.assertEquals(429, rejected.getStatus());
+        long retryAfter = Long.parseLong(rejected.getHeader("Retry-After"));
+        Assertions.assertTrue(retryAfter > 0 && retryAfter <= 60, "Retry-After=" + retryAfter);
+    }
+
+    @Test
+    public void testAllBucketsMustHaveTokensAndRejectionDebitsNone() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("u-1", null, List.of()));
+        RateLimitFilter nodeA = newNode();
+        RateLimitFilter nodeB = newNode();
+
+        Assertions.assertEquals(200, call(nodeA).getStatus());
+        // 用户桶容量 1 已耗尽；IP 桶还剩 2 个令牌
+        Assertions.assertEquals(429, call(nodeB).getStatus());
+
+        String ipKey = RedisKeys.rateLimitKey(ROUTE, "ip", IP);
+        double ipTokens = Double.parseDouble(String.valueOf(redisTemplate.opsForHash().get(ipKey, "tokens")));
+        Assertions.assertTrue(ipTokens >= 2 && ipTokens < 2.1, "ip tokens=" + ipTokens);
+        Assertions.assertTrue(redisTemplate.getExpire(ipKey) > 0);
+    }
+
+    private RateLimitFilter newNode() {
+        RateLimitFilter filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "properties", properties);
+        ReflectionTestUtils.setField(filter, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        filter.init();
+        return filter;
+    }
+
+    private static MockHttpServletResponse call(RateLimitFilter filter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", ROUTE);
+        request.setRemoteAddr(IP);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
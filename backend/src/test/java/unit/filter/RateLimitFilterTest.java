@@ -0,0 +1,150 @@
+package unit.filter;
+
+import cn.badminton.config.RateLimitProperties;
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.filter.RateLimitFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 接口限流过滤器：路径规范化、本地预过滤、Redis 拒绝后的本地封禁与 Redis 故障放行
+ * Redis 脚本本身的令牌桶语义见 RateLimitFilterRedisTest
+ */
+public class RateLimitFilterTest {
+
+    private static final String ROUTE = "/api/auth/login";
+    private static final String IP = "10.0.0.1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StringRedisTemplate redisTemplate;
+    private RateLimitFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        RateLimitProperties.Policy policy = new RateLimitProperties.Policy();
+        policy.setIpCapacity(2);
+        policy.setIpRefillPerMinute(1);
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setRoutes(Map.of(ROUTE, policy));
+
+        redisTemplate = mock(StringRedisTemplate.class);
+        filter = new RateLimitFilter();
+        ReflectionTestUtils.setField(filter, "properties", properties);
+        ReflectionTestUtils.setField(filter, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(filter, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        filter.init();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPathVariantsShareTheRouteBucket() throws Exception {
+        allowByRedis();
+
+        call("/api/auth/login/");
+        call("/api/auth/login;jsessionid=abc");
+
+        ArgumentCaptor<List<String>> keys = ArgumentCaptor.forClass(List.class);
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), keys.capture(), any(), any());
+        for (List<String> captured : keys.getAllValues()) {
+            Assertions.assertEquals(List.of(RedisKeys.rateLimitKey(ROUTE, "ip", IP)), captured);
+        }
+    }
+
+    @Test
+    public void testVariantIsRejectedOnceRouteBucketIsEmpty() throws Exception {
+        allowByRedis();
+        call(ROUTE);
+        call(ROUTE + "/");
+
+        MockHttpServletResponse response = call("//api/auth/login//");
+
+        Assertions.assertEquals(429, response.getStatus());
+    }
+
+    @Test
+    public void testUnconfiguredRouteIsNotLimited() throws Exception {
+        MockHttpServletResponse response = call("/api/auth/logout");
+
+        Assertions.assertEquals(200, response.getStatus());
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(), any());
+    }
+
+    @Test
+    public void testLocalPrefilterRejectsWithoutRedis() throws Exception {
+        allowByRedis();
+        call(ROUTE);
+        call(ROUTE);
+
+        MockHttpServletResponse response = call(ROUTE);
+
+        Assertions.assertEquals(429, response.getStatus());
+        Assertions.assertNotNull(response.getHeader("Retry-After"));
+        verify(redisTemplate, times(2)).execute(any(RedisScript.class), anyList(), any(), any());
+        Assertions.assertEquals(1.0, meterRegistry.counter("ratelimit.requests",
+                "route", ROUTE, "outcome", "rejected_local").count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRedisRejectionBlocksLocallyForRetryAfter() throws Exception {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenReturn(List.of(0L, 0L, 5000L, 1L));
+
+        MockHttpServletResponse rejected = call(ROUTE);
+        MockHttpServletResponse blocked = call(ROUTE);
+
+        Assertions.assertEquals(429, rejected.getStatus());
+        Assertions.assertEquals("5", rejected.getHeader("Retry-After"));
+        Assertions.assertEquals(429, blocked.getStatus());
+        verify(redisTemplate, times(1)).execute(any(RedisScript.class), anyList(), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRedisFailureLetsRequestThrough() throws Exception {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenThrow(new IllegalStateException("redis down"));
+
+        MockHttpServletResponse response = call(ROUTE);
+
+        Assertions.assertEquals(200, response.getStatus());
+        Assertions.assertEquals(1.0, meterRegistry.counter("ratelimit.requests",
+                "route", ROUTE, "outcome", "error").count());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allowByRedis() {
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(), any()))
+                .thenReturn(List.of(1L, 1L, 0L, 1L));
+    }
+
+    private MockHttpServletResponse call(String uri) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+        request.setRemoteAddr(IP);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
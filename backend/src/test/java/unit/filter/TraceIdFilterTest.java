@@ -0,0 +1,105 @@
+package unit.filter;
+
+import cn.badminton.filter.TraceIdFilter;
+import cn.badminton.metrics.RedisBudgetProperties;
+import cn.badminton.metrics.RequestStats;
+import cn.badminton.metrics.RequestStatsReporter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.HandlerMapping;
+
+/**
+ * 追踪过滤器：Server-Timing 在响应提交前写入，过滤器直接拒绝、sendError 与异常响应同样带有并记录直方图
+ */
+public class TraceIdFilterTest {
+
+    private static final String URI = "/api/activity/join";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private TraceIdFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        RequestStatsReporter reporter = new RequestStatsReporter();
+        ReflectionTestUtils.setField(reporter, "meterRegistry", registry);
+        ReflectionTestUtils.setField(reporter, "redisBudget", new RedisBudgetProperties());
+        ReflectionTestUtils.setField(reporter, "requestLogSamplePercent", 0);
+        filter = new TraceIdFilter();
+        ReflectionTestUtils.setField(filter, "requestStatsReporter", reporter);
+    }
+
+    @Test
+    public void testHeaderIsAddedBeforeBodyIsWritten() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        String[] headerAtWrite = new String[1];
+
+        filter.doFilter(handled(), response, (req, res) -> {
+            RequestStats.current().recordRedisCommand(1_000_000);
+            res.getWriter().write("{}");
+            headerAtWrite[0] = response.getHeader(RequestStatsReporter.SERVER_TIMING_HEADER);
+            res.flushBuffer();
+        });
+
+        Assertions.assertNotNull(headerAtWrite[0]);
+        Assertions.assertTrue(headerAtWrite[0].contains("desc=\"1 cmd, 0 B\""), headerAtWrite[0]);
+        Assertions.assertEquals(1.0, registry.get("http.server.requests.redis.commands")
+                .tag("uri", URI).tag("status", "200").summary().totalAmount());
+        Assertions.assertNull(RequestStats.current());
+    }
+
+    @Test
+    public void testRejectionWrittenByDownstreamFilterIsCovered() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("POST", URI), response, (req, res) -> {
+            HttpServletResponse http = (HttpServletResponse) res;
+            http.setStatus(429);
+            http.getWriter().write("{\"code\":4290}");
+        });
+
+        Assertions.assertNotNull(response.getHeader(RequestStatsReporter.SERVER_TIMING_HEADER));
+        Assertions.assertEquals(1L, registry.get("http.server.requests.db.queries")
+                .tag("uri", "UNKNOWN").tag("status", "429").summary().count());
+    }
+
+    @Test
+    public void testSendErrorIsCovered() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", URI), response,
+                (req, res) -> ((HttpServletResponse) res).sendError(401));
+
+        Assertions.assertNotNull(response.getHeader(RequestStatsReporter.SERVER_TIMING_HEADER));
+        Assertions.assertEquals(1L, registry.get("http.server.requests.db.queries")
+                .tag("status", "401").summary().count());
+    }
+
+    @Test
+    public void testUncaughtExceptionIsRecordedAsServerError() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain failing = (req, res) -> {
+            throw new ServletException("boom");
+        };
+
+        Assertions.assertThrows(ServletException.class, () -> filter.doFilter(handled(), response, failing));
+
+        Assertions.assertNotNull(response.getHeader(RequestStatsReporter.SERVER_TIMING_HEADER));
+        Assertions.assertEquals(1L, registry.get("http.server.requests.db.queries")
+                .tag("uri", URI).tag("status", "500").summary().count());
+        Assertions.assertNull(RequestStats.current());
+    }
+
+    private MockHttpServletRequest handled() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", URI);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, URI);
+        return request;
+    }
+}
@@ -0,0 +1,99 @@
+package unit.metrics;
+
+import cn.badminton.metrics.QueryMetricsListener;
+import cn.badminton.metrics.RequestStats;
+import cn.badminton.metrics.SlowQueryLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL 执行监听：同一请求内重复 SELECT 达到阈值记一次 N+1，慢查询只在开启时采集参数
+ */
+public class QueryMetricsListenerTest {
+
+    private SimpleMeterRegistry registry;
+    private SlowQueryLog slowQueryLog;
+    private QueryMetricsListener listener;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        slowQueryLog = new SlowQueryLog();
+        ReflectionTestUtils.setField(slowQueryLog, "capacity", 10);
+        listener = new QueryMetricsListener();
+        ReflectionTestUtils.setField(listener, "meterRegistry", registry);
+        ReflectionTestUtils.setField(listener, "slowQueryLog", slowQueryLog);
+        ReflectionTestUtils.setField(listener, "slowQueryThresholdMs", 200L);
+        ReflectionTestUtils.setField(listener, "nPlusOneThreshold", 5);
+        listener.init();
+        RequestStats.begin("trace-1");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        RequestStats.end();
+    }
+
+    @Test
+    public void testRepeatedSelectIsReportedOnceAsNPlusOne() throws Exception {
+        for (int i = 0; i < 7; i++) {
+            execute("select * from user where id = ?", 1, "u" + i);
+        }
+
+        Assertions.assertEquals(1.0, registry.counter("db.query.n_plus_one").count());
+        Assertions.assertEquals(1, slowQueryLog.nPlusOneSuspects().size());
+        Assertions.assertEquals("trace-1", slowQueryLog.nPlusOneSuspects().get(0).getTraceId());
+        Assertions.assertEquals(7, (long) registry.timer("db.query", "type", "select",
+                "batch", "false", "success", "true").count());
+    }
+
+    @Test
+    public void testRepeatedUpdateIsNotNPlusOne() throws Exception {
+        for (int i = 0; i < 7; i++) {
+            execute("update user set nickname = ? where id = ?", 1, "n" + i);
+        }
+
+        Assertions.assertEquals(0.0, registry.counter("db.query.n_plus_one").count());
+    }
+
+    @Test
+    public void testSlowQueryParametersAreNotCapturedByDefault() throws Exception {
+        execute("select * from user where phone = ?", 500, "13800000000");
+
+        Assertions.assertEquals(1.0, registry.counter("db.query.slow").count());
+        Assertions.assertTrue(slowQueryLog.slowQueries().get(0).getParameters().isEmpty());
+    }
+
+    @Test
+    public void testSlowQueryParametersAreCapturedWhenEnabled() throws Exception {
+        ReflectionTestUtils.setField(listener, "captureParameters", true);
+
+        execute("select * from user where phone = ?", 500, "13800000000");
+
+        Assertions.assertEquals(List.of("13800000000"), slowQueryLog.slowQueries().get(0).getParameters());
+    }
+
+    private void execute(String sql, long elapsedMs, String parameter) throws Exception {
+        ExecutionInfo execInfo = new ExecutionInfo();
+        execInfo.setElapsedTime(elapsedMs);
+        execInfo.setSuccess(true);
+        QueryInfo queryInfo = new QueryInfo(sql);
+        List<ParameterSetOperation> parameters = new ArrayList<>();
+        parameters.add(new ParameterSetOperation(
+                PreparedStatement.class.getMethod("setString", int.class, String.class),
+                new Object[]{1, parameter}));
+        queryInfo.getParametersList().add(parameters);
+        listener.afterQuery(execInfo, List.of(queryInfo));
+    }
+}
@@ -0,0 +1,132 @@
+package unit.metrics;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import cn.badminton.metrics.RedisBudgetProperties;
+import cn.badminton.metrics.RequestStats;
+import cn.badminton.metrics.RequestStatsReporter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * 请求资源汇总：Server-Timing 响应头值、按接口直方图、预算告警与抽样 INFO 日志
+ * 响应头的写入时机与覆盖范围见 TraceIdFilterTest
+ */
+public class RequestStatsReporterTest {
+
+    private static final String URI = "/api/activity/join";
+
+    private SimpleMeterRegistry registry;
+    private RedisBudgetProperties budget;
+    private RequestStatsReporter reporter;
+    private Logger logger;
+    private ListAppender<ILoggingEvent> appender;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        budget = new RedisBudgetProperties();
+        budget.setEndpoints(Map.of(URI, 3));
+        reporter = new RequestStatsReporter();
+        ReflectionTestUtils.setField(reporter, "meterRegistry", registry);
+        ReflectionTestUtils.setField(reporter, "redisBudget", budget);
+
+        logger = (Logger) LoggerFactory.getLogger(RequestStatsReporter.class);
+        appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        logger.setLevel(Level.INFO);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        logger.detachAppender(appender);
+        logger.setLevel(null);
+        RequestStats.end();
+    }
+
+    @Test
+    public void testWritesServerTimingHeaderAndHistograms() {
+        RequestStats stats = RequestStats.begin("trace-1");
+        stats.recordRedisCommand(1_500_000);
+        stats.addRedisBytes(128);
+        stats.recordStatement("select 1", 4);
+
+        String header = reporter.serverTiming(stats);
+        record(200);
+
+        Assertions.assertTrue(header.contains("redis;dur=1.50;desc=\"1 cmd, 128 B\""), header);
+        Assertions.assertTrue(header.contains("db;dur=4;desc=\"1 q\""), header);
+        Assertions.assertEquals(1.0, registry.get("http.server.requests.redis.commands")
+                .tag("uri", URI).summary().totalAmount());
+        Assertions.assertEquals(1.0, registry.get("http.server.requests.db.queries")
+                .tag("uri", URI).summary().totalAmount());
+    }
+
+    @Test
+    public void testRequestWithoutHandlerIsRecordedUnderUnknownWithItsStatus() {
+        RequestStats.begin("trace-5").recordRedisCommand(1_000_000);
+
+        reporter.record(RequestStats.current(), new MockHttpServletRequest("POST", URI), 429);
+
+        Assertions.assertEquals(1.0, registry.get("http.server.requests.redis.commands")
+                .tag("uri", "UNKNOWN").tag("status", "429").summary().totalAmount());
+    }
+
+    @Test
+    public void testSampledRequestIsLoggedAtInfoWithTraceId() {
+        ReflectionTestUtils.setField(reporter, "requestLogSamplePercent", 100);
+        RequestStats.begin("trace-2").recordRedisCommand(1_000_000);
+
+        record(200);
+
+        Assertions.assertEquals(1, appender.list.size());
+        ILoggingEvent event = appender.list.get(0);
+        Assertions.assertEquals(Level.INFO, event.getLevel());
+        Assertions.assertTrue(event.getFormattedMessage().contains("traceId=trace-2"), event.getFormattedMessage());
+    }
+
+    @Test
+    public void testUnsampledRequestIsNotLogged() {
+        ReflectionTestUtils.setField(reporter, "requestLogSamplePercent", 0);
+        RequestStats.begin("trace-3").recordRedisCommand(1_000_000);
+
+        record(200);
+
+        Assertions.assertTrue(appender.list.isEmpty());
+    }
+
+    @Test
+    public void testBudgetExceededIsAlwaysLoggedAtWarn() {
+        ReflectionTestUtils.setField(reporter, "requestLogSamplePercent", 0);
+        RequestStats stats = RequestStats.begin("trace-4");
+        for (int i = 0; i < 4; i++) {
+            stats.recordRedisCommand(100_000);
+        }
+
+        record(200);
+
+        Assertions.assertEquals(1.0, registry.get("http.server.requests.redis.budget.exceeded")
+                .tag("uri", URI).counter().count());
+        Assertions.assertEquals(1, appender.list.size());
+        Assertions.assertEquals(Level.WARN, appender.list.get(0).getLevel());
+        Assertions.assertTrue(appender.list.get(0).getFormattedMessage().contains("traceId=trace-4"));
+    }
+
+    private void record(int status) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", URI);
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, URI);
+        reporter.record(RequestStats.current(), request, status);
+    }
+}
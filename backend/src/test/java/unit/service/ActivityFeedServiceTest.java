@@ -0,0 +1,128 @@
+package unit.service;
+
+import cn.badminton.dto.activity.ActivityFeedPage;
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.model.Participation;
+import cn.badminton.repository.ActivityRepository;
+import cn.badminton.repository.UserRepository;
+import cn.badminton.repository.jpa.ParticipationJpaRepository;
+import cn.badminton.service.ActivityFeedService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 我的活动时间线：事件维护 ZSET，分页多取一条判断下一页，时间线缺失时按源数据重建，空结果写标记
+ */
+@ExtendWith(MockitoExtension.class)
+public class ActivityFeedServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ActivityRepository activityRepository;
+
+    @Mock
+    private ParticipationJpaRepository participationJpaRepository;
+
+    @InjectMocks
+    private ActivityFeedService activityFeedService;
+
+    @Test
+    public void testJoinAndUpdateMaintainFeeds() {
+        BookingActivity activity = activity("a1", "org");
+        activityFeedService.onActivityEvent(new ActivityEvent(ActivityEvent.Kind.JOINED, activity, "u1"));
+        verify(userRepository).addUserActivity("u1", "a1", activity.getStartTime());
+
+        when(activityRepository.getParticipants("a1")).thenReturn(Set.of("u1"));
+        activityFeedService.onActivityEvent(new ActivityEvent(ActivityEvent.Kind.UPDATED, activity, "org"));
+        verify(userRepository).addActivityToFeeds(List.of("u1", "org"), "a1", activity.getStartTime());
+    }
+
+    @Test
+    public void testPageFetchesOneExtraToDetectMore() {
+        when(userRepository.hasUserActivities("u1")).thenReturn(true);
+        when(userRepository.pageUserActivities(eq("u1"), eq(true), any(), eq(2L), eq(3L)))
+                .thenReturn(List.of("a3", "a4", "a5"));
+        Map<String, BookingActivity> hydrated = new LinkedHashMap<>();
+        hydrated.put("a3", activity("a3", "org"));
+        hydrated.put("a4", activity("a4", "org"));
+        when(activityRepository.findByIds(List.of("a3", "a4"))).thenReturn(hydrated);
+
+        ActivityFeedPage page = activityFeedService.page("u1", ActivityFeedService.SCOPE_UPCOMING, 1, 2);
+
+        Assertions.assertTrue(page.isHasMore());
+        Assertions.assertEquals(2, page.getItems().size());
+        Assertions.assertEquals("a3", page.getItems().get(0).getId());
+        verify(participationJpaRepository, never()).findByUserIdAndDeletedAtIsNull(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testMissingFeedIsRebuiltFromSources() {
+        when(userRepository.hasUserActivities("u1")).thenReturn(false);
+        BookingActivity organized = activity("a1", "u1");
+        BookingActivity cancelled = activity("a2", "u1");
+        cancelled.setStatus(BookingActivity.STATUS_CANCELLED);
+        when(activityRepository.findByOrganizer("u1")).thenReturn(List.of(organized, cancelled));
+        Participation joined = new Participation("a3", "u1");
+        when(participationJpaRepository.findByUserIdAndDeletedAtIsNull("u1")).thenReturn(List.of(joined));
+        BookingActivity joinedActivity = activity("a3", "org");
+        when(activityRepository.findByIds(any())).thenAnswer(invocation -> {
+            Collection<String> ids = invocation.getArgument(0);
+            return ids.contains("a3") ? Map.of("a3", joinedActivity) : Map.of();
+        });
+        when(userRepository.pageUserActivities(eq("u1"), eq(false), any(), eq(0L), anyLong())).thenReturn(List.of());
+
+        ActivityFeedPage page = activityFeedService.page("u1", ActivityFeedService.SCOPE_PAST, 0, 20);
+
+        ArgumentCaptor<Map<String, LocalDateTime>> rebuilt = ArgumentCaptor.forClass(Map.class);
+        verify(userRepository).addUserActivities(eq("u1"), rebuilt.capture());
+        Assertions.assertEquals(Set.of("a1", "a3"), rebuilt.getValue().keySet());
+        Assertions.assertFalse(page.isHasMore());
+        Assertions.assertEquals(ActivityFeedService.SCOPE_PAST, page.getScope());
+    }
+
+    @Test
+    public void testEmptyRebuildIsMarkedAndNotRepeated() {
+        when(userRepository.hasUserActivities("u1")).thenReturn(false);
+        when(activityRepository.findByOrganizer("u1")).thenReturn(List.of());
+        when(participationJpaRepository.findByUserIdAndDeletedAtIsNull("u1")).thenReturn(List.of());
+        when(activityRepository.findByIds(any())).thenReturn(Map.of());
+
+        activityFeedService.page("u1", ActivityFeedService.SCOPE_UPCOMING, 0, 20);
+        verify(userRepository).markUserActivitiesEmpty("u1");
+
+        when(userRepository.isUserActivitiesEmpty("u1")).thenReturn(true);
+        activityFeedService.page("u1", ActivityFeedService.SCOPE_UPCOMING, 0, 20);
+        verify(activityRepository, times(1)).findByOrganizer("u1");
+    }
+
+    private static BookingActivity activity(String id, String organizer) {
+        BookingActivity activity = new BookingActivity("周末球局", organizer, "体育馆",
+                LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(1).plusHours(2), 8);
+        activity.setId(id);
+        return activity;
+    }
+}
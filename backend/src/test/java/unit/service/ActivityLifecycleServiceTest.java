@@ -0,0 +1,140 @@
+package unit.service;
+
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.repository.ActivityRepository;
+import cn.badminton.service.ActivityLifecycleService;
+import cn.badminton.service.DelayedJobQueue;
+import cn.badminton.service.DelayedJobQueue.DelayedJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 活动状态自动流转：事件登记任务，到期任务比较并设置状态后确认，执行失败的任务不确认
+ */
+public class ActivityLifecycleServiceTest {
+
+    private DelayedJobQueue queue;
+    private ActivityRepository activityRepository;
+    private ApplicationEventPublisher publisher;
+    private ActivityLifecycleService service;
+
+    @BeforeEach
+    public void setUp() {
+        queue = mock(DelayedJobQueue.class);
+        activityRepository = mock(ActivityRepository.class);
+        publisher = mock(ApplicationEventPublisher.class);
+        service = new ActivityLifecycleService();
+        ReflectionTestUtils.setField(service, "delayedJobQueue", queue);
+        ReflectionTestUtils.setField(service, "activityRepository", activityRepository);
+        ReflectionTestUtils.setField(service, "eventPublisher", publisher);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        service.init();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreatedActivitySchedulesThreeJobs() {
+        BookingActivity activity = activity("a1", LocalDateTime.now().plusHours(1));
+        service.onActivityEvent(new ActivityEvent(ActivityEvent.Kind.CREATED, activity, "org"));
+
+        ArgumentCaptor<Collection<DelayedJob>> jobs = ArgumentCaptor.forClass(Collection.class);
+        verify(queue).schedule(eq(ActivityLifecycleService.QUEUE), jobs.capture());
+        Set<String> members = jobs.getValue().stream().map(DelayedJob::member).collect(Collectors.toSet());
+        Assertions.assertEquals(Set.of("AUTO_START:a1", "AUTO_COMPLETE:a1", "EXPIRE:a1"), members);
+    }
+
+    @Test
+    public void testDueStartTransitionsAndAcks() {
+        BookingActivity activity = activity("a1", LocalDateTime.now().minusMinutes(1));
+        DelayedJob job = new DelayedJob(ActivityLifecycleService.AUTO_START, "a1");
+        when(queue.claimDue(eq(ActivityLifecycleService.QUEUE), anyLong(), anyInt(), anyLong()))
+                .thenReturn(List.of(job));
+        when(activityRepository.findByIdOrLoad("a1")).thenReturn(activity);
+        when(activityRepository.compareAndSetStatus("a1", BookingActivity.STATUS_PENDING,
+                BookingActivity.STATUS_ONGOING)).thenReturn(true);
+
+        service.tick();
+
+        Assertions.assertEquals(BookingActivity.STATUS_ONGOING, activity.getStatus());
+        verify(queue).ack(ActivityLifecycleService.QUEUE, job);
+        ArgumentCaptor<ActivityEvent> event = ArgumentCaptor.forClass(ActivityEvent.class);
+        verify(publisher).publishEvent(event.capture());
+        Assertions.assertEquals(ActivityEvent.Kind.STARTED, event.getValue().getKind());
+    }
+
+    @Test
+    public void testLostRaceIsAckedWithoutEvent() {
+        BookingActivity activity = activity("a1", LocalDateTime.now().minusMinutes(1));
+        DelayedJob job = new DelayedJob(ActivityLifecycleService.AUTO_START, "a1");
+        when(queue.claimDue(eq(ActivityLifecycleService.QUEUE), anyLong(), anyInt(), anyLong()))
+                .thenReturn(List.of(job));
+        when(activityRepository.findByIdOrLoad("a1")).thenReturn(activity);
+        when(activityRepository.compareAndSetStatus("a1", BookingActivity.STATUS_PENDING,
+                BookingActivity.STATUS_ONGOING)).thenReturn(false);
+
+        service.tick();
+
+        verify(queue).ack(ActivityLifecycleService.QUEUE, job);
+        verify(publisher, never()).publishEvent(any());
+    }
+
+    @Test
+    public void testActivityBookedMoreThanADayAheadCompletesAtItsEnd() {
+        // 一周前创建、今天结束：缓存按 1 天过期的话任务到期时读不到活动
+        BookingActivity activity = activity("a1", LocalDateTime.now().minusHours(3));
+        activity.setCreatedAt(LocalDateTime.now().minusDays(7));
+        activity.setStatus(BookingActivity.STATUS_ONGOING);
+        DelayedJob job = new DelayedJob(ActivityLifecycleService.AUTO_COMPLETE, "a1");
+        when(queue.claimDue(eq(ActivityLifecycleService.QUEUE), anyLong(), anyInt(), anyLong()))
+                .thenReturn(List.of(job));
+        when(activityRepository.findByIdOrLoad("a1")).thenReturn(activity);
+        when(activityRepository.compareAndSetStatus("a1", BookingActivity.STATUS_ONGOING,
+                BookingActivity.STATUS_COMPLETED)).thenReturn(true);
+
+        service.tick();
+
+        verify(activityRepository, never()).findById(any());
+        Assertions.assertEquals(BookingActivity.STATUS_COMPLETED, activity.getStatus());
+        verify(queue).ack(ActivityLifecycleService.QUEUE, job);
+    }
+
+    @Test
+    public void testFailedJobIsNotAcked() {
+        DelayedJob job = new DelayedJob(ActivityLifecycleService.AUTO_COMPLETE, "a1");
+        when(queue.claimDue(eq(ActivityLifecycleService.QUEUE), anyLong(), anyInt(), anyLong()))
+                .thenReturn(List.of(job));
+        when(activityRepository.findByIdOrLoad("a1")).thenThrow(new IllegalStateException("redis down"));
+
+        service.tick();
+
+        verify(queue, never()).ack(any(), any());
+    }
+
+    private static BookingActivity activity(String id, LocalDateTime startTime) {
+        BookingActivity activity = new BookingActivity("周末球局", "org", "体育馆",
+                startTime, startTime.plusHours(2), 8);
+        activity.setId(id);
+        return activity;
+    }
+}
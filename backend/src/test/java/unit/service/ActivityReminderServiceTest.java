@@ -0,0 +1,162 @@
+package unit.service;
+
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.model.NotificationOutbox;
+import cn.badminton.model.User;
+import cn.badminton.notification.DeliveryResult;
+import cn.badminton.notification.NotificationChannel;
+import cn.badminton.repository.ActivityRepository;
+import cn.badminton.repository.NotificationOutboxRepository;
+import cn.badminton.repository.UserRepository;
+import cn.badminton.service.ActivityReminderService;
+import cn.badminton.service.DelayedJobQueue;
+import cn.badminton.service.DelayedJobQueue.DelayedJob;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 活动提醒：事件登记任务，到期任务展开为每人一条发件箱通知，投递结果按成功 / 永久失败 / 退避重试写回
+ */
+public class ActivityReminderServiceTest {
+
+    private DelayedJobQueue queue;
+    private ActivityRepository activityRepository;
+    private UserRepository userRepository;
+    private NotificationOutboxRepository outboxRepository;
+    private NotificationChannel channel;
+    private ActivityReminderService service;
+
+    @BeforeEach
+    public void setUp() {
+        queue = mock(DelayedJobQueue.class);
+        activityRepository = mock(ActivityRepository.class);
+        userRepository = mock(UserRepository.class);
+        outboxRepository = mock(NotificationOutboxRepository.class);
+        channel = mock(NotificationChannel.class);
+        when(channel.name()).thenReturn("log");
+        service = new ActivityReminderService();
+        ReflectionTestUtils.setField(service, "delayedJobQueue", queue);
+        ReflectionTestUtils.setField(service, "activityRepository", activityRepository);
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+        ReflectionTestUtils.setField(service, "notificationOutboxRepository", outboxRepository);
+        ReflectionTestUtils.setField(service, "notificationChannels", List.of(channel));
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        service.init();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCreatedActivitySchedulesReminderBeforeStart() {
+        BookingActivity activity = activity("a1", LocalDateTime.now().plusDays(1));
+        service.onActivityEvent(new ActivityEvent(ActivityEvent.Kind.CREATED, activity, "org"));
+
+        ArgumentCaptor<Collection<DelayedJob>> jobs = ArgumentCaptor.forClass(Collection.class);
+        verify(queue).schedule(eq(ActivityReminderService.QUEUE), jobs.capture());
+        DelayedJob job = jobs.getValue().iterator().next();
+        Assertions.assertEquals("REMIND:a1", job.member());
+        Assertions.assertTrue(job.getDueAt() < System.currentTimeMillis() + 24 * 3600 * 1000L);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDueReminderExpandsToOutboxPerMember() {
+        BookingActivity activity = activity("a1", LocalDateTime.now().plusMinutes(30));
+        DelayedJob job = new DelayedJob(ActivityReminderService.REMIND, "a1");
+        when(queue.claimDue(eq(ActivityReminderService.QUEUE), anyLong(), anyInt(), anyLong()))
+                .thenReturn(List.of(job));
+        when(activityRepository.findByIds(any())).thenReturn(Map.of("a1", activity));
+        when(activityRepository.getParticipantsBatch(any())).thenReturn(Map.of("a1", Set.of("u1")));
+        User organizer = user("org");
+        User member = user("u1");
+        when(userRepository.findByIds(any())).thenReturn(Map.of("org", organizer, "u1", member));
+        when(channel.resolveRecipient(organizer)).thenReturn("open-org");
+        when(channel.resolveRecipient(member)).thenReturn(null);
+        when(outboxRepository.enqueue(anyList())).thenReturn(2);
+
+        service.plan();
+
+        ArgumentCaptor<List<NotificationOutbox>> rows = ArgumentCaptor.forClass(List.class);
+        verify(outboxRepository).enqueue(rows.capture());
+        Assertions.assertEquals(2, rows.getValue().size());
+        for (NotificationOutbox row : rows.getValue()) {
+            Assertions.assertTrue(row.getDedupKey().startsWith("reminder:a1:" + row.getUserId() + ":"));
+            int expected = "org".equals(row.getUserId())
+                    ? NotificationOutbox.STATUS_PENDING : NotificationOutbox.STATUS_SKIPPED;
+            Assertions.assertEquals(expected, row.getStatus());
+        }
+        verify(queue).ack(ActivityReminderService.QUEUE, job);
+    }
+
+    @Test
+    public void testFailedPlanIsNotAcked() {
+        DelayedJob job = new DelayedJob(ActivityReminderService.REMIND, "a1");
+        when(queue.claimDue(eq(ActivityReminderService.QUEUE), anyLong(), anyInt(), anyLong()))
+                .thenReturn(List.of(job));
+        when(activityRepository.findByIds(any())).thenThrow(new IllegalStateException("redis down"));
+
+        service.plan();
+
+        verify(queue, never()).ack(any(), any());
+    }
+
+    @Test
+    public void testDeliverAppliesResultsPerNotification() {
+        NotificationOutbox sent = claimed("u1");
+        NotificationOutbox rejected = claimed("u2");
+        NotificationOutbox retry = claimed("u3");
+        List<NotificationOutbox> batch = List.of(sent, rejected, retry);
+        when(outboxRepository.claimDue(anyInt(), any())).thenReturn(batch);
+        when(channel.send(anyList())).thenReturn(List.of(DeliveryResult.sent(),
+                DeliveryResult.rejected("用户未订阅"), DeliveryResult.retry("timeout")));
+
+        service.deliver();
+
+        Assertions.assertEquals(NotificationOutbox.STATUS_SENT, sent.getStatus());
+        Assertions.assertEquals(NotificationOutbox.STATUS_FAILED, rejected.getStatus());
+        Assertions.assertEquals(NotificationOutbox.STATUS_PENDING, retry.getStatus());
+        Assertions.assertTrue(retry.getNextAttemptAt().isAfter(LocalDateTime.now()));
+        verify(outboxRepository).saveResults(batch);
+    }
+
+    private static NotificationOutbox claimed(String userId) {
+        NotificationOutbox notification = new NotificationOutbox("reminder:a1:" + userId + ":0",
+                ActivityReminderService.TYPE, "log", "a1", userId);
+        notification.setRecipient(userId);
+        notification.claim(LocalDateTime.now().plusMinutes(1));
+        return notification;
+    }
+
+    private static User user(String id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static BookingActivity activity(String id, LocalDateTime startTime) {
+        BookingActivity activity = new BookingActivity("周末球局", "org", "体育馆",
+                startTime, startTime.plusHours(2), 8);
+        activity.setId(id);
+        return activity;
+    }
+}
@@ -0,0 +1,192 @@
+package unit.service;
+
+import cn.badminton.common.Money;
+import cn.badminton.dto.expense.BatchSettleResponse;
+import cn.badminton.event.ShareSettled;
+import cn.badminton.model.ExpenseRecord;
+import cn.badminton.model.ExpenseShare;
+import cn.badminton.repository.ExpenseRepository;
+import cn.badminton.service.ExpenseService;
+import cn.badminton.service.SettlementService;
+import cn.badminton.service.UserService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 批量结算：整批校验权限，状态（连同结算事件）与账本各只写一次
+ * 并发结算：状态写回时发现分摊已被结算的，不重复冲回账本
+ */
+@ExtendWith(MockitoExtension.class)
+public class BatchSettleTest {
+
+    @Mock
+    private ExpenseRepository expenseRepository;
+
+    @Mock
+    private SettlementService settlementService;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private ExpenseService expenseService;
+
+    private Map<String, ExpenseRecord> expenses;
+
+    @BeforeEach
+    public void setUp() {
+        expenses = new LinkedHashMap<>();
+        expenses.put("e1", expense("e1", "a1", "payer"));
+        expenses.put("e2", expense("e2", "a2", "payer"));
+    }
+
+    @Test
+    public void testSettleAllPendingSharesOfDebtor() {
+        List<ExpenseShare> shares = List.of(
+                share("s1", "e1", "debtor", 3000),
+                share("s2", "e2", "debtor", 2550),
+                settled(share("s3", "e2", "debtor", 1000)));
+        Set<String> ids = new LinkedHashSet<>(List.of("s1", "s2", "s3"));
+        when(expenseRepository.findPendingShareIdsByUserId("debtor")).thenReturn(ids);
+        when(expenseRepository.findSharesByIds(ids)).thenReturn(shares);
+        when(expenseRepository.findExpensesByIds(any())).thenReturn(expenses);
+
+        BatchSettleResponse response = expenseService.batchMarkAsPaid("debtor", null, "debtor", null, null);
+
+        Assertions.assertEquals(2, response.getSettledCount());
+        Assertions.assertEquals(Money.ofCents(5550), response.getTotalAmount());
+        Assertions.assertEquals(List.of("s1", "s2"), response.getShareIds());
+        Assertions.assertTrue(shares.get(0).isSettled());
+
+        verify(settlementService, times(1)).reverseShares(anyMap());
+
+        // 消费金额不在请求内更新，每批每个用户随状态一起写入一条汇总的 ShareSettled 事件
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ShareSettled>> captor = ArgumentCaptor.forClass(List.class);
+        verify(expenseRepository, times(1)).settleShares(anyList(), captor.capture());
+        Assertions.assertEquals(1, captor.getValue().size());
+        ShareSettled event = captor.getValue().get(0);
+        Assertions.assertEquals("debtor", event.getUserId());
+        Assertions.assertEquals(List.of("s1", "s2"), event.getShareIds());
+        Assertions.assertEquals(5550, event.getAmountCents());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    public void testUnauthorizedShareRejectsWholeBatch() {
+        List<String> ids = List.of("s1", "s2");
+        when(expenseRepository.findSharesByIds(ids)).thenReturn(List.of(
+                share("s1", "e1", "debtor", 3000),
+                share("s2", "e2", "someone-else", 2000)));
+        when(expenseRepository.findExpensesByIds(any())).thenReturn(expenses);
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> expenseService.batchMarkAsPaid("debtor", ids, null, null, null));
+
+        verify(expenseRepository, never()).settleShares(anyList(), anyList());
+        verify(settlementService, never()).reverseShares(anyMap());
+    }
+
+    @Test
+    public void testPayerFilterNarrowsDebtorScope() {
+        expenses.put("e3", expense("e3", "a1", "other-payer"));
+        Set<String> ids = new LinkedHashSet<>(List.of("s1", "s4"));
+        when(expenseRepository.findPendingShareIdsByUserId("debtor")).thenReturn(ids);
+        when(expenseRepository.findSharesByIds(ids)).thenReturn(List.of(
+                share("s1", "e1", "debtor", 3000),
+                share("s4", "e3", "debtor", 1200)));
+        when(expenseRepository.findExpensesByIds(any())).thenReturn(expenses);
+
+        BatchSettleResponse response = expenseService.batchMarkAsPaid("payer", null, "debtor", "payer", null);
+
+        Assertions.assertEquals(List.of("s1"), response.getShareIds());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConcurrentlySettledSharesAreDroppedAndRetried() {
+        List<String> ids = List.of("s1", "s2");
+        when(expenseRepository.findSharesByIds(ids)).thenReturn(List.of(
+                share("s1", "e1", "debtor", 3000),
+                share("s2", "e2", "debtor", 2000)));
+        when(expenseRepository.findExpensesByIds(any())).thenReturn(expenses);
+        when(expenseRepository.settleShares(anyList(), anyList())).thenReturn(List.of("s1"), List.of());
+
+        BatchSettleResponse response = expenseService.batchMarkAsPaid("debtor", ids, null, null, null);
+
+        Assertions.assertEquals(List.of("s2"), response.getShareIds());
+        Assertions.assertEquals(Money.ofCents(2000), response.getTotalAmount());
+        ArgumentCaptor<List<ShareSettled>> events = ArgumentCaptor.forClass(List.class);
+        verify(expenseRepository, times(2)).settleShares(anyList(), events.capture());
+        Assertions.assertEquals(List.of("s2"), events.getValue().get(0).getShareIds());
+        Assertions.assertEquals(2000, events.getValue().get(0).getAmountCents());
+        ArgumentCaptor<Map<ExpenseRecord, List<ExpenseShare>>> reversed = ArgumentCaptor.forClass(Map.class);
+        verify(settlementService).reverseShares(reversed.capture());
+        Assertions.assertEquals(List.of("e2"), reversed.getValue().keySet().stream()
+                .map(ExpenseRecord::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testMarkAsPaidLosingTheRaceDoesNotReverse() {
+        ExpenseShare share = share("s1", "e1", "debtor", 3000);
+        when(expenseRepository.findShareById("s1")).thenReturn(share);
+        when(expenseRepository.findExpenseById("e1")).thenReturn(expenses.get("e1"));
+        when(expenseRepository.settleShares(anyList(), anyList())).thenReturn(List.of("s1"));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> expenseService.markAsPaid("s1", "debtor"));
+
+        verify(settlementService, never()).reverseShares(any(ExpenseRecord.class), anyList());
+        verifyNoInteractions(eventPublisher);
+    }
+
+    @Test
+    public void testScopeIsRequired() {
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> expenseService.batchMarkAsPaid("debtor", List.of(), null, " ", null));
+    }
+
+    private static ExpenseRecord expense(String id, String activityId, String payerId) {
+        ExpenseRecord expense = new ExpenseRecord();
+        expense.setId(id);
+        expense.setActivityId(activityId);
+        expense.setPayerId(payerId);
+        return expense;
+    }
+
+    private static ExpenseShare share(String id, String expenseId, String userId, long cents) {
+        ExpenseShare share = new ExpenseShare(expenseId, userId, Money.ofCents(cents));
+        share.setId(id);
+        return share;
+    }
+
+    private static ExpenseShare settled(ExpenseShare share) {
+        share.settle();
+        return share;
+    }
+}
@@ -0,0 +1,133 @@
+package unit.service;
+
+import cn.badminton.filter.JwtAuthenticationFilter;
+import cn.badminton.model.User;
+import cn.badminton.service.CurrentUserService;
+import cn.badminton.service.TokenSessionService;
+import cn.badminton.service.UserService;
+import cn.badminton.util.IdGenerator;
+import cn.badminton.util.JwtUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.lang.reflect.Field;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 同一请求内多次取当前用户只查询一次，省下的次数记入指标
+ */
+public class CurrentUserServiceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UserService userService;
+    private CurrentUserService currentUserService;
+    private JwtAuthenticationFilter filter;
+    private JwtUtil jwtUtil;
+    private User user;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        user = new User("13800000000", "tester", "x");
+        setField(user, "id", "u-1");
+        userService = mock(UserService.class);
+        when(userService.findById("u-1")).thenReturn(user);
+        currentUserService = new CurrentUserService();
+        setField(currentUserService, "userService", userService);
+
+        jwtUtil = new JwtUtil();
+        setField(jwtUtil, "secret", "unit-test-secret-key-1234567890-ABCDEF");
+        setField(jwtUtil, "expireMinutes", 60L);
+        setField(jwtUtil, "cacheMaximumSize", 100L);
+        TokenSessionService sessions = new TokenSessionService();
+        setField(sessions, "loaded", true);
+
+        filter = new JwtAuthenticationFilter();
+        setField(filter, "jwtUtil", jwtUtil);
+        setField(filter, "tokenSessionService", sessions);
+        setField(filter, "meterRegistry", meterRegistry);
+        filter.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testUserLoadedOncePerRequest() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/activity/join");
+        request.addHeader("Authorization", "Bearer " + jwtUtil.generateToken("u-1", IdGenerator.nextId()));
+        User[] seen = new User[3];
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(jakarta.servlet.ServletRequest req, jakarta.servlet.ServletResponse res) {
+                seen[0] = currentUserService.currentUser();
+                seen[1] = currentUserService.findUser("u-1");
+                seen[2] = currentUserService.findUser("u-1");
+            }
+        });
+
+        verify(userService, times(1)).findById("u-1");
+        Assertions.assertSame(user, seen[0]);
+        Assertions.assertSame(user, seen[1]);
+        Assertions.assertSame(user, seen[2]);
+        DistributionSummary saved = meterRegistry.get("auth.principal.lookups.saved").summary();
+        Assertions.assertEquals(1, saved.count());
+        Assertions.assertEquals(2.0, saved.totalAmount());
+    }
+
+    @Test
+    public void testOtherUsersStillLoadedFromStore() throws Exception {
+        User other = new User("13800000001", "other", "x");
+        when(userService.findById("u-2")).thenReturn(other);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/expense/create");
+        request.addHeader("Authorization", "Bearer " + jwtUtil.generateToken("u-1", IdGenerator.nextId()));
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain() {
+            @Override
+            public void doFilter(jakarta.servlet.ServletRequest req, jakarta.servlet.ServletResponse res) {
+                Assertions.assertSame(other, currentUserService.findUser("u-2"));
+                Assertions.assertSame(other, currentUserService.findUser("u-2"));
+            }
+        });
+        verify(userService, times(2)).findById("u-2");
+        verify(userService, times(0)).findById("u-1");
+        Assertions.assertEquals(0, meterRegistry.get("auth.principal.lookups.saved").summary().count());
+    }
+
+    @Test
+    public void testAnonymousRequestRejected() {
+        Assertions.assertNull(currentUserService.principal());
+        IllegalArgumentException e = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> currentUserService.currentUser());
+        Assertions.assertEquals("未登录或登录已过期", e.getMessage());
+        when(userService.findById("u-3")).thenReturn(null);
+        Assertions.assertNull(currentUserService.findUser("u-3"));
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Class<?> type = target.getClass();
+        while (type != null) {
+            try {
+                Field f = type.getDeclaredField(name);
+                f.setAccessible(true);
+                f.set(target, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                type = type.getSuperclass();
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}
@@ -0,0 +1,147 @@
+package unit.service;
+
+import cn.badminton.event.ActivityCreated;
+import cn.badminton.event.DomainEvent;
+import cn.badminton.event.DomainEventHandler;
+import cn.badminton.event.DomainEventStream;
+import cn.badminton.service.DomainEventConsumer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo.XInfoGroups;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 领域事件消费：处理成功即确认并把已处理标记键交给处理器，处理失败不确认；只截断所有消费组都已确认的事件
+ */
+public class DomainEventConsumerTest {
+
+    private static final String GROUP = "test_group";
+
+    private RedisTemplate<String, Object> redisTemplate;
+    private StreamOperations<String, Object, Object> streamOps;
+    private DomainEventHandler handler;
+    private DomainEventConsumer consumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        streamOps = mock(StreamOperations.class);
+        doReturn(streamOps).when(redisTemplate).opsForStream();
+        when(streamOps.createGroup(DomainEventStream.KEY, ReadOffset.from("0"), GROUP)).thenReturn("OK");
+
+        handler = mock(DomainEventHandler.class);
+        when(handler.group()).thenReturn(GROUP);
+
+        consumer = new DomainEventConsumer();
+        ReflectionTestUtils.setField(consumer, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(consumer, "handlers", List.of(handler));
+        ReflectionTestUtils.setField(consumer, "meterRegistry", new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testHandledEventIsAckedWithProcessedKey() {
+        givenRecords(record("1-0", new ActivityCreated("a1", "org")));
+
+        consumer.poll();
+
+        ArgumentCaptor<DomainEvent> event = ArgumentCaptor.forClass(DomainEvent.class);
+        verify(handler).handle(event.capture(), eq("badminton:stream:processed:" + GROUP + ":1-0"));
+        Assertions.assertEquals("org", ((ActivityCreated) event.getValue()).getOrganizerId());
+        verify(streamOps).acknowledge(DomainEventStream.KEY, GROUP, RecordId.of("1-0"));
+    }
+
+    @Test
+    public void testFailedEventIsNotAcked() {
+        givenRecords(record("1-0", new ActivityCreated("a1", "org")));
+        doThrow(new IllegalStateException("db down")).when(handler).handle(any(), anyString());
+
+        consumer.poll();
+
+        verify(streamOps, never()).acknowledge(anyString(), anyString(), any(RecordId[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTrimKeepsEarliestPendingEventOfAnyGroup() {
+        givenRecords(record("1-0", new ActivityCreated("a1", "org")));
+        consumer.poll();
+        // 本消费组已读到 9-0，其中 5-0 尚未确认；另一组已确认到 7-0
+        when(streamOps.groups(DomainEventStream.KEY)).thenReturn(XInfoGroups.fromList(List.<Object>of(
+                group(GROUP, 2, "9-0"), group("other_group", 0, "7-0"))));
+        when(streamOps.pending(DomainEventStream.KEY, GROUP)).thenReturn(new PendingMessagesSummary(GROUP, 2,
+                Range.closed("5-0", "8-0"), Map.of()));
+        RedisConnection connection = mock(RedisConnection.class);
+        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(
+                invocation -> ((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(connection));
+
+        consumer.trim();
+
+        verify(connection).execute(eq("XTRIM"), aryEq(bytes(DomainEventStream.KEY)), aryEq(bytes("MINID")),
+                aryEq(bytes("~")), aryEq(bytes("5-0")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTrimSkipsGroupThatHasNotRead() {
+        givenRecords(record("1-0", new ActivityCreated("a1", "org")));
+        consumer.poll();
+        when(streamOps.groups(DomainEventStream.KEY)).thenReturn(XInfoGroups.fromList(List.<Object>of(
+                group(GROUP, 0, "9-0"), group("new_group", 0, "0-0"))));
+
+        consumer.trim();
+
+        verify(redisTemplate, never()).execute(any(RedisCallback.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenRecords(MapRecord<String, Object, Object> record) {
+        when(streamOps.read(any(Consumer.class), any(StreamReadOptions.class), any(StreamOffset.class)))
+                .thenReturn(List.of(record));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<Object> group(String name, long pending, String lastDelivered) {
+        return List.of("name", name, "consumers", 1L, "pending", pending, "last-delivered-id", lastDelivered);
+    }
+
+    private static MapRecord<String, Object, Object> record(String id, DomainEvent event) {
+        Map<Object, Object> fields = new LinkedHashMap<>(event.toFields());
+        return StreamRecords.newRecord().in(DomainEventStream.KEY).withId(RecordId.of(id)).ofMap(fields);
+    }
+}
@@ -0,0 +1,117 @@
+package unit.service;
+
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.repository.ParticipationRepository;
+import cn.badminton.repository.ParticipationRepository.Change;
+import cn.badminton.service.ParticipationWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 参与记录异步落库：失败批次按原顺序重试，队列满时先写出更早的变更再入队
+ */
+public class ParticipationWriterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ParticipationRepository participationRepository;
+    private ParticipationWriter writer;
+
+    /** 每次写库调用收到的变更，格式为 {用户}{+/-} */
+    private final List<List<String>> written = new ArrayList<>();
+    private int failuresLeft;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        participationRepository = mock(ParticipationRepository.class);
+        when(participationRepository.applyChanges(anyList())).thenAnswer(invocation -> {
+            List<Change> changes = invocation.getArgument(0);
+            written.add(changes.stream()
+                    .map(change -> change.getUserId() + (change.isJoined() ? "+" : "-"))
+                    .collect(Collectors.toList()));
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IllegalStateException("数据库不可用");
+            }
+            return changes.size();
+        });
+        writer = new ParticipationWriter();
+        ReflectionTestUtils.setField(writer, "participationRepository", participationRepository);
+        ReflectionTestUtils.setField(writer, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "queueCapacity", 3);
+        ReflectionTestUtils.setField(writer, "maxAttempts", 3);
+        writer.init();
+    }
+
+    @Test
+    public void testFailedBatchIsRetriedBeforeLaterChanges() {
+        join("u1");
+        leave("u1");
+        join("u2");
+        failuresLeft = 1;
+
+        writer.flush();
+        Assertions.assertEquals(List.of(List.of("u1+", "u1-")), written);
+        Assertions.assertEquals(1, writer.pending());
+
+        writer.flush();
+        Assertions.assertEquals(List.of(List.of("u1+", "u1-"), List.of("u1+", "u1-"), List.of("u2+")), written);
+        Assertions.assertEquals(0, writer.pending());
+    }
+
+    @Test
+    public void testBatchIsDroppedAfterMaxAttempts() {
+        join("u1");
+        failuresLeft = 3;
+
+        writer.flush();
+        writer.flush();
+        writer.flush();
+        join("u2");
+        writer.flush();
+
+        Assertions.assertEquals(List.of("u2+"), written.get(written.size() - 1));
+        Assertions.assertEquals(1.0, meterRegistry.counter("participation.writer.dropped").count());
+    }
+
+    @Test
+    public void testOverflowWritesEarlierChangesFirst() {
+        join("u1");
+        join("u2");
+        leave("u1");
+        // 队列已满：先按顺序写出最早的一批，再入队
+        join("u1");
+
+        Assertions.assertEquals(List.of(List.of("u1+", "u2+")), written);
+        writer.flush();
+        Assertions.assertEquals(List.of("u1-", "u1+"), written.get(1));
+        Assertions.assertEquals(1.0, meterRegistry.counter("participation.writer.overflow").count());
+    }
+
+    private void join(String userId) {
+        writer.onActivityEvent(new ActivityEvent(ActivityEvent.Kind.JOINED, activity(), userId));
+    }
+
+    private void leave(String userId) {
+        writer.onActivityEvent(new ActivityEvent(ActivityEvent.Kind.LEFT, activity(), userId));
+    }
+
+    private static BookingActivity activity() {
+        BookingActivity activity = new BookingActivity();
+        activity.setId("a1");
+        return activity;
+    }
+}
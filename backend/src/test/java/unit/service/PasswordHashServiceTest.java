@@ -0,0 +1,83 @@
+package unit.service;
+
+import cn.badminton.service.PasswordHashService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+public class PasswordHashServiceTest {
+
+    private PasswordHashService service;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        service = new PasswordHashService();
+        setField("meterRegistry", new SimpleMeterRegistry());
+        setField("strength", 4);
+        setField("threads", 1);
+        setField("queueCapacity", 1);
+        setField("timeoutMs", 200L);
+        service.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void testEncodeAndMatches() {
+        String hash = service.encode("secret-123");
+        Assertions.assertTrue(service.matches("secret-123", hash));
+        Assertions.assertFalse(service.matches("secret-124", hash));
+        Assertions.assertFalse(service.matches("secret-123", null));
+    }
+
+    @Test
+    public void testNeedsRehashWhenCostDiffers() {
+        Assertions.assertFalse(service.needsRehash(service.encode("secret-123")));
+        String legacy = new BCryptPasswordEncoder(5).encode("secret-123");
+        Assertions.assertEquals(5, PasswordHashService.costOf(legacy));
+        Assertions.assertTrue(service.needsRehash(legacy));
+        Assertions.assertFalse(service.needsRehash("plain-text"));
+    }
+
+    @Test
+    public void testRejectsWhenQueueIsFull() throws Exception {
+        Field f = PasswordHashService.class.getDeclaredField("executor");
+        f.setAccessible(true);
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) f.get(service);
+        CountDownLatch release = new CountDownLatch(1);
+        // 占满唯一的工作线程与唯一的队列位置
+        executor.execute(() -> awaitQuietly(release));
+        executor.execute(() -> awaitQuietly(release));
+        try {
+            Assertions.assertThrows(RejectedExecutionException.class, () -> service.encode("secret-123"));
+            Assertions.assertNull(service.rehashInBackground("secret-123"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field field = PasswordHashService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(service, value);
+    }
+}
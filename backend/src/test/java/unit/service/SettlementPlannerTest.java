@@ -0,0 +1,70 @@
+package unit.service;
+
+import cn.badminton.dto.expense.SettlementPlanResponse.Transfer;
+import cn.badminton.service.SettlementService;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.LongRange;
+import net.jqwik.api.constraints.Size;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 结算方案：执行全部转账后所有人净额归零，笔数不超过非零成员数 - 1
+ */
+public class SettlementPlannerTest {
+
+    @Property
+    void transfersClearEveryBalance(
+            @ForAll @Size(min = 1, max = 60) List<@LongRange(min = -1_000_000, max = 1_000_000) Long> amounts) {
+        Map<String, Long> balances = new HashMap<>();
+        long sum = 0;
+        for (int i = 0; i < amounts.size() - 1; i++) {
+            balances.put("u" + i, amounts.get(i));
+            sum += amounts.get(i);
+        }
+        // 最后一人补齐差额，使账本守恒
+        balances.put("u" + (amounts.size() - 1), -sum);
+
+        List<Transfer> transfers = SettlementService.planTransfers(balances);
+
+        Map<String, Long> after = new HashMap<>(balances);
+        for (Transfer t : transfers) {
+            Assertions.assertTrue(t.getAmount().isPositive());
+            Assertions.assertNotEquals(t.getFromUserId(), t.getToUserId());
+            after.merge(t.getFromUserId(), t.getAmount().getCents(), Long::sum);
+            after.merge(t.getToUserId(), -t.getAmount().getCents(), Long::sum);
+        }
+        after.values().forEach(v -> Assertions.assertEquals(0L, v));
+        long nonZero = balances.values().stream().filter(v -> v != 0).count();
+        Assertions.assertTrue(transfers.size() <= Math.max(0, nonZero - 1));
+    }
+
+    @Example
+    void weeklyGroupCollapsesToFewTransfers() {
+        // A 应收 270，B、C、D 分别应付 120、75、75：三笔转账，欠得最多的先付
+        Map<String, Long> balances = new HashMap<>();
+        balances.put("A", 27000L);
+        balances.put("B", -12000L);
+        balances.put("C", -7500L);
+        balances.put("D", -7500L);
+
+        List<Transfer> transfers = SettlementService.planTransfers(balances);
+
+        Assertions.assertEquals(3, transfers.size());
+        Assertions.assertEquals("B", transfers.get(0).getFromUserId());
+        Assertions.assertEquals("A", transfers.get(0).getToUserId());
+        Assertions.assertEquals("120.00", transfers.get(0).getAmount().toString());
+    }
+
+    @Example
+    void settledLedgerHasNoTransfers() {
+        Map<String, Long> balances = new HashMap<>();
+        balances.put("A", 0L);
+        Assertions.assertTrue(SettlementService.planTransfers(balances).isEmpty());
+    }
+}
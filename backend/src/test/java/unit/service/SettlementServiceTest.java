@@ -0,0 +1,104 @@
+package unit.service;
+
+import cn.badminton.common.Money;
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.model.ExpenseRecord;
+import cn.badminton.model.ExpenseShare;
+import cn.badminton.service.ActivityService;
+import cn.badminton.service.SettlementService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 结算账本记账：入账时写入分摊的入账标记，冲回时跳过账本上线前创建、从未入账的分摊
+ */
+public class SettlementServiceTest {
+
+    private static final String LEDGER = RedisKeys.userDebtsKey("organizer");
+
+    private StringRedisConnection connection;
+    private StringRedisTemplate stringRedisTemplate;
+    private SettlementService settlementService;
+    private ExpenseRecord expense;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        connection = mock(StringRedisConnection.class);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(connection);
+            return List.of();
+        });
+        BookingActivity activity = new BookingActivity();
+        activity.setId("a1");
+        activity.setOrganizer("organizer");
+        ActivityService activityService = mock(ActivityService.class);
+        when(activityService.getActivityById("a1")).thenReturn(activity);
+
+        settlementService = new SettlementService();
+        ReflectionTestUtils.setField(settlementService, "stringRedisTemplate", stringRedisTemplate);
+        ReflectionTestUtils.setField(settlementService, "activityService", activityService);
+
+        expense = new ExpenseRecord();
+        expense.setId("e1");
+        expense.setActivityId("a1");
+        expense.setPayerId("payer");
+    }
+
+    @Test
+    public void testRecordMarksSharesInTheSamePipeline() {
+        ExpenseShare share = share("s1", "debtor", 3000, false);
+
+        settlementService.recordShares(expense, List.of(share));
+
+        verify(connection).hIncrBy(LEDGER, "payer", 3000L);
+        verify(connection).hIncrBy(LEDGER, "debtor", -3000L);
+        verify(connection).hSet(RedisKeys.shareKey("s1"), "ledger", "1");
+        Assertions.assertTrue(share.isLedgerRecorded());
+    }
+
+    @Test
+    public void testReverseSkipsSharesCreatedBeforeTheLedger() {
+        settlementService.reverseShares(expense, List.of(
+                share("s1", "debtor", 3000, true),
+                share("s2", "legacy", 2000, false)));
+
+        verify(connection).hIncrBy(LEDGER, "payer", -3000L);
+        verify(connection).hIncrBy(LEDGER, "debtor", 3000L);
+        verify(connection, never()).hIncrBy(eq(LEDGER), eq("legacy"), anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReverseOfOnlyLegacySharesWritesNothing() {
+        settlementService.reverseShares(expense, List.of(share("s2", "legacy", 2000, false)));
+
+        verify(stringRedisTemplate, never()).executePipelined(any(RedisCallback.class));
+        verify(connection, never()).hSet(anyString(), anyString(), anyString());
+    }
+
+    private static ExpenseShare share(String id, String userId, long cents, boolean recorded) {
+        ExpenseShare share = new ExpenseShare("e1", userId, Money.ofCents(cents));
+        share.setId(id);
+        share.setLedgerRecorded(recorded);
+        return share;
+    }
+}
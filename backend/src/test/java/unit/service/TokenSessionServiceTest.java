@@ -0,0 +1,166 @@
+package unit.service;
+
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.service.TokenSessionService;
+import cn.badminton.util.JwtUtil;
+import cn.badminton.util.JwtUtil.TokenInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/**
+ * 刷新令牌轮换：每次刷新换发新令牌，旧令牌重放或摘要不符时拒绝且不改动会话
+ * Redis 侧的比对替换脚本用内存中的 {会话键 -> 摘要} 模拟
+ */
+public class TokenSessionServiceTest {
+
+    private static final String SESSION_ID = "s-1";
+    private static final String USER_ID = "u-1";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, String> digests = new HashMap<>();
+    private StringRedisTemplate redisTemplate;
+    private TokenSessionService service;
+
+    @BeforeEach
+    public void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        doAnswer(invocation -> {
+            String key = ((List<?>) invocation.getArgument(1)).get(0).toString();
+            String stored = digests.get(key);
+            if (stored == null) {
+                return List.of("missing");
+            }
+            if (!stored.equals(invocation.getArgument(2))) {
+                return List.of("mismatch");
+            }
+            digests.put(key, invocation.getArgument(3));
+            return List.of("ok", USER_ID);
+        }).when(redisTemplate).execute(any(RedisScript.class), anyList(), any(), any());
+
+        JwtUtil jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "secret", "unit-test-secret-key-1234567890-ABCDEF");
+        ReflectionTestUtils.setField(jwtUtil, "expireMinutes", 15L);
+
+        service = new TokenSessionService();
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(service, "jwtUtil", jwtUtil);
+        ReflectionTestUtils.setField(service, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(service, "listenerContainer", mock(RedisMessageListenerContainer.class));
+        service.init();
+
+        digests.put(RedisKeys.tokenKey(SESSION_ID), sha256("secret-a"));
+    }
+
+    @Test
+    public void testRotateIssuesNewRefreshTokenForSameSession() {
+        TokenSessionService.Rotation rotation = service.rotate(SESSION_ID + ".secret-a");
+
+        Assertions.assertEquals(USER_ID, rotation.getUserId());
+        Assertions.assertEquals(SESSION_ID, rotation.getSessionId());
+        String next = rotation.getRefreshToken();
+        Assertions.assertTrue(next.startsWith(SESSION_ID + "."));
+        Assertions.assertNotEquals(SESSION_ID + ".secret-a", next);
+        // Redis 只保存新随机串的摘要
+        Assertions.assertEquals(sha256(next.substring(SESSION_ID.length() + 1)),
+                digests.get(RedisKeys.tokenKey(SESSION_ID)));
+    }
+
+    @Test
+    public void testReplayedRefreshTokenIsRejectedAndRotatedTokenStillWorks() {
+        String next = service.rotate(SESSION_ID + ".secret-a").getRefreshToken();
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.rotate(SESSION_ID + ".secret-a"));
+        Assertions.assertEquals(1.0, meterRegistry.counter("token.refresh.failures").count());
+
+        TokenSessionService.Rotation again = service.rotate(next);
+        Assertions.assertEquals(USER_ID, again.getUserId());
+    }
+
+    @Test
+    public void testMismatchedSecretDoesNotRotate() {
+        String before = digests.get(RedisKeys.tokenKey(SESSION_ID));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.rotate(SESSION_ID + ".forged"));
+
+        Assertions.assertEquals(before, digests.get(RedisKeys.tokenKey(SESSION_ID)));
+        Assertions.assertEquals(1.0, meterRegistry.counter("token.refresh.failures").count());
+    }
+
+    @Test
+    public void testRevokedSessionCannotRefresh() {
+        digests.remove(RedisKeys.tokenKey(SESSION_ID));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.rotate(SESSION_ID + ".secret-a"));
+    }
+
+    @Test
+    public void testMalformedRefreshTokenIsRejectedWithoutRedis() {
+        TokenSessionService fresh = new TokenSessionService();
+        StringRedisTemplate untouched = mock(StringRedisTemplate.class);
+        ReflectionTestUtils.setField(fresh, "stringRedisTemplate", untouched);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> fresh.rotate("no-separator"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> fresh.rotate(SESSION_ID + "."));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> fresh.rotate(null));
+        verifyNoInteractions(untouched);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testUserCutoffOutlivesAccessTokenForLegacyTokens() {
+        long now = System.currentTimeMillis();
+        long recent = now - TimeUnit.HOURS.toMillis(1);
+        long stale = now - TimeUnit.DAYS.toMillis(31);
+        ZSetOperations<String, String> zSetOps = mock(ZSetOperations.class);
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        doReturn(zSetOps).when(redisTemplate).opsForZSet();
+        doReturn(hashOps).when(redisTemplate).opsForHash();
+        doReturn(Set.of()).when(zSetOps).rangeByScore(anyString(), anyDouble(), anyDouble());
+        doReturn(Map.of(USER_ID, String.valueOf(recent), "u-2", String.valueOf(stale)))
+                .when(hashOps).entries(RedisKeys.TOKEN_REVOKED_BEFORE);
+
+        service.rebuild();
+
+        // 旧版令牌无会话ID、有效期 30 天：截止时间早已超过一个访问令牌有效期，仍须生效
+        TokenInfo legacy = new TokenInfo(USER_ID, null, recent - 1000, now + TimeUnit.DAYS.toMillis(29), null, null);
+        Assertions.assertTrue(service.isRevoked(legacy));
+        verify(hashOps).delete(eq(RedisKeys.TOKEN_REVOKED_BEFORE), eq("u-2"));
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.US_ASCII));
+            return HexFormat.of().formatHex(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package unit.service;
+
+import cn.badminton.event.ActivityCreated;
+import cn.badminton.event.ShareSettled;
+import cn.badminton.repository.UserRepository;
+import cn.badminton.service.UserCounterEventHandler;
+import cn.badminton.service.UserService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用户计数处理器：按已处理标记累加一次并写回数据库，重复投递不写回，缓存缺失时由数据库回填后重试
+ */
+public class UserCounterEventHandlerTest {
+
+    private static final String MARKER = "badminton:stream:processed:user_counters:1-0";
+
+    private UserRepository userRepository;
+    private UserCounterEventHandler handler;
+
+    @BeforeEach
+    public void setUp() {
+        userRepository = mock(UserRepository.class);
+        UserService userService = new UserService();
+        ReflectionTestUtils.setField(userService, "userRepository", userRepository);
+        handler = new UserCounterEventHandler();
+        ReflectionTestUtils.setField(handler, "userService", userService);
+    }
+
+    @Test
+    public void testSettledBatchAddsAggregatedAmount() {
+        when(userRepository.incrementCounterOnce(eq(MARKER), anyLong(), eq("u1"), eq("totalExpenseCents"), eq(5550L)))
+                .thenReturn(1L);
+
+        handler.handle(new ShareSettled("u1", 5550, List.of("s1", "s2")), MARKER);
+
+        verify(userRepository).persistCounters("u1");
+    }
+
+    @Test
+    public void testDuplicateIsNeitherCountedNorPersisted() {
+        when(userRepository.incrementCounterOnce(eq(MARKER), anyLong(), eq("org"), eq("totalActivities"), eq(1L)))
+                .thenReturn(0L);
+
+        handler.handle(new ActivityCreated("a1", "org"), MARKER);
+
+        verify(userRepository, times(1)).incrementCounterOnce(anyString(), anyLong(), anyString(), anyString(),
+                anyLong());
+        verify(userRepository, never()).persistCounters(anyString());
+    }
+
+    @Test
+    public void testMissingCacheIsRefilledAndRetried() {
+        when(userRepository.reloadCache("org")).thenReturn(true);
+        when(userRepository.incrementCounterOnce(eq(MARKER), anyLong(), eq("org"), eq("totalActivities"), eq(1L)))
+                .thenReturn(-1L, 1L);
+
+        handler.handle(new ActivityCreated("a1", "org"), MARKER);
+
+        verify(userRepository, never()).save(any());
+        verify(userRepository).persistCounters("org");
+    }
+
+    @Test
+    public void testUnknownUserIsSkipped() {
+        when(userRepository.incrementCounterOnce(eq(MARKER), anyLong(), eq("ghost"), eq("totalActivities"), eq(1L)))
+                .thenReturn(-1L);
+
+        handler.handle(new ActivityCreated("a1", "ghost"), MARKER);
+
+        verify(userRepository, never()).persistCounters(anyString());
+    }
+
+    @Test
+    public void testCacheStillMissingAfterRefillFails() {
+        when(userRepository.reloadCache("org")).thenReturn(true);
+        when(userRepository.incrementCounterOnce(eq(MARKER), anyLong(), eq("org"), eq("totalActivities"), eq(1L)))
+                .thenReturn(-1L);
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> handler.handle(new ActivityCreated("a1", "org"), MARKER));
+        verify(userRepository, never()).persistCounters(anyString());
+    }
+}
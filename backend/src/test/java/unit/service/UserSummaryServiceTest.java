@@ -0,0 +1,197 @@
+package unit.service;
+
+import cn.badminton.common.Money;
+import cn.badminton.dto.user.UserSummaryResponse;
+import cn.badminton.dto.user.UserSummaryResponse.ActivityCard;
+import cn.badminton.event.ActivityEvent;
+import cn.badminton.event.ExpenseSharesEvent;
+import cn.badminton.model.BookingActivity;
+import cn.badminton.model.ExpenseRecord;
+import cn.badminton.model.ExpenseShare;
+import cn.badminton.model.User;
+import cn.badminton.repository.ActivityRepository;
+import cn.badminton.repository.ExpenseRepository;
+import cn.badminton.repository.UserRepository;
+import cn.badminton.service.ActivityFeedService;
+import cn.badminton.service.UserService;
+import cn.badminton.service.UserSummaryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 首页汇总读模型：事件按用户聚合成一次脚本调用，读取时过滤已结束的活动卡片，重建时卡片取自活动时间线
+ */
+public class UserSummaryServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private StringRedisTemplate redis;
+    private StringRedisConnection connection;
+    private UserSummaryService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        connection = mock(StringRedisConnection.class);
+        when(redis.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            ((RedisCallback<Object>) invocation.getArgument(0)).doInRedis(connection);
+            return List.of();
+        });
+        service = new UserSummaryService();
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", redis);
+        ReflectionTestUtils.setField(service, "objectMapper", objectMapper);
+    }
+
+    @Test
+    public void testSharesEventAggregatesPerUser() {
+        ExpenseRecord expense = new ExpenseRecord();
+        expense.setId("e1");
+        expense.setPayerId("payer");
+        List<ExpenseShare> shares = List.of(
+                new ExpenseShare("e1", "payer", Money.ofCents(2500)),
+                new ExpenseShare("e1", "u1", Money.ofCents(2500)),
+                new ExpenseShare("e1", "u2", Money.ofCents(2500)));
+
+        service.onExpenseSharesEvent(new ExpenseSharesEvent(ExpenseSharesEvent.Kind.CREATED, expense, shares));
+
+        Map<String, List<String>> calls = capturedScriptCalls(3);
+        Assertions.assertEquals(List.of("incr", "owedCents", "2500", "incr", "pendingShareCount", "1"),
+                calls.get("badminton:summary:user:u1"));
+        Assertions.assertEquals(List.of("incr", "receivableCents", "5000"), calls.get("badminton:summary:user:payer"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCancelledActivityRemovesCardFromAllHolders() {
+        SetOperations<String, String> setOps = mock(SetOperations.class);
+        when(redis.opsForSet()).thenReturn(setOps);
+        when(setOps.members("badminton:summary:holders:a1")).thenReturn(Set.of("org", "u1"));
+        BookingActivity activity = new BookingActivity("周末球局", "org", "体育馆",
+                LocalDateTime.now().plusDays(1), LocalDateTime.now().plusDays(1).plusHours(2), 8);
+        activity.setId("a1");
+        activity.setStatus(BookingActivity.STATUS_CANCELLED);
+
+        service.onActivityEvent(new ActivityEvent(ActivityEvent.Kind.CANCELLED, activity, "org"));
+
+        Map<String, List<String>> calls = capturedScriptCalls(2);
+        Assertions.assertEquals(List.of("del", "card:a1", ""), calls.get("badminton:summary:user:org"));
+        Assertions.assertEquals(List.of("del", "card:a1", ""), calls.get("badminton:summary:user:u1"));
+        verify(redis).delete("badminton:summary:holders:a1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSummaryReadsOneHashAndDropsFinishedCards() throws Exception {
+        ActivityCard upcoming = new ActivityCard();
+        upcoming.setId("a1");
+        upcoming.setStartTime(LocalDateTime.now().plusHours(2));
+        upcoming.setEndTime(LocalDateTime.now().plusHours(4));
+        ActivityCard finished = new ActivityCard();
+        finished.setId("a0");
+        finished.setStartTime(LocalDateTime.now().minusHours(4));
+        finished.setEndTime(LocalDateTime.now().minusHours(2));
+
+        Map<Object, Object> hash = new HashMap<>();
+        hash.put("built", "1");
+        hash.put("organizedCount", "2");
+        hash.put("owedCents", "12050");
+        hash.put("receivableCents", "0");
+        hash.put("card:a1", objectMapper.writeValueAsString(upcoming));
+        hash.put("card:a0", objectMapper.writeValueAsString(finished));
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        when(redis.opsForHash()).thenReturn(hashOps);
+        when(hashOps.entries("badminton:summary:user:u1")).thenReturn(hash);
+
+        UserSummaryResponse summary = service.getSummary("u1");
+
+        Assertions.assertEquals(2, summary.getOrganizedCount());
+        Assertions.assertEquals(Money.ofCents(12050), summary.getOwedAmount());
+        Assertions.assertEquals(1, summary.getUpcoming().size());
+        Assertions.assertEquals("a1", summary.getUpcoming().get(0).getId());
+    }
+
+    @Test
+    public void testRebuildAddsCardsForJoinedActivitiesFromTimeline() {
+        UserService userService = mock(UserService.class);
+        ActivityRepository activityRepository = mock(ActivityRepository.class);
+        ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        ActivityFeedService activityFeedService = mock(ActivityFeedService.class);
+        ReflectionTestUtils.setField(service, "userService", userService);
+        ReflectionTestUtils.setField(service, "activityRepository", activityRepository);
+        ReflectionTestUtils.setField(service, "expenseRepository", expenseRepository);
+        ReflectionTestUtils.setField(service, "userRepository", userRepository);
+        ReflectionTestUtils.setField(service, "activityFeedService", activityFeedService);
+
+        User user = new User();
+        user.setId("u1");
+        user.setTotalActivities(2);
+        when(userService.findById("u1")).thenReturn(user);
+        BookingActivity organized = activity("a1", "u1", 1);
+        BookingActivity joined = activity("a2", "org", 2);
+        BookingActivity finished = activity("a3", "org", -1);
+        finished.setStatus(BookingActivity.STATUS_COMPLETED);
+        when(activityRepository.findByOrganizer("u1")).thenReturn(List.of(organized));
+        when(userRepository.pageUserActivities(eq("u1"), eq(true), any(), eq(0L), anyLong()))
+                .thenReturn(new ArrayList<>(List.of("a1", "a2", "a3")));
+        when(activityRepository.findByIds(List.of("a2", "a3")))
+                .thenReturn(Map.of("a2", joined, "a3", finished));
+
+        Map<Object, Object> hash = service.rebuild("u1");
+
+        verify(activityFeedService).ensureTimeline("u1");
+        Assertions.assertTrue(hash.containsKey("card:a1"));
+        Assertions.assertTrue(hash.containsKey("card:a2"));
+        Assertions.assertFalse(hash.containsKey("card:a3"));
+        Assertions.assertEquals("1", hash.get("joinedCount"));
+        verify(connection).sAdd("badminton:summary:holders:a2", "u1");
+    }
+
+    private static BookingActivity activity(String id, String organizer, int startInDays) {
+        BookingActivity activity = new BookingActivity("周末球局", organizer, "体育馆",
+                LocalDateTime.now().plusDays(startInDays), LocalDateTime.now().plusDays(startInDays).plusHours(2), 8);
+        activity.setId(id);
+        activity.setStatus(BookingActivity.STATUS_PENDING);
+        return activity;
+    }
+
+    private Map<String, List<String>> capturedScriptCalls(int expected) {
+        ArgumentCaptor<String[]> captor = ArgumentCaptor.forClass(String[].class);
+        verify(connection, times(expected)).eval(anyString(), eq(ReturnType.INTEGER), anyInt(), captor.capture());
+        Map<String, List<String>> calls = new HashMap<>();
+        for (String[] keysAndArgs : captor.getAllValues()) {
+            calls.put(keysAndArgs[0], Arrays.asList(keysAndArgs).subList(1, keysAndArgs.length));
+        }
+        return calls;
+    }
+}
@@ -0,0 +1,146 @@
+package unit.service;
+
+import cn.badminton.config.RedisConfig.RedisKeys;
+import cn.badminton.service.UserService;
+import cn.badminton.service.VerificationCodeService;
+import cn.badminton.sms.SmsSender;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 短信验证码发送/校验脚本在真实 Redis 上的语义（无 Docker 环境时跳过）
+ * - 重发间隔内再次发送被拒绝，且不覆盖已发出的验证码
+ * - 错误次数用尽后验证码作废，之后正确的验证码也无法通过
+ * - 验证通过即作废，不能重复使用
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class VerificationCodeServiceRedisTest {
+
+    private static final String PHONE = "13800000000";
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static LettuceConnectionFactory connectionFactory;
+    private static StringRedisTemplate redisTemplate;
+
+    private final List<String> sentCodes = new ArrayList<>();
+    private VerificationCodeService service;
+
+    @BeforeAll
+    public static void connect() {
+        connectionFactory = new LettuceConnectionFactory(REDIS.getHost(), REDIS.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    public static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        UserService userService = mock(UserService.class);
+        when(userService.isValidPhone(PHONE)).thenReturn(true);
+        SmsSender smsSender = (phone, code, ttlSeconds) -> sentCodes.add(code);
+
+        service = new VerificationCodeService();
+        ReflectionTestUtils.setField(service, "stringRedisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(service, "userService", userService);
+        ReflectionTestUtils.setField(service, "smsSender", smsSender);
+        ReflectionTestUtils.setField(service, "resendIntervalSeconds", 60L);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        service.init();
+    }
+
+    @Test
+    public void testResendWithinCooldownIsRejectedAndKeepsCode() {
+        service.sendLoginCode(PHONE);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.sendLoginCode(PHONE));
+
+        Assertions.assertEquals(1, sentCodes.size());
+        Assertions.assertEquals(sentCodes.get(0),
+                redisTemplate.opsForHash().get(RedisKeys.verificationCodeKey(PHONE), "code"));
+        long cooldown = redisTemplate.getExpire(RedisKeys.verificationThrottleKey(PHONE));
+        Assertions.assertTrue(cooldown > 0 && cooldown <= 60, "cooldown=" + cooldown);
+    }
+
+    @Test
+    public void testResendAfterCooldownReplacesCodeAndResetsAttempts() {
+        service.sendLoginCode(PHONE);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.verifyLoginCode(PHONE, wrong()));
+        redisTemplate.delete(RedisKeys.verificationThrottleKey(PHONE));
+
+        service.sendLoginCode(PHONE);
+
+        Assertions.assertEquals("0", redisTemplate.opsForHash().get(RedisKeys.verificationCodeKey(PHONE), "attempts"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.verifyLoginCode(PHONE, sentCodes.get(0)));
+    }
+
+    @Test
+    public void testAttemptsExhaustionInvalidatesCode() {
+        service.sendLoginCode(PHONE);
+        String code = sentCodes.get(0);
+
+        IllegalArgumentException first = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> service.verifyLoginCode(PHONE, wrong()));
+        Assertions.assertTrue(first.getMessage().contains("2"), first.getMessage());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.verifyLoginCode(PHONE, wrong()));
+        IllegalArgumentException last = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> service.verifyLoginCode(PHONE, wrong()));
+        Assertions.assertEquals("验证码已失效，请重新获取", last.getMessage());
+
+        Assertions.assertFalse(redisTemplate.hasKey(RedisKeys.verificationCodeKey(PHONE)));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.verifyLoginCode(PHONE, code));
+    }
+
+    @Test
+    public void testCodeCanBeUsedOnlyOnce() {
+        service.sendLoginCode(PHONE);
+        String code = sentCodes.get(0);
+
+        service.verifyLoginCode(PHONE, code);
+
+        IllegalArgumentException reused = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> service.verifyLoginCode(PHONE, code));
+        Assertions.assertEquals("验证码已失效，请重新获取", reused.getMessage());
+    }
+
+    @Test
+    public void testFailedDeliveryReleasesCooldown() {
+        ReflectionTestUtils.setField(service, "smsSender", (SmsSender) (phone, code, ttlSeconds) -> {
+            throw new IllegalStateException("provider down");
+        });
+        Assertions.assertThrows(IllegalArgumentException.class, () -> service.sendLoginCode(PHONE));
+        Assertions.assertFalse(redisTemplate.hasKey(RedisKeys.verificationThrottleKey(PHONE)));
+        Assertions.assertFalse(redisTemplate.hasKey(RedisKeys.verificationCodeKey(PHONE)));
+    }
+
+    private String wrong() {
+        String code = sentCodes.get(sentCodes.size() - 1);
+        return code.equals("000000") ? "111111" : "000000";
+    }
+}
@@ -0,0 +1,139 @@
+package unit.service;
+
+import cn.badminton.config.WechatHttpProperties;
+import cn.badminton.model.User;
+import cn.badminton.service.AuthService;
+import cn.badminton.service.DistributedLease;
+import cn.badminton.service.UserService;
+import cn.badminton.service.WechatService;
+import cn.badminton.wechat.WechatApiClient;
+import cn.badminton.wechat.WechatCredentialStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import unit.wechat.WechatStubServer;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 同一授权码的并发小程序登录：只调用一次微信、只建一个用户
+ * 跨节点租约以单节点直通实现替代（先读共享结果，读不到再执行）
+ */
+public class WechatLoginSingleFlightTest {
+
+    private static final String JSCODE2SESSION = "/sns/jscode2session";
+    private static final int LOGINS = 100;
+
+    private WechatStubServer stub;
+    private WechatApiClient client;
+    private AuthService authService;
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final AtomicInteger userCreates = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        stub = WechatStubServer.start(0);
+        // 微信响应放慢，让并发登录都落在同一次换取期间
+        stub.enqueue(JSCODE2SESSION, 200,
+                "{\"openid\":\"o-launch\",\"session_key\":\"MDEyMzQ1Njc4OWFiY2RlZg==\"}", 300);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        WechatHttpProperties properties = new WechatHttpProperties();
+        properties.setBaseUrl(stub.baseUrl());
+        properties.setMaxConcurrentCalls(LOGINS);
+        client = new WechatApiClient();
+        setField(client, "properties", properties);
+        setField(client, "meterRegistry", meterRegistry);
+        client.init();
+
+        DistributedLease lease = mock(DistributedLease.class);
+        when(lease.runOnce(anyString(), any(), any(), any())).thenAnswer(inv -> {
+            Object shared = ((Supplier<?>) inv.getArgument(2)).get();
+            return shared != null ? shared : ((Supplier<?>) inv.getArgument(3)).get();
+        });
+        WechatCredentialStore credentialStore = mock(WechatCredentialStore.class);
+        when(credentialStore.getSessionKey(anyString())).thenReturn("MDEyMzQ1Njc4OWFiY2RlZg==");
+
+        WechatService wechatService = new WechatService();
+        setField(wechatService, "wechatApiClient", client);
+        setField(wechatService, "wechatCredentialStore", credentialStore);
+        setField(wechatService, "distributedLease", lease);
+        setField(wechatService, "stringRedisTemplate", mock(StringRedisTemplate.class, RETURNS_DEEP_STUBS));
+        setField(wechatService, "meterRegistry", meterRegistry);
+        wechatService.init();
+
+        UserService userService = mock(UserService.class);
+        when(userService.findByWxOpenId(anyString())).thenAnswer(inv -> users.get(inv.<String>getArgument(0)));
+        when(userService.createWechatUser(any(), anyString(), any(), any())).thenAnswer(inv -> {
+            userCreates.incrementAndGet();
+            User user = new User("13800000000", inv.getArgument(0), "x");
+            user.setWxOpenId(inv.getArgument(1));
+            users.put(inv.getArgument(1), user);
+            return user;
+        });
+
+        authService = new AuthService();
+        setField(authService, "wechatService", wechatService);
+        setField(authService, "userService", userService);
+        setField(authService, "distributedLease", lease);
+        setField(authService, "meterRegistry", meterRegistry);
+        authService.init();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        client.shutdown();
+        stub.close();
+    }
+
+    @Test
+    public void testParallelLoginsShareOneExchangeAndOneUser() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(LOGINS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<User>> results = new ArrayList<>();
+            for (int i = 0; i < LOGINS; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return authService.wechatMiniProgramLogin("launch-code", null, null);
+                }));
+            }
+            start.countDown();
+            User first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<User> f : results) {
+                Assertions.assertSame(first, f.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        Assertions.assertEquals(1, stub.hits(JSCODE2SESSION));
+        Assertions.assertEquals(1, userCreates.get());
+        Assertions.assertEquals("o-launch", users.get("o-launch").getWxOpenId());
+    }
+
+    private static void setField(Object target, String name, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(name);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}
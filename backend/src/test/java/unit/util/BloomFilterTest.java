@@ -0,0 +1,43 @@
+package unit.util;
+
+import cn.badminton.util.BloomFilter;
+import cn.badminton.util.IdGenerator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10000, 0.001);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            String id = IdGenerator.nextId();
+            ids.add(id);
+            filter.put(id);
+        }
+        for (String id : ids) {
+            Assertions.assertTrue(filter.mightContain(id));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateNearTarget() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put(IdGenerator.nextId());
+        }
+        int falsePositives = 0;
+        int probes = 100000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("probe-" + i)) {
+                falsePositives++;
+            }
+        }
+        // 目标 1%，留出统计波动余量
+        Assertions.assertTrue(falsePositives < probes * 0.02, "误判数: " + falsePositives);
+    }
+}
@@ -0,0 +1,36 @@
+package unit.util;
+
+import cn.badminton.util.IdGenerator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class IdGeneratorTest {
+
+    @Test
+    public void testIdsAreUniqueAndOrdered() {
+        Set<String> seen = new HashSet<>();
+        String previous = null;
+        for (int i = 0; i < 20000; i++) {
+            String id = IdGenerator.nextId();
+            Assertions.assertEquals(IdGenerator.ID_LENGTH, id.length());
+            Assertions.assertTrue(seen.add(id));
+            if (previous != null) {
+                Assertions.assertTrue(previous.compareTo(id) < 0);
+            }
+            previous = id;
+        }
+    }
+
+    @Test
+    public void testEncodeDecodeRoundTrip() {
+        long value = new IdGenerator(7).nextLong();
+        String id = IdGenerator.encode(value);
+        Assertions.assertEquals(IdGenerator.ID_LENGTH, id.length());
+        Assertions.assertEquals(value, IdGenerator.decode(id));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> IdGenerator.decode("6f1c2a9e-8d7b-4c3a-9e21-0b5f7d3c8a10"));
+    }
+}
@@ -24,4 +24,49 @@ public class JwtUtilTest {
         String parsed = jwt.parseUserId(token);
         Assertions.assertEquals(userId, parsed);
     }
+
+    @Test
+    public void testCachedTokenAndTamperedToken() throws Exception {
+        JwtUtil jwt = new JwtUtil();
+        Field secret = JwtUtil.class.getDeclaredField("secret");
+        secret.setAccessible(true);
+        secret.set(jwt, "unit-test-secret-key-1234567890-ABCDEF-XYZ");
+        Field expire = JwtUtil.class.getDeclaredField("expireMinutes");
+        expire.setAccessible(true);
+        expire.set(jwt, 10L);
+
+        String token = jwt.generateToken("u-456");
+        Assertions.assertEquals("u-456", jwt.parseUserId(token));
+        // 第二次命中已验证令牌缓存
+        Assertions.assertEquals("u-456", jwt.parseUserId(token));
+
+        String tampered = token.substring(0, token.length() - 2)
+                + (token.endsWith("AA") ? "BB" : "AA");
+        Assertions.assertNull(jwt.parseUserId(tampered));
+        Assertions.assertNull(jwt.parseUserId("not-a-jwt"));
+    }
+
+    @Test
+    public void testSessionIdClaim() throws Exception {
+        JwtUtil jwt = new JwtUtil();
+        Field secret = JwtUtil.class.getDeclaredField("secret");
+        secret.setAccessible(true);
+        secret.set(jwt, "unit-test-secret-key-1234567890-ABCDEF-XYZ");
+        Field expire = JwtUtil.class.getDeclaredField("expireMinutes");
+        expire.setAccessible(true);
+        expire.set(jwt, 10L);
+
+        JwtUtil.TokenInfo info = jwt.parseToken(jwt.generateToken("u-789", "sid-1"));
+        Assertions.assertNotNull(info);
+        Assertions.assertEquals("u-789", info.getUserId());
+        Assertions.assertEquals("sid-1", info.getSessionId());
+        Assertions.assertTrue(info.getExpiresAt() > info.getIssuedAt());
+
+        Assertions.assertNull(jwt.parseToken(jwt.generateToken("u-789")).getSessionId());
+
+        JwtUtil.TokenInfo access = jwt.parseToken(jwt.generateToken("u-789", "sid-2", 2, 7));
+        Assertions.assertEquals(2, access.getStatus());
+        Assertions.assertEquals(7, access.getTenant());
+        Assertions.assertNull(info.getStatus());
+    }
 }
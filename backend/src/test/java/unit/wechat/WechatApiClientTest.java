@@ -0,0 +1,177 @@
+package unit.wechat;
+
+import cn.badminton.config.WechatHttpProperties;
+import cn.badminton.wechat.WechatApiClient;
+import cn.badminton.wechat.WechatApiException;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.lang.reflect.Field;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+public class WechatApiClientTest {
+
+    private static final String USERINFO = "/sns/userinfo";
+    private static final String ACCESS_TOKEN = "/sns/oauth2/access_token";
+    private static final String SUBSCRIBE_SEND = "/cgi-bin/message/subscribe/send";
+
+    private WechatStubServer stub;
+    private SimpleMeterRegistry meterRegistry;
+    private WechatApiClient client;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        stub = WechatStubServer.start(0);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (client != null) {
+            client.shutdown();
+        }
+        stub.close();
+    }
+
+    @Test
+    public void testGetEncodesQueryParameters() throws Exception {
+        newClient(p -> { });
+        JsonNode node = client.get("sns.userinfo", USERINFO, userInfoParams("open+id&x=1"), true);
+        Assertions.assertEquals("open+id&x=1", node.get("openid").asText());
+        Assertions.assertEquals("open+id&x=1", stub.lastQuery(USERINFO).get("openid"));
+        Assertions.assertEquals(1, meterRegistry.get("wechat.api.requests")
+                .tag("api", "sns.userinfo").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    public void testIdempotentCallRetriesServerErrors() throws Exception {
+        newClient(p -> { });
+        stub.enqueue(USERINFO, 500, "busy", 0);
+        stub.enqueue(USERINFO, 200, "{\"errcode\":-1,\"errmsg\":\"system busy\"}", 0);
+        JsonNode node = client.get("sns.userinfo", USERINFO, userInfoParams("o1"), true);
+        Assertions.assertEquals("o1", node.get("openid").asText());
+        Assertions.assertEquals(3, stub.hits(USERINFO));
+    }
+
+    @Test
+    public void testNonIdempotentCallIsNotRetriedAfterTimeout() throws Exception {
+        newClient(p -> p.setReadTimeoutMs(200));
+        stub.enqueue(ACCESS_TOKEN, 200, "{}", 1000);
+        ResourceAccessException e = Assertions.assertThrows(ResourceAccessException.class,
+                () -> client.get("sns.oauth2.access_token", ACCESS_TOKEN, codeParams("c1"), false));
+        Assertions.assertEquals(1, stub.hits(ACCESS_TOKEN));
+        // 异常信息不能带出 secret
+        Assertions.assertFalse(e.getMessage().contains("top-secret"));
+    }
+
+    @Test
+    public void testBusinessErrorIsNeitherRetriedNorCountedAsFailure() throws Exception {
+        newClient(p -> {
+            p.setSlidingWindowSize(2);
+            p.setMinimumNumberOfCalls(2);
+        });
+        for (int i = 0; i < 3; i++) {
+            WechatApiException e = Assertions.assertThrows(WechatApiException.class,
+                    () -> client.get("sns.oauth2.access_token", ACCESS_TOKEN, codeParams("invalid"), true));
+            Assertions.assertEquals(40029, e.getErrcode());
+        }
+        Assertions.assertEquals(3, stub.hits(ACCESS_TOKEN));
+        // 熔断未打开，正常调用仍可通过
+        JsonNode node = client.get("sns.oauth2.access_token", ACCESS_TOKEN, codeParams("c2"), false);
+        Assertions.assertEquals("stub-openid-c2", node.get("openid").asText());
+    }
+
+    @Test
+    public void testCircuitOpensAfterFailures() throws Exception {
+        newClient(p -> {
+            p.setRetryMaxAttempts(1);
+            p.setSlidingWindowSize(4);
+            p.setMinimumNumberOfCalls(4);
+        });
+        for (int i = 0; i < 4; i++) {
+            stub.enqueue(USERINFO, 502, "bad gateway", 0);
+            Assertions.assertThrows(HttpServerErrorException.class,
+                    () -> client.get("sns.userinfo", USERINFO, userInfoParams("o1"), true));
+        }
+        Assertions.assertThrows(RejectedExecutionException.class,
+                () -> client.get("sns.userinfo", USERINFO, userInfoParams("o1"), true));
+        Assertions.assertEquals(4, stub.hits(USERINFO));
+        Assertions.assertEquals(1, meterRegistry.get("wechat.api.requests")
+                .tag("outcome", "circuit_open").timer().count());
+    }
+
+    @Test
+    public void testBulkheadRejectsWhenFull() throws Exception {
+        newClient(p -> p.setMaxConcurrentCalls(1));
+        stub.enqueue(USERINFO, 200, "{\"openid\":\"slow\"}", 500);
+        CompletableFuture<JsonNode> slow = CompletableFuture.supplyAsync(
+                () -> client.get("sns.userinfo", USERINFO, userInfoParams("slow"), true));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (stub.hits(USERINFO) == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        Assertions.assertThrows(RejectedExecutionException.class,
+                () -> client.get("sns.userinfo", USERINFO, userInfoParams("o2"), true));
+        Assertions.assertEquals("slow", slow.get().get("openid").asText());
+    }
+
+    @Test
+    public void testPostSendsJsonBodyAndDoesNotRetryBusinessErrors() throws Exception {
+        newClient(p -> { });
+        Map<String, Object> body = Map.of("touser", "o1", "template_id", "tpl");
+        client.post("subscribe.send", SUBSCRIBE_SEND, Map.of("access_token", "token"), body, false);
+        Assertions.assertTrue(stub.lastBody(SUBSCRIBE_SEND).contains("\"touser\":\"o1\""));
+        Assertions.assertEquals("token", stub.lastQuery(SUBSCRIBE_SEND).get("access_token"));
+
+        stub.enqueue(SUBSCRIBE_SEND, 200, "{\"errcode\":43101,\"errmsg\":\"user refuse to accept the msg\"}", 0);
+        WechatApiException e = Assertions.assertThrows(WechatApiException.class,
+                () -> client.post("subscribe.send", SUBSCRIBE_SEND, Map.of("access_token", "token"), body, false));
+        Assertions.assertEquals(43101, e.getErrcode());
+        Assertions.assertEquals(2, stub.hits(SUBSCRIBE_SEND));
+    }
+
+    private void newClient(Consumer<WechatHttpProperties> customizer) throws Exception {
+        WechatHttpProperties properties = new WechatHttpProperties();
+        properties.setBaseUrl(stub.baseUrl());
+        properties.setConnectTimeoutMs(200);
+        properties.setReadTimeoutMs(2000);
+        properties.setRetryInitialIntervalMs(10);
+        customizer.accept(properties);
+        client = new WechatApiClient();
+        setField("properties", properties);
+        setField("meterRegistry", meterRegistry);
+        client.init();
+    }
+
+    private static Map<String, String> userInfoParams(String openId) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("access_token", "token");
+        params.put("openid", openId);
+        return params;
+    }
+
+    private static Map<String, String> codeParams(String code) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("appid", "app");
+        params.put("secret", "top-secret");
+        params.put("code", code);
+        params.put("grant_type", "authorization_code");
+        return params;
+    }
+
+    private void setField(String name, Object value) throws Exception {
+        Field f = WechatApiClient.class.getDeclaredField(name);
+        f.setAccessible(true);
+        f.set(client, value);
+    }
+}
@@ -0,0 +1,172 @@
+package unit.wechat;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 微信接口本地替身（JDK 内置 HttpServer），用于离线测试与联调
+ * - 默认实现 /sns/oauth2/access_token、/sns/oauth2/refresh_token、/sns/userinfo、/sns/jscode2session、/cgi-bin/token、
+ *   /cgi-bin/message/subscribe/send
+ * - 授权码为 invalid 时返回 errcode 40029
+ * - enqueue 可为某个路径预置若干次响应（状态码、响应体、延迟），用完后回到默认实现
+ * 本地运行 main 后将 wechat.http.base-url 指向 http://localhost:18080
+ * 作者: xiaolei
+ */
+public class WechatStubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Deque<Reply>> scripted = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> lastQuery = new ConcurrentHashMap<>();
+    private final Map<String, String> lastBody = new ConcurrentHashMap<>();
+
+    private WechatStubServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static WechatStubServer start(int port) throws IOException {
+        return new WechatStubServer(port);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 18080;
+        start(port);
+        System.out.println("WeChat stub listening on http://localhost:" + port);
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void enqueue(String path, int status, String body, long delayMs) {
+        scripted.computeIfAbsent(path, p -> new ConcurrentLinkedDeque<>()).add(new Reply(status, body, delayMs));
+    }
+
+    public int hits(String path) {
+        AtomicInteger n = hits.get(path);
+        return n == null ? 0 : n.get();
+    }
+
+    public Map<String, String> lastQuery(String path) {
+        return lastQuery.get(path);
+    }
+
+    public String lastBody(String path) {
+        return lastBody.get(path);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        hits.computeIfAbsent(path, p -> new AtomicInteger()).incrementAndGet();
+        lastQuery.put(path, query);
+        try (InputStream in = exchange.getRequestBody()) {
+            lastBody.put(path, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        Deque<Reply> queue = scripted.get(path);
+        Reply reply = queue == null ? null : queue.poll();
+        if (reply == null) {
+            reply = defaultReply(path, query);
+        }
+        try {
+            if (reply.delayMs > 0) {
+                Thread.sleep(reply.delayMs);
+            }
+            byte[] bytes = reply.body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(reply.status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 客户端已超时断开
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Reply defaultReply(String path, Map<String, String> query) {
+        String code = query.getOrDefault("code", query.get("js_code"));
+        if ("invalid".equals(code)) {
+            return new Reply(200, "{\"errcode\":40029,\"errmsg\":\"invalid code\"}", 0);
+        }
+        switch (path) {
+            case "/sns/oauth2/access_token":
+                return new Reply(200, "{\"access_token\":\"stub-access-" + code + "\",\"expires_in\":7200,"
+                        + "\"refresh_token\":\"stub-refresh\",\"openid\":\"stub-openid-" + code + "\","
+                        + "\"scope\":\"snsapi_userinfo\"}", 0);
+            case "/sns/oauth2/refresh_token":
+                return new Reply(200, "{\"access_token\":\"stub-access-refreshed\",\"expires_in\":7200,"
+                        + "\"refresh_token\":\"" + query.get("refresh_token") + "\",\"openid\":\"stub-openid\"}", 0);
+            case "/sns/userinfo":
+                return new Reply(200, "{\"openid\":\"" + query.get("openid") + "\",\"nickname\":\"stub-user\","
+                        + "\"headimgurl\":\"\",\"unionid\":\"stub-union-" + query.get("openid") + "\"}", 0);
+            case "/sns/jscode2session":
+                String sessionKey = Base64.getEncoder().encodeToString(
+                        String.format("%-16.16s", "stub-" + code).getBytes(StandardCharsets.UTF_8));
+                return new Reply(200, "{\"openid\":\"stub-openid-" + code + "\",\"session_key\":\""
+                        + sessionKey + "\"}", 0);
+            case "/cgi-bin/token":
+                return new Reply(200, "{\"access_token\":\"stub-app-token\",\"expires_in\":7200}", 0);
+            case "/cgi-bin/message/subscribe/send":
+                return new Reply(200, "{\"errcode\":0,\"errmsg\":\"ok\"}", 0);
+            default:
+                return new Reply(404, "{\"errcode\":404,\"errmsg\":\"not found\"}", 0);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> result = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return result;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            result.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return result;
+    }
+
+    private static final class Reply {
+        private final int status;
+        private final String body;
+        private final long delayMs;
+
+        private Reply(int status, String body, long delayMs) {
+            this.status = status;
+            this.body = body;
+            this.delayMs = delayMs;
+        }
+    }
+}
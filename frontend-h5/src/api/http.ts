@@ -1,7 +1,10 @@
 import axios from 'axios';
+import { useAuthStore } from '../stores/auth';
+
+const baseURL = import.meta.env.VITE_API_BASE || '/api';
 
 const http = axios.create({
-  baseURL: import.meta.env.VITE_API_BASE || '/api',
+  baseURL,
   timeout: 10000,
 });
 
@@ -14,6 +17,33 @@ http.interceptors.request.use((config) => {
   return config;
 });
 
+// 同一时刻只发起一次刷新，并发的 401 请求共用结果（刷新令牌每次都会轮换，重复使用旧令牌会被拒绝）
+let refreshing: Promise<string> | null = null;
+
+function refreshAccessToken(): Promise<string> {
+  if (!refreshing) {
+    const auth = useAuthStore();
+    refreshing = axios
+      .post(`${baseURL}/auth/refresh`, { refreshToken: auth.refreshToken }, { timeout: 10000 })
+      .then((resp) => {
+        const data = resp.data;
+        if (!data || data.code !== 0 || !data.data?.token) {
+          throw new Error(data?.message || '登录已过期，请重新登录');
+        }
+        auth.setTokens(data.data.token, data.data.refreshToken);
+        return data.data.token as string;
+      })
+      .catch((e) => {
+        auth.logout();
+        throw e;
+      })
+      .finally(() => {
+        refreshing = null;
+      });
+  }
+  return refreshing;
+}
+
 http.interceptors.response.use(
   (resp) => {
     const data = resp.data;
@@ -22,7 +52,18 @@ http.interceptors.response.use(
     }
     return data?.data ?? data;
   },
-  (err) => Promise.reject(err)
+  async (err) => {
+    const config = err.config;
+    // 访问令牌过期：用刷新令牌换取新令牌后重放一次原请求
+    if (err.response?.status === 401 && config && !config._retried && useAuthStore().refreshToken) {
+      config._retried = true;
+      const token = await refreshAccessToken();
+      config.headers = config.headers || {};
+      config.headers['Authorization'] = `Bearer ${token}`;
+      return http(config);
+    }
+    return Promise.reject(err);
+  }
 );
 
 export default http;
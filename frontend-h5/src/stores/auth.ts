@@ -5,22 +5,30 @@ export interface UserInfo { id: string; phone: string; nickname: string; avatar?
 export const useAuthStore = defineStore('auth', {
   state: () => ({
     token: (localStorage.getItem('token') || '') as string,
+    refreshToken: (localStorage.getItem('refreshToken') || '') as string,
     user: (localStorage.getItem('user') ? JSON.parse(localStorage.getItem('user')!) : null) as UserInfo | null,
   }),
   actions: {
-    setAuth(token: string, user: UserInfo) {
-      this.token = token;
+    setAuth(token: string, user: UserInfo, refreshToken = '') {
+      this.setTokens(token, refreshToken);
       this.user = user;
-      localStorage.setItem('token', token);
       localStorage.setItem('user', JSON.stringify(user));
     },
+    // 访问令牌短时有效，刷新后同时替换轮换过的刷新令牌
+    setTokens(token: string, refreshToken: string) {
+      this.token = token;
+      this.refreshToken = refreshToken;
+      localStorage.setItem('token', token);
+      localStorage.setItem('refreshToken', refreshToken);
+    },
     logout() {
       this.token = '';
+      this.refreshToken = '';
       this.user = null;
       localStorage.removeItem('token');
+      localStorage.removeItem('refreshToken');
       localStorage.removeItem('user');
     },
     isAuthed() { return !!this.token; },
   },
 });
-
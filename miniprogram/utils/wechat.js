@@ -1,7 +1,10 @@
 // 简易微信/uni请求封装
 const baseURL = (process && process.env && process.env.VITE_API_BASE) || '/api'
 
-function request(method, url, data) {
+// 同一时刻只发起一次刷新，并发的 401 请求共用结果（刷新令牌每次都会轮换，重复使用旧令牌会被拒绝）
+let refreshing = null
+
+function request(method, url, data, retried) {
   return new Promise((resolve, reject) => {
     uni.request({
       url: baseURL + url,
@@ -9,6 +12,13 @@ function request(method, url, data) {
       data,
       header: buildHeaders(),
       success: (res) => {
+        // 访问令牌过期：用刷新令牌换取新令牌后重放一次原请求
+        if (res.statusCode === 401 && !retried && uni.getStorageSync('refreshToken')) {
+          refreshAccessToken()
+            .then(() => request(method, url, data, true))
+            .then(resolve, reject)
+          return
+        }
         const body = res.data
         if (body && typeof body.code === 'number' && body.code !== 0) {
           reject(new Error(body.message || '请求失败'))
@@ -21,6 +31,35 @@ function request(method, url, data) {
   })
 }
 
+function refreshAccessToken() {
+  if (!refreshing) {
+    refreshing = new Promise((resolve, reject) => {
+      uni.request({
+        url: baseURL + '/auth/refresh',
+        method: 'POST',
+        data: { refreshToken: uni.getStorageSync('refreshToken') },
+        header: { 'Content-Type': 'application/json' },
+        success: (res) => {
+          const body = res.data
+          if (body && body.code === 0 && body.data && body.data.token) {
+            saveTokens(body.data.token, body.data.refreshToken)
+            resolve(body.data.token)
+          } else {
+            clearAuth()
+            reject(new Error((body && body.message) || '登录已过期，请重新登录'))
+          }
+        },
+        fail: (err) => {
+          reject(err)
+        },
+      })
+    }).finally(() => {
+      refreshing = null
+    })
+  }
+  return refreshing
+}
+
 function buildHeaders() {
   const token = uni.getStorageSync('token')
   const headers = { 'Content-Type': 'application/json' }
@@ -28,8 +67,20 @@ function buildHeaders() {
   return headers
 }
 
+// 登录/刷新成功后保存访问令牌与刷新令牌
+function saveTokens(token, refreshToken) {
+  uni.setStorageSync('token', token)
+  uni.setStorageSync('refreshToken', refreshToken || '')
+}
+
+function clearAuth() {
+  uni.removeStorageSync('token')
+  uni.removeStorageSync('refreshToken')
+}
+
 export default {
   get: (url, params) => request('GET', url, params),
   post: (url, data) => request('POST', url, data),
+  saveTokens,
+  clearAuth,
 }
-